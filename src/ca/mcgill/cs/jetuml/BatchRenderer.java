@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import ca.mcgill.cs.jetuml.application.DiagramRenderer;
+import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.persistence.PersistenceService;
+
+/**
+ * A command-line program that renders diagram files into images, 
+ * without opening any window. The diagrams are rendered concurrently 
+ * by a fixed number of worker threads.
+ */
+public final class BatchRenderer
+{
+	private static final String EXTENSION = ".jet";
+	private static final String DEFAULT_FORMAT = "png";
+	private static final String USAGE = "Usage: BatchRenderer [-format <image format>] [-threads <count>] " +
+			"[-out <directory>] <diagram file or directory>...";
+	
+	private BatchRenderer() {}
+	
+	/**
+	 * Renders each diagram file into an image with the same name and 
+	 * the extension of the image format. Directories are replaced by the 
+	 * diagram files they contain. The images are written next to the 
+	 * diagrams, unless an output directory is specified. A diagram whose image
+	 * would replace the image of another diagram, such as a diagram with the
+	 * same name in another directory, is not rendered. The program exits 
+	 * with a non-zero status if any diagram could not be rendered.
+	 * The format is either one supported by ImageIO or svg.
+	 * 
+	 * @param pArgs The options, followed by the files and directories 
+	 * to render.
+	 */
+	public static void main(String[] pArgs)
+	{
+		System.setProperty("java.awt.headless", "true");
+		String format = DEFAULT_FORMAT;
+		int threads = Runtime.getRuntime().availableProcessors();
+		File outputDirectory = null;
+		List<File> files = new ArrayList<>();
+		try
+		{
+			for( int i = 0; i < pArgs.length; i++ )
+			{
+				if( pArgs[i].equals("-format") && i + 1 < pArgs.length )
+				{
+					format = pArgs[++i].toLowerCase();
+				}
+				else if( pArgs[i].equals("-threads") && i + 1 < pArgs.length )
+				{
+					threads = Integer.parseInt(pArgs[++i]);
+				}
+				else if( pArgs[i].equals("-out") && i + 1 < pArgs.length )
+				{
+					outputDirectory = new File(pArgs[++i]);
+				}
+				else
+				{
+					files.addAll(findDiagrams(new File(pArgs[i])));
+				}
+			}
+		}
+		catch( NumberFormatException exception )
+		{
+			exit(USAGE);
+		}
+		if( files.isEmpty() || threads < 1 )
+		{
+			exit(USAGE);
+		}
+		if( !format.equals(DiagramRenderer.SVG_FORMAT) && !ImageIO.getImageWritersByFormatName(format).hasNext() )
+		{
+			exit("Unsupported image format: " + format);
+		}
+		if( outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs() )
+		{
+			exit("Cannot create directory " + outputDirectory);
+		}
+		
+		try
+		{
+			Map<File, Exception> failures = render(files, outputDirectory, format, threads);
+			for( Map.Entry<File, Exception> failure : failures.entrySet() )
+			{
+				System.err.println(failure.getKey() + ": " + failure.getValue());
+			}
+			System.out.println((files.size() - failures.size()) + " of " + files.size() + " diagrams rendered");
+			System.exit(failures.isEmpty() ? 0 : 1);
+		}
+		catch( InterruptedException exception )
+		{
+			exit("Interrupted");
+		}
+	}
+	
+	private static void exit(String pMessage)
+	{
+		System.err.println(pMessage);
+		System.exit(2);
+	}
+	
+	/*
+	 * Returns pFile if it is not a directory, and the diagram files
+	 * directly in pFile, in name order, otherwise.
+	 */
+	private static List<File> findDiagrams(File pFile)
+	{
+		if( !pFile.isDirectory() )
+		{
+			return Arrays.asList(pFile);
+		}
+		File[] diagrams = pFile.listFiles((pDirectory, pName) -> pName.endsWith(EXTENSION));
+		if( diagrams == null )
+		{
+			return new ArrayList<>();
+		}
+		Arrays.sort(diagrams);
+		return Arrays.asList(diagrams);
+	}
+	
+	/**
+	 * Renders diagram files into image files using pThreads worker threads.
+	 * 
+	 * @param pFiles The diagram files to render.
+	 * @param pOutputDirectory The directory in which to write the images, 
+	 * or null to write each image next to its diagram.
+	 * @param pFormat The name of an image format supported by ImageIO, or svg.
+	 * @param pThreads The number of worker threads.
+	 * @return The diagrams that could not be rendered, in the order of pFiles, 
+	 * with the reason of the failure. This includes the diagrams whose image 
+	 * file is the same as the one of a previous diagram in pFiles. A diagram 
+	 * that appears several times in pFiles is only rendered once.
+	 * @throws InterruptedException If the thread is interrupted while 
+	 * waiting for the workers.
+	 * @pre pFiles != null && pFormat != null && pThreads > 0
+	 */
+	static Map<File, Exception> render(List<File> pFiles, File pOutputDirectory, String pFormat, int pThreads) 
+			throws InterruptedException
+	{
+		assert pFiles != null && pFormat != null && pThreads > 0;
+		ExecutorService workers = Executors.newFixedThreadPool(pThreads, pTask -> 
+		{
+			Thread thread = new Thread(pTask, "Render");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try
+		{
+			List<Future<?>> results = new ArrayList<>();
+			Map<File, File> diagrams = new HashMap<>(); // The diagram rendered into each image file
+			Map<File, Future<?>> renderings = new HashMap<>(); // The rendering of each image file
+			for( File file : pFiles )
+			{
+				File image = outputFile(file, pOutputDirectory, pFormat);
+				File diagram = file.getAbsoluteFile().toPath().normalize().toFile();
+				File previous = diagrams.putIfAbsent(image, diagram);
+				if( previous == null )
+				{
+					renderings.put(image, workers.submit(() -> 
+					{
+						render(file, image, pFormat);
+						return null;
+					}));
+				}
+				if( previous == null || previous.equals(diagram) )
+				{
+					results.add(renderings.get(image));
+				}
+				else
+				{
+					CompletableFuture<?> clash = new CompletableFuture<>();
+					clash.completeExceptionally(new IOException(image + " is also the image of " + previous));
+					results.add(clash);
+				}
+			}
+			Map<File, Exception> failures = new LinkedHashMap<>();
+			for( int i = 0; i < pFiles.size(); i++ )
+			{
+				try
+				{
+					results.get(i).get();
+				}
+				catch( ExecutionException exception )
+				{
+					Throwable cause = exception.getCause();
+					failures.put(pFiles.get(i), cause instanceof Exception ? (Exception) cause : exception);
+				}
+			}
+			return failures;
+		}
+		finally
+		{
+			workers.shutdownNow();
+		}
+	}
+	
+	private static File outputFile(File pDiagram, File pOutputDirectory, String pFormat)
+	{
+		String name = pDiagram.getName();
+		if( name.endsWith(EXTENSION) )
+		{
+			name = name.substring(0, name.length() - EXTENSION.length());
+		}
+		File directory = pOutputDirectory;
+		if( directory == null )
+		{
+			directory = pDiagram.getAbsoluteFile().getParentFile();
+		}
+		return new File(directory, name + "." + pFormat).getAbsoluteFile().toPath().normalize().toFile();
+	}
+	
+	private static void render(File pDiagram, File pImage, String pFormat) throws IOException
+	{
+		Graph graph = PersistenceService.read(pDiagram);
+		if( pFormat.equals(DiagramRenderer.SVG_FORMAT) )
+		{
+			try( Writer out = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pImage)), 
+					StandardCharsets.UTF_8) )
+			{
+				DiagramRenderer.writeSvg(graph, out);
+			}
+			return;
+		}
+		try( OutputStream out = new BufferedOutputStream(new FileOutputStream(pImage)) )
+		{
+			if( !DiagramRenderer.write(graph, pFormat, out) )
+			{
+				throw new IOException("No writer for format " + pFormat);
+			}
+		}
+	}
+}
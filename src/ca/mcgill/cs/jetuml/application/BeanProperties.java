@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.application;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The JavaBeans properties of a class, introspected once and cached, 
+ * with method handles to read and write them. Properties are identified by 
+ * their index in the descriptors returned by BeanInfo.getPropertyDescriptors, 
+ * which is the index stored in property change commands.
+ */
+public final class BeanProperties
+{
+	private static final ClassValue<BeanProperties> CACHE = new ClassValue<BeanProperties>()
+	{
+		@Override
+		protected BeanProperties computeValue(Class<?> pClass)
+		{
+			return new BeanProperties(pClass);
+		}
+	};
+	
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+	
+	private final PropertyDescriptor[] aDescriptors;
+	private final MethodHandle[] aGetters;
+	private final MethodHandle[] aSetters;
+	private final Map<String, Integer> aIndices = new HashMap<>();
+	
+	private BeanProperties(Class<?> pClass)
+	{
+		try
+		{
+			aDescriptors = Introspector.getBeanInfo(pClass).getPropertyDescriptors();
+		}
+		catch( IntrospectionException exception )
+		{
+			throw new IllegalArgumentException("Cannot introspect " + pClass.getName(), exception);
+		}
+		aGetters = new MethodHandle[aDescriptors.length];
+		aSetters = new MethodHandle[aDescriptors.length];
+		for( int i = 0; i < aDescriptors.length; i++ )
+		{
+			aIndices.put(aDescriptors[i].getName(), i);
+			aGetters[i] = unreflect(aDescriptors[i].getReadMethod(), GETTER_TYPE);
+			aSetters[i] = unreflect(aDescriptors[i].getWriteMethod(), SETTER_TYPE);
+		}
+	}
+	
+	/**
+	 * @param pClass A class.
+	 * @return The properties of pClass.
+	 * @throws IllegalArgumentException If pClass cannot be introspected.
+	 */
+	public static BeanProperties of(Class<?> pClass)
+	{
+		assert pClass != null;
+		return CACHE.get(pClass);
+	}
+	
+	/**
+	 * @return The number of properties.
+	 */
+	public int size()
+	{
+		return aDescriptors.length;
+	}
+	
+	/**
+	 * @param pIndex The index of a property.
+	 * @return The descriptor of the property.
+	 * @pre pIndex >= 0 && pIndex < size()
+	 */
+	public PropertyDescriptor getDescriptor(int pIndex)
+	{
+		return aDescriptors[pIndex];
+	}
+	
+	/**
+	 * @param pName The name of a property.
+	 * @return The index of the property, or -1 if there is no property with this name.
+	 */
+	public int indexOf(String pName)
+	{
+		Integer index = aIndices.get(pName);
+		if( index == null )
+		{
+			return -1;
+		}
+		return index;
+	}
+	
+	/**
+	 * @param pIndex The index of a property.
+	 * @return True if the property can be read.
+	 */
+	public boolean isReadable(int pIndex)
+	{
+		return aGetters[pIndex] != null;
+	}
+	
+	/**
+	 * @param pIndex The index of a property.
+	 * @return True if the property can be written.
+	 */
+	public boolean isWritable(int pIndex)
+	{
+		return aSetters[pIndex] != null;
+	}
+	
+	/**
+	 * Reads a property.
+	 * 
+	 * @param pBean An instance of the class of these properties.
+	 * @param pIndex The index of a property.
+	 * @return The value of the property, or null if it cannot be read.
+	 */
+	public Object get(Object pBean, int pIndex)
+	{
+		if( aGetters[pIndex] == null )
+		{
+			return null;
+		}
+		try
+		{
+			return (Object) aGetters[pIndex].invokeExact(pBean);
+		}
+		catch( RuntimeException | Error exception )
+		{
+			throw exception;
+		}
+		catch( Throwable exception )
+		{
+			throw new IllegalStateException(exception);
+		}
+	}
+	
+	/**
+	 * Writes a property. Does nothing if the property cannot be written.
+	 * 
+	 * @param pBean An instance of the class of these properties.
+	 * @param pIndex The index of a property.
+	 * @param pValue The new value of the property.
+	 */
+	public void set(Object pBean, int pIndex, Object pValue)
+	{
+		if( aSetters[pIndex] == null )
+		{
+			return;
+		}
+		try
+		{
+			aSetters[pIndex].invokeExact(pBean, pValue);
+		}
+		catch( RuntimeException | Error exception )
+		{
+			throw exception;
+		}
+		catch( Throwable exception )
+		{
+			throw new IllegalStateException(exception);
+		}
+	}
+	
+	/*
+	 * Returns a handle on pMethod adapted to pType, or null if there is 
+	 * no method or it is not accessible.
+	 */
+	private static MethodHandle unreflect(Method pMethod, MethodType pType)
+	{
+		if( pMethod == null )
+		{
+			return null;
+		}
+		try
+		{
+			return MethodHandles.publicLookup().unreflect(pMethod).asType(pType);
+		}
+		catch( IllegalAccessException exception )
+		{
+			return null;
+		}
+	}
+}
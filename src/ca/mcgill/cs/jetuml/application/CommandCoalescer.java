@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.application;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.mcgill.cs.jetuml.application.PropertyChangeTracker.PropertyChangeCommand;
+import ca.mcgill.cs.jetuml.commands.Command;
+import ca.mcgill.cs.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.jetuml.commands.MoveCommand;
+import ca.mcgill.cs.jetuml.graph.Node;
+
+/**
+ * Merges two successive commands into a single command with the same
+ * effect, when both move the same set of nodes, or both change the same 
+ * properties of the same elements. A command can be a single move or 
+ * property change, or a compound of them, as created by a MoveTracker
+ * or a PropertyChangeTracker.
+ */
+final class CommandCoalescer
+{
+	private CommandCoalescer() {}
+	
+	/**
+	 * @param pPrevious A command that was executed.
+	 * @param pNext A command executed right after pPrevious.
+	 * @return A command whose effect is the effect of pPrevious followed 
+	 * by pNext, or null if the commands cannot be merged.
+	 */
+	static Command coalesce(Command pPrevious, Command pNext)
+	{
+		List<Command> previous = flatten(pPrevious);
+		List<Command> next = flatten(pNext);
+		if( previous.isEmpty() || previous.size() != next.size() )
+		{
+			return null;
+		}
+		List<Command> merged;
+		if( previous.get(0) instanceof MoveCommand )
+		{
+			merged = coalesceMoves(previous, next);
+		}
+		else
+		{
+			merged = coalesceChanges(previous, next);
+		}
+		if( merged == null )
+		{
+			return null;
+		}
+		if( !(pPrevious instanceof CompoundCommand) )
+		{
+			return merged.get(0);
+		}
+		CompoundCommand command = new CompoundCommand();
+		for( Command part : merged )
+		{
+			command.add(part);
+		}
+		return command;
+	}
+	
+	/*
+	 * Returns the commands of pCommand if it is a compound command,
+	 * or pCommand itself.
+	 */
+	private static List<Command> flatten(Command pCommand)
+	{
+		if( pCommand instanceof CompoundCommand )
+		{
+			return ((CompoundCommand) pCommand).getCommands();
+		}
+		List<Command> commands = new ArrayList<>();
+		commands.add(pCommand);
+		return commands;
+	}
+	
+	private static List<Command> coalesceMoves(List<Command> pPrevious, List<Command> pNext)
+	{
+		Map<Node, MoveCommand> next = new IdentityHashMap<>();
+		for( Command command : pNext )
+		{
+			if( !(command instanceof MoveCommand) )
+			{
+				return null;
+			}
+			next.put(((MoveCommand) command).getNode(), (MoveCommand) command);
+		}
+		List<Command> merged = new ArrayList<>();
+		for( Command command : pPrevious )
+		{
+			if( !(command instanceof MoveCommand) )
+			{
+				return null;
+			}
+			MoveCommand move = (MoveCommand) command;
+			MoveCommand nextMove = next.remove(move.getNode());
+			if( nextMove == null || nextMove.getGraph() != move.getGraph() )
+			{
+				return null;
+			}
+			merged.add(new MoveCommand(move.getGraph(), move.getNode(), 
+					move.getDX() + nextMove.getDX(), move.getDY() + nextMove.getDY()));
+		}
+		if( !next.isEmpty() )
+		{
+			return null;
+		}
+		return merged;
+	}
+	
+	/*
+	 * Property changes come in small numbers, as they are made
+	 * on one element at a time, so they are matched by a linear search.
+	 */
+	private static List<Command> coalesceChanges(List<Command> pPrevious, List<Command> pNext)
+	{
+		List<PropertyChangeCommand> next = new ArrayList<>();
+		for( Command command : pNext )
+		{
+			if( !(command instanceof PropertyChangeCommand) )
+			{
+				return null;
+			}
+			next.add((PropertyChangeCommand) command);
+		}
+		List<Command> merged = new ArrayList<>();
+		for( Command command : pPrevious )
+		{
+			if( !(command instanceof PropertyChangeCommand) )
+			{
+				return null;
+			}
+			PropertyChangeCommand change = (PropertyChangeCommand) command;
+			PropertyChangeCommand nextChange = removeChange(next, change);
+			if( nextChange == null )
+			{
+				return null;
+			}
+			merged.add(new PropertyChangeCommand(change.getGraph(), change.getElement(), 
+					change.getOldValue(), nextChange.getNewValue(), change.getIndex()));
+		}
+		return merged;
+	}
+	
+	/*
+	 * Removes from pChanges and returns the change of the same property 
+	 * as pChange, or returns null if there is none.
+	 */
+	private static PropertyChangeCommand removeChange(List<PropertyChangeCommand> pChanges, PropertyChangeCommand pChange)
+	{
+		for( int i = 0; i < pChanges.size(); i++ )
+		{
+			PropertyChangeCommand change = pChanges.get(i);
+			if( change.getElement() == pChange.getElement() && change.getIndex() == pChange.getIndex() && 
+					change.getGraph() == pChange.getGraph() )
+			{
+				return pChanges.remove(i);
+			}
+		}
+		return null;
+	}
+}
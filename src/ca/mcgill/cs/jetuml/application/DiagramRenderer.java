@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.application;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+import javax.imageio.ImageIO;
+
+import ca.mcgill.cs.jetuml.geom.Rectangle;
+import ca.mcgill.cs.jetuml.graph.Graph;
+
+/**
+ * Renders complete diagrams into images, independently of any 
+ * window. The rendering only depends on the graph, so it can be 
+ * used in headless mode, and different graphs can be rendered
+ * concurrently on different threads.
+ */
+public final class DiagramRenderer
+{
+	/**
+	 * Number of pixels left around the diagram when rendering it.
+	 */
+	public static final int MARGIN = 2;
+	
+	/**
+	 * Width and height, in pixels, of the tiles used to write images.
+	 */
+	public static final int DEFAULT_TILE_SIZE = 512;
+	
+	/**
+	 * Name of the format written by {@link #writeSvg(Graph, Writer)}.
+	 */
+	public static final String SVG_FORMAT = "svg";
+	
+	private DiagramRenderer() {}
+	
+	/**
+	 * Draws pGraph on a white image just large enough to hold it,
+	 * plus a margin.
+	 * 
+	 * @param pGraph The graph to render.
+	 * @return A new image of the entire graph.
+	 * @pre pGraph != null
+	 */
+	public static BufferedImage createImage(Graph pGraph)
+	{
+		assert pGraph != null;
+		Rectangle bounds = pGraph.getBounds();
+		BufferedImage image = new BufferedImage(bounds.getWidth() + MARGIN * 2, 
+				bounds.getHeight() + MARGIN * 2, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		try
+		{
+			graphics.setColor(Color.WHITE);
+			graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+			// Labels paint differently when there is no clip, so the image is 
+			// drawn with one, like the tiles of written images.
+			graphics.clipRect(0, 0, image.getWidth(), image.getHeight());
+			graphics.translate(MARGIN - bounds.getX(), MARGIN - bounds.getY());
+			graphics.setColor(Color.BLACK);
+			graphics.setBackground(Color.WHITE);
+			pGraph.draw(graphics);
+		}
+		finally
+		{
+			graphics.dispose();
+		}
+		return image;
+	}
+	
+	/**
+	 * Writes an image of pGraph in pFormat, rendering it one tile at a 
+	 * time on the calling thread. See {@link #write(Graph, String, OutputStream, int, int)}.
+	 * 
+	 * @param pGraph The graph to render.
+	 * @param pFormat The name of an image format supported by ImageIO.
+	 * @param pOutput The stream to write the image to. It is not closed.
+	 * @return False if there is no writer for pFormat.
+	 * @throws IOException If the image cannot be written.
+	 * @pre pGraph != null && pFormat != null && pOutput != null
+	 */
+	public static boolean write(Graph pGraph, String pFormat, OutputStream pOutput) throws IOException
+	{
+		return write(pGraph, pFormat, pOutput, DEFAULT_TILE_SIZE, 1);
+	}
+	
+	/**
+	 * Writes an image of pGraph in pFormat, without holding the entire image 
+	 * in memory. The image is rendered in square tiles as the writer requests
+	 * the pixels, and each row of tiles is discarded once the writer moves on 
+	 * to the next one. For writers that encode the image from top to bottom, 
+	 * such as the PNG writer, memory use is bounded by one row of tiles 
+	 * rather than by the size of the diagram. The tiles of a row are rendered 
+	 * by pThreads threads, each drawing its own copy of the graph. The pixels 
+	 * are the same as those of {@link #createImage(Graph)}.
+	 * 
+	 * @param pGraph The graph to render. It must not be modified during the call.
+	 * @param pFormat The name of an image format supported by ImageIO.
+	 * @param pOutput The stream to write the image to. It is not closed.
+	 * @param pTileSize The width and height of the tiles, in pixels.
+	 * @param pThreads The number of threads that render tiles.
+	 * @return False if there is no writer for pFormat.
+	 * @throws IOException If the image cannot be written.
+	 * @pre pGraph != null && pFormat != null && pOutput != null && pTileSize > 0 && pThreads > 0
+	 */
+	public static boolean write(Graph pGraph, String pFormat, OutputStream pOutput, int pTileSize, int pThreads) 
+			throws IOException
+	{
+		assert pGraph != null && pFormat != null && pOutput != null && pTileSize > 0 && pThreads > 0;
+		try( TiledDiagramImage image = new TiledDiagramImage(pGraph, pTileSize, pThreads) )
+		{
+			return ImageIO.write(image, pFormat, pOutput);
+		}
+	}
+	
+	/**
+	 * Writes pGraph as an SVG document of the same size as the image of 
+	 * {@link #createImage(Graph)}. The elements are written as the graph 
+	 * draws them, so the document is never held in memory. Text is written 
+	 * as text rather than as outlines, so it can be searched and selected.
+	 * 
+	 * @param pGraph The graph to render.
+	 * @param pOutput The writer to write the document to. It is flushed but not
+	 * closed. It should encode characters in UTF-8, the default encoding of SVG.
+	 * @throws IOException If the document cannot be written.
+	 * @pre pGraph != null && pOutput != null
+	 */
+	public static void writeSvg(Graph pGraph, Writer pOutput) throws IOException
+	{
+		assert pGraph != null && pOutput != null;
+		Rectangle bounds = pGraph.getBounds();
+		int width = bounds.getWidth() + MARGIN * 2;
+		int height = bounds.getHeight() + MARGIN * 2;
+		SvgGraphics2D graphics = new SvgGraphics2D(pOutput, width, height);
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, width, height);
+		graphics.clipRect(0, 0, width, height);
+		graphics.translate(MARGIN - bounds.getX(), MARGIN - bounds.getY());
+		graphics.setColor(Color.BLACK);
+		graphics.setBackground(Color.WHITE);
+		pGraph.draw(graphics);
+		graphics.close();
+	}
+}
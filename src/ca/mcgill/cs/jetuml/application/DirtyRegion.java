@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.application;
+
+import ca.mcgill.cs.jetuml.geom.Rectangle;
+import ca.mcgill.cs.jetuml.graph.Edge;
+import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.graph.GraphElement;
+import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.graph.nodes.ChildNode;
+import ca.mcgill.cs.jetuml.graph.nodes.ParentNode;
+
+/**
+ * Accumulates the area of a diagram that needs to be repainted
+ * because elements were moved, changed, or selected. The area is 
+ * in diagram coordinates and includes a margin for drop shadows and
+ * selection grabbers. When the extent of a change cannot be bounded, 
+ * the region can be marked as covering the entire diagram.
+ * 
+ * To repaint both where an element was and where it is, clients 
+ * add the element before and after changing it.
+ */
+public class DirtyRegion
+{
+	private static final int MARGIN = 6;
+	
+	private Rectangle aBounds;
+	private boolean aAll = false;
+	
+	/**
+	 * Marks the entire diagram as needing to be repainted.
+	 */
+	public void addAll()
+	{
+		aAll = true;
+	}
+	
+	/**
+	 * Adds pRectangle, enlarged by the margin, to the region.
+	 * 
+	 * @param pRectangle The area to add.
+	 * @pre pRectangle != null
+	 */
+	public void add(Rectangle pRectangle)
+	{
+		assert pRectangle != null;
+		Rectangle bounds = new Rectangle(pRectangle.getX() - MARGIN, pRectangle.getY() - MARGIN, 
+				pRectangle.getWidth() + 2 * MARGIN, pRectangle.getHeight() + 2 * MARGIN);
+		if( aBounds == null )
+		{
+			aBounds = bounds;
+		}
+		else
+		{
+			aBounds = aBounds.add(bounds);
+		}
+	}
+	
+	/**
+	 * Adds the current bounds of pElement to the region. This 
+	 * covers a change in the appearance of the element that does not
+	 * affect its geometry, such as its selection.
+	 * 
+	 * @param pElement The element to add.
+	 * @pre pElement != null
+	 */
+	public void addElement(GraphElement pElement)
+	{
+		assert pElement != null;
+		if( pElement instanceof Node )
+		{
+			add(((Node)pElement).view().getBounds());
+		}
+		else if( pElement instanceof Edge )
+		{
+			add(((Edge)pElement).view().getBounds());
+		}
+	}
+	
+	/**
+	 * Adds the current bounds of pNode, of its descendants, and of
+	 * all the edges whose path can change when pNode moves: the edges 
+	 * connected to the node or its descendants and, because edges 
+	 * sharing a side of a node are spread along it, the edges 
+	 * connected to the other end of these edges. The ancestors of the 
+	 * node, which the layout resizes to contain it, and their edges are 
+	 * also added. If moving a node can change the layout of other 
+	 * elements of pGraph, the entire diagram is added.
+	 * 
+	 * @param pGraph The graph containing pNode.
+	 * @param pNode The node that moves.
+	 * @pre pGraph != null && pNode != null
+	 */
+	public void addMovingNode(Graph pGraph, Node pNode)
+	{
+		assert pGraph != null && pNode != null;
+		if( !pGraph.hasLocalLayout() )
+		{
+			addAll();
+			return;
+		}
+		addSubtree(pGraph, pNode);
+		Node node = pNode;
+		while( node instanceof ChildNode && ((ChildNode)node).getParent() != null )
+		{
+			node = ((ChildNode)node).getParent();
+			addNodeAndEdges(pGraph, node);
+		}
+	}
+	
+	private void addSubtree(Graph pGraph, Node pNode)
+	{
+		addNodeAndEdges(pGraph, pNode);
+		if( pNode instanceof ParentNode )
+		{
+			for( Node child : ((ParentNode)pNode).getChildren() )
+			{
+				addSubtree(pGraph, child);
+			}
+		}
+	}
+	
+	private void addNodeAndEdges(Graph pGraph, Node pNode)
+	{
+		add(pNode.view().getBounds());
+		for( Edge edge : pGraph.getEdges(pNode) )
+		{
+			addElement(edge);
+			Node otherNode = edge.getStart() == pNode ? edge.getEnd() : edge.getStart();
+			if( otherNode != null && otherNode != pNode )
+			{
+				for( Edge otherEdge : pGraph.getEdges(otherNode) )
+				{
+					addElement(otherEdge);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return True if the region is empty.
+	 */
+	public boolean isEmpty()
+	{
+		return !aAll && aBounds == null;
+	}
+	
+	/**
+	 * @return True if the entire diagram needs to be repainted.
+	 */
+	public boolean coversAll()
+	{
+		return aAll;
+	}
+	
+	/**
+	 * @return The bounds of the region, or null if it is empty or covers
+	 * the entire diagram.
+	 */
+	public Rectangle getBounds()
+	{
+		if( aAll )
+		{
+			return null;
+		}
+		return aBounds;
+	}
+	
+	/**
+	 * Empties the region.
+	 */
+	public void clear()
+	{
+		aBounds = null;
+		aAll = false;
+	}
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.application;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import ca.mcgill.cs.jetuml.application.PropertyChangeTracker.PropertyChangeCommand;
+import ca.mcgill.cs.jetuml.commands.AddEdgeCommand;
+import ca.mcgill.cs.jetuml.commands.AddNodeCommand;
+import ca.mcgill.cs.jetuml.commands.Command;
+import ca.mcgill.cs.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.jetuml.commands.DeleteNodeCommand;
+import ca.mcgill.cs.jetuml.commands.RemoveEdgeCommand;
+import ca.mcgill.cs.jetuml.graph.GraphElement;
+import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.graph.nodes.ChildNode;
+import ca.mcgill.cs.jetuml.graph.nodes.ParentNode;
+import ca.mcgill.cs.jetuml.persistence.Properties;
+
+/**
+ * Bounds the history of an UndoManager by a number of commands and by 
+ * an estimate of the number of bytes that the commands retain. When the 
+ * commands that can be undone exceed either bound, the oldest ones are 
+ * evicted. If the policy spills, they are instead written to a temporary 
+ * file, and read back when the history is undone that far.
+ */
+public final class HistoryPolicy
+{
+	/**
+	 * The policy of the editor.
+	 */
+	public static final HistoryPolicy DEFAULT = new HistoryPolicy(1000, 32 * 1024 * 1024, false);
+	
+	/**
+	 * A policy that keeps the whole history in memory.
+	 */
+	public static final HistoryPolicy UNBOUNDED = new HistoryPolicy(Integer.MAX_VALUE, Long.MAX_VALUE, false);
+	
+	private static final int COMMAND_BYTES = 32; // A command object and its fields
+	private static final int ELEMENT_BYTES = 256; // A node or edge with its view
+	private static final int VALUE_BYTES = 48; // A property value and its string
+	
+	private final int aMaxCommands;
+	private final long aMaxBytes;
+	private final boolean aSpill;
+	
+	/**
+	 * Creates a policy.
+	 * 
+	 * @param pMaxCommands The maximum number of commands kept in memory.
+	 * @param pMaxBytes The maximum estimated number of bytes retained by these commands.
+	 * @param pSpill True to write the commands over the bounds to a temporary file
+	 * instead of discarding them.
+	 * @pre pMaxCommands > 0 && pMaxBytes > 0
+	 */
+	public HistoryPolicy(int pMaxCommands, long pMaxBytes, boolean pSpill)
+	{
+		assert pMaxCommands > 0 && pMaxBytes > 0;
+		aMaxCommands = pMaxCommands;
+		aMaxBytes = pMaxBytes;
+		aSpill = pSpill;
+	}
+	
+	/**
+	 * @return The maximum number of commands kept in memory.
+	 */
+	public int getMaxCommands()
+	{
+		return aMaxCommands;
+	}
+	
+	/**
+	 * @return The maximum estimated number of bytes retained by the commands kept in memory.
+	 */
+	public long getMaxBytes()
+	{
+		return aMaxBytes;
+	}
+	
+	/**
+	 * @return True if the commands over the bounds are written to a temporary file.
+	 */
+	public boolean spills()
+	{
+		return aSpill;
+	}
+	
+	/**
+	 * @param pCommands A number of commands.
+	 * @param pBytes The estimated number of bytes they retain.
+	 * @return True if these commands exceed the bounds of the policy.
+	 */
+	public boolean exceeds(int pCommands, long pBytes)
+	{
+		return pCommands > aMaxCommands || pBytes > aMaxBytes;
+	}
+	
+	/**
+	 * Estimates the number of bytes retained by a command, including 
+	 * the elements that only the command references, such as deleted nodes
+	 * with their descendants and the edges removed with them. An element 
+	 * referenced by several parts of a compound command is counted once.
+	 * 
+	 * @param pCommand The command.
+	 * @return An estimate of the number of bytes retained by pCommand.
+	 */
+	public static long estimateSize(Command pCommand)
+	{
+		return estimateSize(pCommand, Collections.newSetFromMap(new IdentityHashMap<>()));
+	}
+	
+	/*
+	 * The elements in pCounted were already counted for another part of the same command.
+	 */
+	private static long estimateSize(Command pCommand, Set<GraphElement> pCounted)
+	{
+		long size = COMMAND_BYTES;
+		if( pCommand instanceof CompoundCommand )
+		{
+			// The edges removed with a node are in the RemoveEdgeCommands of the same compound command
+			for( Command command : ((CompoundCommand) pCommand).getCommands() )
+			{
+				size += estimateSize(command, pCounted);
+			}
+		}
+		else if( pCommand instanceof AddNodeCommand )
+		{
+			size += estimateSubtreeSize((Node) ((AddNodeCommand) pCommand).getElement(), pCounted);
+		}
+		else if( pCommand instanceof DeleteNodeCommand )
+		{
+			size += estimateSubtreeSize((Node) ((DeleteNodeCommand) pCommand).getElement(), pCounted);
+		}
+		else if( pCommand instanceof AddEdgeCommand )
+		{
+			size += estimateSize(((AddEdgeCommand) pCommand).getElement(), pCounted);
+		}
+		else if( pCommand instanceof RemoveEdgeCommand )
+		{
+			size += estimateSize(((RemoveEdgeCommand) pCommand).getElement(), pCounted);
+		}
+		else if( pCommand instanceof PropertyChangeCommand )
+		{
+			size += estimateValueSize(((PropertyChangeCommand) pCommand).getOldValue());
+			size += estimateValueSize(((PropertyChangeCommand) pCommand).getNewValue());
+		}
+		return size;
+	}
+	
+	/*
+	 * A node retains its children, so they are counted with it.
+	 */
+	private static long estimateSubtreeSize(Node pNode, Set<GraphElement> pCounted)
+	{
+		long size = estimateSize(pNode, pCounted);
+		if( pNode instanceof ParentNode )
+		{
+			for( ChildNode child : ((ParentNode) pNode).getChildren() )
+			{
+				size += estimateSubtreeSize(child, pCounted);
+			}
+		}
+		return size;
+	}
+	
+	private static long estimateSize(GraphElement pElement, Set<GraphElement> pCounted)
+	{
+		if( !pCounted.add(pElement) )
+		{
+			return 0;
+		}
+		long size = ELEMENT_BYTES;
+		Properties properties = pElement.properties();
+		for( String key : properties )
+		{
+			size += estimateValueSize(properties.get(key));
+		}
+		return size;
+	}
+	
+	private static long estimateValueSize(Object pValue)
+	{
+		if( pValue == null )
+		{
+			return 0;
+		}
+		return VALUE_BYTES + 2 * pValue.toString().length();
+	}
+}
@@ -65,6 +65,23 @@ public class MoveTracker
 		}
 	}
 
+	/**
+	 * Adds the area currently covered by the tracked nodes, and by the
+	 * elements whose geometry depends on their position, to pRegion.
+	 * Calling this method before and after moving the tracked nodes
+	 * yields the area that needs to be repainted.
+	 * 
+	 * @param pGraph The Graph containing the selected elements.
+	 * @param pRegion The region to extend.
+	 */
+	public void addTrackedArea(Graph pGraph, DirtyRegion pRegion)
+	{
+		for(Node node : aTrackedNodes)
+		{
+			pRegion.addMovingNode(pGraph, node);
+		}
+	}
+
 	/**
 	 * Creates and returns a CompoundCommand that represents the movement
 	 * of all tracked nodes between the time where startTrackingMove was 
@@ -20,16 +20,11 @@
  *******************************************************************************/
 package ca.mcgill.cs.jetuml.application;
 
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-
 import ca.mcgill.cs.jetuml.commands.Command;
 import ca.mcgill.cs.jetuml.commands.CompoundCommand;
 import ca.mcgill.cs.jetuml.graph.Graph;
 import ca.mcgill.cs.jetuml.graph.GraphElement;
+import ca.mcgill.cs.jetuml.persistence.CommandJournal;
 
 /**
  * Tacks the modification of GraphElement properties.
@@ -49,44 +44,12 @@ public class PropertyChangeTracker
 	 */
 	public void startTrackingPropertyChange(GraphElement pEdited)
 	{
-		try 
-		{
-			aEdited = pEdited;
-			PropertyDescriptor[] oldDescriptors = Introspector.getBeanInfo(pEdited.getClass()).getPropertyDescriptors();
-			aPropertyValues = new Object[oldDescriptors.length];
-			for(int i = 0; i< aPropertyValues.length; i++)
-			{
-				aPropertyValues[i] = getPropertyValue(oldDescriptors[i]);
-			}
-		} 
-		catch( IntrospectionException | IllegalArgumentException e ) 
+		aEdited = pEdited;
+		BeanProperties properties = BeanProperties.of(pEdited.getClass());
+		aPropertyValues = new Object[properties.size()];
+		for(int i = 0; i< aPropertyValues.length; i++)
 		{
-			assert false;
-			return;
-		}
-	}
-	
-	/*
-	 * Returns the value of the property represented by pDescriptor on pEdited, or null
-	 * if the property cannot be read for any reason.
-	 */
-	private Object getPropertyValue(PropertyDescriptor pDescriptor)
-	{
-		final Method getter = pDescriptor.getReadMethod();
-		if( getter == null )
-		{
-			return null;
-		}
-		else
-		{
-			try
-			{
-				return copyIfNecessary(getter.invoke( aEdited ));
-			}
-			catch(IllegalAccessException | IllegalArgumentException | InvocationTargetException e)
-			{
-				return null;
-			}
+			aPropertyValues[i] = copyIfNecessary(properties.get(pEdited, i));
 		}
 	}
 	
@@ -119,22 +82,12 @@ public class PropertyChangeTracker
 	public static PropertyChangeCommand createPropertyChangeCommand(Graph pGraph, GraphElement pElement, 
 			String pProperty, Object pOldValue, Object pNewValue)
 	{
-		try
+		int index = BeanProperties.of(pElement.getClass()).indexOf(pProperty);
+		if( index < 0 )
 		{
-			PropertyDescriptor[] descriptors = Introspector.getBeanInfo(pElement.getClass()).getPropertyDescriptors();
-			for(int i = 0; i < descriptors.length; i++)
-			{
-				if( descriptors[i].getName().equals(pProperty))
-				{
-					return new PropertyChangeCommand(pGraph, pElement, copyIfNecessary(pOldValue), copyIfNecessary(pNewValue), i);
-				}
-			}
 			return null;
 		}
-		catch(IntrospectionException e)
-		{
-			return null;
-		}  
+		return new PropertyChangeCommand(pGraph, pElement, copyIfNecessary(pOldValue), copyIfNecessary(pNewValue), index);
 	}
 
 	/**
@@ -147,26 +100,17 @@ public class PropertyChangeTracker
 	 */
 	public CompoundCommand stopTrackingPropertyChange(Graph pGraph)
 	{
-		try 
+		CompoundCommand command = new CompoundCommand();
+		BeanProperties properties = BeanProperties.of(aEdited.getClass());
+		for(int i = 0; i < properties.size(); i++)
 		{
-			CompoundCommand command = new CompoundCommand();
-			PropertyDescriptor[] descriptors = Introspector.getBeanInfo(aEdited.getClass()).getPropertyDescriptors();  
-			for(int i = 0; i < descriptors.length; i++)
+			Object propVal = properties.get(aEdited, i);
+			if(!equals(propVal, aPropertyValues[i]))
 			{
-				Object propVal = getPropertyValue(descriptors[i]);
-				if(!equals(propVal, aPropertyValues[i]))
-				{
-					command.add(new PropertyChangeCommand(pGraph, aEdited, aPropertyValues[i], copyIfNecessary(propVal), i));
-				}
-				
+				command.add(new PropertyChangeCommand(pGraph, aEdited, aPropertyValues[i], copyIfNecessary(propVal), i));
 			}
-			return command;
-		}
-		catch(IntrospectionException | IllegalArgumentException e) 
-		{
-			assert false;
-			return null;
 		}
+		return command;
 	}
 	
 	/*
@@ -216,26 +160,38 @@ public class PropertyChangeTracker
 			aNewPropValue = pNewPropValue;
 			aIndex = pIndex;
 		}
+		
+		Graph getGraph()
+		{
+			return aGraph;
+		}
+		
+		GraphElement getElement()
+		{
+			return aObject;
+		}
+		
+		Object getOldValue()
+		{
+			return aPrevPropValue;
+		}
+		
+		Object getNewValue()
+		{
+			return aNewPropValue;
+		}
+		
+		int getIndex()
+		{
+			return aIndex;
+		}
 
 		/**
 		 * Changes the property of the Object to the old value.
 		 */
 		public void undo() 
 		{
-			try 
-			{
-				PropertyDescriptor[] descriptors = Introspector.getBeanInfo(aObject.getClass()).getPropertyDescriptors().clone();  
-				final Method setter = descriptors[aIndex].getWriteMethod();
-				if(setter != null)
-				{
-					setter.invoke(aObject, new Object[] {aPrevPropValue});
-				}
-			}
-			catch(IntrospectionException | IllegalAccessException | IllegalArgumentException | InvocationTargetException exception) 
-			{
-				assert false;
-				return;
-			}
+			BeanProperties.of(aObject.getClass()).set(aObject, aIndex, aPrevPropValue);
 			aGraph.requestLayout();
 		}
 
@@ -244,21 +200,14 @@ public class PropertyChangeTracker
 		 */
 		public void execute() 
 		{
-			try 
-			{
-				PropertyDescriptor[] descriptors = Introspector.getBeanInfo(aObject.getClass()).getPropertyDescriptors().clone();  
-				final Method setter = descriptors[aIndex].getWriteMethod();
-				if(setter!= null)
-				{
-					setter.invoke(aObject, aNewPropValue);
-				}
-			}
-			catch(IntrospectionException | IllegalAccessException | IllegalArgumentException | InvocationTargetException exception) 
-			{
-				assert false;
-				return;
-			}
+			BeanProperties.of(aObject.getClass()).set(aObject, aIndex, aNewPropValue);
 			aGraph.requestLayout();
 		}
+		
+		@Override
+		public void record(CommandJournal pJournal, boolean pUndone)
+		{
+			pJournal.propertiesChanged(aObject);
+		}
 	}
 }
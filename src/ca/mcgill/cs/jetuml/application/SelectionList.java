@@ -20,9 +20,9 @@
  *******************************************************************************/
 package ca.mcgill.cs.jetuml.application;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.Stack;
+import java.util.LinkedHashSet;
 
 import ca.mcgill.cs.jetuml.graph.Edge;
 import ca.mcgill.cs.jetuml.graph.GraphElement;
@@ -46,7 +46,8 @@ import ca.mcgill.cs.jetuml.graph.nodes.ParentNode;
  */
 public class SelectionList implements Iterable<GraphElement>
 {
-	private Stack<GraphElement> aSelected = new Stack<>();
+	private LinkedHashSet<GraphElement> aSelected = new LinkedHashSet<>(); // In selection order
+	private GraphElement aLastSelected; // Cached last element of aSelected, or null if it must be found again
 	
 	/**
 	 * Adds an element to the selection set and sets
@@ -64,20 +65,30 @@ public class SelectionList implements Iterable<GraphElement>
 		if( !parentContained( pElement ))
 		{
 			aSelected.remove(pElement);
-			aSelected.push(pElement);
+			aSelected.add(pElement);
+			aLastSelected = pElement;
 			
 			// Remove children in case a parent was added.
-			ArrayList<GraphElement> toRemove = new ArrayList<>();
-			for( GraphElement element : aSelected )
+			if( pElement instanceof ParentNode )
 			{
-				if( parentContained(element) )
-				{
-					toRemove.add(element);
-				}
+				removeDescendants((ParentNode) pElement);
 			}
-			for( GraphElement element : toRemove )
+		}
+	}
+	
+	/*
+	 * Removes the descendants of pNode from the selection. Walking down
+	 * from pNode only visits the nodes that could have become implicitly 
+	 * contained, instead of checking the ancestors of every selected element.
+	 */
+	private void removeDescendants(ParentNode pNode)
+	{
+		for( ChildNode child : pNode.getChildren() )
+		{
+			aSelected.remove(child);
+			if( child instanceof ParentNode )
 			{
-				remove(element);
+				removeDescendants((ParentNode) child);
 			}
 		}
 	}
@@ -128,6 +139,7 @@ public class SelectionList implements Iterable<GraphElement>
 	public void clearSelection()
 	{
 		aSelected.clear();
+		aLastSelected = null;
 	}
 	
 	/**
@@ -136,14 +148,14 @@ public class SelectionList implements Iterable<GraphElement>
 	 */
 	public GraphElement getLastSelected()
 	{
-		if( aSelected.size() > 0 )
+		if( aLastSelected == null )
 		{
-			return aSelected.peek();
-		}
-		else
-		{
-			return null;
+			for( GraphElement element : aSelected )
+			{
+				aLastSelected = element;
+			}
 		}
+		return aLastSelected;
 	}
 	
 	/**
@@ -152,14 +164,15 @@ public class SelectionList implements Iterable<GraphElement>
 	 */
 	public Node getLastNode()
 	{
-		for( int i = aSelected.size()-1; i >=0; i--)
+		Node lastNode = null;
+		for( GraphElement element : aSelected )
 		{
-			if( aSelected.get(i) instanceof Node )
+			if( element instanceof Node )
 			{
-				return (Node) aSelected.get(i);
+				lastNode = (Node) element;
 			}
 		}
-		return null;
+		return lastNode;
 	}
 	
 	/**
@@ -190,6 +203,10 @@ public class SelectionList implements Iterable<GraphElement>
 	{
 		assert pElement != null;
 		aSelected.remove(pElement);
+		if( pElement == aLastSelected )
+		{
+			aLastSelected = null;
+		}
 	}
 	
 	/**
@@ -202,12 +219,13 @@ public class SelectionList implements Iterable<GraphElement>
 		assert pElement != null;
 		aSelected.clear();
 		aSelected.add(pElement);
+		aLastSelected = pElement;
 	}
 
 	@Override
 	public Iterator<GraphElement> iterator()
 	{
-		return aSelected.iterator();
+		return Collections.unmodifiableSet(aSelected).iterator();
 	}
 	
 	/**
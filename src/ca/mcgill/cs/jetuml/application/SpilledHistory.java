@@ -0,0 +1,454 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import ca.mcgill.cs.jetuml.application.PropertyChangeTracker.PropertyChangeCommand;
+import ca.mcgill.cs.jetuml.commands.AddEdgeCommand;
+import ca.mcgill.cs.jetuml.commands.AddNodeCommand;
+import ca.mcgill.cs.jetuml.commands.Command;
+import ca.mcgill.cs.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.jetuml.commands.DeleteNodeCommand;
+import ca.mcgill.cs.jetuml.commands.MoveCommand;
+import ca.mcgill.cs.jetuml.commands.RemoveEdgeCommand;
+import ca.mcgill.cs.jetuml.graph.Edge;
+import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.graph.GraphElement;
+import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.graph.nodes.ChildNode;
+import ca.mcgill.cs.jetuml.graph.nodes.ParentNode;
+import ca.mcgill.cs.jetuml.persistence.DeserializationException;
+import ca.mcgill.cs.jetuml.persistence.JsonDecoder;
+import ca.mcgill.cs.jetuml.persistence.JsonEncoder;
+
+/**
+ * The oldest part of the history of an UndoManager, written to a temporary 
+ * file as segments of commands. Each segment is a JSON object that encodes 
+ * its commands and the nodes and edges they reference. The elements keep
+ * the same identifier in all the segments, so that reading a segment back 
+ * binds its commands to the elements that are still in memory, and only 
+ * creates again the elements that were reachable from the spilled commands 
+ * alone, such as deleted nodes.
+ */
+final class SpilledHistory
+{
+	private final Map<GraphElement, Integer> aIds = new WeakHashMap<>();
+	private final Map<Integer, WeakReference<GraphElement>> aElements = new HashMap<>();
+	private final List<Long> aSegments = new ArrayList<>(); // The position of each segment in the file, oldest first
+	private int aNextId = 0;
+	private Graph aGraph; // The graph of the commands, kept to create them again
+	private File aFile;
+	private RandomAccessFile aStore;
+	
+	/**
+	 * @return True if no segment is left to reload.
+	 */
+	boolean isEmpty()
+	{
+		return aSegments.isEmpty();
+	}
+	
+	/**
+	 * Writes commands as the newest segment of the history.
+	 * 
+	 * @param pCommands The commands, oldest first. They must be more 
+	 * recent than the commands already spilled.
+	 * @throws NotSerializableException If one of the commands or values cannot be encoded.
+	 * @throws IOException If the temporary file cannot be written.
+	 */
+	void spill(List<Command> pCommands) throws IOException
+	{
+		assert pCommands != null && !pCommands.isEmpty();
+		aElements.values().removeIf(reference -> reference.get() == null);
+		Map<Integer, JSONObject> elements = new LinkedHashMap<>();
+		JSONArray commands = new JSONArray();
+		for( Command command : pCommands )
+		{
+			commands.put(encode(command, elements));
+		}
+		JSONObject segment = new JSONObject();
+		segment.put("elements", new JSONArray(elements.values()));
+		segment.put("commands", commands);
+		byte[] bytes = segment.toString().getBytes(StandardCharsets.UTF_8);
+		if( aStore == null )
+		{
+			aFile = File.createTempFile("jetuml", ".history");
+			aFile.deleteOnExit();
+			aStore = new RandomAccessFile(aFile, "rw");
+		}
+		long position = aStore.length();
+		aStore.seek(position);
+		aStore.write(bytes);
+		aSegments.add(position);
+	}
+	
+	/**
+	 * Reads back the newest segment of the history and removes it from the file.
+	 * 
+	 * @return The commands of the segment, oldest first.
+	 * @throws IOException If the segment cannot be read or decoded.
+	 * @pre !isEmpty()
+	 */
+	List<Command> reload() throws IOException
+	{
+		assert !isEmpty();
+		long position = aSegments.remove(aSegments.size() - 1);
+		byte[] bytes = new byte[(int)(aStore.length() - position)];
+		aStore.seek(position);
+		aStore.readFully(bytes);
+		aStore.setLength(position);
+		try
+		{
+			JSONObject segment = new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+			Map<Integer, JSONObject> encodings = new HashMap<>();
+			JSONArray elements = segment.getJSONArray("elements");
+			for( int i = 0; i < elements.length(); i++ )
+			{
+				encodings.put(elements.getJSONObject(i).getInt("id"), elements.getJSONObject(i));
+			}
+			// Holds the elements of the segment until its commands reference them
+			Map<Integer, GraphElement> resolved = new HashMap<>();
+			List<Command> commands = new ArrayList<>();
+			JSONArray encodedCommands = segment.getJSONArray("commands");
+			for( int i = 0; i < encodedCommands.length(); i++ )
+			{
+				commands.add(decode(encodedCommands.getJSONObject(i), encodings, resolved));
+			}
+			return commands;
+		}
+		catch( JSONException | DeserializationException | ClassNotFoundException exception )
+		{
+			throw new IOException("Cannot decode the spilled history", exception);
+		}
+	}
+	
+	/**
+	 * Forgets all the segments and deletes the temporary file.
+	 */
+	void clear()
+	{
+		aSegments.clear();
+		if( aStore != null )
+		{
+			try
+			{
+				aStore.close();
+			}
+			catch( IOException exception )
+			{
+				// The file is deleted anyway
+			}
+			aFile.delete();
+			aStore = null;
+			aFile = null;
+		}
+	}
+	
+	private JSONObject encode(Command pCommand, Map<Integer, JSONObject> pElements) throws NotSerializableException
+	{
+		JSONObject object = new JSONObject();
+		if( pCommand instanceof CompoundCommand )
+		{
+			JSONArray commands = new JSONArray();
+			for( Command command : ((CompoundCommand) pCommand).getCommands() )
+			{
+				commands.put(encode(command, pElements));
+			}
+			object.put("command", "compound");
+			object.put("commands", commands);
+		}
+		else if( pCommand instanceof MoveCommand )
+		{
+			MoveCommand move = (MoveCommand) pCommand;
+			setGraph(move.getGraph());
+			object.put("command", "move");
+			object.put("element", reference(move.getNode(), pElements));
+			object.put("dx", move.getDX());
+			object.put("dy", move.getDY());
+		}
+		else if( pCommand instanceof PropertyChangeCommand )
+		{
+			PropertyChangeCommand change = (PropertyChangeCommand) pCommand;
+			setGraph(change.getGraph());
+			object.put("command", "property");
+			object.put("element", reference(change.getElement(), pElements));
+			object.put("index", change.getIndex());
+			object.put("old", encodeValue(change.getOldValue()));
+			object.put("new", encodeValue(change.getNewValue()));
+		}
+		else if( pCommand instanceof AddNodeCommand )
+		{
+			AddNodeCommand command = (AddNodeCommand) pCommand;
+			encode(object, "addNode", command.getGraph(), command.getElement(), pElements);
+		}
+		else if( pCommand instanceof DeleteNodeCommand )
+		{
+			DeleteNodeCommand command = (DeleteNodeCommand) pCommand;
+			encode(object, "deleteNode", command.getGraph(), command.getElement(), pElements);
+		}
+		else if( pCommand instanceof AddEdgeCommand )
+		{
+			AddEdgeCommand command = (AddEdgeCommand) pCommand;
+			encode(object, "addEdge", command.getGraph(), command.getElement(), pElements);
+		}
+		else if( pCommand instanceof RemoveEdgeCommand )
+		{
+			RemoveEdgeCommand command = (RemoveEdgeCommand) pCommand;
+			encode(object, "removeEdge", command.getGraph(), command.getElement(), pElements);
+		}
+		else
+		{
+			throw new NotSerializableException(pCommand.getClass().getName());
+		}
+		return object;
+	}
+	
+	private void encode(JSONObject pObject, String pType, Graph pGraph, GraphElement pElement, 
+			Map<Integer, JSONObject> pElements) throws NotSerializableException
+	{
+		setGraph(pGraph);
+		pObject.put("command", pType);
+		pObject.put("element", reference(pElement, pElements));
+	}
+	
+	private void setGraph(Graph pGraph) throws NotSerializableException
+	{
+		if( aGraph == null )
+		{
+			aGraph = pGraph;
+		}
+		else if( aGraph != pGraph )
+		{
+			throw new NotSerializableException("The history spans more than one graph");
+		}
+	}
+	
+	/*
+	 * Returns the identifier of pElement, and adds its encoding, and the encoding 
+	 * of the elements it depends on, to pElements if they are not there yet.
+	 */
+	private int reference(GraphElement pElement, Map<Integer, JSONObject> pElements)
+	{
+		Integer id = aIds.get(pElement);
+		if( id == null )
+		{
+			id = aNextId++;
+			aIds.put(pElement, id);
+			aElements.put(id, new WeakReference<>(pElement));
+		}
+		if( !pElements.containsKey(id) )
+		{
+			JSONObject object = new JSONObject();
+			object.put("id", id.intValue());
+			pElements.put(id, object);
+			if( pElement instanceof Node )
+			{
+				object.put("node", JsonEncoder.encode(pElement));
+				if( pElement instanceof ChildNode && ((ChildNode) pElement).getParent() != null )
+				{
+					object.put("parent", reference(((ChildNode) pElement).getParent(), pElements));
+				}
+			}
+			else
+			{
+				Edge edge = (Edge) pElement;
+				object.put("edge", JsonEncoder.encode(edge));
+				object.put("start", reference(edge.getStart(), pElements));
+				object.put("end", reference(edge.getEnd(), pElements));
+			}
+		}
+		return id;
+	}
+	
+	private Command decode(JSONObject pObject, Map<Integer, JSONObject> pEncodings, 
+			Map<Integer, GraphElement> pResolved) throws ClassNotFoundException
+	{
+		String type = pObject.getString("command");
+		if( type.equals("compound") )
+		{
+			CompoundCommand command = new CompoundCommand();
+			JSONArray commands = pObject.getJSONArray("commands");
+			for( int i = 0; i < commands.length(); i++ )
+			{
+				command.add(decode(commands.getJSONObject(i), pEncodings, pResolved));
+			}
+			return command;
+		}
+		GraphElement element = resolve(pObject.getInt("element"), pEncodings, pResolved);
+		switch( type )
+		{
+		case "move":
+			return new MoveCommand(aGraph, (Node) element, pObject.getInt("dx"), pObject.getInt("dy"));
+		case "property":
+			return new PropertyChangeCommand(aGraph, element, decodeValue(pObject.get("old")), 
+					decodeValue(pObject.get("new")), pObject.getInt("index"));
+		case "addNode":
+			return new AddNodeCommand(aGraph, (Node) element);
+		case "deleteNode":
+			return new DeleteNodeCommand(aGraph, (Node) element);
+		case "addEdge":
+			return new AddEdgeCommand(aGraph, (Edge) element);
+		case "removeEdge":
+			return new RemoveEdgeCommand(aGraph, (Edge) element);
+		default:
+			throw new DeserializationException("Unknown command: " + type);
+		}
+	}
+	
+	/*
+	 * Returns the element with identifier pId, and creates it again from its 
+	 * encoding if it is no longer in memory.
+	 */
+	private GraphElement resolve(int pId, Map<Integer, JSONObject> pEncodings, Map<Integer, GraphElement> pResolved)
+	{
+		GraphElement element = pResolved.get(pId);
+		if( element != null )
+		{
+			return element;
+		}
+		WeakReference<GraphElement> reference = aElements.get(pId);
+		if( reference != null )
+		{
+			element = reference.get();
+		}
+		if( element == null )
+		{
+			JSONObject encoding = pEncodings.get(pId);
+			if( encoding == null )
+			{
+				throw new DeserializationException("Missing element: " + pId);
+			}
+			if( encoding.has("node") )
+			{
+				Node node = JsonDecoder.decodeNode(encoding.getJSONObject("node"));
+				if( encoding.has("parent") )
+				{
+					((ChildNode) node).setParent((ParentNode) resolve(encoding.getInt("parent"), pEncodings, pResolved));
+				}
+				element = node;
+			}
+			else
+			{
+				Edge edge = JsonDecoder.decodeEdge(encoding.getJSONObject("edge"));
+				edge.connect((Node) resolve(encoding.getInt("start"), pEncodings, pResolved), 
+						(Node) resolve(encoding.getInt("end"), pEncodings, pResolved), aGraph);
+				element = edge;
+			}
+			aIds.put(element, pId);
+			aElements.put(pId, new WeakReference<>(element));
+		}
+		pResolved.put(pId, element);
+		return element;
+	}
+	
+	private static Object encodeValue(Object pValue) throws NotSerializableException
+	{
+		if( pValue == null )
+		{
+			return JSONObject.NULL;
+		}
+		JSONObject object = new JSONObject();
+		if( pValue instanceof String )
+		{
+			object.put("string", pValue);
+		}
+		else if( pValue instanceof Boolean )
+		{
+			object.put("boolean", pValue);
+		}
+		else if( pValue instanceof Integer )
+		{
+			object.put("int", pValue);
+		}
+		else if( pValue instanceof Enum )
+		{
+			object.put("enum", ((Enum<?>) pValue).getDeclaringClass().getName());
+			object.put("name", ((Enum<?>) pValue).name());
+		}
+		else if( pValue instanceof MultiLineString )
+		{
+			MultiLineString string = (MultiLineString) pValue;
+			object.put("text", string.getText());
+			object.put("justification", string.obtainJustification().name());
+			object.put("bold", string.isBold());
+			object.put("underlined", string.isUnderlined());
+		}
+		else
+		{
+			throw new NotSerializableException(pValue.getClass().getName());
+		}
+		return object;
+	}
+	
+	private static Object decodeValue(Object pValue) throws ClassNotFoundException
+	{
+		if( pValue == JSONObject.NULL )
+		{
+			return null;
+		}
+		JSONObject object = (JSONObject) pValue;
+		if( object.has("string") )
+		{
+			return object.getString("string");
+		}
+		else if( object.has("boolean") )
+		{
+			return object.getBoolean("boolean");
+		}
+		else if( object.has("int") )
+		{
+			return object.getInt("int");
+		}
+		else if( object.has("enum") )
+		{
+			String name = object.getString("name");
+			for( Object constant : Class.forName(object.getString("enum")).getEnumConstants() )
+			{
+				if( ((Enum<?>) constant).name().equals(name) )
+				{
+					return constant;
+				}
+			}
+			throw new DeserializationException("Unknown constant: " + name);
+		}
+		MultiLineString string = new MultiLineString(object.getBoolean("bold"));
+		string.setText(object.getString("text"));
+		string.setJustification(MultiLineString.Align.valueOf(object.getString("justification")));
+		string.setUnderlined(object.getBoolean("underlined"));
+		return string;
+	}
+}
@@ -0,0 +1,843 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.application;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.text.AttributedCharacterIterator;
+import java.util.Map;
+
+/**
+ * A graphics context that writes what is drawn on it as the elements 
+ * of an SVG document, as soon as they are drawn. Shapes are written as 
+ * paths and strings as text elements, in the coordinates of the document. 
+ * Only solid colors are supported, and images are not drawn. The clip is 
+ * tracked, so that clients can skip what lies outside of it, but it is 
+ * not written to the document.
+ * 
+ * Writing errors do not interrupt drawing: the first one is kept and 
+ * reported by {@link #close()}.
+ */
+final class SvgGraphics2D extends Graphics2D
+{
+	private static final Color DEFAULT_BACKGROUND = Color.WHITE;
+	
+	private final Output aOutput;
+	private final Graphics2D aMetrics; // Used to measure text, shared by all copies
+	private AffineTransform aTransform = new AffineTransform();
+	private Color aColor = Color.BLACK;
+	private Color aBackground = DEFAULT_BACKGROUND;
+	private Stroke aStroke = new BasicStroke();
+	private Font aFont;
+	private Shape aClip; // In device coordinates, or null
+	private final RenderingHints aHints = new RenderingHints(null);
+	
+	/*
+	 * The document being written. Copies of a graphics context write
+	 * to the same document.
+	 */
+	private static final class Output
+	{
+		private final Writer aWriter;
+		private IOException aFailure;
+		
+		Output(Writer pWriter)
+		{
+			aWriter = pWriter;
+		}
+		
+		void write(String pText)
+		{
+			if( aFailure != null )
+			{
+				return;
+			}
+			try
+			{
+				aWriter.write(pText);
+			}
+			catch( IOException exception )
+			{
+				aFailure = exception;
+			}
+		}
+	}
+	
+	/**
+	 * Starts an SVG document of the given size on pWriter.
+	 * 
+	 * @param pWriter The writer to write the document to. 
+	 * @param pWidth The width of the document.
+	 * @param pHeight The height of the document.
+	 * @pre pWriter != null && pWidth >= 0 && pHeight >= 0
+	 */
+	SvgGraphics2D(Writer pWriter, int pWidth, int pHeight)
+	{
+		assert pWriter != null && pWidth >= 0 && pHeight >= 0;
+		aOutput = new Output(pWriter);
+		aMetrics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+		aFont = aMetrics.getFont();
+		aOutput.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + pWidth + "\" height=\"" + pHeight + 
+				"\" viewBox=\"0 0 " + pWidth + " " + pHeight + "\">\n");
+	}
+	
+	private SvgGraphics2D(SvgGraphics2D pGraphics)
+	{
+		aOutput = pGraphics.aOutput;
+		aMetrics = pGraphics.aMetrics;
+		aTransform = new AffineTransform(pGraphics.aTransform);
+		aColor = pGraphics.aColor;
+		aBackground = pGraphics.aBackground;
+		aStroke = pGraphics.aStroke;
+		aFont = pGraphics.aFont;
+		aClip = pGraphics.aClip;
+		aHints.putAll(pGraphics.aHints);
+	}
+	
+	/**
+	 * Ends the document. The writer is flushed but not closed.
+	 * 
+	 * @throws IOException If the document could not be written.
+	 */
+	void close() throws IOException
+	{
+		aOutput.write("</svg>\n");
+		if( aOutput.aFailure != null )
+		{
+			throw aOutput.aFailure;
+		}
+		aOutput.aWriter.flush();
+	}
+	
+	@Override
+	public void draw(Shape pShape)
+	{
+		StringBuilder element = new StringBuilder("<path d=\"");
+		appendPath(element, pShape);
+		element.append("\" fill=\"none\"");
+		appendStroke(element);
+		aOutput.write(element.append("/>\n").toString());
+	}
+	
+	@Override
+	public void fill(Shape pShape)
+	{
+		StringBuilder element = new StringBuilder("<path d=\"");
+		if( appendPath(element, pShape) == PathIterator.WIND_EVEN_ODD )
+		{
+			element.append("\" fill-rule=\"evenodd");
+		}
+		element.append('"');
+		appendColor(element, "fill", aColor);
+		aOutput.write(element.append("/>\n").toString());
+	}
+	
+	@Override
+	public void drawString(String pString, float pX, float pY)
+	{
+		if( pString.trim().isEmpty() )
+		{
+			return;
+		}
+		Point2D position = aTransform.transform(new Point2D.Float(pX, pY), null);
+		StringBuilder element = new StringBuilder("<text");
+		element.append(" x=\"").append(format(position.getX()));
+		element.append("\" y=\"").append(format(position.getY())).append('"');
+		if( aTransform.getType() > AffineTransform.TYPE_TRANSLATION )
+		{
+			element.append(" transform=\"rotate(").append(format(Math.toDegrees(Math.atan2(aTransform.getShearY(), 
+					aTransform.getScaleX())))).append(' ').append(format(position.getX())).append(' ')
+					.append(format(position.getY())).append(")\"");
+		}
+		element.append(" font-family=\"").append(fontFamily(aFont)).append('"');
+		element.append(" font-size=\"").append(format(aFont.getSize2D() * scale())).append('"');
+		if( aFont.isBold() )
+		{
+			element.append(" font-weight=\"bold\"");
+		}
+		if( aFont.isItalic() )
+		{
+			element.append(" font-style=\"italic\"");
+		}
+		appendColor(element, "fill", aColor);
+		element.append(" xml:space=\"preserve\">");
+		appendEscaped(element, pString);
+		aOutput.write(element.append("</text>\n").toString());
+	}
+	
+	@Override
+	public void drawString(String pString, int pX, int pY)
+	{
+		drawString(pString, (float) pX, (float) pY);
+	}
+
+	@Override
+	public void drawString(AttributedCharacterIterator pIterator, int pX, int pY)
+	{
+		drawString(pIterator, (float) pX, (float) pY);
+	}
+	
+	@Override
+	public void drawString(AttributedCharacterIterator pIterator, float pX, float pY)
+	{
+		StringBuilder text = new StringBuilder();
+		for( char c = pIterator.first(); c != AttributedCharacterIterator.DONE; c = pIterator.next() )
+		{
+			text.append(c);
+		}
+		drawString(text.toString(), pX, pY);
+	}
+	
+	@Override
+	public void drawChars(char[] pData, int pOffset, int pLength, int pX, int pY)
+	{
+		drawString(new String(pData, pOffset, pLength), pX, pY);
+	}
+	
+	@Override
+	public void drawGlyphVector(GlyphVector pGlyphs, float pX, float pY)
+	{
+		// The characters cannot be recovered from the glyphs
+		fill(pGlyphs.getOutline(pX, pY));
+	}
+	
+	@Override
+	public void drawLine(int pX1, int pY1, int pX2, int pY2)
+	{
+		draw(new Line2D.Float(pX1, pY1, pX2, pY2));
+	}
+
+	@Override
+	public void drawRect(int pX, int pY, int pWidth, int pHeight)
+	{
+		draw(new Rectangle(pX, pY, pWidth, pHeight));
+	}
+	
+	@Override
+	public void fillRect(int pX, int pY, int pWidth, int pHeight)
+	{
+		fill(new Rectangle(pX, pY, pWidth, pHeight));
+	}
+
+	@Override
+	public void clearRect(int pX, int pY, int pWidth, int pHeight)
+	{
+		Color color = aColor;
+		aColor = aBackground;
+		fillRect(pX, pY, pWidth, pHeight);
+		aColor = color;
+	}
+
+	@Override
+	public void drawRoundRect(int pX, int pY, int pWidth, int pHeight, int pArcWidth, int pArcHeight)
+	{
+		draw(new RoundRectangle2D.Float(pX, pY, pWidth, pHeight, pArcWidth, pArcHeight));
+	}
+
+	@Override
+	public void fillRoundRect(int pX, int pY, int pWidth, int pHeight, int pArcWidth, int pArcHeight)
+	{
+		fill(new RoundRectangle2D.Float(pX, pY, pWidth, pHeight, pArcWidth, pArcHeight));
+	}
+
+	@Override
+	public void drawOval(int pX, int pY, int pWidth, int pHeight)
+	{
+		draw(new Ellipse2D.Float(pX, pY, pWidth, pHeight));
+	}
+
+	@Override
+	public void fillOval(int pX, int pY, int pWidth, int pHeight)
+	{
+		fill(new Ellipse2D.Float(pX, pY, pWidth, pHeight));
+	}
+
+	@Override
+	public void drawArc(int pX, int pY, int pWidth, int pHeight, int pStartAngle, int pArcAngle)
+	{
+		draw(new Arc2D.Float(pX, pY, pWidth, pHeight, pStartAngle, pArcAngle, Arc2D.OPEN));
+	}
+
+	@Override
+	public void fillArc(int pX, int pY, int pWidth, int pHeight, int pStartAngle, int pArcAngle)
+	{
+		fill(new Arc2D.Float(pX, pY, pWidth, pHeight, pStartAngle, pArcAngle, Arc2D.PIE));
+	}
+
+	@Override
+	public void drawPolyline(int[] pXPoints, int[] pYPoints, int pNumberOfPoints)
+	{
+		if( pNumberOfPoints < 2 )
+		{
+			return;
+		}
+		Path2D path = new Path2D.Float();
+		path.moveTo(pXPoints[0], pYPoints[0]);
+		for( int i = 1; i < pNumberOfPoints; i++ )
+		{
+			path.lineTo(pXPoints[i], pYPoints[i]);
+		}
+		draw(path);
+	}
+
+	@Override
+	public void drawPolygon(int[] pXPoints, int[] pYPoints, int pNumberOfPoints)
+	{
+		draw(new Polygon(pXPoints, pYPoints, pNumberOfPoints));
+	}
+
+	@Override
+	public void fillPolygon(int[] pXPoints, int[] pYPoints, int pNumberOfPoints)
+	{
+		fill(new Polygon(pXPoints, pYPoints, pNumberOfPoints));
+	}
+	
+	@Override
+	public boolean drawImage(Image pImage, AffineTransform pTransform, ImageObserver pObserver)
+	{
+		return true;
+	}
+
+	@Override
+	public void drawImage(BufferedImage pImage, BufferedImageOp pOperation, int pX, int pY)
+	{
+	}
+
+	@Override
+	public void drawRenderedImage(RenderedImage pImage, AffineTransform pTransform)
+	{
+	}
+
+	@Override
+	public void drawRenderableImage(RenderableImage pImage, AffineTransform pTransform)
+	{
+	}
+	
+	@Override
+	public boolean drawImage(Image pImage, int pX, int pY, ImageObserver pObserver)
+	{
+		return true;
+	}
+
+	@Override
+	public boolean drawImage(Image pImage, int pX, int pY, int pWidth, int pHeight, ImageObserver pObserver)
+	{
+		return true;
+	}
+
+	@Override
+	public boolean drawImage(Image pImage, int pX, int pY, Color pBackground, ImageObserver pObserver)
+	{
+		return true;
+	}
+
+	@Override
+	public boolean drawImage(Image pImage, int pX, int pY, int pWidth, int pHeight, Color pBackground, 
+			ImageObserver pObserver)
+	{
+		return true;
+	}
+
+	@Override
+	public boolean drawImage(Image pImage, int pDX1, int pDY1, int pDX2, int pDY2, int pSX1, int pSY1, int pSX2, 
+			int pSY2, ImageObserver pObserver)
+	{
+		return true;
+	}
+
+	@Override
+	public boolean drawImage(Image pImage, int pDX1, int pDY1, int pDX2, int pDY2, int pSX1, int pSY1, int pSX2, 
+			int pSY2, Color pBackground, ImageObserver pObserver)
+	{
+		return true;
+	}
+	
+	@Override
+	public void copyArea(int pX, int pY, int pWidth, int pHeight, int pDX, int pDY)
+	{
+		// Nothing can be read back from the document
+	}
+	
+	@Override
+	public boolean hit(Rectangle pRectangle, Shape pShape, boolean pOnStroke)
+	{
+		Shape shape = pShape;
+		if( pOnStroke )
+		{
+			shape = aStroke.createStrokedShape(shape);
+		}
+		return aTransform.createTransformedShape(shape).intersects(pRectangle);
+	}
+
+	@Override
+	public GraphicsConfiguration getDeviceConfiguration()
+	{
+		return aMetrics.getDeviceConfiguration();
+	}
+	
+	@Override
+	public Graphics create()
+	{
+		return new SvgGraphics2D(this);
+	}
+	
+	@Override
+	public void dispose()
+	{
+		// Copies share the document, which is ended by close()
+	}
+
+	@Override
+	public Color getColor()
+	{
+		return aColor;
+	}
+
+	@Override
+	public void setColor(Color pColor)
+	{
+		if( pColor != null )
+		{
+			aColor = pColor;
+		}
+	}
+	
+	@Override
+	public Paint getPaint()
+	{
+		return aColor;
+	}
+	
+	@Override
+	public void setPaint(Paint pPaint)
+	{
+		if( pPaint instanceof Color )
+		{
+			aColor = (Color) pPaint;
+		}
+	}
+	
+	@Override
+	public Color getBackground()
+	{
+		return aBackground;
+	}
+	
+	@Override
+	public void setBackground(Color pColor)
+	{
+		aBackground = pColor;
+	}
+
+	@Override
+	public void setPaintMode()
+	{
+	}
+
+	@Override
+	public void setXORMode(Color pColor)
+	{
+	}
+	
+	@Override
+	public Composite getComposite()
+	{
+		return AlphaComposite.SrcOver;
+	}
+
+	@Override
+	public void setComposite(Composite pComposite)
+	{
+	}
+
+	@Override
+	public Stroke getStroke()
+	{
+		return aStroke;
+	}
+	
+	@Override
+	public void setStroke(Stroke pStroke)
+	{
+		aStroke = pStroke;
+	}
+
+	@Override
+	public Font getFont()
+	{
+		return aFont;
+	}
+
+	@Override
+	public void setFont(Font pFont)
+	{
+		if( pFont != null )
+		{
+			aFont = pFont;
+		}
+	}
+
+	@Override
+	public FontMetrics getFontMetrics(Font pFont)
+	{
+		return aMetrics.getFontMetrics(pFont);
+	}
+	
+	@Override
+	public FontRenderContext getFontRenderContext()
+	{
+		return aMetrics.getFontRenderContext();
+	}
+
+	@Override
+	public void setRenderingHint(RenderingHints.Key pKey, Object pValue)
+	{
+		aHints.put(pKey, pValue);
+	}
+
+	@Override
+	public Object getRenderingHint(RenderingHints.Key pKey)
+	{
+		return aHints.get(pKey);
+	}
+
+	@Override
+	public void setRenderingHints(Map<?, ?> pHints)
+	{
+		aHints.clear();
+		aHints.putAll(pHints);
+	}
+
+	@Override
+	public void addRenderingHints(Map<?, ?> pHints)
+	{
+		aHints.putAll(pHints);
+	}
+
+	@Override
+	public RenderingHints getRenderingHints()
+	{
+		return (RenderingHints) aHints.clone();
+	}
+
+	@Override
+	public void translate(int pX, int pY)
+	{
+		aTransform.translate(pX, pY);
+	}
+
+	@Override
+	public void translate(double pX, double pY)
+	{
+		aTransform.translate(pX, pY);
+	}
+
+	@Override
+	public void rotate(double pTheta)
+	{
+		aTransform.rotate(pTheta);
+	}
+
+	@Override
+	public void rotate(double pTheta, double pX, double pY)
+	{
+		aTransform.rotate(pTheta, pX, pY);
+	}
+
+	@Override
+	public void scale(double pX, double pY)
+	{
+		aTransform.scale(pX, pY);
+	}
+
+	@Override
+	public void shear(double pX, double pY)
+	{
+		aTransform.shear(pX, pY);
+	}
+
+	@Override
+	public void transform(AffineTransform pTransform)
+	{
+		aTransform.concatenate(pTransform);
+	}
+
+	@Override
+	public void setTransform(AffineTransform pTransform)
+	{
+		aTransform = new AffineTransform(pTransform);
+	}
+
+	@Override
+	public AffineTransform getTransform()
+	{
+		return new AffineTransform(aTransform);
+	}
+	
+	@Override
+	public Shape getClip()
+	{
+		if( aClip == null )
+		{
+			return null;
+		}
+		try
+		{
+			return aTransform.createInverse().createTransformedShape(aClip);
+		}
+		catch( NoninvertibleTransformException exception )
+		{
+			return null;
+		}
+	}
+	
+	@Override
+	public Rectangle getClipBounds()
+	{
+		Shape clip = getClip();
+		if( clip == null )
+		{
+			return null;
+		}
+		return clip.getBounds();
+	}
+
+	@Override
+	public void clip(Shape pShape)
+	{
+		if( pShape == null )
+		{
+			aClip = null;
+			return;
+		}
+		Shape clip = aTransform.createTransformedShape(pShape);
+		if( aClip == null )
+		{
+			aClip = clip;
+		}
+		else if( aClip instanceof Rectangle && clip instanceof Rectangle )
+		{
+			aClip = ((Rectangle) aClip).intersection((Rectangle) clip);
+		}
+		else
+		{
+			Area area = new Area(aClip);
+			area.intersect(new Area(clip));
+			aClip = area;
+		}
+	}
+	
+	@Override
+	public void clipRect(int pX, int pY, int pWidth, int pHeight)
+	{
+		clip(new Rectangle(pX, pY, pWidth, pHeight));
+	}
+
+	@Override
+	public void setClip(int pX, int pY, int pWidth, int pHeight)
+	{
+		setClip(new Rectangle(pX, pY, pWidth, pHeight));
+	}
+
+	@Override
+	public void setClip(Shape pShape)
+	{
+		aClip = null;
+		clip(pShape);
+	}
+	
+	/*
+	 * Appends the path data of pShape, in document coordinates, 
+	 * and returns its winding rule.
+	 */
+	private int appendPath(StringBuilder pElement, Shape pShape)
+	{
+		PathIterator iterator = pShape.getPathIterator(aTransform);
+		double[] coordinates = new double[6];
+		char[] commands = { 'M', 'L', 'Q', 'C', 'Z' };
+		int[] points = { 1, 1, 2, 3, 0 };
+		boolean first = true;
+		while( !iterator.isDone() )
+		{
+			int type = iterator.currentSegment(coordinates);
+			if( !first )
+			{
+				pElement.append(' ');
+			}
+			first = false;
+			pElement.append(commands[type]);
+			for( int i = 0; i < points[type] * 2; i++ )
+			{
+				pElement.append(i == 0 ? "" : " ").append(format(coordinates[i]));
+			}
+			iterator.next();
+		}
+		return iterator.getWindingRule();
+	}
+	
+	private void appendStroke(StringBuilder pElement)
+	{
+		appendColor(pElement, "stroke", aColor);
+		if( !(aStroke instanceof BasicStroke) )
+		{
+			return;
+		}
+		BasicStroke stroke = (BasicStroke) aStroke;
+		double scale = scale();
+		if( stroke.getLineWidth() != 1 || scale != 1 )
+		{
+			pElement.append(" stroke-width=\"").append(format(Math.max(stroke.getLineWidth(), 1) * scale)).append('"');
+		}
+		if( stroke.getEndCap() == BasicStroke.CAP_ROUND )
+		{
+			pElement.append(" stroke-linecap=\"round\"");
+		}
+		else if( stroke.getEndCap() == BasicStroke.CAP_SQUARE )
+		{
+			pElement.append(" stroke-linecap=\"square\"");
+		}
+		if( stroke.getLineJoin() == BasicStroke.JOIN_ROUND )
+		{
+			pElement.append(" stroke-linejoin=\"round\"");
+		}
+		else if( stroke.getLineJoin() == BasicStroke.JOIN_BEVEL )
+		{
+			pElement.append(" stroke-linejoin=\"bevel\"");
+		}
+		float[] dashes = stroke.getDashArray();
+		if( dashes != null )
+		{
+			pElement.append(" stroke-dasharray=\"");
+			for( int i = 0; i < dashes.length; i++ )
+			{
+				pElement.append(i == 0 ? "" : ",").append(format(dashes[i] * scale));
+			}
+			pElement.append('"');
+			if( stroke.getDashPhase() != 0 )
+			{
+				pElement.append(" stroke-dashoffset=\"").append(format(stroke.getDashPhase() * scale)).append('"');
+			}
+		}
+	}
+	
+	private static void appendColor(StringBuilder pElement, String pAttribute, Color pColor)
+	{
+		pElement.append(' ').append(pAttribute).append("=\"").append(String.format("#%06x", pColor.getRGB() & 0xffffff)).append('"');
+		if( pColor.getAlpha() < 255 )
+		{
+			pElement.append(' ').append(pAttribute).append("-opacity=\"").append(format(pColor.getAlpha() / 255.0)).append('"');
+		}
+	}
+	
+	private static void appendEscaped(StringBuilder pElement, String pText)
+	{
+		for( int i = 0; i < pText.length(); i++ )
+		{
+			char c = pText.charAt(i);
+			switch( c )
+			{
+			case '<': pElement.append("&lt;"); break;
+			case '>': pElement.append("&gt;"); break;
+			case '&': pElement.append("&amp;"); break;
+			case '"': pElement.append("&quot;"); break;
+			default:
+				if( c < 0x20 && c != '\t' )
+				{
+					pElement.append(' ');
+				}
+				else
+				{
+					pElement.append(c);
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Maps the logical fonts of Java to the generic families of CSS.
+	 */
+	private static String fontFamily(Font pFont)
+	{
+		String family = pFont.getFamily();
+		switch( family )
+		{
+		case Font.DIALOG: 
+		case Font.SANS_SERIF: 
+			return "sans-serif";
+		case Font.SERIF: 
+			return "serif";
+		case Font.DIALOG_INPUT:
+		case Font.MONOSPACED: 
+			return "monospace";
+		default: 
+			StringBuilder result = new StringBuilder("'");
+			appendEscaped(result, family.replace("'", ""));
+			return result.append("', sans-serif").toString();
+		}
+	}
+	
+	/*
+	 * The factor by which lengths are scaled by the transform.
+	 */
+	private double scale()
+	{
+		return Math.sqrt(Math.abs(aTransform.getDeterminant()));
+	}
+	
+	private static String format(double pNumber)
+	{
+		return BigDecimal.valueOf(Math.round(pNumber * 100), 2).stripTrailingZeros().toPlainString();
+	}
+}
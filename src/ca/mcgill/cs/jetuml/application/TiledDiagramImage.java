@@ -0,0 +1,348 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.application;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ca.mcgill.cs.jetuml.geom.Rectangle;
+import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.persistence.PersistenceService;
+
+/**
+ * An image of a complete diagram that is rendered one row of square 
+ * tiles at a time, when an image writer requests the pixels. Writers that
+ * request the pixels from top to bottom, such as the PNG writer, only 
+ * cause one row of tiles to be held in memory, whatever the size of the 
+ * diagram. The tiles of a row can be rendered by several threads, each 
+ * drawing its own copy of the graph.
+ * 
+ * Images that use worker threads must be closed when they are no longer needed.
+ */
+final class TiledDiagramImage implements RenderedImage, AutoCloseable
+{
+	private static final int GUARD = 16; // Pixels drawn around each tile, then discarded
+	private static final ColorModel COLOR_MODEL = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getColorModel();
+	
+	private final Rectangle aBounds;
+	private final int aWidth;
+	private final int aHeight;
+	private final int aTileSize;
+	private final SampleModel aSampleModel;
+	// Graphs that are not being drawn. Each thread draws a graph taken from this queue.
+	private final BlockingQueue<Graph> aGraphs;
+	private final ExecutorService aWorkers;
+	private int aCachedRow = -1;
+	private Raster[] aCachedTiles;
+	
+	/**
+	 * Creates an image of pGraph, with a margin around the diagram.
+	 * 
+	 * @param pGraph The graph to render. It must not be modified while the image is used.
+	 * @param pTileSize The width and height of the tiles, in pixels.
+	 * @param pThreads The number of threads that render the tiles of a row.
+	 * @pre pGraph != null && pTileSize > 0 && pThreads > 0
+	 */
+	TiledDiagramImage(Graph pGraph, int pTileSize, int pThreads)
+	{
+		assert pGraph != null && pTileSize > 0 && pThreads > 0;
+		aBounds = pGraph.getBounds();
+		aWidth = aBounds.getWidth() + DiagramRenderer.MARGIN * 2;
+		aHeight = aBounds.getHeight() + DiagramRenderer.MARGIN * 2;
+		aTileSize = pTileSize;
+		aSampleModel = COLOR_MODEL.createCompatibleSampleModel(pTileSize, pTileSize);
+		int threads = Math.min(pThreads, getNumXTiles());
+		aGraphs = new ArrayBlockingQueue<>(threads);
+		aGraphs.add(pGraph);
+		for( int i = 1; i < threads; i++ )
+		{
+			aGraphs.add(PersistenceService.snapshot(pGraph));
+		}
+		if( threads > 1 )
+		{
+			aWorkers = Executors.newFixedThreadPool(threads, pTask -> 
+			{
+				Thread thread = new Thread(pTask, "Tile");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		else
+		{
+			aWorkers = null;
+		}
+	}
+	
+	@Override
+	public void close()
+	{
+		if( aWorkers != null )
+		{
+			aWorkers.shutdownNow();
+		}
+	}
+	
+	@Override
+	public Vector<RenderedImage> getSources()
+	{
+		return null;
+	}
+
+	@Override
+	public Object getProperty(String pName)
+	{
+		return java.awt.Image.UndefinedProperty;
+	}
+
+	@Override
+	public String[] getPropertyNames()
+	{
+		return null;
+	}
+
+	@Override
+	public ColorModel getColorModel()
+	{
+		return COLOR_MODEL;
+	}
+
+	@Override
+	public SampleModel getSampleModel()
+	{
+		return aSampleModel;
+	}
+
+	@Override
+	public int getWidth()
+	{
+		return aWidth;
+	}
+
+	@Override
+	public int getHeight()
+	{
+		return aHeight;
+	}
+
+	@Override
+	public int getMinX()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getMinY()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getNumXTiles()
+	{
+		return (aWidth + aTileSize - 1) / aTileSize;
+	}
+
+	@Override
+	public int getNumYTiles()
+	{
+		return (aHeight + aTileSize - 1) / aTileSize;
+	}
+
+	@Override
+	public int getMinTileX()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getMinTileY()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getTileWidth()
+	{
+		return aTileSize;
+	}
+
+	@Override
+	public int getTileHeight()
+	{
+		return aTileSize;
+	}
+
+	@Override
+	public int getTileGridXOffset()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getTileGridYOffset()
+	{
+		return 0;
+	}
+
+	/**
+	 * Returns a tile, rendering its entire row of tiles if it is not the 
+	 * row that was rendered last.
+	 * 
+	 * @param pTileX The column of the tile.
+	 * @param pTileY The row of the tile.
+	 * @return The tile, positioned in image coordinates.
+	 */
+	@Override
+	public synchronized Raster getTile(int pTileX, int pTileY)
+	{
+		if( pTileY != aCachedRow )
+		{
+			aCachedTiles = null; // So that the previous row can be collected while rendering
+			aCachedTiles = renderRow(pTileY);
+			aCachedRow = pTileY;
+		}
+		return aCachedTiles[pTileX];
+	}
+
+	@Override
+	public Raster getData()
+	{
+		return copyData(null);
+	}
+
+	@Override
+	public Raster getData(java.awt.Rectangle pArea)
+	{
+		WritableRaster raster = Raster.createWritableRaster(
+				aSampleModel.createCompatibleSampleModel(pArea.width, pArea.height), new Point(pArea.x, pArea.y));
+		return copyData(raster);
+	}
+
+	@Override
+	public WritableRaster copyData(WritableRaster pRaster)
+	{
+		WritableRaster raster = pRaster;
+		if( raster == null )
+		{
+			raster = Raster.createWritableRaster(aSampleModel.createCompatibleSampleModel(aWidth, aHeight), null);
+		}
+		java.awt.Rectangle area = raster.getBounds().intersection(new java.awt.Rectangle(0, 0, aWidth, aHeight));
+		if( area.isEmpty() )
+		{
+			return raster;
+		}
+		for( int row = area.y / aTileSize; row <= (area.y + area.height - 1) / aTileSize; row++ )
+		{
+			for( int column = area.x / aTileSize; column <= (area.x + area.width - 1) / aTileSize; column++ )
+			{
+				Raster tile = getTile(column, row);
+				java.awt.Rectangle part = tile.getBounds().intersection(area);
+				raster.setRect(tile.createChild(part.x, part.y, part.width, part.height, part.x, part.y, null));
+			}
+		}
+		return raster;
+	}
+	
+	private Raster[] renderRow(int pRow)
+	{
+		Raster[] tiles = new Raster[getNumXTiles()];
+		try
+		{
+			if( aWorkers == null )
+			{
+				for( int column = 0; column < tiles.length; column++ )
+				{
+					tiles[column] = renderTile(column, pRow);
+				}
+				return tiles;
+			}
+			List<Future<Raster>> results = new ArrayList<>();
+			for( int column = 0; column < tiles.length; column++ )
+			{
+				final int tileX = column;
+				results.add(aWorkers.submit(() -> renderTile(tileX, pRow)));
+			}
+			for( int column = 0; column < tiles.length; column++ )
+			{
+				tiles[column] = results.get(column).get();
+			}
+			return tiles;
+		}
+		catch( InterruptedException exception )
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(exception);
+		}
+		catch( ExecutionException exception )
+		{
+			throw new IllegalStateException(exception.getCause());
+		}
+	}
+	
+	/*
+	 * Draws the part of the diagram covered by a tile, with a clip so that
+	 * only the elements that intersect the tile are drawn. The clip extends
+	 * beyond the tile, because shapes that are cut by a clip are not always 
+	 * rasterized with exactly the same pixels near the edge of the clip.
+	 */
+	private Raster renderTile(int pColumn, int pRow) throws InterruptedException
+	{
+		int x = pColumn * aTileSize;
+		int y = pRow * aTileSize;
+		int size = aTileSize + 2 * GUARD;
+		BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		Graph graph = aGraphs.take();
+		try
+		{
+			graphics.setColor(Color.WHITE);
+			graphics.fillRect(0, 0, size, size);
+			graphics.translate(GUARD + DiagramRenderer.MARGIN - aBounds.getX() - x, GUARD + DiagramRenderer.MARGIN - aBounds.getY() - y);
+			graphics.clipRect(aBounds.getX() - DiagramRenderer.MARGIN + x - GUARD, aBounds.getY() - DiagramRenderer.MARGIN + y - GUARD, 
+					size, size);
+			graphics.setColor(Color.BLACK);
+			graphics.setBackground(Color.WHITE);
+			graph.draw(graphics);
+		}
+		finally
+		{
+			aGraphs.add(graph);
+			graphics.dispose();
+		}
+		return image.getRaster().createChild(GUARD, GUARD, aTileSize, aTileSize, x, y, null);
+	}
+}
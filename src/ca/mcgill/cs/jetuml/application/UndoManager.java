@@ -20,10 +20,16 @@
  *******************************************************************************/
 package ca.mcgill.cs.jetuml.application;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 import ca.mcgill.cs.jetuml.commands.Command;
 import ca.mcgill.cs.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.jetuml.persistence.CommandJournal;
 
 /**
  * Performs the undoing and redoing of commands on a graph.
@@ -32,10 +38,25 @@ import ca.mcgill.cs.jetuml.commands.CompoundCommand;
  */
 public class UndoManager 
 {
+	/**
+	 * The time, in milliseconds, within which successive moves of the 
+	 * same nodes, or changes of the same properties, are undone together.
+	 */
+	public static final long DEFAULT_COALESCING_WINDOW = 1000;
+	
 	private Stack<Command> aPastCommands; //the commands that have been input and can be undone
 	private Stack<Command> aUndoneCommands; //the commands that have been undone and can be redone
 	private Stack<CompoundCommand> aTrackingCommands; //used for many commands coming at once
 	private boolean aHoldChanges = false; //turned on while undoing or redoing to prevent duplication
+	private CommandJournal aJournal; //records the commands once they are done, undone, or redone, if not null
+	private final HistoryPolicy aPolicy; //bounds the past and undone commands
+	private final Map<Command, Long> aSizes = new IdentityHashMap<>(); //the estimated size of each past or undone command
+	private long aPastBytes = 0;
+	private long aUndoneBytes = 0;
+	private final SpilledHistory aSpilledHistory = new SpilledHistory(); //the oldest past commands, if the policy spills
+	private long aCoalescingWindow = DEFAULT_COALESCING_WINDOW; //in milliseconds
+	private Command aLastAdded; //the command on top of the past commands, if it can absorb the next one
+	private long aLastAddedTime;
 	
 	/**
 	 * Creates a new UndoManager with the GraphPanel.
@@ -43,10 +64,44 @@ public class UndoManager
 	 */
 	public UndoManager()
 	{
+		this(HistoryPolicy.DEFAULT);
+	}
+	
+	/**
+	 * Creates a new UndoManager whose history is bounded by pPolicy.
+	 * @param pPolicy The policy that bounds the history.
+	 */
+	public UndoManager(HistoryPolicy pPolicy)
+	{
+		assert pPolicy != null;
+		aPolicy = pPolicy;
 		aPastCommands = new Stack<Command>();
 		aUndoneCommands = new Stack<Command>();
 		aTrackingCommands = new Stack<CompoundCommand>();
 	}
+	
+	/**
+	 * Sets the journal that records the effect of each command 
+	 * that is added, undone, or redone. 
+	 * @param pJournal The journal, or null to stop recording.
+	 */
+	public void setJournal(CommandJournal pJournal)
+	{
+		aJournal = pJournal;
+	}
+	
+	/**
+	 * Sets the time within which a command that moves the same nodes as the 
+	 * previous command, or changes the same properties, is merged into it, 
+	 * so that both are undone and redone as one.
+	 * @param pMillis The time in milliseconds, or 0 to keep all commands apart.
+	 * @pre pMillis >= 0
+	 */
+	public void setCoalescingWindow(long pMillis)
+	{
+		assert pMillis >= 0;
+		aCoalescingWindow = pMillis;
+	}
 
 	/**
 	 * Adds a command to the stack to be undone.
@@ -61,7 +116,12 @@ public class UndoManager
 		{
 			if(!aUndoneCommands.empty())
 			{
+				for( Command command : aUndoneCommands )
+				{
+					aSizes.remove(command);
+				}
 				aUndoneCommands.clear();
+				aUndoneBytes = 0;
 			}
 			if(!aTrackingCommands.empty())
 			{
@@ -69,7 +129,26 @@ public class UndoManager
 			}
 			else
 			{
-				aPastCommands.push(pCommand);
+				Command command = pCommand;
+				long now = System.currentTimeMillis();
+				if( aLastAdded != null && now - aLastAddedTime < aCoalescingWindow )
+				{
+					Command merged = CommandCoalescer.coalesce(aLastAdded, pCommand);
+					if( merged != null )
+					{
+						aPastCommands.pop();
+						aPastBytes -= aSizes.remove(aLastAdded);
+						command = merged;
+					}
+				}
+				long size = HistoryPolicy.estimateSize(command);
+				aSizes.put(command, size);
+				aPastCommands.push(command);
+				aPastBytes += size;
+				aLastAdded = command;
+				aLastAddedTime = now;
+				record(pCommand, false);
+				boundPastCommands();
 			}
 		}
 	}
@@ -81,14 +160,24 @@ public class UndoManager
 	 */
 	public void undoCommand()
 	{
+		if(aPastCommands.empty())
+		{
+			reloadPastCommands();
+		}
 		if(aPastCommands.empty())
 		{
 			return;
 		}
 		aHoldChanges = true;
+		aLastAdded = null;
 		Command toUndo = aPastCommands.pop();
 		toUndo.undo();
+		record(toUndo, true);
 		aUndoneCommands.push(toUndo);
+		long size = aSizes.get(toUndo);
+		aPastBytes -= size;
+		aUndoneBytes += size;
+		boundUndoneCommands();
 		aHoldChanges = false;
 	}
 
@@ -104,9 +193,15 @@ public class UndoManager
 		{
 			return;
 		}
+		aLastAdded = null;
 		Command toRedo = aUndoneCommands.pop();
 		toRedo.execute();
+		record(toRedo, false);
 		aPastCommands.push(toRedo);
+		long size = aSizes.get(toRedo);
+		aUndoneBytes -= size;
+		aPastBytes += size;
+		boundPastCommands();
 		aHoldChanges = false;
 	}
 
@@ -133,5 +228,133 @@ public class UndoManager
 			}
 		}
 	}
+	
+	/**
+	 * @return The number of commands that can be undone without 
+	 * reading the history back from its temporary file.
+	 */
+	public int getPastCommandCount()
+	{
+		return aPastCommands.size();
+	}
+	
+	/**
+	 * @return The estimated number of bytes retained by the commands
+	 * that can be undone or redone.
+	 */
+	public long getRetainedBytes()
+	{
+		return aPastBytes + aUndoneBytes;
+	}
+	
+	/*
+	 * Evicts or spills the oldest past commands while they exceed the policy.
+	 * The most recent command is always kept. Spilling writes a segment large 
+	 * enough to bring the commands down to half the bounds, so that a file 
+	 * write is not needed for every new command.
+	 */
+	private void boundPastCommands()
+	{
+		if( !aPolicy.exceeds(aPastCommands.size(), aPastBytes) )
+		{
+			return;
+		}
+		if( aPolicy.spills() )
+		{
+			List<Command> segment = new ArrayList<>();
+			long segmentBytes = 0;
+			while( segment.size() < aPastCommands.size() - 1 && 
+					(aPastCommands.size() - segment.size() > aPolicy.getMaxCommands() / 2 || 
+					 aPastBytes - segmentBytes > aPolicy.getMaxBytes() / 2) )
+			{
+				Command command = aPastCommands.get(segment.size());
+				segment.add(command);
+				segmentBytes += aSizes.get(command);
+			}
+			if( !segment.isEmpty() && spill(segment) )
+			{
+				for( Command command : segment )
+				{
+					aSizes.remove(command);
+				}
+				aPastCommands.subList(0, segment.size()).clear();
+				aPastBytes -= segmentBytes;
+				return;
+			}
+		}
+		while( aPastCommands.size() > 1 && aPolicy.exceeds(aPastCommands.size(), aPastBytes) )
+		{
+			aPastBytes -= aSizes.remove(aPastCommands.remove(0));
+		}
+	}
+	
+	/*
+	 * Drops the undone commands that would be redone last while 
+	 * they exceed the policy. The next command to redo is always kept.
+	 * If the policy spills, the undone commands were read back on request 
+	 * and are all kept, so that the history can be redone as far as it 
+	 * was undone.
+	 */
+	private void boundUndoneCommands()
+	{
+		while( !aPolicy.spills() && aUndoneCommands.size() > 1 && 
+				aPolicy.exceeds(aUndoneCommands.size(), aUndoneBytes) )
+		{
+			aUndoneBytes -= aSizes.remove(aUndoneCommands.remove(0));
+		}
+	}
+	
+	/*
+	 * Writes pSegment to the spilled history. If it cannot be written, 
+	 * the spilled history can no longer be undone and is discarded.
+	 */
+	private boolean spill(List<Command> pSegment)
+	{
+		try
+		{
+			aSpilledHistory.spill(pSegment);
+			return true;
+		}
+		catch( IOException exception )
+		{
+			aSpilledHistory.clear();
+			return false;
+		}
+	}
+	
+	/*
+	 * Reads the most recent segment of the spilled history back into the past
+	 * commands. If it cannot be read, the older history is discarded.
+	 */
+	private void reloadPastCommands()
+	{
+		if( aSpilledHistory.isEmpty() )
+		{
+			return;
+		}
+		try
+		{
+			for( Command command : aSpilledHistory.reload() )
+			{
+				long size = HistoryPolicy.estimateSize(command);
+				aSizes.put(command, size);
+				aPastCommands.push(command);
+				aPastBytes += size;
+			}
+		}
+		catch( IOException exception )
+		{
+			aSpilledHistory.clear();
+		}
+	}
+	
+	private void record(Command pCommand, boolean pUndone)
+	{
+		if(aJournal != null)
+		{
+			pCommand.record(aJournal, pUndone);
+			aJournal.commit();
+		}
+	}
 
 }
@@ -22,6 +22,7 @@ package ca.mcgill.cs.jetuml.commands;
 
 import ca.mcgill.cs.jetuml.graph.Edge;
 import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.persistence.CommandJournal;
 
 /**
  * Represents the addition of an edge to the graph.
@@ -57,4 +58,17 @@ public class AddEdgeCommand extends GraphElementRelatedCommand
 		assert aElement instanceof Edge;
 		aGraph.insertEdge((Edge)aElement);
 	}
+	
+	@Override
+	public void record(CommandJournal pJournal, boolean pUndone)
+	{
+		if( pUndone )
+		{
+			pJournal.edgeRemoved((Edge)aElement);
+		}
+		else
+		{
+			pJournal.edgeAdded((Edge)aElement);
+		}
+	}
 }
@@ -22,6 +22,7 @@ package ca.mcgill.cs.jetuml.commands;
 
 import ca.mcgill.cs.jetuml.graph.Graph;
 import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.persistence.CommandJournal;
 
 /**
  * Represents the addition of a node to the graph.
@@ -59,4 +60,17 @@ public class AddNodeCommand extends GraphElementRelatedCommand
 		aGraph.insertNode((Node)aElement);
 		aGraph.requestLayout();
 	}
+	
+	@Override
+	public void record(CommandJournal pJournal, boolean pUndone)
+	{
+		if( pUndone )
+		{
+			pJournal.nodeRemoved((Node)aElement);
+		}
+		else
+		{
+			pJournal.nodeAdded((Node)aElement);
+		}
+	}
 }
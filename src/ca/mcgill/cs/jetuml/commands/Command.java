@@ -20,6 +20,8 @@
  *******************************************************************************/
 package ca.mcgill.cs.jetuml.commands;
 
+import ca.mcgill.cs.jetuml.persistence.CommandJournal;
+
 /*
  * Contains something that was done in the model.
  * This is used for redoing and undoing commands by 
@@ -42,4 +44,12 @@ public interface Command
 	 */
 	void execute();
 	
+	/**
+	 * Records the effects of the command on its graph in a journal.
+	 * 
+	 * @param pJournal The journal to record into.
+	 * @param pUndone True if the command was just undone, false 
+	 * if it was just executed.
+	 */
+	void record(CommandJournal pJournal, boolean pUndone);
 }
\ No newline at end of file
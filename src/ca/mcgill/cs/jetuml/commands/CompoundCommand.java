@@ -20,8 +20,12 @@
  *******************************************************************************/
 package ca.mcgill.cs.jetuml.commands;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Stack;
 
+import ca.mcgill.cs.jetuml.persistence.CommandJournal;
+
 /**
  * Holds multiple commands to be executed or undone.
  * @author EJBQ
@@ -55,6 +59,16 @@ public class CompoundCommand implements Command
 	{
 		return aCommands.size();
 	}
+	
+	/**
+	 * Returns the commands in the order in which they were last
+	 * executed or undone.
+	 * @return An unmodifiable list of the commands.
+	 */
+	public List<Command> getCommands()
+	{
+		return Collections.unmodifiableList(aCommands);
+	}
 
 	/**
 	 * Undoes each command on the stack.
@@ -87,4 +101,21 @@ public class CompoundCommand implements Command
 		}
 		aCommands = temp;
 	}
+	
+	/**
+	 * Records each command in the order in which 
+	 * it was last executed or undone.
+	 * 
+	 * @param pJournal The journal to record into.
+	 * @param pUndone True if the commands were just undone.
+	 */
+	@Override
+	public void record(CommandJournal pJournal, boolean pUndone)
+	{
+		// The bottom of the stack holds the command that was executed or undone first
+		for( Command command : aCommands )
+		{
+			command.record(pJournal, pUndone);
+		}
+	}
 }
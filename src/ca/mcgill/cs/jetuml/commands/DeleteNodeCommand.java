@@ -22,6 +22,7 @@ package ca.mcgill.cs.jetuml.commands;
 
 import ca.mcgill.cs.jetuml.graph.Graph;
 import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.persistence.CommandJournal;
 
 /**
  * Represents the removal of a node from the graph.
@@ -55,4 +56,17 @@ public class DeleteNodeCommand extends GraphElementRelatedCommand
 	{
 		aGraph.removeNode((Node)aElement);
 	}
+	
+	@Override
+	public void record(CommandJournal pJournal, boolean pUndone)
+	{
+		if( pUndone )
+		{
+			pJournal.nodeAdded((Node)aElement);
+		}
+		else
+		{
+			pJournal.nodeRemoved((Node)aElement);
+		}
+	}
 }
@@ -43,4 +43,20 @@ abstract class GraphElementRelatedCommand implements Command
 		aGraph = pGraph;
 		aElement = pElement;
 	}
+	
+	/**
+	 * @return The target graph.
+	 */
+	public Graph getGraph()
+	{
+		return aGraph;
+	}
+	
+	/**
+	 * @return The related element.
+	 */
+	public GraphElement getElement()
+	{
+		return aElement;
+	}
 }
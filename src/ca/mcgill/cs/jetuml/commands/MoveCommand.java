@@ -22,6 +22,7 @@ package ca.mcgill.cs.jetuml.commands;
 
 import ca.mcgill.cs.jetuml.graph.Graph;
 import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.persistence.CommandJournal;
 
 /**
  * Stores the moving of a node.
@@ -49,6 +50,38 @@ public class MoveCommand implements Command
 		aDY = pDY;
 	}
 	
+	/**
+	 * @return The graph of the node.
+	 */
+	public Graph getGraph()
+	{
+		return aGraph;
+	}
+	
+	/**
+	 * @return The node moved.
+	 */
+	public Node getNode()
+	{
+		return aNode;
+	}
+	
+	/**
+	 * @return The amount moved horizontally.
+	 */
+	public int getDX()
+	{
+		return aDX;
+	}
+	
+	/**
+	 * @return The amount moved vertically.
+	 */
+	public int getDY()
+	{
+		return aDY;
+	}
+	
 	/**
 	 * Undoes the command and moves the node back where it came from.
 	 */
@@ -66,5 +99,18 @@ public class MoveCommand implements Command
 		aNode.translate(aDX, aDY);
 		aGraph.requestLayout();
 	}
+	
+	@Override
+	public void record(CommandJournal pJournal, boolean pUndone)
+	{
+		if( pUndone )
+		{
+			pJournal.nodeMoved(aNode, -aDX, -aDY);
+		}
+		else
+		{
+			pJournal.nodeMoved(aNode, aDX, aDY);
+		}
+	}
 
 }
@@ -22,6 +22,7 @@ package ca.mcgill.cs.jetuml.commands;
 
 import ca.mcgill.cs.jetuml.graph.Edge;
 import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.persistence.CommandJournal;
 
 /**
  * Represents the removal of an edge to the graph.
@@ -57,4 +58,17 @@ public class RemoveEdgeCommand extends GraphElementRelatedCommand
 		assert aElement instanceof Edge;
 		aGraph.removeEdge((Edge)aElement);
 	}
+	
+	@Override
+	public void record(CommandJournal pJournal, boolean pUndone)
+	{
+		if( pUndone )
+		{
+			pJournal.edgeAdded((Edge)aElement);
+		}
+		else
+		{
+			pJournal.edgeRemoved((Edge)aElement);
+		}
+	}
 }
@@ -50,6 +50,8 @@ public class SequenceDiagramGraph extends Graph
 	
 	private static final int CALL_NODE_YGAP = 5;
 	
+	private transient int aLayoutVersion = -1; // The geometry version produced by the last layout of the calls
+	
 	static 
 	{
 		IMPLICIT_PARAMETER_NODE.addChild(new CallNode());
@@ -211,12 +213,12 @@ public class SequenceDiagramGraph extends Graph
 		}
 		
 		// Also delete the return edge, if it exists
-		if( pEdge instanceof CallEdge )
+		if( pEdge instanceof CallEdge && pEdge.getEnd() != null )
 		{
 			Edge returnEdge = null;
-			for( Edge edge : aEdges )
+			for( Edge edge : getOutgoingEdges(pEdge.getEnd()) )
 			{
-				if( edge instanceof ReturnEdge && edge.getStart() == pEdge.getEnd() && edge.getEnd() == pEdge.getStart())
+				if( edge instanceof ReturnEdge && edge.getEnd() == pEdge.getStart())
 				{
 					returnEdge = edge;
 					break;
@@ -241,14 +243,7 @@ public class SequenceDiagramGraph extends Graph
 			return false;
 		}
 		assert pNode instanceof CallNode;
-		for( Edge edge : aEdges )
-		{
-			if( edge.getStart() == pNode )
-			{
-				return false;
-			}
-		}
-		return true;
+		return getOutgoingEdges(pNode).isEmpty();
 	}
 	
 	/**
@@ -258,9 +253,9 @@ public class SequenceDiagramGraph extends Graph
 	 */
 	public CallNode getCaller(Node pNode)
 	{
-		for( Edge edge : aEdges )
+		for( Edge edge : getIncomingEdges(pNode) )
 		{
-			if( edge.getEnd() == pNode  && edge instanceof CallEdge )
+			if( edge instanceof CallEdge )
 			{
 				return (CallNode) edge.getStart();
 			}
@@ -276,9 +271,9 @@ public class SequenceDiagramGraph extends Graph
 	private List<Node> getCallees(Node pNode)
 	{
 		List<Node> callees = new ArrayList<Node>();
-		for (Edge edge : aEdges )
+		for (Edge edge : getOutgoingEdges(pNode) )
 		{
-			if ( edge.getStart() == pNode && edge instanceof CallEdge )
+			if ( edge instanceof CallEdge )
 			{
 				callees.add(edge.getEnd());
 			}
@@ -294,9 +289,9 @@ public class SequenceDiagramGraph extends Graph
 	 */
 	public Edge findEdge(Node pStart, Node pEnd)
 	{
-		for( Edge edge : aEdges )
+		for( Edge edge : getOutgoingEdges(pStart) )
 		{
-			if(edge.getStart() == pStart && edge.getEnd() == pEnd)
+			if(edge.getEnd() == pEnd)
 			{
 				return edge;
 			}
@@ -304,10 +299,20 @@ public class SequenceDiagramGraph extends Graph
 		return null;
 	}
  
+	/*
+	 * The calls are laid out again only if the geometry of the diagram 
+	 * changed since their last layout, since the diagram is laid out 
+	 * every time it is drawn. Callers and callees are found through the 
+	 * edges of each node rather than by scanning all the edges.
+	 */
 	@Override
 	public void layout()
 	{
 		super.layout();
+		if( aLayoutVersion == getGeometryVersion() )
+		{
+			return;
+		}
 
 		ArrayList<Node> topLevelCalls = new ArrayList<>();
 		ArrayList<Node> objects = new ArrayList<>();
@@ -327,6 +332,7 @@ public class SequenceDiagramGraph extends Graph
 			}
 		}
 		heightObjectLayout(topLevelCalls, objects);
+		aLayoutVersion = getGeometryVersion();
 	}
 	
 	/*
@@ -401,6 +407,32 @@ public class SequenceDiagramGraph extends Graph
 		return ResourceBundle.getBundle("ca.mcgill.cs.jetuml.UMLEditorStrings").getString("sequence.name");
 	}
 
+	/*
+	 * The layout of call nodes depends on all the calls of the diagram,
+	 * and is recomputed whenever the geometry of the diagram changes.
+	 */
+	@Override
+	public boolean hasLocalLayout()
+	{
+		return false;
+	}
+	
+	/* 
+	 * Implicit parameter nodes can be selected anywhere along their 
+	 * life line, and deepFindNode follows call edges from their call
+	 * nodes to other implicit parameter nodes, so their selection 
+	 * area has no useful bound.
+	 */
+	@Override
+	protected Rectangle getSelectionBounds(Node pRootNode)
+	{
+		if( pRootNode instanceof ImplicitParameterNode )
+		{
+			return null;
+		}
+		return super.getSelectionBounds(pRootNode);
+	}
+	
 	@Override
 	protected Node deepFindNode( Node pNode, Point pPoint )
 	{		
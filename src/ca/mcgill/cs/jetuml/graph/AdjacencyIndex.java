@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+
+package ca.mcgill.cs.jetuml.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks, for each node of a graph, the edges that start
+ * or end at that node, so that edges connected to a node
+ * can be obtained without scanning all the edges of the graph.
+ * 
+ * The index mirrors the list of edges of the graph: edges are
+ * kept in the order in which they were added, and removing an
+ * edge removes all its occurrences. Some clients add edges to 
+ * the graph before connecting them, so an edge that is missing 
+ * an endpoint is only indexed once it is connected. The endpoints 
+ * of an edge are otherwise assumed not to change while the edge is 
+ * in the index.
+ */
+class AdjacencyIndex
+{
+	private final Map<Node, Incidence> aIncidences = new IdentityHashMap<>();
+	private final List<Edge> aUnconnected = new ArrayList<>(); // Added before they were connected
+	
+	/**
+	 * Adds pEdge to the lists of edges of its start and end nodes,
+	 * or defers it until both of its endpoints are set.
+	 * 
+	 * @param pEdge The edge to add.
+	 * @pre pEdge != null
+	 */
+	void add(Edge pEdge)
+	{
+		assert pEdge != null;
+		if( pEdge.getStart() == null || pEdge.getEnd() == null )
+		{
+			aUnconnected.add(pEdge);
+			return;
+		}
+		Incidence start = null;
+		if( pEdge.getStart() != null )
+		{
+			start = aIncidences.computeIfAbsent(pEdge.getStart(), pNode -> new Incidence());
+			start.aEdges.add(pEdge);
+			start.aOutgoing.add(pEdge);
+			start.aOutgoingByType.computeIfAbsent(pEdge.getClass(), pType -> new ArrayList<>()).add(pEdge);
+		}
+		if( pEdge.getEnd() != null )
+		{
+			Incidence end = aIncidences.computeIfAbsent(pEdge.getEnd(), pNode -> new Incidence());
+			if( end != start )
+			{
+				end.aEdges.add(pEdge);
+			}
+			end.aIncoming.add(pEdge);
+		}
+	}
+	
+	/**
+	 * Removes all occurrences of pEdge from the index.
+	 * 
+	 * @param pEdge The edge to remove.
+	 */
+	void remove(Edge pEdge)
+	{
+		aUnconnected.removeIf(pElement -> pElement == pEdge);
+		removeFrom(pEdge.getStart(), pEdge);
+		removeFrom(pEdge.getEnd(), pEdge);
+	}
+	
+	/*
+	 * Indexes the deferred edges that were connected since they were added.
+	 */
+	private void indexConnected()
+	{
+		if( aUnconnected.isEmpty() )
+		{
+			return;
+		}
+		List<Edge> unconnected = new ArrayList<>(aUnconnected);
+		aUnconnected.clear();
+		for( Edge edge : unconnected )
+		{
+			add(edge);
+		}
+	}
+	
+	private void removeFrom(Node pNode, Edge pEdge)
+	{
+		if( pNode == null )
+		{
+			return;
+		}
+		Incidence incidence = aIncidences.get(pNode);
+		if( incidence == null )
+		{
+			return;
+		}
+		incidence.aEdges.removeIf(pElement -> pElement == pEdge);
+		incidence.aOutgoing.removeIf(pElement -> pElement == pEdge);
+		incidence.aIncoming.removeIf(pElement -> pElement == pEdge);
+		List<Edge> ofType = incidence.aOutgoingByType.get(pEdge.getClass());
+		if( ofType != null )
+		{
+			ofType.removeIf(pElement -> pElement == pEdge);
+			if( ofType.isEmpty() )
+			{
+				incidence.aOutgoingByType.remove(pEdge.getClass());
+			}
+		}
+		if( incidence.aEdges.isEmpty() )
+		{
+			aIncidences.remove(pNode);
+		}
+	}
+	
+	/**
+	 * @param pNode The node to query.
+	 * @return The edges that start or end at pNode, in the order in 
+	 * which they were added. Self-edges are only included once.
+	 */
+	List<Edge> getEdges(Node pNode)
+	{
+		indexConnected();
+		Incidence incidence = aIncidences.get(pNode);
+		if( incidence == null )
+		{
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(incidence.aEdges);
+	}
+	
+	/**
+	 * @param pNode The node to query.
+	 * @return The edges that start at pNode, in the order in which they were added.
+	 */
+	List<Edge> getOutgoingEdges(Node pNode)
+	{
+		indexConnected();
+		Incidence incidence = aIncidences.get(pNode);
+		if( incidence == null )
+		{
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(incidence.aOutgoing);
+	}
+	
+	/**
+	 * @param pNode The node to query.
+	 * @return The edges that end at pNode, in the order in which they were added.
+	 */
+	List<Edge> getIncomingEdges(Node pNode)
+	{
+		indexConnected();
+		Incidence incidence = aIncidences.get(pNode);
+		if( incidence == null )
+		{
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(incidence.aIncoming);
+	}
+	
+	/**
+	 * @param pType The exact type of edge to look for.
+	 * @param pStart The start node.
+	 * @param pEnd The end node.
+	 * @return True if there is an edge of type pType from pStart to pEnd.
+	 */
+	boolean existsEdge(Class<?> pType, Node pStart, Node pEnd)
+	{
+		indexConnected();
+		Incidence incidence = aIncidences.get(pStart);
+		if( incidence == null || !incidence.aOutgoingByType.containsKey(pType))
+		{
+			return false;
+		}
+		for( Edge edge : incidence.aOutgoingByType.get(pType))
+		{
+			if( edge.getEnd() == pEnd )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Removes all edges from the index.
+	 */
+	void clear()
+	{
+		aIncidences.clear();
+		aUnconnected.clear();
+	}
+	
+	/*
+	 * The edges connected to a single node.
+	 */
+	private static final class Incidence
+	{
+		private final List<Edge> aEdges = new ArrayList<>();
+		private final List<Edge> aOutgoing = new ArrayList<>();
+		private final List<Edge> aIncoming = new ArrayList<>();
+		private final Map<Class<?>, List<Edge>> aOutgoingByType = new HashMap<>();
+	}
+}
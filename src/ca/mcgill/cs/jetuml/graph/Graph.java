@@ -21,15 +21,24 @@
 
 package ca.mcgill.cs.jetuml.graph;
 
+import java.awt.Color;
 import java.awt.Graphics2D;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import ca.mcgill.cs.jetuml.application.GraphModificationListener;
 import ca.mcgill.cs.jetuml.geom.Point;
 import ca.mcgill.cs.jetuml.geom.Rectangle;
 import ca.mcgill.cs.jetuml.graph.edges.NoteEdge;
+import ca.mcgill.cs.jetuml.graph.nodes.AbstractNode;
 import ca.mcgill.cs.jetuml.graph.nodes.ChildNode;
 import ca.mcgill.cs.jetuml.graph.nodes.NoteNode;
 import ca.mcgill.cs.jetuml.graph.nodes.ParentNode;
@@ -55,12 +64,28 @@ import ca.mcgill.cs.jetuml.views.nodes.AbstractNodeView;
  */
 public abstract class Graph
 {
+	private static final int SELECTION_TOLERANCE = 5; // Selection distance of point nodes and edges
+	
 	protected GraphModificationListener aModificationListener; // Only access from notify* methods and setter
 	protected ArrayList<Node> aRootNodes; // Only nodes without a parent are tracked by the graph.
 	protected ArrayList<Edge> aEdges;
 	protected transient ArrayList<Node> aNodesToBeRemoved;
 	protected transient ArrayList<Edge> aEdgesToBeRemoved;
 	private transient boolean aNeedsLayout;
+	private transient Set<Node> aNodesBeingRemoved = Collections.newSetFromMap(new IdentityHashMap<>()); // Mirrors aNodesToBeRemoved
+	private transient Set<Edge> aEdgesBeingRemoved = Collections.newSetFromMap(new IdentityHashMap<>()); // Mirrors aEdgesToBeRemoved
+	private transient AdjacencyIndex aAdjacency = new AdjacencyIndex(); // Mirrors aEdges
+	private transient Set<Node> aRootNodeSet = Collections.newSetFromMap(new IdentityHashMap<>()); // Mirrors aRootNodes
+	private transient Set<Edge> aEdgeSet = Collections.newSetFromMap(new IdentityHashMap<>()); // Mirrors aEdges
+	private transient SpatialIndex<Node> aNodeIndex = new SpatialIndex<>(); // Only access through nodeIndex()
+	private transient SpatialIndex<Edge> aEdgeIndex = new SpatialIndex<>(); // Only access through edgeIndex()
+	private transient boolean aNodesIndexed = false; // False if aNodeIndex must be rebuilt
+	private transient boolean aEdgesIndexed = false; // False if aEdgeIndex must be rebuilt
+	private transient Set<Node> aMovedRoots = Collections.newSetFromMap(new IdentityHashMap<>()); // Since aNodeIndex was updated
+	private transient Set<Node> aMovedNodes = Collections.newSetFromMap(new IdentityHashMap<>()); // Since aEdgeIndex was updated
+	private transient int aGeometryVersion;
+	private transient Map<Class<?>, Object> aGeometryCaches = new HashMap<>(); // For aGeometryCachesVersion only
+	private transient int aGeometryCachesVersion;
 
 	/**
 	 * Constructs a graph with no nodes or edges.
@@ -221,13 +246,15 @@ public abstract class Graph
 		notifyStartingCompoundOperation();
 		completeEdgeAddition(node1, pEdge, pPoint1, pPoint2);
 		aEdges.add(pEdge);
+		aEdgeSet.add(pEdge);
+		aAdjacency.add(pEdge);
 		notifyEdgeAdded(pEdge);
 		
-		if(!aRootNodes.contains(pEdge.getEnd()) && pEdge.getEnd() instanceof PointNode )
+		if(!aRootNodeSet.contains(pEdge.getEnd()) && pEdge.getEnd() instanceof PointNode )
 		{
-			aRootNodes.add(pEdge.getEnd());
+			addRootNode(pEdge.getEnd());
 		}
-		aNeedsLayout = true;
+		requestLayout();
 		notifyEndingCompoundOperation();
 		return true;
 	}
@@ -252,10 +279,10 @@ public abstract class Graph
 		pNode.translate((int)(pPoint.getX() - bounds.getX()), (int)(pPoint.getY() - bounds.getY())); 
 		if( !(pNode instanceof ChildNode) || ((ChildNode)pNode).getParent() == null )
 		{
-			aRootNodes.add(pNode);
+			addRootNode(pNode);
 		}
 		notifyNodeAdded( pNode );
-		aNeedsLayout = true;
+		requestLayout();
 		return true;
 	}
 	
@@ -272,13 +299,13 @@ public abstract class Graph
 	{	
 		if( !(pNode instanceof ChildNode && ((ChildNode)pNode).getParent() != null) )
 		{	// The node does not have a parent, insert it as a root node
-			aRootNodes.add(pNode);
+			addRootNode(pNode);
 		}
 		else
 		{	// Re-insert the node as a child of its parent
 			((ChildNode)pNode).getParent().addChild((ChildNode)pNode);
 		}
-		aNeedsLayout = true;
+		requestLayout();
 		notifyNodeAdded( pNode );
 	}
 
@@ -290,16 +317,16 @@ public abstract class Graph
       */
 	public Node findNode(Point pPoint)
 	{
-		Node result = null;
-		for( Node node : aRootNodes )
+		List<Node> candidates = nodeIndex().getCandidates(pPoint);
+		for( int i = candidates.size() - 1; i >= 0; i-- )
 		{
-			Node temp = deepFindNode(node, pPoint);
-			if( temp != null )
+			Node result = deepFindNode(candidates.get(i), pPoint);
+			if( result != null )
 			{
-				result = temp;
+				return result;
 			}
 		}
-		return result;
+		return null;
 	}
 	
 	/**
@@ -344,7 +371,7 @@ public abstract class Graph
 	 */
 	public Edge findEdge(Point pPoint)
 	{
-		for(Edge edge : aEdges)
+		for(Edge edge : edgeIndex().getCandidates(pPoint))
 		{
 			if(edge.view().contains(pPoint))
 			{
@@ -354,6 +381,241 @@ public abstract class Graph
 		return null;
 	}
 	
+	/**
+	 * Finds the nodes, at any depth, and the edges whose bounds are 
+	 * entirely inside an area. Only the root nodes and edges whose 
+	 * bounds intersect the area are examined.
+	 * 
+	 * @param pArea The area to search.
+	 * @return The nodes found, each parent before its children, 
+	 * followed by the edges found.
+	 * @pre pArea != null
+	 */
+	public List<GraphElement> findElementsIn(Rectangle pArea)
+	{
+		assert pArea != null;
+		List<GraphElement> result = new ArrayList<>();
+		for( Node node : nodeIndex().getCandidates(pArea) )
+		{
+			findNodesIn(node, pArea, result);
+		}
+		for( Edge edge : edgeIndex().getCandidates(pArea) )
+		{
+			if( pArea.contains(edge.view().getBounds()) )
+			{
+				result.add(edge);
+			}
+		}
+		return result;
+	}
+	
+	private static void findNodesIn(Node pNode, Rectangle pArea, List<GraphElement> pResult)
+	{
+		if( pArea.contains(pNode.view().getBounds()) )
+		{
+			pResult.add(pNode);
+		}
+		if( pNode instanceof ParentNode )
+		{
+			for( Node child : ((ParentNode) pNode).getChildren() )
+			{
+				findNodesIn(child, pArea, pResult);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the area within which a point can select pRootNode
+	 * or one of its descendants through deepFindNode. By default this
+	 * is the union of the bounds of the node and all its descendants, 
+	 * with a tolerance. Diagram types where deepFindNode can select a 
+	 * node outside of this area should override this method.
+	 * 
+	 * @param pRootNode A root node of this graph.
+	 * @return The selection area for pRootNode, or null if there is no
+	 * bound on this area, in which case pRootNode is tested for every point.
+	 */
+	protected Rectangle getSelectionBounds(Node pRootNode)
+	{
+		return withTolerance(subtreeBounds(pRootNode));
+	}
+	
+	private static Rectangle withTolerance(Rectangle pBounds)
+	{
+		return new Rectangle(pBounds.getX() - SELECTION_TOLERANCE, pBounds.getY() - SELECTION_TOLERANCE,
+				pBounds.getWidth() + 2 * SELECTION_TOLERANCE, pBounds.getHeight() + 2 * SELECTION_TOLERANCE);
+	}
+	
+	private static Rectangle subtreeBounds(Node pNode)
+	{
+		Rectangle bounds = pNode.view().getBounds();
+		if( pNode instanceof ParentNode )
+		{
+			for( Node child : ((ParentNode) pNode).getChildren())
+			{
+				bounds = bounds.add(subtreeBounds(child));
+			}
+		}
+		return bounds;
+	}
+	
+	/**
+	 * Returns a number that changes whenever the geometry of the 
+	 * elements of this graph may have changed: when a layout is requested or 
+	 * computed, when elements are added or removed, and when one of its nodes 
+	 * moves. Information derived from the geometry of the graph, such as edge 
+	 * paths, can be cached as long as this number does not change.
+	 * 
+	 * @return The current geometry version of this graph.
+	 */
+	public int getGeometryVersion()
+	{
+		return aGeometryVersion;
+	}
+	
+	/**
+	 * Returns information derived from the geometry of this graph, 
+	 * such as the connection points of its edges. The information is 
+	 * stored with the graph, so that it is discarded along with it, and 
+	 * is only valid for the current geometry version: it is created with 
+	 * pFactory the first time it is requested, and again once the geometry 
+	 * of the graph has changed.
+	 * 
+	 * @param pType The type of the information, which identifies it.
+	 * @param pFactory Creates the information for the current geometry.
+	 * @param <T> The type of the information.
+	 * @return The information of type pType for the current geometry.
+	 * @pre pType != null && pFactory != null
+	 */
+	public <T> T getGeometryCache(Class<T> pType, Supplier<T> pFactory)
+	{
+		assert pType != null && pFactory != null;
+		if( aGeometryCachesVersion != aGeometryVersion )
+		{
+			aGeometryCaches.clear();
+			aGeometryCachesVersion = aGeometryVersion;
+		}
+		Object cache = aGeometryCaches.get(pType);
+		if( cache == null )
+		{
+			cache = pFactory.get();
+			aGeometryCaches.put(pType, cache);
+		}
+		return pType.cast(cache);
+	}
+	
+	/**
+	 * Notifies this graph that pNode changed position. Nodes call this
+	 * method when they, or one of their descendants, move, so that
+	 * the graph only needs to update the information it derived from 
+	 * the position of the node, its descendants, and the edges connected 
+	 * to them.
+	 * 
+	 * @param pNode The node that moved.
+	 * @pre pNode != null
+	 */
+	public void nodeMoved(Node pNode)
+	{
+		assert pNode != null;
+		aGeometryVersion++;
+		if( aNodesIndexed )
+		{
+			aMovedRoots.add(getRoot(pNode));
+		}
+		if( aEdgesIndexed )
+		{
+			aMovedNodes.add(pNode);
+		}
+	}
+	
+	private void geometryChanged()
+	{
+		aGeometryVersion++;
+		aNodesIndexed = false;
+		aEdgesIndexed = false;
+		aMovedRoots.clear();
+		aMovedNodes.clear();
+	}
+	
+	/*
+	 * The spatial indexes are caches, so that consecutive queries on an 
+	 * unchanged graph do not need to test every element. They are rebuilt 
+	 * lazily after structural and layout changes, and updated for the nodes 
+	 * that moved since the last query: the root of each node is indexed again
+	 * with its new selection bounds, as are the edges whose path can change
+	 * when a node moves, the edges connected to the node and to its neighbors.
+	 */
+	private SpatialIndex<Node> nodeIndex()
+	{
+		if( !aNodesIndexed )
+		{
+			aNodeIndex.clear();
+			for( Node node : aRootNodes )
+			{
+				aNodeIndex.add(node, getSelectionBounds(node));
+			}
+			aNodesIndexed = true;
+		}
+		for( Node root : aMovedRoots )
+		{
+			if( aRootNodeSet.contains(root) )
+			{
+				aNodeIndex.update(root, getSelectionBounds(root));
+			}
+		}
+		aMovedRoots.clear();
+		return aNodeIndex;
+	}
+	
+	private SpatialIndex<Edge> edgeIndex()
+	{
+		if( !aEdgesIndexed )
+		{
+			aEdgeIndex.clear();
+			for( Edge edge : aEdges )
+			{
+				aEdgeIndex.add(edge, withTolerance(edge.view().getBounds()));
+			}
+			aEdgesIndexed = true;
+		}
+		if( aMovedNodes.isEmpty() )
+		{
+			return aEdgeIndex;
+		}
+		Set<Edge> edges = Collections.newSetFromMap(new IdentityHashMap<>());
+		for( Node node : aMovedNodes )
+		{
+			for( Edge edge : aAdjacency.getEdges(node) )
+			{
+				edges.add(edge);
+				Node otherNode = edge.getStart() == node ? edge.getEnd() : edge.getStart();
+				if( otherNode != null && otherNode != node )
+				{
+					edges.addAll(aAdjacency.getEdges(otherNode));
+				}
+			}
+		}
+		aMovedNodes.clear();
+		for( Edge edge : edges )
+		{
+			if( aEdgeSet.contains(edge) )
+			{
+				aEdgeIndex.update(edge, withTolerance(edge.view().getBounds()));
+			}
+		}
+		return aEdgeIndex;
+	}
+	
+	private static Node getRoot(Node pNode)
+	{
+		Node root = pNode;
+		while( root instanceof ChildNode && ((ChildNode) root).getParent() != null )
+		{
+			root = ((ChildNode) root).getParent();
+		}
+		return root;
+	}
+	
 	/**
 	 * Removes all edges in the graph that have pNode as a start
 	 * or end node. The edges are removed in an order that is the 
@@ -368,9 +630,9 @@ public abstract class Graph
 	{
 		assert pNode != null;
 		ArrayList<Edge> toRemove = new ArrayList<Edge>();
-		for(Edge edge : aEdges)
+		for(Edge edge : aAdjacency.getEdges(pNode))
 		{
-			if((edge.getStart() == pNode || edge.getEnd() == pNode) && !aEdgesToBeRemoved.contains(edge))
+			if(!isBeingRemoved(edge))
 			{
 				toRemove.add(edge);
 			}
@@ -395,46 +657,98 @@ public abstract class Graph
 	protected boolean existsEdge(Class<?> pType, Node pStart, Node pEnd)
 	{
 		assert pType !=null && pStart != null && pEnd != null;
-		for( Edge edge : getEdges() )
-		{
-			if( edge.getClass() == pType && edge.getStart() == pStart && edge.getEnd() == pEnd )
-			{
-				return true;
-			}
-		}
-		return false;
+		return aAdjacency.existsEdge(pType, pStart, pEnd);
 	}
 
 	/**
-	 * Draws the graph.
+	 * Draws the graph. If the graphics context has a clip, only 
+	 * the elements whose bounds intersect the clip are drawn. Each
+	 * element is drawn starting with the color of the graphics context,
+	 * so that its appearance does not depend on which other elements
+	 * were drawn before it.
 	 * @param pGraphics2D the graphics context
 	 */
 	public void draw(Graphics2D pGraphics2D)
 	{
+		draw(pGraphics2D, pElement -> true);
+	}
+	
+	/**
+	 * Draws the elements of the graph accepted by pFilter, in the
+	 * order in which draw(Graphics2D) draws them. The children of 
+	 * a node that is not accepted are drawn if they are accepted. 
+	 * Drawing the graph once with a filter and once with its negation 
+	 * draws every element, but not in the same order as drawing the 
+	 * graph in one pass.
+	 * 
+	 * @param pGraphics2D the graphics context
+	 * @param pFilter Accepts the elements to draw.
+	 * @pre pGraphics2D != null && pFilter != null
+	 */
+	public void draw(Graphics2D pGraphics2D, Predicate<GraphElement> pFilter)
+	{
+		assert pGraphics2D != null && pFilter != null;
 		layout();
 		
-		for( Node node : aRootNodes )
+		Color color = pGraphics2D.getColor();
+		java.awt.Rectangle clip = pGraphics2D.getClipBounds();
+		if( clip == null )
 		{
-			drawNode(node, pGraphics2D);
+			for( Node node : aRootNodes )
+			{
+				drawNode(node, pGraphics2D, color, null, pFilter);
+			}
+			for( Edge edge : aEdges )
+			{
+				drawEdge(edge, pGraphics2D, color, pFilter);
+			}
+			return;
 		}
 		
-		for( Edge edge : aEdges )
+		Rectangle area = new Rectangle(clip.x, clip.y, clip.width, clip.height);
+		for( Node node : nodeIndex().getCandidates(area) )
+		{
+			drawNode(node, pGraphics2D, color, area, pFilter);
+		}
+		for( Edge edge : edgeIndex().getCandidates(area) )
 		{
-			edge.view().draw(pGraphics2D);
+			drawEdge(edge, pGraphics2D, color, pFilter);
 		}
 	}
 	
-	private void drawNode(Node pNode, Graphics2D pGraphics2D)
+	/*
+	 * Draws pNode and the descendants whose bounds intersect pArea,
+	 * or all its descendants if pArea is null, if they are accepted
+	 * by pFilter.
+	 */
+	private void drawNode(Node pNode, Graphics2D pGraphics2D, Color pColor, Rectangle pArea, 
+			Predicate<GraphElement> pFilter)
 	{
-		pNode.view().draw(pGraphics2D);
+		if( pFilter.test(pNode) )
+		{
+			pNode.view().draw(pGraphics2D);
+			pGraphics2D.setColor(pColor);
+		}
 		if( pNode instanceof ParentNode )
 		{
 			for( Node node : ((ParentNode) pNode).getChildren())
 			{
-				drawNode(node, pGraphics2D);
+				if( pArea == null || withTolerance(subtreeBounds(node)).intersects(pArea))
+				{
+					drawNode(node, pGraphics2D, pColor, pArea, pFilter);
+				}
 			}
 		}
 	}
+	
+	private static void drawEdge(Edge pEdge, Graphics2D pGraphics2D, Color pColor, Predicate<GraphElement> pFilter)
+	{
+		if( pFilter.test(pEdge) )
+		{
+			pEdge.view().draw(pGraphics2D);
+			pGraphics2D.setColor(pColor);
+		}
+	}
 
 	/**
 	 * Removes a node and all edges that start or end with that node.
@@ -442,12 +756,13 @@ public abstract class Graph
 	 */
 	public void removeNode(Node pNode)
 	{
-		if(aNodesToBeRemoved.contains(pNode))
+		if(isBeingRemoved(pNode))
 		{
 			return;
 		}
 		notifyStartingCompoundOperation();
 		aNodesToBeRemoved.add(pNode);
+		aNodesBeingRemoved.add(pNode);
 		
 		if(pNode instanceof ParentNode)
 		{
@@ -459,41 +774,59 @@ public abstract class Graph
 			}
 		}
 
-		// Notify all nodes that pNode is being removed.
-		for(Node node : aRootNodes)
-		{
-			removeFromParent( node, pNode );
-		}
+		removeFromParent(pNode);
 		
 		// Notify all edges that pNode is being removed.
-		for(Edge edge : aEdges)
+		for(Edge edge : getEdges(pNode))
 		{
-			if(edge.getStart() == pNode || edge.getEnd() == pNode)
-			{
-				removeEdge(edge);
-			}
+			removeEdge(edge);
 		}
 		notifyNodeRemoved(pNode);
 		notifyEndingCompoundOperation();
-		aNeedsLayout = true;
+		requestLayout();
 	}
 	
-	private static void removeFromParent(Node pParent, Node pToRemove)
+	/*
+	 * Removes pNode from the children of its parent, if the parent is in
+	 * the graph. The parent of the child is not reassigned to null in case 
+	 * the operation is undone, at which point we'll need to know who the
+	 * parent was.
+	 */
+	private void removeFromParent(Node pNode)
 	{
-		if( pParent instanceof ParentNode )
+		if( pNode instanceof ChildNode )
 		{
-			if( pToRemove instanceof ChildNode && ((ChildNode) pToRemove).getParent() == pParent )
-			{
-				((ParentNode) pParent).getChildren().remove(pToRemove);
-				// We don't reassing the parent of the child to null in case the operation
-				// is undone, at which point we'll need to know who the parent was.
-			}
-			for( Node child : ((ParentNode) pParent).getChildren() )
+			ParentNode parent = ((ChildNode) pNode).getParent();
+			if( parent != null && containsNode(parent) )
 			{
-				removeFromParent(child, pToRemove );
+				parent.getChildren().remove(pNode);
 			}
 		}
 	}
+	
+	/*
+	 * The lists of elements to be removed are protected, so the sets that
+	 * mirror them are rebuilt if the lists were changed directly.
+	 */
+	private boolean isBeingRemoved(Node pNode)
+	{
+		if( aNodesBeingRemoved.size() != aNodesToBeRemoved.size() )
+		{
+			aNodesBeingRemoved.clear();
+			aNodesBeingRemoved.addAll(aNodesToBeRemoved);
+		}
+		return aNodesBeingRemoved.contains(pNode);
+	}
+	
+	private boolean isBeingRemoved(Edge pEdge)
+	{
+		if( aEdgesBeingRemoved.size() != aEdgesToBeRemoved.size() )
+		{
+			aEdgesBeingRemoved.clear();
+			aEdgesBeingRemoved.addAll(aEdgesToBeRemoved);
+		}
+		return aEdgesBeingRemoved.contains(pEdge);
+	}
 
 	/**
 	 * @param pElement The element we want to check is in the graph.
@@ -501,38 +834,46 @@ public abstract class Graph
 	 */
 	public boolean contains( GraphElement pElement )
 	{	
-		if( aEdges.contains( pElement ))
+		if( pElement instanceof Edge )
 		{
-			return true;
-		}
-		for( Node node : aRootNodes )
-		{
-			if( containsNode( node, pElement))
-			{
-				return true;
-			}
+			return aEdgeSet.contains(pElement);
 		}
-		return false;
+		return pElement instanceof Node && containsNode((Node) pElement);
 	}
 	
-	private boolean containsNode(Node pTest, GraphElement pTarget)
+	/*
+	 * A node is in the graph if it is a root node, or if it is a child of 
+	 * a node in the graph. Walking up the parents only visits the ancestors 
+	 * of pNode instead of every tree of the graph. The parent of a child is 
+	 * kept when the child is removed, so it is also checked that the parent 
+	 * still lists the child.
+	 */
+	private boolean containsNode(Node pNode)
 	{
-		if( pTest == pTarget )
+		if( aRootNodeSet.contains(pNode) )
 		{
 			return true;
 		}
-		else if( pTest instanceof ParentNode )
+		if( pNode instanceof ChildNode )
 		{
-			for( Node node : ((ParentNode) pTest).getChildren())
+			ParentNode parent = ((ChildNode) pNode).getParent();
+			if( parent != null && parent.getChildren().contains(pNode) )
 			{
-				if( containsNode(node, pTarget))
-				{
-					return true;
-				}
+				return containsNode(parent);
 			}
 		}
 		return false;
 	}
+	
+	private void addRootNode(Node pNode)
+	{
+		aRootNodes.add(pNode);
+		aRootNodeSet.add(pNode);
+		if( pNode instanceof AbstractNode )
+		{
+			((AbstractNode) pNode).setGraph(this);
+		}
+	}
 
 	/**
 	 * Removes an edge from the graph.
@@ -540,24 +881,14 @@ public abstract class Graph
 	 */
 	public void removeEdge(Edge pEdge)
 	{
-		if (aEdgesToBeRemoved.contains(pEdge))
+		if (isBeingRemoved(pEdge))
 		{
 			return;
 		}
 		aEdgesToBeRemoved.add(pEdge);
+		aEdgesBeingRemoved.add(pEdge);
 		notifyEdgeRemoved(pEdge);
-		for(int i = aRootNodes.size() - 1; i >= 0; i--)
-		{
-			Node n = aRootNodes.get(i);
-			if( n instanceof NoteEdge )
-			{
-				if(pEdge.getStart() == n)
-				{
-					removeNode(pEdge.getEnd());
-				}
-			}
-		}
-		aNeedsLayout = true;
+		requestLayout();
 	}
 
 	/**
@@ -566,6 +897,20 @@ public abstract class Graph
 	public void requestLayout()
 	{
 		aNeedsLayout = true;
+		geometryChanged();
+	}
+	
+	/**
+	 * Indicates whether moving a node can only change the geometry of 
+	 * the node, its descendants, and the edges connected to them or 
+	 * to their neighbors. Diagram types whose layout can reposition other 
+	 * elements when a node moves should override this method to return false.
+	 * 
+	 * @return True if the effect of moving a node is local.
+	 */
+	public boolean hasLocalLayout()
+	{
+		return true;
 	}
 
 	/**
@@ -579,25 +924,39 @@ public abstract class Graph
 		{
 			return;
 		}
-		aRootNodes.removeAll(aNodesToBeRemoved);
-		aEdges.removeAll(aEdgesToBeRemoved);
+		for( Node node : aNodesToBeRemoved )
+		{
+			aRootNodeSet.remove(node);
+		}
+		aRootNodes.removeIf(pNode -> !aRootNodeSet.contains(pNode));
+		for( Edge edge : aEdgesToBeRemoved )
+		{
+			aAdjacency.remove(edge);
+			aEdgeSet.remove(edge);
+		}
+		aEdges.removeIf(pEdge -> !aEdgeSet.contains(pEdge));
 		aNodesToBeRemoved.clear();
 		aEdgesToBeRemoved.clear();
+		aNodesBeingRemoved.clear();
+		aEdgesBeingRemoved.clear();
 
 		for(Node node : aRootNodes)
 		{
 			node.view().layout(this);
 		}
 		aNeedsLayout = false;
+		geometryChanged();
 	}
 
 	/**
-	 * Gets the smallest rectangle enclosing the graph.
+	 * Gets the smallest rectangle enclosing the graph, once it
+	 * is laid out.
 	 * 
 	 * @return the bounding rectangle
 	 */
 	public Rectangle getBounds()
 	{
+		layout();
 		Rectangle bounds = null;
 		for(Node node : aRootNodes )
 		{
@@ -659,15 +1018,31 @@ public abstract class Graph
 	public Collection<Edge> getEdges(Node pNode)
 	{
 		assert pNode != null;
-		Collection<Edge> lReturn = new ArrayList<>();
-		for( Edge edge : aEdges )
-		{
-			if( edge.getStart() == pNode || edge.getEnd() == pNode )
-			{
-				lReturn.add(edge);
-			}
-		}
-		return lReturn;
+		return new ArrayList<>(aAdjacency.getEdges(pNode));
+	}
+	
+	/**
+	 * @param pNode the node to test for
+	 * @return All the edges that start at pNode, in the order
+	 * in which they were added to the graph.
+	 * pNode not null
+	 */
+	public Collection<Edge> getOutgoingEdges(Node pNode)
+	{
+		assert pNode != null;
+		return new ArrayList<>(aAdjacency.getOutgoingEdges(pNode));
+	}
+	
+	/**
+	 * @param pNode the node to test for
+	 * @return All the edges that end at pNode, in the order
+	 * in which they were added to the graph.
+	 * pNode not null
+	 */
+	public Collection<Edge> getIncomingEdges(Node pNode)
+	{
+		assert pNode != null;
+		return new ArrayList<>(aAdjacency.getIncomingEdges(pNode));
 	}
 
 	/**
@@ -682,7 +1057,8 @@ public abstract class Graph
 	 */
 	public void restoreRootNode(Node pNode)
 	{
-		aRootNodes.add(pNode); 
+		addRootNode(pNode);
+		geometryChanged();
 	}
 	
 	/**
@@ -694,6 +1070,9 @@ public abstract class Graph
 	public void insertEdge(Edge pEdge)
 	{
 		aEdges.add(pEdge);
+		aEdgeSet.add(pEdge);
+		aAdjacency.add(pEdge);
+		geometryChanged();
 		notifyEdgeAdded(pEdge);
 	}
 	
@@ -712,6 +1091,9 @@ public abstract class Graph
 	{
 		pEdge.connect(pStart, pEnd, this);
 		aEdges.add(pEdge);
+		aEdgeSet.add(pEdge);
+		aAdjacency.add(pEdge);
+		geometryChanged();
 	}
 
 	/**
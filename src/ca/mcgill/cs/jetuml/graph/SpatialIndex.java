@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+
+package ca.mcgill.cs.jetuml.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.mcgill.cs.jetuml.geom.Point;
+import ca.mcgill.cs.jetuml.geom.Rectangle;
+
+/**
+ * A uniform grid over the bounds of graph elements, used to
+ * quickly obtain the elements that could contain a point or 
+ * intersect an area.
+ *
+ * Each element is stored with the order in which it was
+ * added, and queries return candidates in that order, so that
+ * clients can preserve the "last one wins" semantics of the
+ * element lists kept by the graph. Elements added with null
+ * bounds are considered to potentially cover every point and
+ * are returned by every query.
+ *
+ * The index does not compute bounds itself: it is the
+ * responsibility of the client to remove or re-add elements
+ * whose bounds change.
+ *
+ * @param <T> The type of elements indexed.
+ */
+class SpatialIndex<T>
+{
+	private static final int CELL_SIZE = 128;
+	private static final Comparator<Entry<?>> BY_ORDER = (pEntry1, pEntry2) -> Long.compare(pEntry1.aOrder, pEntry2.aOrder);
+
+	private final Map<Long, List<Entry<T>>> aCells = new HashMap<>();
+	private final Map<T, Entry<T>> aEntries = new IdentityHashMap<>();
+	private final List<Entry<T>> aUnbounded = new ArrayList<>();
+	private long aNextOrder = 0;
+
+	/**
+	 * Adds pElement to the index. If the element is already
+	 * in the index, it is first removed, and the element then
+	 * ranks after all elements currently in the index.
+	 *
+	 * @param pElement The element to add.
+	 * @param pBounds The area covered by the element, or null if it is not bounded.
+	 * @pre pElement != null
+	 */
+	void add(T pElement, Rectangle pBounds)
+	{
+		assert pElement != null;
+		remove(pElement);
+		insert(new Entry<>(pElement, pBounds, aNextOrder++));
+	}
+	
+	private void insert(Entry<T> pEntry)
+	{
+		aEntries.put(pEntry.aElement, pEntry);
+		if( pEntry.aBounds == null )
+		{
+			aUnbounded.add(pEntry);
+			return;
+		}
+		for( int x = cell(pEntry.aBounds.getX()); x <= cell(pEntry.aBounds.getMaxX()); x++ )
+		{
+			for( int y = cell(pEntry.aBounds.getY()); y <= cell(pEntry.aBounds.getMaxY()); y++ )
+			{
+				aCells.computeIfAbsent(key(x, y), pKey -> new ArrayList<>()).add(pEntry);
+			}
+		}
+	}
+
+	/**
+	 * Changes the area covered by pElement without changing its
+	 * rank among the elements of the index. If the element is not 
+	 * in the index, it is added.
+	 *
+	 * @param pElement The element to update.
+	 * @param pBounds The area now covered by the element, or null if it is not bounded.
+	 * @pre pElement != null
+	 */
+	void update(T pElement, Rectangle pBounds)
+	{
+		assert pElement != null;
+		Entry<T> entry = aEntries.get(pElement);
+		if( entry == null )
+		{
+			add(pElement, pBounds);
+			return;
+		}
+		remove(pElement);
+		insert(new Entry<>(pElement, pBounds, entry.aOrder));
+	}
+
+	/**
+	 * Removes pElement from the index. Does nothing if the
+	 * element is not in the index.
+	 *
+	 * @param pElement The element to remove.
+	 */
+	void remove(T pElement)
+	{
+		Entry<T> entry = aEntries.remove(pElement);
+		if( entry == null )
+		{
+			return;
+		}
+		if( entry.aBounds == null )
+		{
+			aUnbounded.remove(entry);
+			return;
+		}
+		for( int x = cell(entry.aBounds.getX()); x <= cell(entry.aBounds.getMaxX()); x++ )
+		{
+			for( int y = cell(entry.aBounds.getY()); y <= cell(entry.aBounds.getMaxY()); y++ )
+			{
+				List<Entry<T>> cell = aCells.get(key(x, y));
+				cell.remove(entry);
+				if( cell.isEmpty() )
+				{
+					aCells.remove(key(x, y));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all elements from the index.
+	 */
+	void clear()
+	{
+		aCells.clear();
+		aEntries.clear();
+		aUnbounded.clear();
+		aNextOrder = 0;
+	}
+
+	/**
+	 * @return The number of elements in the index.
+	 */
+	int size()
+	{
+		return aEntries.size();
+	}
+
+	/**
+	 * @param pPoint The point to test.
+	 * @return The elements whose bounds contain pPoint, in the order
+	 * in which they were added to the index.
+	 */
+	List<T> getCandidates(Point pPoint)
+	{
+		List<Entry<T>> entries = new ArrayList<>(aUnbounded);
+		List<Entry<T>> cell = aCells.get(key(cell(pPoint.getX()), cell(pPoint.getY())));
+		if( cell != null )
+		{
+			for( Entry<T> entry : cell )
+			{
+				if( entry.aBounds.contains(pPoint))
+				{
+					entries.add(entry);
+				}
+			}
+		}
+		return toElements(entries);
+	}
+
+	/**
+	 * @param pArea The area to test.
+	 * @return The elements whose bounds intersect pArea, in the order
+	 * in which they were added to the index.
+	 */
+	List<T> getCandidates(Rectangle pArea)
+	{
+		List<Entry<T>> entries = new ArrayList<>(aUnbounded);
+		long cells = (long)(cell(pArea.getMaxX()) - cell(pArea.getX()) + 1) * (cell(pArea.getMaxY()) - cell(pArea.getY()) + 1);
+		if( cells > aEntries.size() )
+		{
+			// The area covers more cells than there are elements
+			for( Entry<T> entry : aEntries.values() )
+			{
+				if( entry.aBounds != null && entry.aBounds.intersects(pArea))
+				{
+					entries.add(entry);
+				}
+			}
+			return toElements(entries);
+		}
+		Set<Entry<T>> found = Collections.newSetFromMap(new IdentityHashMap<>());
+		for( int x = cell(pArea.getX()); x <= cell(pArea.getMaxX()); x++ )
+		{
+			for( int y = cell(pArea.getY()); y <= cell(pArea.getMaxY()); y++ )
+			{
+				List<Entry<T>> cell = aCells.get(key(x, y));
+				if( cell == null )
+				{
+					continue;
+				}
+				for( Entry<T> entry : cell )
+				{
+					if( entry.aBounds.intersects(pArea) && found.add(entry))
+					{
+						entries.add(entry);
+					}
+				}
+			}
+		}
+		return toElements(entries);
+	}
+
+	private List<T> toElements(List<Entry<T>> pEntries)
+	{
+		pEntries.sort(BY_ORDER);
+		List<T> result = new ArrayList<>(pEntries.size());
+		for( Entry<T> entry : pEntries )
+		{
+			result.add(entry.aElement);
+		}
+		return result;
+	}
+
+	private static int cell(int pCoordinate)
+	{
+		return Math.floorDiv(pCoordinate, CELL_SIZE);
+	}
+
+	private static Long key(int pCellX, int pCellY)
+	{
+		return ((long)pCellX << Integer.SIZE) | (pCellY & 0xFFFFFFFFL);
+	}
+
+	/*
+	 * An indexed element, with the bounds it was indexed with
+	 * and its rank among the elements of the index.
+	 */
+	private static final class Entry<T>
+	{
+		private final T aElement;
+		private final Rectangle aBounds;
+		private final long aOrder;
+
+		Entry(T pElement, Rectangle pBounds, long pOrder)
+		{
+			aElement = pElement;
+			aBounds = pBounds;
+			aOrder = pOrder;
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package ca.mcgill.cs.jetuml.graph.nodes;
 
 import ca.mcgill.cs.jetuml.geom.Point;
+import ca.mcgill.cs.jetuml.graph.Graph;
 import ca.mcgill.cs.jetuml.graph.Node;
 import ca.mcgill.cs.jetuml.graph.ValueExtractor;
 import ca.mcgill.cs.jetuml.graph.ValueExtractor.Type;
@@ -17,6 +18,7 @@ public abstract class AbstractNode implements Node
 {
 	private NodeView aView;
 	private Point aPosition = new Point(0, 0);
+	private Graph aGraph; // The graph notified when this node moves, if it is a root node
 	
 	/**
 	 * Calls an abstract delegate to generate the view for this node
@@ -27,10 +29,42 @@ public abstract class AbstractNode implements Node
 		aView = generateView();
 	}
 	
+	/**
+	 * Sets the graph to notify when this node or one of its
+	 * descendants changes position. Graphs call this method when 
+	 * the node becomes one of their root nodes.
+	 * 
+	 * @param pGraph The graph that contains this node as a root node.
+	 */
+	public void setGraph(Graph pGraph)
+	{
+		aGraph = pGraph;
+	}
+	
+	/*
+	 * Notifies the graph of the root of this node that this node moved.
+	 */
+	private void notifyMoved()
+	{
+		Node root = this;
+		while( root instanceof ChildNode && ((ChildNode) root).getParent() != null )
+		{
+			root = ((ChildNode) root).getParent();
+		}
+		if( root instanceof AbstractNode && ((AbstractNode) root).aGraph != null )
+		{
+			((AbstractNode) root).aGraph.nodeMoved(this);
+		}
+	}
+	
 	@Override
 	public void translate(int pDeltaX, int pDeltaY)
 	{
-		aPosition = new Point( aPosition.getX() + pDeltaX, aPosition.getY() + pDeltaY );
+		if( pDeltaX != 0 || pDeltaY != 0 )
+		{
+			aPosition = new Point( aPosition.getX() + pDeltaX, aPosition.getY() + pDeltaY );
+			notifyMoved();
+		}
 	}
 	
 	/**
@@ -57,7 +91,12 @@ public abstract class AbstractNode implements Node
 	@Override
 	public void moveTo(Point pPoint)
 	{
+		boolean moved = !pPoint.equals(aPosition);
 		aPosition = pPoint;
+		if( moved )
+		{
+			notifyMoved();
+		}
 	}
 
 	@Override
@@ -67,6 +106,7 @@ public abstract class AbstractNode implements Node
 		{
 			AbstractNode clone = (AbstractNode) super.clone();
 			clone.aView = clone.generateView();
+			clone.aGraph = null;
 			return clone;
 		}
 		catch (CloneNotSupportedException e)
@@ -94,5 +134,6 @@ public abstract class AbstractNode implements Node
 	public void initialize(ValueExtractor pExtractor)
 	{
 		aPosition = new Point((int)pExtractor.get("x", Type.INT), (int) pExtractor.get("y", Type.INT));
+		notifyMoved();
 	}
 }
@@ -21,10 +21,8 @@
 
 package ca.mcgill.cs.jetuml.gui;
 
-import java.awt.Color;
 import java.awt.Container;
 import java.awt.Dimension;
-import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Toolkit;
 import java.awt.datatransfer.DataFlavor;
@@ -34,7 +32,6 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyVetoException;
 import java.io.BufferedReader;
@@ -43,12 +40,23 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.prefs.Preferences;
 
 import javax.imageio.ImageIO;
@@ -64,6 +72,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.MenuEvent;
@@ -72,14 +81,15 @@ import javax.swing.filechooser.FileFilter;
 import javax.swing.plaf.basic.BasicInternalFrameUI;
 
 import ca.mcgill.cs.jetuml.UMLEditor;
+import ca.mcgill.cs.jetuml.application.DiagramRenderer;
 import ca.mcgill.cs.jetuml.application.ExtensionFilter;
 import ca.mcgill.cs.jetuml.application.RecentFilesQueue;
 import ca.mcgill.cs.jetuml.diagrams.ClassDiagramGraph;
 import ca.mcgill.cs.jetuml.diagrams.ObjectDiagramGraph;
 import ca.mcgill.cs.jetuml.diagrams.StateDiagramGraph;
 import ca.mcgill.cs.jetuml.diagrams.UseCaseDiagramGraph;
-import ca.mcgill.cs.jetuml.geom.Rectangle;
 import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.persistence.CommandJournal;
 import ca.mcgill.cs.jetuml.persistence.DeserializationException;
 import ca.mcgill.cs.jetuml.persistence.PersistenceService;
 
@@ -96,7 +106,6 @@ public class EditorFrame extends JFrame
 	private static final int ESTIMATED_FRAMES = 5;
 	private static final int MAX_RECENT_FILES = 8;
 	private static final int MARGIN_SCREEN = 8; // Fraction of the screen to leave around the sides
-	private static final int MARGIN_IMAGE = 2; // Number of pixels to leave around the graph when exporting it as an image
 	private static final int HELP_MENU_TEXT_WIDTH = 10; //Number of pixels to give to the width of the  text area of the Help Menu.
 	private static final int HELP_MENU_TEXT_HEIGHT = 40; //Number of pixels to give to the height of the text area of the Help Menu.
 	
@@ -115,6 +124,19 @@ public class EditorFrame extends JFrame
 	
 	// Menus or menu items that must be disabled if there is no current diagram.
 	private final List<JMenuItem> aDiagramRelevantMenus = new ArrayList<>();
+	
+	// Saves graphs one at a time, in the order in which they are requested, so
+	// that an older version of a diagram cannot replace a newer one.
+	private final ExecutorService aSaveExecutor = Executors.newSingleThreadExecutor(pTask -> 
+	{
+		Thread thread = new Thread(pTask, "Save");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	// The last save requested for each frame, which completes with true if the save succeeds.
+	// Since the saves run in order, a frame is saved once its last save succeeds.
+	private final Map<GraphFrame, Future<Boolean>> aLastSaves = new HashMap<>();
 
 	/**
 	 * Constructs a blank frame with a desktop pane
@@ -489,8 +511,17 @@ public class EditorFrame extends JFrame
 		try
 		{	              
 			Graph graph = PersistenceService.read(new File(pName));
+			CommandJournal journal = openJournal(graph, new File(pName));
 			GraphFrame frame = new GraphFrame(graph, aTabbedPane);
 			frame.setFile(new File(pName).getAbsoluteFile());    
+			if( journal != null )
+			{
+				frame.setJournal(journal);
+				if( journal.getRecoveredCount() > 0 )
+				{
+					frame.getGraphPanel().setModified(true);
+				}
+			}
 			addRecentFile(new File(pName).getPath());
 			addTab(frame);
 		}
@@ -500,6 +531,24 @@ public class EditorFrame extends JFrame
     			  aEditorResources.getString("file.open.text"), JOptionPane.ERROR_MESSAGE);
 		}      
 	}   
+	
+	/*
+	 * Replays on pGraph the commands that were not saved to pFile 
+	 * before the editor stopped, if any. Returns the journal that records
+	 * the next commands, or null if it cannot be written, in which case 
+	 * the graph can still be edited.
+	 */
+	private static CommandJournal openJournal(Graph pGraph, File pFile)
+	{
+		try
+		{
+			return CommandJournal.open(pGraph, pFile);
+		}
+		catch(IOException exception)
+		{
+			return null;
+		}
+	}
 
 	/*
      * Adds an InternalFrame to the list of Tabs.
@@ -618,6 +667,12 @@ public class EditorFrame extends JFrame
             return;
         }
         JTabbedPane tp = aTabbedPane;
+        if(pInternalFrame instanceof GraphFrame && ((GraphFrame) pInternalFrame).getJournal() != null)
+        {
+        	// The unsaved changes are abandoned
+        	((GraphFrame) pInternalFrame).getJournal().discard();
+        }
+        aLastSaves.remove(pInternalFrame);
         int pos = aTabs.indexOf(pInternalFrame);
         tp.remove(pos);
         aTabs.remove(pInternalFrame);
@@ -753,7 +808,7 @@ public class EditorFrame extends JFrame
    			return;
    		}
    		GraphFrame frame = (GraphFrame) aTabbedPane.getSelectedComponent();
-   		final BufferedImage image = getImage(frame.getGraph());
+   		final BufferedImage image = DiagramRenderer.createImage(frame.getGraph());
         Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new Transferable()
 		{
 			@Override
@@ -863,15 +918,52 @@ public class EditorFrame extends JFrame
    			saveAs(); 
    			return; 
    		}
-   		try
+   		saveInBackground(frame, file);
+   	}
+   	
+   	/*
+   	 * Saves a snapshot of the graph of pFrame on the save thread, so that 
+   	 * the graph can be edited while it is encoded and written. The graph is 
+   	 * considered saved as of the snapshot, unless the save fails. The journal
+   	 * of the frame keeps the commands applied after the snapshot. Until the 
+   	 * save completes, exit() considers the graph as modified.
+   	 */
+   	private void saveInBackground(GraphFrame pFrame, File pFile)
+   	{
+   		if( pFrame.getJournal() == null )
    		{
-   			PersistenceService.save(frame.getGraph(), file);
-   			frame.getGraphPanel().setModified(false);
-   		}        
-   		catch(Exception exception)
+   			pFrame.setJournal(new CommandJournal(pFrame.getGraph()));
+   		}
+   		CommandJournal journal = pFrame.getJournal();
+   		journal.checkpoint();
+   		Graph snapshot = PersistenceService.snapshot(pFrame.getGraph());
+   		pFrame.getGraphPanel().setModified(false);
+   		pFrame.saveStarted();
+   		aLastSaves.put(pFrame, aSaveExecutor.submit(() -> 
    		{
-   			JOptionPane.showInternalMessageDialog(aTabbedPane, exception);
-   		}        
+   			Exception failure = null;
+   			try
+   			{
+   				PersistenceService.save(snapshot, pFile);
+   				journal.saved(pFile);
+   			}
+   			catch(Exception exception)
+   			{
+   				journal.saveFailed();
+   				failure = exception;
+   			}
+   			Exception result = failure;
+   			SwingUtilities.invokeLater(() -> 
+   			{
+   				pFrame.saveEnded();
+   				if( result != null )
+   				{
+   					pFrame.getGraphPanel().setModified(true);
+   					JOptionPane.showInternalMessageDialog(aTabbedPane, result);
+   				}
+   			});
+   			return result == null;
+   		}));
    	}
    
    	/**
@@ -885,38 +977,36 @@ public class EditorFrame extends JFrame
    		}
    		GraphFrame frame = (GraphFrame) aTabbedPane.getSelectedComponent();
    		Graph graph = frame.getGraph();    
-   		try
-   		{
-   			File result = null;
-   			
+   		File result = null;
+   		
    	   		JFileChooser fileChooser = new JFileChooser();
-   			fileChooser.setFileFilter(new ExtensionFilter(graph.getDescription(), 
-					graph.getFileExtension() + aAppResources.getString("files.extension")));
-   			fileChooser.setCurrentDirectory(new File("."));
-   			
-   			if(frame.getFileName() != null)
-   			{           
-   				fileChooser.setSelectedFile(frame.getFileName());
+   		fileChooser.setFileFilter(new ExtensionFilter(graph.getDescription(), 
+				graph.getFileExtension() + aAppResources.getString("files.extension")));
+   		fileChooser.setCurrentDirectory(new File("."));
+   		
+   		if(frame.getFileName() != null)
+   		{           
+   			fileChooser.setSelectedFile(frame.getFileName());
+   		}
+   		else 
+   		{
+   			fileChooser.setSelectedFile(new File(""));
+   		}
+   		int response = fileChooser.showSaveDialog(this);         
+   		if(response == JFileChooser.APPROVE_OPTION)
+   		{
+   			File f = fileChooser.getSelectedFile();
+   			if( !fileChooser.getFileFilter().accept(f))
+   			{
+   				f = new File(f.getPath() + graph.getFileExtension() + aAppResources.getString("files.extension"));
    			}
-   			else 
+
+   			if(!f.exists()) 
    			{
-   				fileChooser.setSelectedFile(new File(""));
+   				result = f;
    			}
-   			int response = fileChooser.showSaveDialog(this);         
-   			if(response == JFileChooser.APPROVE_OPTION)
+   			else
    			{
-   				File f = fileChooser.getSelectedFile();
-   				if( !fileChooser.getFileFilter().accept(f))
-   				{
-   					f = new File(f.getPath() + graph.getFileExtension() + aAppResources.getString("files.extension"));
-   				}
-
-   				if(!f.exists()) 
-   				{
-   					result = f;
-   				}
-   				else
-   				{
    	        		ResourceBundle editorResources = ResourceBundle.getBundle("ca.mcgill.cs.jetuml.gui.EditorStrings");
    	        		int theresult = JOptionPane.showConfirmDialog(this, editorResources.getString("dialog.overwrite"), 
    	        				null, JOptionPane.YES_NO_OPTION);
@@ -924,21 +1014,15 @@ public class EditorFrame extends JFrame
    	        		{
    	        			result = f;
    	        		}
-   				}
-   			}
-   			
-   			if(result != null)
-   			{
-   				PersistenceService.save(graph, result);
-   				addRecentFile(result.getAbsolutePath());
-   				frame.setFile(result);
-   				aTabbedPane.setTitleAt(aTabbedPane.getSelectedIndex(), frame.getFileName().getName());
-   				frame.getGraphPanel().setModified(false);
    			}
    		}
-   		catch(IOException exception)
+   		
+   		if(result != null)
    		{
-   			JOptionPane.showInternalMessageDialog(aTabbedPane, exception);
+   			addRecentFile(result.getAbsolutePath());
+   			frame.setFile(result);
+   			aTabbedPane.setTitleAt(aTabbedPane.getSelectedIndex(), frame.getFileName().getName());
+   			saveInBackground(frame, result);
    		}
    	}
 
@@ -984,7 +1068,8 @@ public class EditorFrame extends JFrame
    		// Validate the file format
    		String fileName = file.getPath();
 		String format  = fileName.substring(fileName.lastIndexOf(".") + 1);
-		if(!ImageIO.getImageWritersByFormatName(format).hasNext())
+		boolean svg = format.equalsIgnoreCase(DiagramRenderer.SVG_FORMAT);
+		if(!svg && !ImageIO.getImageWritersByFormatName(format).hasNext())
 		{
 			JOptionPane.showInternalMessageDialog(aTabbedPane, aEditorResources.getString("error.unsupported_image"),
 					aEditorResources.getString("error.unsupported_image.title"), JOptionPane.ERROR_MESSAGE);
@@ -995,7 +1080,15 @@ public class EditorFrame extends JFrame
    		
    		try( OutputStream out = new FileOutputStream(file))
    		{
-   			ImageIO.write(getImage(frame.getGraph()), format, out);
+   			if( svg )
+   			{
+   				Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+   				DiagramRenderer.writeSvg(frame.getGraph(), writer);
+   			}
+   			else
+   			{
+   				DiagramRenderer.write(frame.getGraph(), format, out);
+   			}
    		}
    		catch(IOException exception)
    		{
@@ -1011,6 +1104,7 @@ public class EditorFrame extends JFrame
    		{
    			formats.add(name.toLowerCase());
    		}
+   		formats.add(DiagramRenderer.SVG_FORMAT);
    		String[] lReturn = formats.toArray(new String[formats.size()]);
    		Arrays.sort(lReturn);
    		return lReturn;
@@ -1108,29 +1202,6 @@ public class EditorFrame extends JFrame
    	}
 
    
-   	/*
-     * Return the image corresponding to the graph.
-     * 
-     * @param pGraph The graph to convert to an image.
-     * @return bufferedImage. To convert it into an image, use the syntax :
-     *         Toolkit.getDefaultToolkit().createImage(bufferedImage.getSource());
-     */
-    private static BufferedImage getImage(Graph pGraph)
-    {
-        Rectangle bounds = pGraph.getBounds();
-        BufferedImage image = new BufferedImage((int) (bounds.getWidth() + MARGIN_IMAGE*2), 
-        		(int) (bounds.getHeight() + MARGIN_IMAGE*2), BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2 = (Graphics2D) image.getGraphics();
-        g2.translate(-bounds.getX(), -bounds.getY());
-        g2.setColor(Color.WHITE);
-        g2.fill(new Rectangle2D.Double(bounds.getX(), bounds.getY(), bounds.getWidth() + MARGIN_IMAGE*2, bounds.getHeight() + MARGIN_IMAGE*2));
-        g2.translate(MARGIN_IMAGE, MARGIN_IMAGE);
-        g2.setColor(Color.BLACK);
-        g2.setBackground(Color.WHITE);
-        pGraph.draw(g2);
-        return image;
-    }
-    
    	/**
      * Displays the About dialog box.
    	 */
@@ -1156,13 +1227,16 @@ public class EditorFrame extends JFrame
    	 */
    	public void exit()
    	{
+   		// Let the saves in progress complete first, so that the graphs 
+   		// whose save fails or does not complete count as modified
+   		long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
    		int modcount = 0;
    		for(int i = 0; i < aTabs.size(); i++)
    		{
    			if(aTabs.get(i) instanceof GraphFrame)
    			{	
 				GraphFrame frame = (GraphFrame) aTabs.get(i);
-				if(frame.getGraphPanel().isModified()) 
+				if(!isSaved(aLastSaves.get(frame), deadline) || frame.getGraphPanel().isModified()) 
 				{
 					modcount++;
 				}
@@ -1181,6 +1255,39 @@ public class EditorFrame extends JFrame
    			}
    		}
    		Preferences.userNodeForPackage(UMLEditor.class).put("recent", aRecentFiles.serialize());
+   		for(JInternalFrame tab : aTabs)
+   		{
+   			if(tab instanceof GraphFrame && ((GraphFrame) tab).getJournal() != null)
+   			{
+   				((GraphFrame) tab).getJournal().discard();
+   				((GraphFrame) tab).getJournal().flush();
+   			}
+   		}
    		System.exit(0);
    	}
+   	
+   	/*
+   	 * Waits until pSave completes or until pDeadline, in milliseconds.
+   	 * Returns true if there is no save or if the save succeeded.
+   	 */
+   	private static boolean isSaved(Future<Boolean> pSave, long pDeadline)
+   	{
+   		if( pSave == null )
+   		{
+   			return true;
+   		}
+   		try
+   		{
+   			return pSave.get(Math.max(0, pDeadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+   		}
+   		catch(InterruptedException exception)
+   		{
+   			Thread.currentThread().interrupt();
+   			return false;
+   		}
+   		catch(ExecutionException | TimeoutException exception)
+   		{
+   			return false;
+   		}
+   	}
 }
@@ -24,12 +24,15 @@ package ca.mcgill.cs.jetuml.gui;
 import java.awt.BorderLayout;
 import java.awt.Container;
 import java.io.File;
+import java.text.MessageFormat;
+import java.util.ResourceBundle;
 
 import javax.swing.JInternalFrame;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 
 import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.persistence.CommandJournal;
 
 /**
  *A frame for showing a graphical editor.
@@ -37,9 +40,14 @@ import ca.mcgill.cs.jetuml.graph.Graph;
 @SuppressWarnings("serial")
 public class GraphFrame extends JInternalFrame
 {
+	private static final ResourceBundle RESOURCES = ResourceBundle.getBundle("ca.mcgill.cs.jetuml.gui.EditorStrings");
+	
 	private JTabbedPane aTabbedPane;
 	private GraphPanel aPanel;
 	private File aFile; // The file associated with this graph
+	private boolean aModified;
+	private int aSaves; // The number of saves of this graph in progress
+	private CommandJournal aJournal; // The journal of the commands since the last save, if any
 	
 	/**
      * Constructs a graph frame with an empty tool bar.
@@ -93,21 +101,46 @@ public class GraphFrame extends JInternalFrame
 	 * appends an asterisk to the frame title.
 	 */
 	public void setTitle(boolean pModified)
+	{
+		aModified = pModified;
+		updateTitle();
+	}
+	
+	/**
+	 * Indicates that a save of the graph has started, which
+	 * is shown in the title until the save ends.
+	 */
+	public void saveStarted()
+	{
+		aSaves++;
+		updateTitle();
+	}
+	
+	/**
+	 * Indicates that a save of the graph has ended, 
+	 * successfully or not.
+	 */
+	public void saveEnded()
+	{
+		assert aSaves > 0;
+		aSaves--;
+		updateTitle();
+	}
+	
+	private void updateTitle()
 	{
 		if(aFile != null)
 		{
 			String title = aFile.getName();
-			if(pModified)
+			if(aModified)
 			{
-				if(!getTitle().endsWith("*"))
-				{
-					setTitle(title + "*");
-				}
+				title += "*";
 			}
-			else
+			if(aSaves > 0)
 			{
-				setTitle(title);
+				title = MessageFormat.format(RESOURCES.getString("frame.saving"), title);
 			}
+			setTitle(title);
 		}
 	}
 
@@ -127,6 +160,25 @@ public class GraphFrame extends JInternalFrame
 	public void setFile(File pFile)
 	{
 		aFile = pFile;
-		setTitle(aFile.getName());
+		updateTitle();
+	}
+	
+	/**
+	 * @return The journal of the commands applied to the graph, 
+	 * or null if there is none.
+	 */
+	public CommandJournal getJournal()
+	{
+		return aJournal;
+	}
+	
+	/**
+	 * Sets the journal that records the commands applied to the graph.
+	 * @param pJournal The journal.
+	 */
+	public void setJournal(CommandJournal pJournal)
+	{
+		aJournal = pJournal;
+		aPanel.setJournal(pJournal);
 	}
 }	        
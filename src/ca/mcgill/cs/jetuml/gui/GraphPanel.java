@@ -33,7 +33,10 @@ import java.awt.event.MouseMotionAdapter;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.Stack;
@@ -44,6 +47,7 @@ import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 import ca.mcgill.cs.jetuml.application.Clipboard;
+import ca.mcgill.cs.jetuml.application.DirtyRegion;
 import ca.mcgill.cs.jetuml.application.GraphModificationListener;
 import ca.mcgill.cs.jetuml.application.MoveTracker;
 import ca.mcgill.cs.jetuml.application.PropertyChangeTracker;
@@ -67,6 +71,7 @@ import ca.mcgill.cs.jetuml.graph.nodes.ImplicitParameterNode;
 import ca.mcgill.cs.jetuml.graph.nodes.ObjectNode;
 import ca.mcgill.cs.jetuml.graph.nodes.PackageNode;
 import ca.mcgill.cs.jetuml.graph.nodes.ParentNode;
+import ca.mcgill.cs.jetuml.persistence.CommandJournal;
 import ca.mcgill.cs.jetuml.views.Grid;
 
 /**
@@ -95,6 +100,9 @@ public class GraphPanel extends JPanel
 	private UndoManager aUndoManager = new UndoManager();
 	private final MoveTracker aMoveTracker = new MoveTracker();
 	private final PropertyChangeTracker aPropertyChangeTracker = new PropertyChangeTracker();
+	private final DirtyRegion aDirtyRegion = new DirtyRegion();
+	private final StaticLayer aStaticLayer = new StaticLayer(); // Retained while a selection is dragged
+	private Set<GraphElement> aLassoElements = Collections.newSetFromMap(new IdentityHashMap<>()); // Inside the lasso at the last drag
 	
 	/**
 	 * Constructs the panel, assigns the graph to it, and registers
@@ -273,7 +281,8 @@ public class GraphPanel extends JPanel
 	{
 		aUndoManager.undoCommand();
 		revalidate();
-		repaint();
+		aDirtyRegion.addAll();
+		repaintDirtyRegion();
 	}
 	
 	/**
@@ -285,7 +294,8 @@ public class GraphPanel extends JPanel
 	{
 		aUndoManager.redoCommand();
 		revalidate();
-		repaint();
+		aDirtyRegion.addAll();
+		repaintDirtyRegion();
 	}
 	
 	/**
@@ -312,15 +322,18 @@ public class GraphPanel extends JPanel
 	{
 		super.paintComponent(pGraphics);
 		Graphics2D g2 = (Graphics2D) pGraphics;
-		g2.scale(aZoom, aZoom);
-		Rectangle2D bounds = getBounds();
-		Rectangle graphBounds = aGraph.getBounds();
-		if(!aHideGrid) 
+		if( aStaticLayer.isRetaining() )
 		{
-			Grid.draw(g2, new Rectangle2D.Double(0, 0, Math.max(bounds.getMaxX() / aZoom, graphBounds.getMaxX()), 
-				   Math.max(bounds.getMaxY() / aZoom, graphBounds.getMaxY())));
+			aStaticLayer.paint(g2, getVisibleRect(), getBackground(), this::drawStaticLayer);
+			g2.scale(aZoom, aZoom);
+			aStaticLayer.drawMoving(g2);
+		}
+		else
+		{
+			g2.scale(aZoom, aZoom);
+			drawGrid(g2, aGraph.getBounds());
+			aGraph.draw(g2);
 		}
-		aGraph.draw(g2);
 
 		Set<GraphElement> toBeRemoved = new HashSet<>();
 		for(GraphElement selected : aSelectedElements)
@@ -374,6 +387,87 @@ public class GraphPanel extends JPanel
 		}      
 	}
 
+	/*
+	 * Draws the grid and the elements that do not move with the selection,
+	 * from the coordinates of the panel.
+	 */
+	private void drawStaticLayer(Graphics2D pGraphics2D)
+	{
+		pGraphics2D.scale(aZoom, aZoom);
+		drawGrid(pGraphics2D, aStaticLayer.getGraphBounds());
+		aGraph.draw(pGraphics2D, pElement -> !aStaticLayer.isMoving(pElement));
+	}
+	
+	private void drawGrid(Graphics2D pGraphics2D, Rectangle pGraphBounds)
+	{
+		if( !aHideGrid ) 
+		{
+			Rectangle2D bounds = getBounds();
+			Grid.draw(pGraphics2D, new Rectangle2D.Double(0, 0, Math.max(bounds.getMaxX() / aZoom, pGraphBounds.getMaxX()), 
+				   Math.max(bounds.getMaxY() / aZoom, pGraphBounds.getMaxY())));
+		}
+	}
+
+	/*
+	 * Repaints the part of the panel covered by the dirty region, 
+	 * then empties the region.
+	 */
+	private void repaintDirtyRegion()
+	{
+		if( aDirtyRegion.coversAll() )
+		{
+			repaint();
+		}
+		else if( !aDirtyRegion.isEmpty() )
+		{
+			Rectangle bounds = aDirtyRegion.getBounds();
+			repaint(bounds.getX() * aZoom, bounds.getY() * aZoom, bounds.getWidth() * aZoom, bounds.getHeight() * aZoom);
+		}
+		aDirtyRegion.clear();
+	}
+	
+	/*
+	 * Returns the elements currently selected.
+	 */
+	private Set<GraphElement> getSelectionSnapshot()
+	{
+		Set<GraphElement> snapshot = Collections.newSetFromMap(new IdentityHashMap<>());
+		for( GraphElement element : aSelectedElements )
+		{
+			snapshot.add(element);
+		}
+		return snapshot;
+	}
+	
+	/*
+	 * Adds the elements whose selection state changed since pBefore was
+	 * taken to the dirty region, so that their grabbers are repainted.
+	 */
+	private void addSelectionChanges(Set<GraphElement> pBefore)
+	{
+		Set<GraphElement> after = getSelectionSnapshot();
+		for( GraphElement element : after )
+		{
+			if( !pBefore.contains(element) )
+			{
+				aDirtyRegion.addElement(element);
+			}
+		}
+		for( GraphElement element : pBefore )
+		{
+			if( !after.contains(element) )
+			{
+				aDirtyRegion.addElement(element);
+			}
+		}
+	}
+	
+	private static Rectangle spanning(Point2D pPoint1, Point2D pPoint2)
+	{
+		return new Rectangle((int)Math.min(pPoint1.getX(), pPoint2.getX()), (int)Math.min(pPoint1.getY(), pPoint2.getY()), 
+				(int)Math.ceil(Math.abs(pPoint1.getX() - pPoint2.getX())) + 1, (int)Math.ceil(Math.abs(pPoint1.getY() - pPoint2.getY())) + 1);
+	}
+
 	/**
 	 * Draws a single "grabber", a filled square.
 	 * @param pGraphics2D the graphics context
@@ -415,6 +509,7 @@ public class GraphPanel extends JPanel
       {
     	  aZoom /= factor;
       }
+      aStaticLayer.invalidate();
       revalidate();
       repaint();
 	}
@@ -428,6 +523,15 @@ public class GraphPanel extends JPanel
 		return aModified;
 	}
 
+	/**
+	 * Sets the journal that records the commands applied to the graph.
+	 * @param pJournal The journal, or null to stop recording.
+	 */
+	public void setJournal(CommandJournal pJournal)
+	{
+		aUndoManager.setJournal(pJournal);
+	}
+
 	/**
 	 * Sets or resets the modified flag for this graph.
 	 * @param pModified true to indicate that the graph has been modified
@@ -464,6 +568,7 @@ public class GraphPanel extends JPanel
 	public void setHideGrid(boolean pHideGrid)
 	{
 		aHideGrid = pHideGrid;
+		aStaticLayer.invalidate();
 		repaint();
 	}
 
@@ -612,6 +717,7 @@ public class GraphPanel extends JPanel
 				}
 				aDragMode = DragMode.DRAG_MOVE;
 				aMoveTracker.startTrackingMove(aSelectedElements);
+				aStaticLayer.retain(aGraph, aSelectedElements);
 			}
 			else // Nothing is selected
 			{
@@ -619,6 +725,7 @@ public class GraphPanel extends JPanel
 				{
 					aSelectedElements.clearSelection();
 				}
+				aLassoElements.clear();
 				aDragMode = DragMode.DRAG_LASSO;
 			}
 		}
@@ -695,6 +802,7 @@ public class GraphPanel extends JPanel
 		public void mousePressed(MouseEvent pEvent)
 		{
 			GraphElement tool = getTool(pEvent);
+			Set<GraphElement> selection = getSelectionSnapshot();
 
 			if(pEvent.getClickCount() > 1 || (pEvent.getModifiers() & InputEvent.BUTTON1_MASK) == 0) // double/right click
 			{  
@@ -715,7 +823,8 @@ public class GraphPanel extends JPanel
 			Point point = getMousePoint(pEvent);
 			aLastMousePoint = new Point2D.Double(point.getX(), point.getY()); // TODO move to geom.point
 			aMouseDownPoint = aLastMousePoint;
-			repaint();
+			addSelectionChanges(selection);
+			repaintDirtyRegion();
 		}
 
 		@Override
@@ -746,6 +855,7 @@ public class GraphPanel extends JPanel
 				}
 			}
 			aDragMode = DragMode.DRAG_NONE;
+			aStaticLayer.release();
 			revalidate();
 			repaint();
 		}
@@ -780,6 +890,7 @@ public class GraphPanel extends JPanel
 				dx = Math.max(dx, -bounds.getX());
 				dy = Math.max(dy, -bounds.getY());
             
+				aMoveTracker.addTrackedArea(aGraph, aDirtyRegion);
 				for( GraphElement selected : aSelectedElements )
 				{
 					if(selected instanceof ChildNode)
@@ -796,55 +907,73 @@ public class GraphPanel extends JPanel
 						n.translate(dx, dy); 
 					}
 				}
+				aMoveTracker.addTrackedArea(aGraph, aDirtyRegion);
 			}
 			else if(aDragMode == DragMode.DRAG_LASSO)
 			{
+				Set<GraphElement> selection = getSelectionSnapshot();
+				aDirtyRegion.add(spanning(aMouseDownPoint, aLastMousePoint));
+				aDirtyRegion.add(spanning(aMouseDownPoint, mousePoint));
 				double x1 = aMouseDownPoint.getX();
 				double y1 = aMouseDownPoint.getY();
 				double x2 = mousePoint.getX();
 				double y2 = mousePoint.getY();
 				Rectangle lasso = new Rectangle((int)Math.min(x1, x2), (int)Math.min(y1, y2), (int)Math.abs(x1 - x2) , (int)Math.abs(y1 - y2));
-				for( Node node : aGraph.getRootNodes() )
-				{
-					selectNode(isCtrl, node, lasso);
-				}
-				//Edges need to be added too when highlighted, but only if both their endpoints have been highlighted.
-				for (Edge edge: aGraph.getEdges())
+				List<GraphElement> found = aGraph.findElementsIn(lasso);
+				Set<GraphElement> inside = Collections.newSetFromMap(new IdentityHashMap<>());
+				inside.addAll(found);
+				if(!isCtrl)
 				{
-					if(!isCtrl && !lasso.contains(edge.view().getBounds()))
-					{
-						aSelectedElements.remove(edge);
-					}
-					else if(lasso.contains(edge.view().getBounds()))
+					// Only the elements that left the lasso since the last drag need to be deselected.
+					for( GraphElement element : aLassoElements )
 					{
-						if(aSelectedElements.transitivelyContains(edge.getStart()) && aSelectedElements.transitivelyContains(edge.getEnd()))
+						if( !inside.contains(element) )
 						{
-							aSelectedElements.add(edge);
+							aSelectedElements.remove(element);
 						}
 					}
 				}
+				for( GraphElement element : found )
+				{
+					selectInLasso(element);
+				}
+				aLassoElements = inside;
+				addSelectionChanges(selection);
+			}
+			else if(aDragMode == DragMode.DRAG_RUBBERBAND)
+			{
+				aDirtyRegion.add(spanning(aMouseDownPoint, aLastMousePoint));
+				aDirtyRegion.add(spanning(aMouseDownPoint, mousePoint));
 			}
 			aLastMousePoint = mousePoint;
-			repaint();
+			repaintDirtyRegion();
 		}
 		
-		private void selectNode( boolean pCtrl, Node pNode, Rectangle pLasso )
+		/*
+		 * Selects an element inside the lasso, unless it is already selected. 
+		 * Elements that stay in the lasso are tested again because a child 
+		 * must be selected again when its parent leaves the lasso, and an edge 
+		 * when its endpoints enter it.
+		 */
+		private void selectInLasso(GraphElement pElement)
 		{
-			if(!pCtrl && !pLasso.contains(pNode.view().getBounds())) 
-			{
-				aSelectedElements.remove(pNode);
-			}
-			else if(pLasso.contains(pNode.view().getBounds())) 
+			if( aSelectedElements.transitivelyContains(pElement) )
 			{
-				aSelectedElements.add(pNode);
+				return;
 			}
-			if( pNode instanceof ParentNode )
+			if( pElement instanceof Edge )
 			{
-				for( ChildNode child : ((ParentNode) pNode).getChildren() )
+				//Edges need to be added too when highlighted, but only if both their endpoints have been highlighted.
+				Edge edge = (Edge) pElement;
+				if(aSelectedElements.transitivelyContains(edge.getStart()) && aSelectedElements.transitivelyContains(edge.getEnd()))
 				{
-					selectNode(pCtrl, child, pLasso);
+					aSelectedElements.add(edge);
 				}
 			}
+			else
+			{
+				aSelectedElements.add(pElement);
+			}
 		}
 	}
 	
@@ -865,30 +994,40 @@ public class GraphPanel extends JPanel
 		@Override
 		public void nodeAdded(Graph pGraph, Node pNode)
 		{
+			aDirtyRegion.addAll();
+			aStaticLayer.invalidate();
 			aUndoManager.add(new AddNodeCommand(pGraph, pNode));
 		}
 		
 		@Override
 		public void nodeRemoved(Graph pGraph, Node pNode)
 		{
+			aDirtyRegion.addAll();
+			aStaticLayer.invalidate();
 			aUndoManager.add(new DeleteNodeCommand(pGraph, pNode));
 		}
 		
 		@Override
 		public void edgeAdded(Graph pGraph, Edge pEdge)
 		{
+			aDirtyRegion.addAll();
+			aStaticLayer.invalidate();
 			aUndoManager.add(new AddEdgeCommand(pGraph, pEdge));
 		}
 		
 		@Override
 		public void edgeRemoved(Graph pGraph, Edge pEdge)
 		{
+			aDirtyRegion.addAll();
+			aStaticLayer.invalidate();
 			aUndoManager.add(new RemoveEdgeCommand(pGraph, pEdge));
 		}
 
 		@Override
 		public void propertyChanged(Graph pGraph, GraphElement pElement, String pProperty, Object pOldValue, Object pNewValue)
 		{
+			aDirtyRegion.addAll();
+			aStaticLayer.invalidate();
 			aUndoManager.add(PropertyChangeTracker.createPropertyChangeCommand(pGraph, pElement, pProperty, pOldValue, pNewValue));
 		}
 	}
@@ -24,16 +24,12 @@ package ca.mcgill.cs.jetuml.gui;
 import java.awt.Component;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyDescriptor;
 import java.beans.PropertyEditor;
 import java.beans.PropertyEditorManager;
 import java.beans.PropertyEditorSupport;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -50,6 +46,7 @@ import javax.swing.event.ChangeListener;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 
+import ca.mcgill.cs.jetuml.application.BeanProperties;
 import ca.mcgill.cs.jetuml.graph.PropertyOrder;
 
 /**
@@ -92,7 +89,12 @@ public class PropertySheet extends JPanel
 		setLayout(new FormLayout());
 		try
 		{
-			PropertyDescriptor[] descriptors = Introspector.getBeanInfo(pBean.getClass()).getPropertyDescriptors().clone();
+			BeanProperties properties = BeanProperties.of(pBean.getClass());
+			PropertyDescriptor[] descriptors = new PropertyDescriptor[properties.size()];
+			for(int i = 0; i < descriptors.length; i++)
+			{
+				descriptors[i] = properties.getDescriptor(i);
+			}
 			Arrays.sort(descriptors, new Comparator<PropertyDescriptor>()
 			{
 				public int compare(PropertyDescriptor pDescriptor1, PropertyDescriptor pDescriptor2)
@@ -121,7 +123,7 @@ public class PropertySheet extends JPanel
 				}
 			}		
 		}
-		catch (IntrospectionException exception)
+		catch (IllegalArgumentException exception)
 		{
 			// Do nothing
 		}
@@ -139,9 +141,9 @@ public class PropertySheet extends JPanel
 	{
 		try
 		{
-			final Method getter = pDescriptor.getReadMethod();
-			final Method setter = pDescriptor.getWriteMethod();
-			if(getter == null || setter == null )
+			final BeanProperties properties = BeanProperties.of(pBean.getClass());
+			final int index = properties.indexOf(pDescriptor.getName());
+			if(index < 0 || !properties.isReadable(index) || !properties.isWritable(index))
 			{
 				return null;
 			}
@@ -166,26 +168,19 @@ public class PropertySheet extends JPanel
 				return null;
 			}
 
-			Object value = getter.invoke(pBean, new Object[] {});
+			Object value = properties.get(pBean, index);
 			editor.setValue(value);
 			editor.addPropertyChangeListener(new PropertyChangeListener()
 			{
 				public void propertyChange(PropertyChangeEvent pEvent)
 				{
-					try
-					{	
-						setter.invoke(pBean, new Object[] { editor.getValue() });
-						fireStateChanged(null);
-					}
-					catch(IllegalAccessException | InvocationTargetException exception)
-					{
-						exception.printStackTrace();
-					}
+					properties.set(pBean, index, editor.getValue());
+					fireStateChanged(null);
 				}
 			});
 			return editor;
 		}
-		catch(InstantiationException | IllegalAccessException | InvocationTargetException exception)
+		catch(InstantiationException | IllegalAccessException exception)
 		{
 			return null;
 		}
@@ -0,0 +1,325 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import ca.mcgill.cs.jetuml.graph.Edge;
+import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.graph.GraphElement;
+import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.graph.nodes.ChildNode;
+import ca.mcgill.cs.jetuml.graph.nodes.ParentNode;
+
+/**
+ * The part of a diagram that stays in place while a selection is
+ * dragged, kept as an image so that it is drawn once per drag
+ * instead of once per frame. The elements that move with the 
+ * selection are the selected nodes, their descendants, their ancestors
+ * with all their descendants, since an ancestor can be resized and is 
+ * drawn under its children, and the edges whose path can change when 
+ * these nodes move, as determined for the dirty region. Only these 
+ * elements need to be drawn on top of the image while the selection moves. 
+ * 
+ * The image covers the visible area of the panel. It is rendered 
+ * again when that area changes, and must be invalidated whenever
+ * the appearance of the static part changes.
+ */
+class StaticLayer
+{
+	private final Set<GraphElement> aMoving = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final List<Node> aMovingNodes = new ArrayList<>(); // In drawing order
+	private final List<Edge> aMovingEdges = new ArrayList<>();
+	private boolean aRetaining = false;
+	private ca.mcgill.cs.jetuml.geom.Rectangle aGraphBounds; // The bounds of the graph when the drag started
+	private BufferedImage aImage;
+	private Rectangle aArea; // The area of the panel covered by aImage
+	private double aScaleX; // The scale of the device when aImage was rendered
+	private double aScaleY;
+	
+	/**
+	 * Starts retaining the elements of pGraph that do not move with the
+	 * nodes of pSelection. Nothing is retained if moving a node 
+	 * can change the layout of the entire graph.
+	 * 
+	 * @param pGraph The graph whose nodes are about to move.
+	 * @param pSelection The elements that are about to move.
+	 * @return True if the static part of the graph is retained.
+	 * @pre pGraph != null && pSelection != null
+	 */
+	boolean retain(Graph pGraph, Iterable<GraphElement> pSelection)
+	{
+		assert pGraph != null && pSelection != null;
+		release();
+		if( !pGraph.hasLocalLayout() )
+		{
+			return false;
+		}
+		for( GraphElement element : pSelection )
+		{
+			if( element instanceof Node )
+			{
+				addSubtree(pGraph, (Node) element);
+				addAncestors(pGraph, (Node) element);
+			}
+		}
+		// Every moving node now belongs to the subtree of a moving root node
+		for( Node node : pGraph.getRootNodes() )
+		{
+			if( aMoving.contains(node) )
+			{
+				addInDrawingOrder(node);
+			}
+		}
+		aGraphBounds = pGraph.getBounds();
+		aRetaining = true;
+		return true;
+	}
+	
+	/**
+	 * Stops retaining the static part of the graph and discards its image.
+	 */
+	void release()
+	{
+		aRetaining = false;
+		aMoving.clear();
+		aMovingNodes.clear();
+		aMovingEdges.clear();
+		aGraphBounds = null;
+		invalidate();
+	}
+	
+	/**
+	 * @return True if the static part of a graph is retained.
+	 */
+	boolean isRetaining()
+	{
+		return aRetaining;
+	}
+	
+	/**
+	 * @param pElement The element to test.
+	 * @return True if pElement moves with the selection, and so is not 
+	 * part of the image.
+	 */
+	boolean isMoving(GraphElement pElement)
+	{
+		return aMoving.contains(pElement);
+	}
+	
+	/**
+	 * @return The bounds of the graph when it started to be retained.
+	 * @pre isRetaining()
+	 */
+	ca.mcgill.cs.jetuml.geom.Rectangle getGraphBounds()
+	{
+		assert isRetaining();
+		return aGraphBounds;
+	}
+	
+	/**
+	 * Draws the elements that move with the selection, parents before
+	 * their children and nodes before edges, without looking them up 
+	 * in the graph.
+	 * 
+	 * @param pGraphics2D The graphics context, in graph coordinates.
+	 * @pre isRetaining() && pGraphics2D != null
+	 */
+	void drawMoving(Graphics2D pGraphics2D)
+	{
+		assert isRetaining() && pGraphics2D != null;
+		Color color = pGraphics2D.getColor();
+		for( Node node : aMovingNodes )
+		{
+			node.view().draw(pGraphics2D);
+			pGraphics2D.setColor(color);
+		}
+		for( Edge edge : aMovingEdges )
+		{
+			edge.view().draw(pGraphics2D);
+			pGraphics2D.setColor(color);
+		}
+	}
+	
+	/**
+	 * Discards the image, so that the next call to paint renders it again.
+	 */
+	void invalidate()
+	{
+		aImage = null;
+		aArea = null;
+	}
+	
+	/**
+	 * Draws the image of the static part of the graph on pGraphics2D,
+	 * first rendering it if it was invalidated or if it covers a different 
+	 * area. 
+	 * 
+	 * @param pGraphics2D The graphics context of the panel.
+	 * @param pArea The visible area of the panel.
+	 * @param pBackground The color of the background of the image.
+	 * @param pPainter Draws the static part of the graph, in panel coordinates.
+	 * @pre isRetaining() && pGraphics2D != null && pArea != null && pBackground != null && pPainter != null
+	 */
+	void paint(Graphics2D pGraphics2D, Rectangle pArea, Color pBackground, Consumer<Graphics2D> pPainter)
+	{
+		assert isRetaining() && pGraphics2D != null && pArea != null && pBackground != null && pPainter != null;
+		if( pArea.isEmpty() )
+		{
+			return;
+		}
+		// On scaled displays, the image is rendered at the resolution of the device
+		AffineTransform transform = pGraphics2D.getTransform();
+		double scaleX = Math.abs(transform.getScaleX());
+		double scaleY = Math.abs(transform.getScaleY());
+		if( aImage == null || !pArea.equals(aArea) || scaleX != aScaleX || scaleY != aScaleY )
+		{
+			aArea = new Rectangle(pArea);
+			aScaleX = scaleX;
+			aScaleY = scaleY;
+			aImage = render(pGraphics2D, pBackground, pPainter);
+		}
+		pGraphics2D.drawImage(aImage, aArea.x, aArea.y, aArea.width, aArea.height, null);
+	}
+	
+	/*
+	 * Renders the static part of the graph into an image compatible with the
+	 * device of pGraphics2D, starting with the same color, font and hints.
+	 */
+	private BufferedImage render(Graphics2D pGraphics2D, Color pBackground, Consumer<Graphics2D> pPainter)
+	{
+		int width = (int) Math.ceil(aArea.width * aScaleX);
+		int height = (int) Math.ceil(aArea.height * aScaleY);
+		BufferedImage image = pGraphics2D.getDeviceConfiguration().createCompatibleImage(width, height);
+		Graphics2D graphics = image.createGraphics();
+		try
+		{
+			graphics.setRenderingHints(pGraphics2D.getRenderingHints());
+			graphics.setColor(pBackground);
+			graphics.fillRect(0, 0, width, height);
+			graphics.scale(aScaleX, aScaleY);
+			graphics.translate(-aArea.x, -aArea.y);
+			graphics.clipRect(aArea.x, aArea.y, aArea.width, aArea.height);
+			graphics.setColor(pGraphics2D.getColor());
+			graphics.setFont(pGraphics2D.getFont());
+			graphics.setBackground(pBackground);
+			pPainter.accept(graphics);
+		}
+		finally
+		{
+			graphics.dispose();
+		}
+		return image;
+	}
+	
+	/*
+	 * Adds pNode, its descendants, and the edges whose path can change 
+	 * when they move. See DirtyRegion.addMovingNode.
+	 */
+	private void addSubtree(Graph pGraph, Node pNode)
+	{
+		if( !addNodeAndEdges(pGraph, pNode) )
+		{
+			return;
+		}
+		if( pNode instanceof ParentNode )
+		{
+			for( Node child : ((ParentNode)pNode).getChildren() )
+			{
+				addSubtree(pGraph, child);
+			}
+		}
+	}
+	
+	/*
+	 * Adds the ancestors of pNode, which can be resized when it moves, 
+	 * with their subtrees, which they would hide if they were drawn over 
+	 * the image without them.
+	 */
+	private void addAncestors(Graph pGraph, Node pNode)
+	{
+		Node node = pNode;
+		while( node instanceof ChildNode && ((ChildNode)node).getParent() != null )
+		{
+			node = ((ChildNode)node).getParent();
+			addSubtree(pGraph, node);
+		}
+	}
+	
+	/*
+	 * Adds pNode and its descendants to the nodes to draw, parents
+	 * before their children, as Graph.draw does.
+	 */
+	private void addInDrawingOrder(Node pNode)
+	{
+		aMovingNodes.add(pNode);
+		if( pNode instanceof ParentNode )
+		{
+			for( Node child : ((ParentNode)pNode).getChildren() )
+			{
+				addInDrawingOrder(child);
+			}
+		}
+	}
+	
+	/*
+	 * Adds pNode, its edges and the edges of its neighbors. Returns 
+	 * false if pNode was already moving.
+	 */
+	private boolean addNodeAndEdges(Graph pGraph, Node pNode)
+	{
+		if( !aMoving.add(pNode) )
+		{
+			return false;
+		}
+		for( Edge edge : pGraph.getEdges(pNode) )
+		{
+			addEdge(edge);
+			Node otherNode = edge.getStart() == pNode ? edge.getEnd() : edge.getStart();
+			if( otherNode != null && otherNode != pNode )
+			{
+				for( Edge otherEdge : pGraph.getEdges(otherNode) )
+				{
+					addEdge(otherEdge);
+				}
+			}
+		}
+		return true;
+	}
+	
+	private void addEdge(Edge pEdge)
+	{
+		if( aMoving.add(pEdge) )
+		{
+			aMovingEdges.add(pEdge);
+		}
+	}
+}
@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.persistence;
+
+import static ca.mcgill.cs.jetuml.persistence.BinaryEncoder.FORMAT_VERSION;
+import static ca.mcgill.cs.jetuml.persistence.BinaryEncoder.MAGIC;
+import static ca.mcgill.cs.jetuml.persistence.BinaryEncoder.KIND_BOOLEAN;
+import static ca.mcgill.cs.jetuml.persistence.BinaryEncoder.KIND_INT;
+import static ca.mcgill.cs.jetuml.persistence.BinaryEncoder.KIND_STRING;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.mcgill.cs.jetuml.graph.Edge;
+import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.graph.ValueExtractor;
+import ca.mcgill.cs.jetuml.graph.nodes.ChildNode;
+import ca.mcgill.cs.jetuml.graph.nodes.ParentNode;
+
+/**
+ * Converts the binary notation written by BinaryEncoder to a graph.
+ */
+public final class BinaryDecoder
+{
+	/* The maximum number of properties of an element. */
+	private static final int MAX_PROPERTIES = 256;
+	
+	/* The size of the first buffer allocated to read a string. */
+	private static final int STRING_BUFFER_SIZE = 4096;
+	
+	private final InputStream aIn;
+	private final List<String> aStrings = new ArrayList<>();
+	private final List<Shape> aShapes = new ArrayList<>();
+	
+	private BinaryDecoder(InputStream pIn)
+	{
+		aIn = pIn;
+	}
+	
+	/**
+	 * @param pBytes The first bytes of an encoding.
+	 * @return True if pBytes starts with the magic number of the binary notation.
+	 * @pre pBytes != null
+	 */
+	public static boolean isBinary(byte[] pBytes)
+	{
+		assert pBytes != null;
+		if( pBytes.length < MAGIC.length )
+		{
+			return false;
+		}
+		for( int i = 0; i < MAGIC.length; i++ )
+		{
+			if( pBytes[i] != MAGIC[i] )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Decodes a graph as its encoding is read from pIn. 
+	 * 
+	 * @param pIn A stream positioned at the start of the encoding, i.e., at the magic number.
+	 * @return The decoded graph.
+	 * @throws IOException If reading from pIn fails.
+	 * @throws DeserializationException If it's not possible to decode the data into a valid graph.
+	 * @pre pIn != null
+	 */
+	public static Graph decode(InputStream pIn) throws IOException
+	{
+		assert pIn != null;
+		return new BinaryDecoder(pIn).decodeGraph();
+	}
+	
+	private Graph decodeGraph() throws IOException
+	{
+		byte[] magic = new byte[MAGIC.length];
+		for( int i = 0; i < magic.length; i++ )
+		{
+			magic[i] = (byte) readByte();
+		}
+		if( !isBinary(magic) )
+		{
+			throw new DeserializationException("Not a binary encoding");
+		}
+		int version = readUnsigned();
+		if( version != FORMAT_VERSION )
+		{
+			throw new DeserializationException("Unsupported binary format version: " + version);
+		}
+		readString(); // The JetUML version
+		DeserializationContext context = new DeserializationContext(ElementFactory.createGraph(readString()));
+		decodeNodes(context);
+		int edges = readLength(Integer.MAX_VALUE);
+		for( int i = 0; i < edges; i++ )
+		{
+			Shape shape = readShape();
+			Edge edge = ElementFactory.createEdge(shape.aType);
+			Node start = getNode(context, readUnsigned());
+			Node end = getNode(context, readUnsigned());
+			edge.initialize(readValues(shape));
+			context.getGraph().restoreEdge(edge, start, end);
+		}
+		return context.getGraph();
+	}
+	
+	/*
+	 * Creates the nodes, then restores the parent-child hierarchy
+	 * once all the nodes are known, since a child can follow its parent.
+	 */
+	private void decodeNodes(DeserializationContext pContext) throws IOException
+	{
+		List<ParentNode> parents = new ArrayList<>();
+		List<List<Integer>> children = new ArrayList<>();
+		int nodes = readLength(Integer.MAX_VALUE);
+		for( int id = 0; id < nodes; id++ )
+		{
+			Shape shape = readShape();
+			Node node = ElementFactory.createNode(shape.aType);
+			node.initialize(readValues(shape));
+			pContext.addNode(node, id);
+			int count = readLength(nodes);
+			if( count > 0 )
+			{
+				if( !(node instanceof ParentNode) )
+				{
+					throw new DeserializationException("Children found for a node that cannot have any");
+				}
+				List<Integer> ids = new ArrayList<>();
+				for( int j = 0; j < count; j++ )
+				{
+					ids.add(readUnsigned());
+				}
+				parents.add((ParentNode) node);
+				children.add(ids);
+			}
+		}
+		for( int i = 0; i < parents.size(); i++ )
+		{
+			for( int id : children.get(i) )
+			{
+				Node child = getNode(pContext, id);
+				if( !(child instanceof ChildNode) )
+				{
+					throw new DeserializationException("Node " + id + " cannot be a child");
+				}
+				parents.get(i).addChild((ChildNode) child);
+			}
+		}
+		pContext.restoreRootNodes();
+	}
+	
+	private static Node getNode(DeserializationContext pContext, int pId)
+	{
+		if( !pContext.hasNode(pId) )
+		{
+			throw new DeserializationException("Unknown node id: " + pId);
+		}
+		return pContext.getNode(pId);
+	}
+	
+	private Shape readShape() throws IOException
+	{
+		int index = readUnsigned();
+		if( index > aShapes.size() )
+		{
+			throw new DeserializationException("Invalid shape reference: " + index);
+		}
+		if( index > 0 )
+		{
+			return aShapes.get(index - 1);
+		}
+		Shape shape = new Shape(readString(), readLength(MAX_PROPERTIES));
+		for( int i = 0; i < shape.aKeys.length; i++ )
+		{
+			shape.aKeys[i] = readString();
+			shape.aKinds[i] = readUnsigned();
+			if( shape.aKinds[i] != KIND_STRING && shape.aKinds[i] != KIND_INT && shape.aKinds[i] != KIND_BOOLEAN )
+			{
+				throw new DeserializationException("Invalid property kind: " + shape.aKinds[i]);
+			}
+		}
+		aShapes.add(shape);
+		return shape;
+	}
+	
+	private ValueExtractor readValues(Shape pShape) throws IOException
+	{
+		Map<String, Object> properties = new HashMap<>();
+		for( int i = 0; i < pShape.aKeys.length; i++ )
+		{
+			if( pShape.aKinds[i] == KIND_INT )
+			{
+				properties.put(pShape.aKeys[i], readSigned());
+			}
+			else if( pShape.aKinds[i] == KIND_BOOLEAN )
+			{
+				properties.put(pShape.aKeys[i], readByte() != 0);
+			}
+			else
+			{
+				properties.put(pShape.aKeys[i], readString());
+			}
+		}
+		return (pKey, pType) -> 
+		{
+			Object value = properties.get(pKey);
+			if( pType == ValueExtractor.Type.BOOLEAN && value instanceof Boolean ||
+				pType == ValueExtractor.Type.INT && value instanceof Integer ||
+				pType == ValueExtractor.Type.STRING && value instanceof String )
+			{
+				return value;
+			}
+			throw new DeserializationException("Missing or invalid property: " + pKey);
+		};
+	}
+	
+	private String readString() throws IOException
+	{
+		int index = readUnsigned();
+		if( index > aStrings.size() )
+		{
+			throw new DeserializationException("Invalid string reference: " + index);
+		}
+		if( index > 0 )
+		{
+			return aStrings.get(index - 1);
+		}
+		// The buffer grows with the bytes actually read, so that a corrupt length cannot exhaust the memory
+		int length = readLength(Integer.MAX_VALUE);
+		byte[] bytes = new byte[Math.min(length, STRING_BUFFER_SIZE)];
+		int read = 0;
+		while( read < length )
+		{
+			if( read == bytes.length )
+			{
+				bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+			}
+			int count = aIn.read(bytes, read, bytes.length - read);
+			if( count < 0 )
+			{
+				throw new DeserializationException("Unexpected end of data");
+			}
+			read += count;
+		}
+		String string = new String(bytes, StandardCharsets.UTF_8);
+		aStrings.add(string);
+		return string;
+	}
+	
+	/*
+	 * Reads a count or a length and checks that it is between 0 and pMax.
+	 */
+	private int readLength(int pMax) throws IOException
+	{
+		int length = readUnsigned();
+		if( length < 0 || length > pMax )
+		{
+			throw new DeserializationException("Invalid length: " + Integer.toUnsignedString(length));
+		}
+		return length;
+	}
+	
+	private int readSigned() throws IOException
+	{
+		int value = readUnsigned();
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	private int readUnsigned() throws IOException
+	{
+		int value = 0;
+		for( int shift = 0; shift < Integer.SIZE; shift += 7 )
+		{
+			int next = readByte();
+			value |= (next & 0x7F) << shift;
+			if( (next & 0x80) == 0 )
+			{
+				return value;
+			}
+		}
+		throw new DeserializationException("Invalid variable-length integer");
+	}
+	
+	private int readByte() throws IOException
+	{
+		int next = aIn.read();
+		if( next < 0 )
+		{
+			throw new DeserializationException("Unexpected end of data");
+		}
+		return next;
+	}
+	
+	/*
+	 * The type of an element and the keys and kinds of its properties.
+	 */
+	private static final class Shape
+	{
+		private final String aType;
+		private final String[] aKeys;
+		private final int[] aKinds;
+		
+		Shape(String pType, int pProperties)
+		{
+			aType = pType;
+			aKeys = new String[pProperties];
+			aKinds = new int[pProperties];
+		}
+	}
+}
@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.persistence;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ResourceBundle;
+
+import ca.mcgill.cs.jetuml.UMLEditor;
+import ca.mcgill.cs.jetuml.graph.Edge;
+import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.graph.nodes.ChildNode;
+import ca.mcgill.cs.jetuml.graph.nodes.ParentNode;
+
+/**
+ * Converts a graph to a compact binary notation that holds the same
+ * information as the JSON notation. The notation is:
+ * * The magic number MAGIC, followed by the format version
+ * * The JetUML version
+ * * The graph type
+ * * The number of nodes, followed by the node encodings in the order of their ids
+ * * The number of edges, followed by the edge encodings
+ * 
+ * A node encoding is its shape, its property values, and the number and 
+ * ids of its children. An edge encoding is its shape, the ids of its start and end 
+ * nodes, and its property values. 
+ * 
+ * The shape of an element is its type and the keys and kinds (KIND_ constants) of 
+ * its properties, which the values follow in the same order. Shapes are written 
+ * as a reference to the shapes already written: 0 introduces a new shape, written 
+ * as its type followed by the number of properties and the key and kind of each
+ * property, and i > 0 refers to the i-th shape introduced. Strings are written the
+ * same way, where a new string is written as its length followed by its UTF-8 bytes.
+ * 
+ * Counts and ids are unsigned variable-length integers (7 bits per byte, low
+ * bits first), integer values are zigzag-encoded variable-length integers, and 
+ * boolean values are one byte.
+ */
+public final class BinaryEncoder
+{
+	static final byte[] MAGIC = { (byte) 0x89, 'J', 'E', 'T' };
+	static final int FORMAT_VERSION = 1;
+	
+	static final int KIND_STRING = 0;
+	static final int KIND_INT = 1;
+	static final int KIND_BOOLEAN = 2;
+	
+	private final OutputStream aOut;
+	private final HashMap<String, Integer> aStrings = new HashMap<>();
+	private final HashMap<List<Object>, Integer> aShapes = new HashMap<>();
+	
+	private BinaryEncoder(OutputStream pOut)
+	{
+		aOut = pOut;
+	}
+	
+	/**
+	 * Writes the binary encoding of pGraph to pOut, one node and 
+	 * one edge at a time.
+	 * 
+	 * @param pGraph The graph to serialize.
+	 * @param pOut The destination of the encoding. Should be buffered.
+	 * @throws IOException If writing to pOut fails.
+	 * @pre pGraph != null && pOut != null
+	 */
+	public static void encode(Graph pGraph, OutputStream pOut) throws IOException
+	{
+		assert pGraph != null && pOut != null;
+		new BinaryEncoder(pOut).encodeGraph(pGraph);
+	}
+	
+	private void encodeGraph(Graph pGraph) throws IOException
+	{
+		aOut.write(MAGIC);
+		writeUnsigned(FORMAT_VERSION);
+		writeString(ResourceBundle.getBundle(UMLEditor.class.getName() + "Version").getString("version.number"));
+		writeString(pGraph.getClass().getSimpleName());
+		SerializationContext context = new SerializationContext(pGraph);
+		Node[] nodes = new Node[context.size()];
+		for( Node node : context )
+		{
+			nodes[context.getId(node)] = node;
+		}
+		writeUnsigned(nodes.length);
+		for( Node node : nodes )
+		{
+			encodeNode(node, context);
+		}
+		writeUnsigned(pGraph.getEdges().size());
+		for( Edge edge : pGraph.getEdges() )
+		{
+			Properties properties = edge.properties();
+			writeShape(edge, properties);
+			writeUnsigned(context.getId(edge.getStart()));
+			writeUnsigned(context.getId(edge.getEnd()));
+			writeValues(properties);
+		}
+	}
+	
+	private void encodeNode(Node pNode, SerializationContext pContext) throws IOException
+	{
+		Properties properties = pNode.properties();
+		writeShape(pNode, properties);
+		writeValues(properties);
+		if( pNode instanceof ParentNode )
+		{
+			writeUnsigned(((ParentNode)pNode).getChildren().size());
+			for( ChildNode child : ((ParentNode)pNode).getChildren() )
+			{
+				writeUnsigned(pContext.getId(child));
+			}
+		}
+		else
+		{
+			writeUnsigned(0);
+		}
+	}
+	
+	private void writeShape(Object pElement, Properties pProperties) throws IOException
+	{
+		List<Object> shape = new ArrayList<>();
+		shape.add(pElement.getClass().getSimpleName());
+		for( String key : pProperties )
+		{
+			shape.add(key);
+			shape.add(kindOf(pProperties.get(key)));
+		}
+		Integer index = aShapes.get(shape);
+		if( index != null )
+		{
+			writeUnsigned(index + 1);
+		}
+		else
+		{
+			writeUnsigned(0);
+			writeString((String) shape.get(0));
+			writeUnsigned(shape.size() / 2);
+			for( int i = 1; i < shape.size(); i += 2 )
+			{
+				writeString((String) shape.get(i));
+				writeUnsigned((int) shape.get(i + 1));
+			}
+			aShapes.put(shape, aShapes.size());
+		}
+	}
+	
+	private static int kindOf(Object pValue)
+	{
+		if( pValue instanceof Integer )
+		{
+			return KIND_INT;
+		}
+		else if( pValue instanceof Boolean )
+		{
+			return KIND_BOOLEAN;
+		}
+		else
+		{
+			return KIND_STRING;
+		}
+	}
+	
+	/*
+	 * Writes the values in the same order as the keys of the shape, 
+	 * with enumerated values converted to strings as in the JSON encoding.
+	 */
+	private void writeValues(Properties pProperties) throws IOException
+	{
+		for( String key : pProperties )
+		{
+			Object value = pProperties.get(key);
+			if( value instanceof Integer )
+			{
+				writeSigned((int) value);
+			}
+			else if( value instanceof Boolean )
+			{
+				aOut.write((boolean) value ? 1 : 0);
+			}
+			else
+			{
+				writeString(value.toString());
+			}
+		}
+	}
+	
+	private void writeString(String pString) throws IOException
+	{
+		Integer index = aStrings.get(pString);
+		if( index != null )
+		{
+			writeUnsigned(index + 1);
+		}
+		else
+		{
+			byte[] bytes = pString.getBytes(StandardCharsets.UTF_8);
+			writeUnsigned(0);
+			writeUnsigned(bytes.length);
+			aOut.write(bytes);
+			aStrings.put(pString, aStrings.size());
+		}
+	}
+	
+	private void writeSigned(int pValue) throws IOException
+	{
+		writeUnsigned((pValue << 1) ^ (pValue >> 31));
+	}
+	
+	private void writeUnsigned(int pValue) throws IOException
+	{
+		int value = pValue;
+		while( (value & ~0x7F) != 0 )
+		{
+			aOut.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		aOut.write(value);
+	}
+}
@@ -0,0 +1,879 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import ca.mcgill.cs.jetuml.graph.Edge;
+import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.graph.GraphElement;
+import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.graph.nodes.ChildNode;
+import ca.mcgill.cs.jetuml.graph.nodes.ParentNode;
+
+/**
+ * An append-only record of the commands applied to a graph since it
+ * was last saved. The journal is kept in a hidden file next to the diagram
+ * file, so that the changes can be replayed on top of the diagram if the 
+ * editor stops before they are saved.
+ * 
+ * Each committed command is written as one line of JSON that lists its 
+ * effects on the nodes and edges of the graph. Elements are identified by 
+ * numbers that start with the identifiers of the saved diagram, and new 
+ * elements receive the next numbers. The files are written by a single 
+ * background thread, so that committing a command never waits for the disk.
+ * A line is written as soon as possible after its command is committed, and
+ * forced to the disk after a batch of commands or at most one second later.
+ * A line cut short by a crash is ignored.
+ * 
+ * When a save starts, a checkpoint records how the identifiers of the 
+ * journal map to those of the file being saved. Once the save completes,
+ * the journal is rewritten to only contain the commands committed
+ * after the checkpoint.
+ * 
+ * Problems writing the journal never interrupt the editing of the graph:
+ * the journal simply stops recording.
+ */
+public final class CommandJournal
+{
+	private static final String EXTENSION = ".journal";
+	private static final int SYNC_BATCH = 32; // Number of commands written between forced writes
+	private static final long SYNC_INTERVAL = 1000; // Maximum number of milliseconds between forced writes
+	
+	// Runs the file operations of all the journals, in the order in which they are requested
+	private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(pTask -> 
+	{
+		Thread thread = new Thread(pTask, "Journal");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private final Graph aGraph;
+	private final HashMap<Node, Integer> aNodes = new HashMap<>();
+	private final HashMap<Integer, Node> aNodesById = new HashMap<>();
+	private final HashMap<Edge, Integer> aEdges = new HashMap<>();
+	private final HashMap<Integer, Edge> aEdgesById = new HashMap<>();
+	private int aNextNodeId;
+	private int aNextEdgeId;
+	private JSONArray aOperations = new JSONArray(); // The effects of the command being recorded
+	private File aDiagram; // The diagram file, or null if the graph was never saved
+	private final List<String> aRetained = new ArrayList<>(); // The lines since the oldest checkpoint whose save is in progress
+	private final LinkedList<Integer> aCheckpoints = new LinkedList<>(); // The positions in aRetained of checkpoints whose save is in progress
+	private int aRecovered;
+	private volatile boolean aStopped;
+	
+	// Only used on the writer thread
+	private File aFile; // The file of the journal
+	private String aHeader;
+	private FileChannel aChannel; // Opened when the first line is written
+	private int aUnsynced;
+	private boolean aSyncScheduled;
+	
+	/**
+	 * Creates a journal for a graph that has no diagram file yet. 
+	 * Nothing is written until the graph is saved.
+	 * 
+	 * @param pGraph The graph whose commands are recorded.
+	 * @pre pGraph != null
+	 */
+	public CommandJournal(Graph pGraph)
+	{
+		assert pGraph != null;
+		aGraph = pGraph;
+		identifyElements();
+	}
+	
+	/**
+	 * Creates the journal of a graph that was just read from pDiagram.
+	 * If a journal was left for pDiagram, its commands are first replayed 
+	 * on pGraph. 
+	 * 
+	 * @param pGraph The graph read from pDiagram.
+	 * @param pDiagram The file of the graph.
+	 * @return The journal, positioned to record the next commands.
+	 * @throws IOException If the journal cannot be read or rewritten.
+	 * @pre pGraph != null && pDiagram != null
+	 */
+	public static CommandJournal open(Graph pGraph, File pDiagram) throws IOException
+	{
+		assert pGraph != null && pDiagram != null;
+		CommandJournal journal = new CommandJournal(pGraph);
+		// Completes the pending operations, e.g., the deletion of the journal of a closed diagram
+		await(WRITER.submit(() -> null));
+		File file = fileFor(pDiagram);
+		List<String> lines = new ArrayList<>();
+		if( file.exists() )
+		{
+			lines = journal.recover(pDiagram, file);
+		}
+		await(journal.attach(pDiagram, lines));
+		return journal;
+	}
+	
+	/**
+	 * @param pDiagram A diagram file.
+	 * @return The file that holds the journal of pDiagram.
+	 * @pre pDiagram != null
+	 */
+	public static File fileFor(File pDiagram)
+	{
+		assert pDiagram != null;
+		return new File(pDiagram.getAbsoluteFile().getParentFile(), "." + pDiagram.getName() + EXTENSION);
+	}
+	
+	/**
+	 * @return The number of commands replayed when the journal was opened.
+	 */
+	public int getRecoveredCount()
+	{
+		return aRecovered;
+	}
+	
+	/**
+	 * Records that pNode was added to the graph, with its descendants.
+	 * 
+	 * @param pNode The node added.
+	 */
+	public synchronized void nodeAdded(Node pNode)
+	{
+		if( aNodes.containsKey(pNode) )
+		{
+			return;
+		}
+		JSONObject operation = new JSONObject();
+		operation.put("op", "addNode");
+		ParentNode parent = null;
+		if( pNode instanceof ChildNode )
+		{
+			parent = ((ChildNode) pNode).getParent();
+		}
+		if( parent != null )
+		{
+			nodeAdded(parent);
+			if( aNodes.containsKey(pNode) )
+			{	// Added as a descendant of its parent
+				return;
+			}
+			operation.put("parent", aNodes.get(parent));
+			operation.put("index", parent.getChildren().indexOf(pNode));
+		}
+		operation.put("id", identify(pNode, aNextNodeId));
+		operation.put("type", pNode.getClass().getSimpleName());
+		operation.put("properties", JsonEncoder.toJSONObject(pNode.properties()));
+		aOperations.put(operation);
+		if( pNode instanceof ParentNode )
+		{
+			for( ChildNode child : ((ParentNode) pNode).getChildren() )
+			{
+				nodeAdded(child);
+			}
+		}
+	}
+	
+	/**
+	 * Records that pNode was removed from the graph, with its descendants.
+	 * 
+	 * @param pNode The node removed.
+	 */
+	public synchronized void nodeRemoved(Node pNode)
+	{
+		if( aNodes.containsKey(pNode) )
+		{
+			aOperations.put(new JSONObject().put("op", "removeNode").put("id", aNodes.get(pNode)));
+			forget(pNode);
+		}
+	}
+	
+	/**
+	 * Records that pEdge was added to the graph, as well as its 
+	 * end points if they were added with it.
+	 * 
+	 * @param pEdge The edge added.
+	 */
+	public synchronized void edgeAdded(Edge pEdge)
+	{
+		if( aEdges.containsKey(pEdge) )
+		{
+			return;
+		}
+		nodeAdded(pEdge.getStart());
+		nodeAdded(pEdge.getEnd());
+		JSONObject operation = new JSONObject();
+		operation.put("op", "addEdge");
+		operation.put("id", identify(pEdge, aNextEdgeId));
+		operation.put("type", pEdge.getClass().getSimpleName());
+		operation.put("start", aNodes.get(pEdge.getStart()));
+		operation.put("end", aNodes.get(pEdge.getEnd()));
+		operation.put("properties", JsonEncoder.toJSONObject(pEdge.properties()));
+		aOperations.put(operation);
+	}
+	
+	/**
+	 * Records that pEdge was removed from the graph.
+	 * 
+	 * @param pEdge The edge removed.
+	 */
+	public synchronized void edgeRemoved(Edge pEdge)
+	{
+		Integer id = aEdges.remove(pEdge);
+		if( id != null )
+		{
+			aEdgesById.remove(id);
+			aOperations.put(new JSONObject().put("op", "removeEdge").put("id", id));
+		}
+	}
+	
+	/**
+	 * Records that pNode was translated.
+	 * 
+	 * @param pNode The node moved.
+	 * @param pDX The horizontal translation.
+	 * @param pDY The vertical translation.
+	 */
+	public synchronized void nodeMoved(Node pNode, int pDX, int pDY)
+	{
+		if( !aNodes.containsKey(pNode) )
+		{	// The addition of the node records its current position
+			nodeAdded(pNode);
+			return;
+		}
+		aOperations.put(new JSONObject().put("op", "move").put("id", aNodes.get(pNode)).put("dx", pDX).put("dy", pDY));
+	}
+	
+	/**
+	 * Records the current properties of pElement.
+	 * 
+	 * @param pElement The element whose properties changed.
+	 */
+	public synchronized void propertiesChanged(GraphElement pElement)
+	{
+		JSONObject operation = new JSONObject().put("op", "change");
+		if( pElement instanceof Node )
+		{
+			if( !aNodes.containsKey(pElement) )
+			{
+				nodeAdded((Node) pElement);
+				return;
+			}
+			operation.put("node", aNodes.get(pElement));
+		}
+		else 
+		{
+			if( !aEdges.containsKey(pElement) )
+			{
+				edgeAdded((Edge) pElement);
+				return;
+			}
+			operation.put("edge", aEdges.get(pElement));
+		}
+		operation.put("properties", JsonEncoder.toJSONObject(pElement.properties()));
+		aOperations.put(operation);
+	}
+	
+	/**
+	 * Writes the effects recorded since the last commit as one command.
+	 */
+	public synchronized void commit()
+	{
+		if( aOperations.length() > 0 )
+		{
+			JSONObject command = new JSONObject().put("operations", aOperations);
+			aOperations = new JSONArray();
+			append(command.toString());
+		}
+	}
+	
+	/**
+	 * Records that a save of the graph starts. The identifiers of the
+	 * elements become those of the file being saved. Must be called
+	 * just before the graph is copied for saving, and followed 
+	 * by a call to saved or saveFailed once the save ends.
+	 */
+	public synchronized void checkpoint()
+	{
+		commit();
+		JSONArray nodes = new JSONArray();
+		for( Node node : traverse() )
+		{
+			nodes.put(aNodes.getOrDefault(node, -1));
+		}
+		JSONArray edges = new JSONArray();
+		for( Edge edge : aGraph.getEdges() )
+		{
+			edges.put(aEdges.getOrDefault(edge, -1));
+		}
+		identifyElements();
+		aCheckpoints.add(aRetained.size());
+		append(new JSONObject().put("checkpoint", new JSONObject().put("nodes", nodes).put("edges", edges)).toString());
+	}
+	
+	/**
+	 * Records that the save started by the oldest pending checkpoint completed.
+	 * The journal is rewritten next to pDiagram with the commands
+	 * committed since the checkpoint.
+	 * 
+	 * @param pDiagram The file where the graph was saved.
+	 * @pre pDiagram != null
+	 */
+	public synchronized void saved(File pDiagram)
+	{
+		assert pDiagram != null && !aCheckpoints.isEmpty();
+		int position = aCheckpoints.removeFirst();
+		List<String> lines = new ArrayList<>(aRetained.subList(position + 1, aRetained.size()));
+		removeRetained(position + 1);
+		if( aStopped )
+		{
+			return;
+		}
+		File previous = aDiagram == null ? null : fileFor(aDiagram);
+		attach(pDiagram, lines);
+		if( previous != null && !previous.equals(fileFor(pDiagram)) )
+		{
+			submit(() -> Files.deleteIfExists(previous.toPath()));
+		}
+	}
+	
+	/**
+	 * Records that the save started by the oldest pending checkpoint 
+	 * failed. The journal still applies to the previous version of the
+	 * diagram file.
+	 */
+	public synchronized void saveFailed()
+	{
+		assert !aCheckpoints.isEmpty();
+		aCheckpoints.removeFirst();
+		removeRetained(0);
+	}
+	
+	/**
+	 * Stops recording and deletes the journal, for example 
+	 * because the changes it records are abandoned.
+	 */
+	public synchronized void discard()
+	{
+		aStopped = true;
+		File file = aDiagram == null ? null : fileFor(aDiagram);
+		submit(() -> 
+		{
+			closeChannel();
+			if( file != null )
+			{
+				file.delete();
+			}
+		});
+	}
+	
+	/**
+	 * Waits until the file operations requested so far are 
+	 * complete, and the lines written are forced to the disk.
+	 */
+	public void flush()
+	{
+		try
+		{
+			await(submit(this::sync));
+		}
+		catch(IOException exception)
+		{
+			// The journal stopped recording
+		}
+	}
+	
+	/*
+	 * Gives the elements of the graph the identifiers they have in its file.
+	 */
+	private void identifyElements()
+	{
+		aNodes.clear();
+		aNodesById.clear();
+		aEdges.clear();
+		aEdgesById.clear();
+		aNextNodeId = 0;
+		aNextEdgeId = 0;
+		for( Node node : traverse() )
+		{
+			identify(node, aNextNodeId);
+		}
+		for( Edge edge : aGraph.getEdges() )
+		{
+			identify(edge, aNextEdgeId);
+		}
+	}
+	
+	/*
+	 * The nodes of the graph in the order of their identifiers in its file.
+	 */
+	private Node[] traverse()
+	{
+		SerializationContext context = new SerializationContext(aGraph);
+		Node[] nodes = new Node[context.size()];
+		for( Node node : context )
+		{
+			nodes[context.getId(node)] = node;
+		}
+		return nodes;
+	}
+	
+	private int identify(Node pNode, int pId)
+	{
+		aNodes.put(pNode, pId);
+		aNodesById.put(pId, pNode);
+		aNextNodeId = Math.max(aNextNodeId, pId + 1);
+		return pId;
+	}
+	
+	private int identify(Edge pEdge, int pId)
+	{
+		aEdges.put(pEdge, pId);
+		aEdgesById.put(pId, pEdge);
+		aNextEdgeId = Math.max(aNextEdgeId, pId + 1);
+		return pId;
+	}
+	
+	private void forget(Node pNode)
+	{
+		Integer id = aNodes.remove(pNode);
+		if( id != null )
+		{
+			aNodesById.remove(id);
+		}
+		if( pNode instanceof ParentNode )
+		{
+			for( ChildNode child : ((ParentNode) pNode).getChildren() )
+			{
+				forget(child);
+			}
+		}
+	}
+	
+	/*
+	 * Discards the first pCount retained lines, unless they 
+	 * are still needed for a save in progress.
+	 */
+	private void removeRetained(int pCount)
+	{
+		if( aCheckpoints.isEmpty() )
+		{
+			aRetained.clear();
+			return;
+		}
+		aRetained.subList(0, pCount).clear();
+		for( int i = 0; i < aCheckpoints.size(); i++ )
+		{
+			aCheckpoints.set(i, aCheckpoints.get(i) - pCount);
+		}
+	}
+	
+	private void append(String pLine)
+	{
+		if( !aCheckpoints.isEmpty() )
+		{
+			aRetained.add(pLine);
+		}
+		if( aDiagram == null || aStopped )
+		{
+			return;
+		}
+		submit(() -> writeLine(pLine));
+	}
+	
+	/*
+	 * Associates the journal with pDiagram, and rewrites its file 
+	 * with pLines, or deletes it if there are no lines.
+	 */
+	private Future<?> attach(File pDiagram, List<String> pLines)
+	{
+		aDiagram = pDiagram;
+		String header = new JSONObject().put("diagram", aGraph.getClass().getSimpleName())
+				.put("length", pDiagram.length()).put("modified", pDiagram.lastModified()).toString();
+		File file = fileFor(pDiagram);
+		return submit(() -> 
+		{
+			closeChannel();
+			aFile = file;
+			aHeader = header;
+			if( pLines.isEmpty() )
+			{
+				Files.deleteIfExists(file.toPath());
+			}
+			else
+			{
+				create(pLines);
+			}
+		});
+	}
+	
+	/*
+	 * Runs pOperation on the writer thread, after the operations 
+	 * already requested. The journal stops recording if it fails.
+	 */
+	private Future<?> submit(FileOperation pOperation)
+	{
+		return WRITER.submit(() -> 
+		{
+			try
+			{
+				pOperation.run();
+			}
+			catch(IOException exception)
+			{
+				stop();
+				throw exception;
+			}
+			return null;
+		});
+	}
+	
+	private static void await(Future<?> pOperation) throws IOException
+	{
+		try
+		{
+			pOperation.get();
+		}
+		catch(InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch(ExecutionException exception)
+		{
+			if( exception.getCause() instanceof IOException )
+			{
+				throw (IOException) exception.getCause();
+			}
+			throw new IOException(exception.getCause());
+		}
+	}
+	
+	/*
+	 * Writes pLine at the end of the file, which is forced to the disk
+	 * once SYNC_BATCH lines are written or SYNC_INTERVAL later.
+	 */
+	private void writeLine(String pLine) throws IOException
+	{
+		if( aStopped )
+		{
+			return;
+		}
+		if( aChannel == null )
+		{
+			create(new ArrayList<>());
+		}
+		write(aChannel, pLine);
+		aUnsynced++;
+		if( aUnsynced >= SYNC_BATCH )
+		{
+			sync();
+		}
+		else if( !aSyncScheduled )
+		{
+			aSyncScheduled = true;
+			WRITER.schedule(() -> 
+			{
+				aSyncScheduled = false;
+				try
+				{
+					sync();
+				}
+				catch(IOException exception)
+				{
+					stop();
+				}
+			}, SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	private void sync() throws IOException
+	{
+		if( aChannel != null && aUnsynced > 0 )
+		{
+			aChannel.force(false);
+			aUnsynced = 0;
+		}
+	}
+	
+	/*
+	 * Replaces the file of the journal with one that contains 
+	 * the header and pLines, and opens it for appending.
+	 */
+	private void create(List<String> pLines) throws IOException
+	{
+		File file = aFile;
+		File temporary = File.createTempFile(file.getName() + ".", null, file.getParentFile());
+		try
+		{
+			try( FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.WRITE) )
+			{
+				write(channel, aHeader);
+				for( String line : pLines )
+				{
+					write(channel, line);
+				}
+				channel.force(false);
+			}
+			PersistenceService.replace(temporary, file);
+		}
+		finally
+		{
+			temporary.delete();
+		}
+		aChannel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		aUnsynced = 0;
+	}
+	
+	private static void write(FileChannel pChannel, String pLine) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap((pLine + "\n").getBytes(StandardCharsets.UTF_8));
+		while( buffer.hasRemaining() )
+		{
+			pChannel.write(buffer);
+		}
+	}
+	
+	private void stop()
+	{
+		aStopped = true;
+		closeChannel();
+	}
+	
+	private void closeChannel()
+	{
+		if( aChannel != null )
+		{
+			try
+			{
+				aChannel.close();
+			}
+			catch(IOException exception)
+			{
+				// Nothing more can be done with the channel
+			}
+			aChannel = null;
+		}
+	}
+	
+	/*
+	 * Replays the journal in pFile on the graph, and returns the lines that 
+	 * were replayed. If pDiagram was changed since the journal was written, 
+	 * only the commands after its first checkpoint apply, since the save of 
+	 * that checkpoint completed. The first line that cannot be replayed, 
+	 * such as a line cut short by a crash, ends the journal.
+	 */
+	private List<String> recover(File pDiagram, File pFile) throws IOException
+	{
+		String text = new String(Files.readAllBytes(pFile.toPath()), StandardCharsets.UTF_8);
+		List<String> lines = new ArrayList<>();
+		int start = 0;
+		for( int end = text.indexOf('\n'); end >= 0; end = text.indexOf('\n', start) )
+		{
+			lines.add(text.substring(start, end));
+			start = end + 1;
+		}
+		List<String> replayed = new ArrayList<>();
+		try
+		{
+			if( lines.isEmpty() )
+			{
+				return replayed;
+			}
+			JSONObject header = new JSONObject(lines.get(0));
+			if( !header.getString("diagram").equals(aGraph.getClass().getSimpleName()) )
+			{
+				return replayed;
+			}
+			int first = 1;
+			if( header.getLong("length") != pDiagram.length() || header.getLong("modified") != pDiagram.lastModified() )
+			{
+				first = lines.size();
+				for( int i = 1; i < lines.size(); i++ )
+				{
+					if( new JSONObject(lines.get(i)).has("checkpoint") )
+					{
+						first = i + 1;
+						break;
+					}
+				}
+			}
+			for( String line : lines.subList(first, lines.size()) )
+			{
+				JSONObject object = new JSONObject(line);
+				if( object.has("checkpoint") )
+				{
+					replayCheckpoint(object.getJSONObject("checkpoint"));
+				}
+				else
+				{
+					replayCommand(object.getJSONArray("operations"));
+					aRecovered++;
+				}
+				replayed.add(line);
+			}
+		}
+		catch(JSONException | DeserializationException exception)
+		{
+			// The rest of the journal is unusable
+		}
+		return replayed;
+	}
+	
+	private void replayCheckpoint(JSONObject pCheckpoint)
+	{
+		HashMap<Integer, Node> nodes = new HashMap<>(aNodesById);
+		HashMap<Integer, Edge> edges = new HashMap<>(aEdgesById);
+		aNodes.clear();
+		aNodesById.clear();
+		aEdges.clear();
+		aEdgesById.clear();
+		JSONArray nodeIds = pCheckpoint.getJSONArray("nodes");
+		for( int i = 0; i < nodeIds.length(); i++ )
+		{
+			if( nodes.containsKey(nodeIds.getInt(i)) )
+			{
+				identify(nodes.get(nodeIds.getInt(i)), i);
+			}
+		}
+		JSONArray edgeIds = pCheckpoint.getJSONArray("edges");
+		for( int i = 0; i < edgeIds.length(); i++ )
+		{
+			if( edges.containsKey(edgeIds.getInt(i)) )
+			{
+				identify(edges.get(edgeIds.getInt(i)), i);
+			}
+		}
+		aNextNodeId = nodeIds.length();
+		aNextEdgeId = edgeIds.length();
+	}
+	
+	private void replayCommand(JSONArray pOperations)
+	{
+		for( int i = 0; i < pOperations.length(); i++ )
+		{
+			JSONObject operation = pOperations.getJSONObject(i);
+			String type = operation.getString("op");
+			if( type.equals("addNode") )
+			{
+				replayNodeAddition(operation);
+			}
+			else if( type.equals("removeNode") )
+			{
+				Node node = node(operation.getInt("id"));
+				forget(node);
+				aGraph.removeNode(node);
+			}
+			else if( type.equals("addEdge") )
+			{
+				Edge edge = ElementFactory.createEdge(operation.getString("type"));
+				edge.initialize(JsonDecoder.createValueExtractor(operation.getJSONObject("properties")));
+				aGraph.restoreEdge(edge, node(operation.getInt("start")), node(operation.getInt("end")));
+				identify(edge, operation.getInt("id"));
+			}
+			else if( type.equals("removeEdge") )
+			{
+				Edge edge = edge(operation.getInt("id"));
+				aEdges.remove(edge);
+				aEdgesById.remove(operation.getInt("id"));
+				aGraph.removeEdge(edge);
+			}
+			else if( type.equals("move") )
+			{
+				node(operation.getInt("id")).translate(operation.getInt("dx"), operation.getInt("dy"));
+			}
+			else if( type.equals("change") )
+			{
+				GraphElement element = operation.has("node") ? node(operation.getInt("node")) : edge(operation.getInt("edge"));
+				element.initialize(JsonDecoder.createValueExtractor(operation.getJSONObject("properties")));
+			}
+			else
+			{
+				throw new DeserializationException("Unknown journal operation: " + type);
+			}
+		}
+		aGraph.requestLayout();
+	}
+	
+	private void replayNodeAddition(JSONObject pOperation)
+	{
+		Node node = ElementFactory.createNode(pOperation.getString("type"));
+		node.initialize(JsonDecoder.createValueExtractor(pOperation.getJSONObject("properties")));
+		if( pOperation.has("parent") )
+		{
+			Node parent = node(pOperation.getInt("parent"));
+			if( !(parent instanceof ParentNode) || !(node instanceof ChildNode) )
+			{
+				throw new DeserializationException("Node " + pOperation.getInt("id") + " cannot be a child");
+			}
+			int size = ((ParentNode) parent).getChildren().size();
+			int index = pOperation.getInt("index");
+			((ParentNode) parent).addChild(index < 0 || index > size ? size : index, (ChildNode) node);
+		}
+		else
+		{
+			aGraph.restoreRootNode(node);
+		}
+		identify(node, pOperation.getInt("id"));
+	}
+	
+	private Node node(int pId)
+	{
+		if( !aNodesById.containsKey(pId) )
+		{
+			throw new DeserializationException("Unknown node id: " + pId);
+		}
+		return aNodesById.get(pId);
+	}
+	
+	private Edge edge(int pId)
+	{
+		if( !aEdgesById.containsKey(pId) )
+		{
+			throw new DeserializationException("Unknown edge id: " + pId);
+		}
+		return aEdgesById.get(pId);
+	}
+	
+	/*
+	 * An operation on the files of the journal.
+	 */
+	private interface FileOperation
+	{
+		void run() throws IOException;
+	}
+}
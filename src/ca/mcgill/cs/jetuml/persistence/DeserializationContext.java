@@ -1,7 +1,10 @@
 package ca.mcgill.cs.jetuml.persistence;
 
+import java.util.TreeMap;
+
 import ca.mcgill.cs.jetuml.graph.Graph;
 import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.graph.nodes.ChildNode;
 
 /**
  * A deserialization context allows clients to incrementally build
@@ -13,6 +16,8 @@ import ca.mcgill.cs.jetuml.graph.Node;
  */
 public class DeserializationContext extends AbstractContext
 {
+	private final TreeMap<Integer, Node> aNodesById = new TreeMap<>();
+	
 	/**
 	 * Initializes an empty context and associates it with
 	 * pGraph.
@@ -35,24 +40,49 @@ public class DeserializationContext extends AbstractContext
 	public void addNode(Node pNode, int pId)
 	{
 		assert pNode != null;
-		aNodes.put(pNode, pId);
+		Integer previous = aNodes.put(pNode, pId);
+		if( previous != null && aNodesById.get(previous) == pNode )
+		{
+			aNodesById.remove(previous);
+		}
+		aNodesById.put(pId, pNode);
 	}
 	
 	/**
-	 * @param pId The identifier to search for.
-	 * @return The node associated with this identifier.
-	 * @pre pId exists as a value.
+	 * Discovers the root nodes, i.e., the nodes without a parent, 
+	 * and stores them in the graph in the order of their identifiers, 
+	 * so that saving and reading a graph preserves the order of its 
+	 * root nodes. Assumes the context has been initialized
+	 * with all the nodes and their parent-child hierarchy.
 	 */
-	public Node getNode(int pId)
+	public void restoreRootNodes()
 	{
-		for( Node node : aNodes.keySet() )
+		for( Node node : aNodesById.values() )
 		{
-			if( aNodes.get(node) == pId )
+			if( !(node instanceof ChildNode) || ((ChildNode)node).getParent() == null )
 			{
-				return node;
+				getGraph().restoreRootNode(node);
 			}
 		}
-		assert false;
-		return null;
+	}
+	
+	/**
+	 * @param pId The identifier to search for.
+	 * @return True if a node is associated with this identifier.
+	 */
+	public boolean hasNode(int pId)
+	{
+		return aNodesById.containsKey(pId);
+	}
+	
+	/**
+	 * @param pId The identifier to search for.
+	 * @return The node associated with this identifier.
+	 * @pre pId exists as a value.
+	 */
+	public Node getNode(int pId)
+	{
+		assert aNodesById.containsKey(pId);
+		return aNodesById.get(pId);
 	}
 }
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.persistence;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import ca.mcgill.cs.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.jetuml.diagrams.ObjectDiagramGraph;
+import ca.mcgill.cs.jetuml.diagrams.SequenceDiagramGraph;
+import ca.mcgill.cs.jetuml.diagrams.StateDiagramGraph;
+import ca.mcgill.cs.jetuml.diagrams.UseCaseDiagramGraph;
+import ca.mcgill.cs.jetuml.graph.Edge;
+import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.graph.edges.AggregationEdge;
+import ca.mcgill.cs.jetuml.graph.edges.AssociationEdge;
+import ca.mcgill.cs.jetuml.graph.edges.CallEdge;
+import ca.mcgill.cs.jetuml.graph.edges.DependencyEdge;
+import ca.mcgill.cs.jetuml.graph.edges.GeneralizationEdge;
+import ca.mcgill.cs.jetuml.graph.edges.NoteEdge;
+import ca.mcgill.cs.jetuml.graph.edges.ObjectCollaborationEdge;
+import ca.mcgill.cs.jetuml.graph.edges.ObjectReferenceEdge;
+import ca.mcgill.cs.jetuml.graph.edges.ReturnEdge;
+import ca.mcgill.cs.jetuml.graph.edges.StateTransitionEdge;
+import ca.mcgill.cs.jetuml.graph.edges.UseCaseAssociationEdge;
+import ca.mcgill.cs.jetuml.graph.edges.UseCaseDependencyEdge;
+import ca.mcgill.cs.jetuml.graph.edges.UseCaseGeneralizationEdge;
+import ca.mcgill.cs.jetuml.graph.nodes.ActorNode;
+import ca.mcgill.cs.jetuml.graph.nodes.CallNode;
+import ca.mcgill.cs.jetuml.graph.nodes.ClassNode;
+import ca.mcgill.cs.jetuml.graph.nodes.FieldNode;
+import ca.mcgill.cs.jetuml.graph.nodes.FinalStateNode;
+import ca.mcgill.cs.jetuml.graph.nodes.ImplicitParameterNode;
+import ca.mcgill.cs.jetuml.graph.nodes.InitialStateNode;
+import ca.mcgill.cs.jetuml.graph.nodes.InterfaceNode;
+import ca.mcgill.cs.jetuml.graph.nodes.NoteNode;
+import ca.mcgill.cs.jetuml.graph.nodes.ObjectNode;
+import ca.mcgill.cs.jetuml.graph.nodes.PackageNode;
+import ca.mcgill.cs.jetuml.graph.nodes.PointNode;
+import ca.mcgill.cs.jetuml.graph.nodes.StateNode;
+import ca.mcgill.cs.jetuml.graph.nodes.UseCaseNode;
+
+/**
+ * Creates graphs, nodes and edges from the simple name of their class, as
+ * written in serialized graphs, by calling the constructor registered for
+ * this name. Every concrete graph, node and edge class must be registered here
+ * to be deserialized.
+ */
+final class ElementFactory
+{
+	private static final Map<String, Supplier<Graph>> GRAPHS = new HashMap<>();
+	private static final Map<String, Supplier<Node>> NODES = new HashMap<>();
+	private static final Map<String, Supplier<Edge>> EDGES = new HashMap<>();
+	
+	static
+	{
+		registerGraph(ClassDiagramGraph.class, ClassDiagramGraph::new);
+		registerGraph(ObjectDiagramGraph.class, ObjectDiagramGraph::new);
+		registerGraph(SequenceDiagramGraph.class, SequenceDiagramGraph::new);
+		registerGraph(StateDiagramGraph.class, StateDiagramGraph::new);
+		registerGraph(UseCaseDiagramGraph.class, UseCaseDiagramGraph::new);
+		
+		registerNode(ActorNode.class, ActorNode::new);
+		registerNode(CallNode.class, CallNode::new);
+		registerNode(ClassNode.class, ClassNode::new);
+		registerNode(FieldNode.class, FieldNode::new);
+		registerNode(FinalStateNode.class, FinalStateNode::new);
+		registerNode(ImplicitParameterNode.class, ImplicitParameterNode::new);
+		registerNode(InitialStateNode.class, InitialStateNode::new);
+		registerNode(InterfaceNode.class, InterfaceNode::new);
+		registerNode(NoteNode.class, NoteNode::new);
+		registerNode(ObjectNode.class, ObjectNode::new);
+		registerNode(PackageNode.class, PackageNode::new);
+		registerNode(PointNode.class, PointNode::new);
+		registerNode(StateNode.class, StateNode::new);
+		registerNode(UseCaseNode.class, UseCaseNode::new);
+		
+		registerEdge(AggregationEdge.class, AggregationEdge::new);
+		registerEdge(AssociationEdge.class, AssociationEdge::new);
+		registerEdge(CallEdge.class, CallEdge::new);
+		registerEdge(DependencyEdge.class, DependencyEdge::new);
+		registerEdge(GeneralizationEdge.class, GeneralizationEdge::new);
+		registerEdge(NoteEdge.class, NoteEdge::new);
+		registerEdge(ObjectCollaborationEdge.class, ObjectCollaborationEdge::new);
+		registerEdge(ObjectReferenceEdge.class, ObjectReferenceEdge::new);
+		registerEdge(ReturnEdge.class, ReturnEdge::new);
+		registerEdge(StateTransitionEdge.class, StateTransitionEdge::new);
+		registerEdge(UseCaseAssociationEdge.class, UseCaseAssociationEdge::new);
+		registerEdge(UseCaseDependencyEdge.class, UseCaseDependencyEdge::new);
+		registerEdge(UseCaseGeneralizationEdge.class, UseCaseGeneralizationEdge::new);
+	}
+	
+	private ElementFactory() {}
+	
+	private static void registerGraph(Class<? extends Graph> pType, Supplier<Graph> pSupplier)
+	{
+		GRAPHS.put(pType.getSimpleName(), pSupplier);
+	}
+	
+	private static void registerNode(Class<? extends Node> pType, Supplier<Node> pSupplier)
+	{
+		NODES.put(pType.getSimpleName(), pSupplier);
+	}
+	
+	private static void registerEdge(Class<? extends Edge> pType, Supplier<Edge> pSupplier)
+	{
+		EDGES.put(pType.getSimpleName(), pSupplier);
+	}
+	
+	/**
+	 * @param pType The simple name of the class of a graph.
+	 * @return A new, empty graph of this type.
+	 * @throws DeserializationException If pType is not the name of a graph class.
+	 * @pre pType != null
+	 */
+	static Graph createGraph(String pType)
+	{
+		assert pType != null;
+		return create(GRAPHS, pType);
+	}
+	
+	/**
+	 * @param pType The simple name of the class of a node.
+	 * @return A new node of this type.
+	 * @throws DeserializationException If pType is not the name of a node class.
+	 * @pre pType != null
+	 */
+	static Node createNode(String pType)
+	{
+		assert pType != null;
+		return create(NODES, pType);
+	}
+	
+	/**
+	 * @param pType The simple name of the class of an edge.
+	 * @return A new edge of this type.
+	 * @throws DeserializationException If pType is not the name of an edge class.
+	 * @pre pType != null
+	 */
+	static Edge createEdge(String pType)
+	{
+		assert pType != null;
+		return create(EDGES, pType);
+	}
+	
+	private static <T> T create(Map<String, Supplier<T>> pSuppliers, String pType)
+	{
+		Supplier<T> supplier = pSuppliers.get(pType);
+		if( supplier == null )
+		{
+			throw new DeserializationException("Cannot instantiate serialized object of type " + pType);
+		}
+		return supplier.get();
+	}
+}
@@ -1,8 +1,13 @@
 package ca.mcgill.cs.jetuml.persistence;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
 import ca.mcgill.cs.jetuml.graph.Edge;
 import ca.mcgill.cs.jetuml.graph.Graph;
@@ -12,20 +17,16 @@ import ca.mcgill.cs.jetuml.graph.nodes.ChildNode;
 import ca.mcgill.cs.jetuml.graph.nodes.ParentNode;
 
 /**
- * Converts a JSONObject to a graph.
+ * Converts a JSONObject, or JSON text read from a JSONTokener, to a graph.
  *
  * @author Martin P. Robillard
  *
  */
 public final class JsonDecoder
 {
-	private static final String PREFIX_DIAGRAMS = "ca.mcgill.cs.jetuml.diagrams.";
-	private static final String PREFIX_NODES = "ca.mcgill.cs.jetuml.graph.nodes.";
-	private static final String PREFIX_EDGES = "ca.mcgill.cs.jetuml.graph.edges.";
-	
 	private JsonDecoder() {}
 	
-	private static ValueExtractor createValueExtractor(JSONObject pObject)
+	static ValueExtractor createValueExtractor(JSONObject pObject)
 	{
 		return new ValueExtractor()
 		{
@@ -59,104 +60,309 @@ public final class JsonDecoder
 		assert pGraph != null;
 		try
 		{
-			Class<?> diagramClass = Class.forName(PREFIX_DIAGRAMS + pGraph.getString("diagram"));
-			Graph graph = (Graph) diagramClass.newInstance();
-			DeserializationContext context = new DeserializationContext(graph);
-			decodeNodes(context, pGraph);
-			restoreChildren(context, pGraph);
-			restoreRootNodes(context);
-			decodeEdges(context, pGraph);
-			return graph;
+			DeserializationContext context = new DeserializationContext(ElementFactory.createGraph(pGraph.getString("diagram")));
+			decodeNodes(context, pGraph.getJSONArray("nodes"));
+			decodeEdges(context, pGraph.getJSONArray("edges"));
+			return context.getGraph();
 		}
-		catch( ClassNotFoundException | IllegalAccessException | InstantiationException | JSONException exception )
+		catch( JSONException exception )
 		{
 			throw new DeserializationException("Cannot decode serialized object", exception);
 		}
 	}
 	
-	/* 
-	 * Extracts information about nodes from pObject and creates new objects
-	 * to represent them in pGraph.
-	 * throws Deserialization Exception
+	/**
+	 * Decodes a graph as its encoding is read from pTokener. Each node and
+	 * edge is created as soon as its encoding is read, so the JSON object
+	 * for the entire graph is never built.
+	 * 
+	 * @param pTokener A tokener positioned at the start of the encoding of a graph.
+	 * @return The decoded graph.
+	 * @throws DeserializationException If it's not possible to decode the encoding into a valid graph.
 	 */
-	private static void decodeNodes(DeserializationContext pContext, JSONObject pObject)
+	public static Graph decode(JSONTokener pTokener)
 	{
-		JSONArray nodes = pObject.getJSONArray("nodes");
-		for( int i = 0; i < nodes.length(); i++ )
+		assert pTokener != null;
+		try
 		{
-			try
-			{
-				JSONObject object = nodes.getJSONObject(i);
-				Class<?> nodeClass = Class.forName(PREFIX_NODES + object.getString("type"));
-				Node node = (Node) nodeClass.newInstance();
-				node.initialize(createValueExtractor(object));
-				pContext.addNode(node, object.getInt("id"));
-			}
-			catch( ClassNotFoundException | IllegalAccessException | InstantiationException exception )
-			{
-				throw new DeserializationException("Cannot instantiate serialized object", exception);
-			}
+			return new StreamDecoder(pTokener).decode();
+		}
+		catch( JSONException exception )
+		{
+			throw new DeserializationException("Cannot decode serialized object", exception);
 		}
 	}
 	
 	/* 
-	 * Discovers the root nodes and stores them in the graph.
+	 * Creates the nodes encoded in pNodes, then restores the parent-child
+	 * hierarchy and the root nodes of the context's graph.
 	 */
-	private static void restoreRootNodes(DeserializationContext pContext)
+	private static void decodeNodes(DeserializationContext pContext, JSONArray pNodes)
 	{
-		for( Node node : pContext )
+		for( int i = 0; i < pNodes.length(); i++ )
 		{
-			if( !(node instanceof ChildNode) || ((ChildNode)node).getParent() == null )
-			{
-				pContext.getGraph().restoreRootNode(node);
-			}
+			decodeNode(pContext, pNodes.getJSONObject(i));
+		}
+		for( int i = 0; i < pNodes.length(); i++ )
+		{
+			restoreChildren(pContext, pNodes.getJSONObject(i));
 		}
+		pContext.restoreRootNodes();
+	}
+	
+	/* 
+	 * Extracts information about a node from pObject and creates a new object
+	 * to represent it in the context.
+	 * throws Deserialization Exception
+	 */
+	private static void decodeNode(DeserializationContext pContext, JSONObject pObject)
+	{
+		pContext.addNode(decodeNode(pObject), pObject.getInt("id"));
+	}
+	
+	/**
+	 * @param pObject A JSON object that encodes a node, as produced by 
+	 * JsonEncoder.encode(GraphElement).
+	 * @return A new node with the encoded properties, without parent or children.
+	 * @throws DeserializationException If the type of node is not known.
+	 */
+	public static Node decodeNode(JSONObject pObject)
+	{
+		assert pObject != null;
+		Node node = ElementFactory.createNode(pObject.getString("type"));
+		node.initialize(createValueExtractor(pObject));
+		return node;
+	}
+	
+	/**
+	 * @param pObject A JSON object that encodes an edge, as produced by 
+	 * JsonEncoder.encode(GraphElement).
+	 * @return A new edge with the encoded properties, which is not connected.
+	 * @throws DeserializationException If the type of edge is not known.
+	 */
+	public static Edge decodeEdge(JSONObject pObject)
+	{
+		assert pObject != null;
+		Edge edge = ElementFactory.createEdge(pObject.getString("type"));
+		edge.initialize(createValueExtractor(pObject));
+		return edge;
 	}
 	
 	/* 
-	 * Restores the parent-child hierarchy within the context's graph. Assumes
+	 * Restores the children of the node encoded in pObject, if any. Assumes
 	 * the context has been initialized with all the nodes.
 	 */
 	private static void restoreChildren(DeserializationContext pContext, JSONObject pObject)
 	{
-		JSONArray nodes = pObject.getJSONArray("nodes");
-		for( int i = 0; i < nodes.length(); i++ )
+		if( pObject.has("children"))
 		{
-			JSONObject object = nodes.getJSONObject(i);
-			if( object.has("children"))
+			Node node = pContext.getNode( pObject.getInt("id"));
+			JSONArray children = pObject.getJSONArray("children");
+			for( int j = 0; j < children.length(); j++ )
 			{
-				Node node = pContext.getNode( object.getInt("id"));
-				JSONArray children = object.getJSONArray("children");
-				for( int j = 0; j < children.length(); j++ )
-				{
-					((ParentNode)node).addChild((ChildNode)pContext.getNode(children.getInt(j)));
-				}
+				((ParentNode)node).addChild((ChildNode)pContext.getNode(children.getInt(j)));
 			}
 		}
 	}
 	
+	private static void decodeEdges(DeserializationContext pContext, JSONArray pEdges)
+	{
+		for( int i = 0; i < pEdges.length(); i++ )
+		{
+			decodeEdge(pContext, pEdges.getJSONObject(i));
+		}
+	}
+	
 	/* 
-	 * Extracts information about nodes from pObject and creates new objects
-	 * to represent them in pGraph.
+	 * Extracts information about an edge from pObject and creates a new object
+	 * to represent it in the context's graph.
 	 * throws Deserialization Exception
 	 */
-	private static void decodeEdges(DeserializationContext pContext, JSONObject pObject)
+	private static void decodeEdge(DeserializationContext pContext, JSONObject pObject)
 	{
-		JSONArray edges = pObject.getJSONArray("edges");
-		for( int i = 0; i < edges.length(); i++ )
+		pContext.getGraph().restoreEdge(decodeEdge(pObject), pContext.getNode(pObject.getInt("start")), pContext.getNode(pObject.getInt("end")));
+	}
+	
+	/*
+	 * Reads the members of the encoding of a graph one token at a time. 
+	 * The nodes and edges are decoded one at a time as long as the diagram
+	 * type comes before the nodes, and the nodes before the edges, which is 
+	 * the order written by JsonEncoder. Otherwise, the arrays that arrive too
+	 * early are read whole and decoded once the members they depend on are known.
+	 */
+	private static final class StreamDecoder
+	{
+		private final JSONTokener aTokener;
+		private DeserializationContext aContext;
+		private JSONArray aNodes;
+		private JSONArray aEdges;
+		private boolean aNodesDecoded = false;
+		private boolean aEdgesDecoded = false;
+		
+		StreamDecoder(JSONTokener pTokener)
+		{
+			aTokener = pTokener;
+		}
+		
+		Graph decode()
+		{
+			if( aTokener.nextClean() != '{' )
+			{
+				throw aTokener.syntaxError("A JSONObject text must begin with '{'");
+			}
+			boolean more = !isEnd('}');
+			while( more )
+			{
+				String key = aTokener.nextValue().toString();
+				if( aTokener.nextClean() != ':' )
+				{
+					throw aTokener.syntaxError("Expected a ':' after a key");
+				}
+				decodeMember(key);
+				char next = aTokener.nextClean();
+				if( next == ',' || next == ';' )
+				{
+					more = !isEnd('}');
+				}
+				else if( next == '}' )
+				{
+					more = false;
+				}
+				else
+				{
+					throw aTokener.syntaxError("Expected a ',' or '}'");
+				}
+			}
+			return complete();
+		}
+		
+		private void decodeMember(String pKey)
+		{
+			if( pKey.equals("diagram") )
+			{
+				aContext = new DeserializationContext(ElementFactory.createGraph(aTokener.nextValue().toString()));
+			}
+			else if( pKey.equals("nodes") && aContext != null )
+			{
+				List<JSONObject> parents = new ArrayList<>();
+				readElements( object -> 
+				{
+					decodeNode(aContext, object);
+					if( object.has("children") )
+					{
+						parents.add(object);
+					}
+				});
+				for( JSONObject parent : parents )
+				{
+					restoreChildren(aContext, parent);
+				}
+				aContext.restoreRootNodes();
+				aNodesDecoded = true;
+			}
+			else if( pKey.equals("nodes") )
+			{
+				aNodes = readArray();
+			}
+			else if( pKey.equals("edges") && aNodesDecoded )
+			{
+				readElements( object -> decodeEdge(aContext, object));
+				aEdgesDecoded = true;
+			}
+			else if( pKey.equals("edges") )
+			{
+				aEdges = readArray();
+			}
+			else
+			{
+				aTokener.nextValue();
+			}
+		}
+		
+		/*
+		 * Decodes the arrays that were read before the members they depend on.
+		 */
+		private Graph complete()
+		{
+			if( aContext == null )
+			{
+				throw new JSONException("JSONObject[\"diagram\"] not found.");
+			}
+			if( !aNodesDecoded )
+			{
+				if( aNodes == null )
+				{
+					throw new JSONException("JSONObject[\"nodes\"] not found.");
+				}
+				decodeNodes(aContext, aNodes);
+			}
+			if( !aEdgesDecoded )
+			{
+				if( aEdges == null )
+				{
+					throw new JSONException("JSONObject[\"edges\"] not found.");
+				}
+				decodeEdges(aContext, aEdges);
+			}
+			return aContext.getGraph();
+		}
+		
+		private JSONArray readArray()
+		{
+			Object value = aTokener.nextValue();
+			if( !(value instanceof JSONArray) )
+			{
+				throw aTokener.syntaxError("Expected a JSONArray");
+			}
+			return (JSONArray) value;
+		}
+		
+		/*
+		 * Reads an array of objects and passes each object to pAction as soon
+		 * as it is read.
+		 */
+		private void readElements(Consumer<JSONObject> pAction)
 		{
-			try
+			if( aTokener.nextClean() != '[' )
 			{
-				JSONObject object = edges.getJSONObject(i);
-				Class<?> edgeClass = Class.forName(PREFIX_EDGES + object.getString("type"));
-				Edge edge = (Edge) edgeClass.newInstance();
-				edge.initialize(createValueExtractor(object));
-				pContext.getGraph().restoreEdge(edge, pContext.getNode(object.getInt("start")), pContext.getNode(object.getInt("end")));
+				throw aTokener.syntaxError("A JSONArray text must start with '['");
 			}
-			catch( ClassNotFoundException | IllegalAccessException | InstantiationException exception )
+			boolean more = !isEnd(']');
+			while( more )
+			{
+				Object value = aTokener.nextValue();
+				if( !(value instanceof JSONObject) )
+				{
+					throw aTokener.syntaxError("Expected a JSONObject");
+				}
+				pAction.accept((JSONObject) value);
+				char next = aTokener.nextClean();
+				if( next == ',' )
+				{
+					more = !isEnd(']');
+				}
+				else if( next == ']' )
+				{
+					more = false;
+				}
+				else
+				{
+					throw aTokener.syntaxError("Expected a ',' or ']'");
+				}
+			}
+		}
+		
+		/*
+		 * Consumes the next character if it is pEnd.
+		 */
+		private boolean isEnd(char pEnd)
+		{
+			if( aTokener.nextClean() == pEnd )
 			{
-				throw new DeserializationException("Cannot instantiate serialized object", exception);
+				return true;
 			}
+			aTokener.back();
+			return false;
 		}
 	}
 }
@@ -3,11 +3,14 @@ package ca.mcgill.cs.jetuml.persistence;
 import java.util.ResourceBundle;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONWriter;
 
 import ca.mcgill.cs.jetuml.UMLEditor;
 import ca.mcgill.cs.jetuml.graph.Edge;
 import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.graph.GraphElement;
 import ca.mcgill.cs.jetuml.graph.Node;
 import ca.mcgill.cs.jetuml.graph.nodes.ChildNode;
 import ca.mcgill.cs.jetuml.graph.nodes.ParentNode;
@@ -34,15 +37,72 @@ public final class JsonEncoder
 	{
 		assert pGraph != null;
 		
-		JSONObject object = new JSONObject();
-		object.put("version", ResourceBundle.getBundle(UMLEditor.class.getName() + "Version").getString("version.number"));
-		object.put("diagram", pGraph.getClass().getSimpleName());
+		JSONObject object = encodeHeader(pGraph);
 		SerializationContext context = new SerializationContext(pGraph);
 		object.put("nodes", encodeNodes(context));
 		object.put("edges", encodeEdges(context));
 		return object;
 	}
 	
+	/**
+	 * Writes the encoding of pGraph to pOut one node and one edge
+	 * at a time, without building the JSON object for the entire graph.
+	 * The text written is the same as encode(pGraph).toString().
+	 * 
+	 * @param pGraph The graph to serialize.
+	 * @param pOut The destination of the encoding.
+	 * @throws JSONException If writing to pOut fails. The cause of 
+	 * the exception is the IOException raised by pOut.
+	 */
+	public static void encode(Graph pGraph, Appendable pOut)
+	{
+		assert pGraph != null && pOut != null;
+		
+		// The members of the graph object are written in the order in which
+		// JSONObject lists them, which depends on the set of keys only.
+		JSONObject template = encodeHeader(pGraph);
+		template.put("nodes", JSONObject.NULL);
+		template.put("edges", JSONObject.NULL);
+		SerializationContext context = new SerializationContext(pGraph);
+		JSONWriter writer = new JSONWriter(pOut);
+		writer.object();
+		for( String key : template.keySet() )
+		{
+			writer.key(key);
+			if( key.equals("nodes") )
+			{
+				writer.array();
+				for( Node node : context )
+				{
+					writer.value(encodeNode(node, context));
+				}
+				writer.endArray();
+			}
+			else if( key.equals("edges") )
+			{
+				writer.array();
+				for( Edge edge : pGraph.getEdges() )
+				{
+					writer.value(encodeEdge(edge, context));
+				}
+				writer.endArray();
+			}
+			else
+			{
+				writer.value(template.get(key));
+			}
+		}
+		writer.endObject();
+	}
+	
+	private static JSONObject encodeHeader(Graph pGraph)
+	{
+		JSONObject object = new JSONObject();
+		object.put("version", ResourceBundle.getBundle(UMLEditor.class.getName() + "Version").getString("version.number"));
+		object.put("diagram", pGraph.getClass().getSimpleName());
+		return object;
+	}
+	
 	private static JSONArray encodeNodes(SerializationContext pContext)
 	{
 		JSONArray nodes = new JSONArray();
@@ -53,11 +113,24 @@ public final class JsonEncoder
 		return nodes;
 	}
 	
+	/**
+	 * @param pElement The node or edge to serialize.
+	 * @return A JSON object that encodes the type and the properties of 
+	 * pElement as in the encoding of a graph, without any reference to 
+	 * other elements.
+	 */
+	public static JSONObject encode(GraphElement pElement)
+	{
+		assert pElement != null;
+		JSONObject object = toJSONObject(pElement.properties());
+		object.put("type", pElement.getClass().getSimpleName());
+		return object;
+	}
+	
 	private static JSONObject encodeNode(Node pNode, SerializationContext pContext)
 	{
-		JSONObject object = toJSONObject(pNode.properties());
+		JSONObject object = encode(pNode);
 		object.put("id", pContext.getId(pNode));
-		object.put("type", pNode.getClass().getSimpleName());
 		if( pNode instanceof ParentNode )
 		{
 			object.put("children", encodeChildren(pNode, pContext));
@@ -80,17 +153,20 @@ public final class JsonEncoder
 		JSONArray edges = new JSONArray();
 		for( Edge edge : pContext.getGraph().getEdges() ) 
 		{
-			JSONObject object = toJSONObject(edge.properties());
-			object.put("type", edge.getClass().getSimpleName());
-			object.put("start", pContext.getId(edge.getStart()));
-			object.put("end", pContext.getId(edge.getEnd()));
-			
-			edges.put(object);
+			edges.put(encodeEdge(edge, pContext));
 		}
 		return edges;
 	}
 	
-	private static JSONObject toJSONObject(Properties pProperties)
+	private static JSONObject encodeEdge(Edge pEdge, AbstractContext pContext)
+	{
+		JSONObject object = encode(pEdge);
+		object.put("start", pContext.getId(pEdge.getStart()));
+		object.put("end", pContext.getId(pEdge.getEnd()));
+		return object;
+	}
+	
+	static JSONObject toJSONObject(Properties pProperties)
 	{
 		JSONObject object = new JSONObject();
 		for( String key : pProperties )
@@ -20,29 +20,53 @@
  *******************************************************************************/
 package ca.mcgill.cs.jetuml.persistence;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 import org.json.JSONException;
-import org.json.JSONObject;
+import org.json.JSONTokener;
 
+import ca.mcgill.cs.jetuml.graph.Edge;
 import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.graph.ValueExtractor;
+import ca.mcgill.cs.jetuml.graph.nodes.ChildNode;
+import ca.mcgill.cs.jetuml.graph.nodes.ParentNode;
 
 /**
  * Services for saving and loading Graph objects (i.e., UML diagrams).
+ * Graphs can be saved in JSON or in a compact binary format. The format
+ * of a file is detected when it is read. A file is only replaced once the 
+ * new version is completely written, so a failed save leaves it intact.
  * 
  * @author Martin P. Robillard
  */
 public final class PersistenceService
 {
+	/**
+	 * The formats in which a graph can be saved.
+	 */
+	public enum Format
+	{ JSON, BINARY }
+	
 	private PersistenceService() {}
 	
 	/**
-     * Saves the current graph in a file. 
+     * Saves the current graph in a file, in JSON. 
      * 
      * @param pGraph The graph to save
      * @param pFile The file to save
@@ -52,15 +76,151 @@ public final class PersistenceService
      */
 	public static void save(Graph pGraph, File pFile) throws IOException
 	{
-		assert pGraph != null && pFile != null;
-		try( PrintWriter out = new PrintWriter(new FileWriter(pFile)))
+		save(pGraph, pFile, Format.JSON);
+	}
+	
+	/**
+     * Saves the current graph in a file. The graph is written to a temporary
+     * file in the same directory, which is synced to the disk and then replaces pFile.
+     * 
+     * @param pGraph The graph to save
+     * @param pFile The file to save
+     * @param pFormat The format of the file
+     * @throws IOException If there is a problem writing to pFile.
+     * @pre pGraph != null.
+     * @pre pFile != null.
+     * @pre pFormat != null.
+     */
+	public static void save(Graph pGraph, File pFile, Format pFormat) throws IOException
+	{
+		assert pGraph != null && pFile != null && pFormat != null;
+		File temporary = File.createTempFile("." + pFile.getName() + ".", null, pFile.getAbsoluteFile().getParentFile());
+		try
+		{
+			try( FileOutputStream file = new FileOutputStream(temporary) )
+			{
+				OutputStream out = new BufferedOutputStream(file);
+				if( pFormat == Format.BINARY )
+				{
+					BinaryEncoder.encode(pGraph, out);
+				}
+				else
+				{
+					saveJson(pGraph, out);
+				}
+				out.flush();
+				// Otherwise the file could be replaced before its content reaches the disk
+				file.getFD().sync();
+			}
+			replace(temporary, pFile);
+		}
+		finally
+		{
+			temporary.delete();
+		}
+	}
+	
+	/*
+	 * Moves pSource to pTarget, then syncs the directory of pTarget
+	 * so that the move itself survives a crash.
+	 */
+	static void replace(File pSource, File pTarget) throws IOException
+	{
+		try
+		{
+			Files.move(pSource.toPath(), pTarget.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch( AtomicMoveNotSupportedException exception )
+		{
+			Files.move(pSource.toPath(), pTarget.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		try( FileChannel directory = FileChannel.open(pTarget.getAbsoluteFile().getParentFile().toPath(), StandardOpenOption.READ) )
+		{
+			directory.force(true);
+		}
+		catch( IOException exception )
+		{
+			// Some platforms, e.g., Windows, cannot open or sync a directory
+		}
+	}
+	
+	/**
+	 * Copies a graph through the information that is saved for each of its 
+	 * elements. Saving the copy produces the same result as saving pGraph, but
+	 * the copy does not share any state with pGraph, so it can be saved on another
+	 * thread while pGraph is modified. Copying is much faster than saving, since it
+	 * neither encodes nor writes anything.
+	 * 
+	 * @param pGraph The graph to copy.
+	 * @return A new graph with the same elements as pGraph.
+	 * @pre pGraph != null
+	 */
+	public static Graph snapshot(Graph pGraph)
+	{
+		assert pGraph != null;
+		SerializationContext original = new SerializationContext(pGraph);
+		DeserializationContext copy = new DeserializationContext(ElementFactory.createGraph(pGraph.getClass().getSimpleName()));
+		for( Node node : original )
+		{
+			Node snapshot = ElementFactory.createNode(node.getClass().getSimpleName());
+			snapshot.initialize(createValueExtractor(node.properties()));
+			copy.addNode(snapshot, original.getId(node));
+		}
+		for( Node node : original )
 		{
-			out.println(JsonEncoder.encode(pGraph).toString());
+			if( node instanceof ParentNode )
+			{
+				ParentNode parent = (ParentNode) copy.getNode(original.getId(node));
+				for( ChildNode child : ((ParentNode) node).getChildren() )
+				{
+					parent.addChild((ChildNode) copy.getNode(original.getId(child)));
+				}
+			}
+		}
+		copy.restoreRootNodes();
+		for( Edge edge : pGraph.getEdges() )
+		{
+			Edge snapshot = ElementFactory.createEdge(edge.getClass().getSimpleName());
+			snapshot.initialize(createValueExtractor(edge.properties()));
+			copy.getGraph().restoreEdge(snapshot, copy.getNode(original.getId(edge.getStart())), 
+					copy.getNode(original.getId(edge.getEnd())));
+		}
+		return copy.getGraph();
+	}
+	
+	/*
+	 * Provides the properties as they would be decoded, i.e., with enumerated 
+	 * values as strings.
+	 */
+	private static ValueExtractor createValueExtractor(Properties pProperties)
+	{
+		return (pKey, pType) -> pType == ValueExtractor.Type.STRING ? pProperties.get(pKey).toString() : pProperties.get(pKey);
+	}
+	
+	/*
+	 * Writes pGraph to pOut in JSON, without closing pOut.
+	 */
+	private static void saveJson(Graph pGraph, OutputStream pOut) throws IOException
+	{
+		Writer out = new BufferedWriter(new OutputStreamWriter(pOut));
+		try
+		{
+			JsonEncoder.encode(pGraph, out);
+			out.write(System.lineSeparator());
+			out.flush();
+		}
+		catch( JSONException e )
+		{
+			if( e.getCause() instanceof IOException )
+			{
+				throw (IOException) e.getCause();
+			}
+			throw e;
 		}
 	}
 	
 	/**
-	 * Reads a graph from a file.
+	 * Reads a graph from a file, in any of the formats.
 	 * 
 	 * @param pFile The file to read the graph from.
 	 * @return The graph that is read in
@@ -71,14 +231,27 @@ public final class PersistenceService
 	public static Graph read(File pFile) throws IOException, DeserializationException
 	{
 		assert pFile != null;
-		try( BufferedReader in = new BufferedReader(new FileReader(pFile)))
+		try( BufferedInputStream in = new BufferedInputStream(new FileInputStream(pFile)))
 		{
-			Graph graph = JsonDecoder.decode(new JSONObject(in.readLine()));
+			byte[] header = new byte[BinaryEncoder.MAGIC.length];
+			in.mark(header.length);
+			in.read(header);
+			in.reset();
+			if( BinaryDecoder.isBinary(header) )
+			{
+				return BinaryDecoder.decode(in);
+			}
+			Graph graph = JsonDecoder.decode(new JSONTokener(new InputStreamReader(in)));
 			return graph;
 		}
-		catch( JSONException e )
+		catch( DeserializationException e )
 		{
-			throw new DeserializationException("Cannot decode the file", e);
+			// The tokener reports reading errors as JSONExceptions
+			if( e.getCause() instanceof JSONException && e.getCause().getCause() instanceof IOException )
+			{
+				throw (IOException) e.getCause().getCause();
+			}
+			throw e;
 		}
 	}
 }
@@ -23,9 +23,13 @@ package ca.mcgill.cs.jetuml.views;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Paint;
 import java.awt.Stroke;
+import java.awt.TexturePaint;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 
 import ca.mcgill.cs.jetuml.geom.Rectangle;
 
@@ -38,29 +42,221 @@ public final class Grid
 	private static final Color GRID_COLOR = new Color(220, 220, 220); 
 	private static final double GRID_SIZE = 10;
 	
+	private static volatile Strips aStrips; // The strips of the last scale and bounds drawn
+	
+	/*
+	 * The grid lines inside some bounds, rendered at the scale of the device 
+	 * as a row of pixels crossed by the vertical lines and a column of pixels 
+	 * crossed by the horizontal lines. Each strip spans the whole bounds, so 
+	 * its lines fall exactly where they would be drawn one by one, whatever 
+	 * the scale, and repeating the row down the bounds and the column across 
+	 * them draws the grid, as far as the lines reach. The strips are rendered 
+	 * for a translation of less than a pixel, and are moved by whole pixels 
+	 * for the actual translation.
+	 */
+	private static final class Strips
+	{
+		private final double aScaleX;
+		private final double aScaleY;
+		private final double aFractionX; // The fractional part of the translation
+		private final double aFractionY;
+		private final Rectangle2D aBounds;
+		private final BufferedImage aRow;
+		private final BufferedImage aColumn;
+		private final java.awt.Rectangle aRowArea; // The pixels covered by the vertical lines
+		private final java.awt.Rectangle aColumnArea; // The pixels covered by the horizontal lines
+		
+		Strips(double pScaleX, double pScaleY, double pFractionX, double pFractionY, Rectangle2D pBounds)
+		{
+			aScaleX = pScaleX;
+			aScaleY = pScaleY;
+			aFractionX = pFractionX;
+			aFractionY = pFractionY;
+			aBounds = (Rectangle2D) pBounds.clone();
+			AffineTransform transform = new AffineTransform(pScaleX, 0, 0, pScaleY, pFractionX, pFractionY);
+			java.awt.Rectangle area = transform.createTransformedShape(pBounds).getBounds();
+			// Lines wider than a pixel spill over the sides of the bounds
+			int margin = (int) Math.ceil(Math.max(pScaleX, pScaleY)) + 1;
+			area.grow(margin, margin);
+			java.awt.Rectangle vertical = covered(transform, 
+					new Line2D.Double(pBounds.getX(), pBounds.getY(), pBounds.getX(), pBounds.getMaxY()), margin);
+			java.awt.Rectangle horizontal = covered(transform, 
+					new Line2D.Double(pBounds.getX(), pBounds.getY(), pBounds.getMaxX(), pBounds.getY()), margin);
+			aRowArea = new java.awt.Rectangle(area.x, vertical.y, area.width, vertical.height);
+			aColumnArea = new java.awt.Rectangle(horizontal.x, area.y, horizontal.width, area.height);
+			
+			aRow = new BufferedImage(area.width, 1, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D graphics = aRow.createGraphics();
+			graphics.setColor(GRID_COLOR);
+			graphics.translate(-area.x, -(vertical.y + vertical.height / 2));
+			graphics.transform(transform);
+			for(double x = pBounds.getX(); x < pBounds.getMaxX(); x += GRID_SIZE)
+			{
+				graphics.draw(new Line2D.Double(x, pBounds.getY(), x, pBounds.getMaxY()));
+			}
+			graphics.dispose();
+			
+			aColumn = new BufferedImage(1, area.height, BufferedImage.TYPE_INT_ARGB);
+			graphics = aColumn.createGraphics();
+			graphics.setColor(GRID_COLOR);
+			graphics.translate(-(horizontal.x + horizontal.width / 2), -area.y);
+			graphics.transform(transform);
+			for(double y = pBounds.getY(); y < pBounds.getMaxY(); y += GRID_SIZE)
+			{
+				graphics.draw(new Line2D.Double(pBounds.getX(), y, pBounds.getMaxX(), y));
+			}
+			graphics.dispose();
+		}
+		
+		/*
+		 * Returns the bounds of the pixels covered by pLine when it is drawn 
+		 * through pTransform, with lines up to pMargin pixels wide.
+		 */
+		private static java.awt.Rectangle covered(AffineTransform pTransform, Line2D pLine, int pMargin)
+		{
+			java.awt.Rectangle area = pTransform.createTransformedShape(pLine).getBounds();
+			area.grow(pMargin, pMargin);
+			BufferedImage image = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D graphics = image.createGraphics();
+			graphics.translate(-area.x, -area.y);
+			graphics.transform(pTransform);
+			graphics.draw(pLine);
+			graphics.dispose();
+			int minX = area.width;
+			int minY = area.height;
+			int maxX = -1;
+			int maxY = -1;
+			for( int y = 0; y < area.height; y++ )
+			{
+				for( int x = 0; x < area.width; x++ )
+				{
+					if( image.getRGB(x, y) != 0 )
+					{
+						minX = Math.min(minX, x);
+						minY = Math.min(minY, y);
+						maxX = Math.max(maxX, x);
+						maxY = Math.max(maxY, y);
+					}
+				}
+			}
+			if( maxX < 0 )
+			{
+				return new java.awt.Rectangle(area.x, area.y, 0, 0);
+			}
+			return new java.awt.Rectangle(area.x + minX, area.y + minY, maxX - minX + 1, maxY - minY + 1);
+		}
+		
+		boolean matches(double pScaleX, double pScaleY, double pFractionX, double pFractionY, Rectangle2D pBounds)
+		{
+			return aScaleX == pScaleX && aScaleY == pScaleY && aFractionX == pFractionX && 
+					aFractionY == pFractionY && aBounds.equals(pBounds);
+		}
+		
+		/*
+		 * Repeats the strips over the bounds, moved by (pShiftX, pShiftY)
+		 * pixels, on a context that draws in pixels.
+		 */
+		void fill(Graphics2D pGraphics2D, int pShiftX, int pShiftY)
+		{
+			java.awt.Rectangle row = new java.awt.Rectangle(aRowArea);
+			row.translate(pShiftX, pShiftY);
+			java.awt.Rectangle column = new java.awt.Rectangle(aColumnArea);
+			column.translate(pShiftX, pShiftY);
+			pGraphics2D.setPaint(new TexturePaint(aRow, new Rectangle2D.Double(row.x, row.y, row.width, 1)));
+			pGraphics2D.fill(row);
+			pGraphics2D.setPaint(new TexturePaint(aColumn, new Rectangle2D.Double(column.x, column.y, 1, column.height)));
+			pGraphics2D.fill(column);
+		}
+	}
+	
 	private Grid() {}
 	
 	/**
-     * Draws this grid inside a rectangle.
+     * Draws this grid inside a rectangle. If the graphics context
+     * has a clip, only the part of the grid inside the clip is drawn.
+     * Unless the transform of the context shears or flips the grid, 
+     * its lines are rendered once for a given scale and rectangle, and
+     * repeated over the rectangle, so that the cost of drawing the 
+     * grid does not depend on the number of lines.
      * @param pGraphics2D the graphics context
      * @param pBounds the bounding rectangle
      */
 	public static void draw(Graphics2D pGraphics2D, Rectangle2D pBounds)
 	{
+		AffineTransform transform = pGraphics2D.getTransform();
+		if( isRepeatable(transform) )
+		{
+			double shiftX = Math.floor(transform.getTranslateX());
+			double shiftY = Math.floor(transform.getTranslateY());
+			Strips strips = strips(transform.getScaleX(), transform.getScaleY(), 
+					transform.getTranslateX() - shiftX, transform.getTranslateY() - shiftY, pBounds);
+			Paint oldPaint = pGraphics2D.getPaint();
+			pGraphics2D.setTransform(new AffineTransform());
+			strips.fill(pGraphics2D, (int) shiftX, (int) shiftY);
+			pGraphics2D.setTransform(transform);
+			pGraphics2D.setPaint(oldPaint);
+			return;
+		}
+		
+		Rectangle2D bounds = clipped(pGraphics2D, pBounds);
 		Color oldColor = pGraphics2D.getColor();
 		pGraphics2D.setColor(GRID_COLOR);
 		Stroke oldStroke = pGraphics2D.getStroke();
-		for(double x = pBounds.getX(); x < pBounds.getMaxX(); x += GRID_SIZE)
+		for(double x = bounds.getX(); x < bounds.getMaxX(); x += GRID_SIZE)
 		{
-			pGraphics2D.draw(new Line2D.Double(x, pBounds.getY(), x, pBounds.getMaxY()));
+			pGraphics2D.draw(new Line2D.Double(x, bounds.getY(), x, bounds.getMaxY()));
 		}
-		for(double y = pBounds.getY(); y < pBounds.getMaxY(); y += GRID_SIZE)
+		for(double y = bounds.getY(); y < bounds.getMaxY(); y += GRID_SIZE)
 		{
-			pGraphics2D.draw(new Line2D.Double(pBounds.getX(), y, pBounds.getMaxX(), y));
+			pGraphics2D.draw(new Line2D.Double(bounds.getX(), y, bounds.getMaxX(), y));
 		}
 		pGraphics2D.setStroke(oldStroke);
 		pGraphics2D.setColor(oldColor);
 	}
+	
+	/*
+	 * Returns true if the grid can be drawn with strips through pTransform,
+	 * that is, if its lines stay vertical and horizontal in the same order.
+	 */
+	static boolean isRepeatable(AffineTransform pTransform)
+	{
+		return pTransform.getShearX() == 0 && pTransform.getShearY() == 0 && 
+				pTransform.getScaleX() > 0 && pTransform.getScaleY() > 0;
+	}
+	
+	/*
+	 * Returns the strips of pBounds for a scale and a fractional translation,
+	 * creating them if they are not the last ones used.
+	 */
+	private static Strips strips(double pScaleX, double pScaleY, double pFractionX, double pFractionY, Rectangle2D pBounds)
+	{
+		Strips strips = aStrips;
+		if( strips == null || !strips.matches(pScaleX, pScaleY, pFractionX, pFractionY, pBounds) )
+		{
+			strips = new Strips(pScaleX, pScaleY, pFractionX, pFractionY, pBounds);
+			aStrips = strips;
+		}
+		return strips;
+	}
+
+	/*
+	 * Returns the part of pBounds that intersects the clip of pGraphics2D, 
+	 * extended so that it starts on a grid line of pBounds and covers
+	 * the lines that cross the edges of the clip.
+	 */
+	private static Rectangle2D clipped(Graphics2D pGraphics2D, Rectangle2D pBounds)
+	{
+		java.awt.Rectangle clip = pGraphics2D.getClipBounds();
+		if( clip == null )
+		{
+			return pBounds;
+		}
+		double x = pBounds.getX() + Math.max(0, Math.floor((clip.getX() - pBounds.getX()) / GRID_SIZE) * GRID_SIZE);
+		double y = pBounds.getY() + Math.max(0, Math.floor((clip.getY() - pBounds.getY()) / GRID_SIZE) * GRID_SIZE);
+		double maxX = Math.min(pBounds.getMaxX(), clip.getMaxX() + GRID_SIZE);
+		double maxY = Math.min(pBounds.getMaxY(), clip.getMaxY() + GRID_SIZE);
+		return new Rectangle2D.Double(x, y, Math.max(0, maxX - x), Math.max(0, maxY - y));
+	}
 
 //	/**
 //     * Snaps a rectangle to the nearest grid points.
@@ -0,0 +1,343 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+
+package ca.mcgill.cs.jetuml.views;
+
+import java.awt.Container;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+import javax.swing.plaf.basic.BasicHTML;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.GlyphView;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.text.TabExpander;
+import javax.swing.text.Utilities;
+import javax.swing.text.View;
+
+/**
+ * A bounded cache of labels used to render text. Setting the text of 
+ * a label parses it into an HTML view, and measuring it lays out this view,
+ * so reusing a label that already holds a given text avoids doing this work 
+ * every time the text is measured or drawn. The least recently used labels
+ * are discarded when the cache is full.
+ * 
+ * Clients must not modify the text, font, or other properties of the 
+ * labels obtained from the cache, except their bounds.
+ */
+public final class LabelCache
+{
+	private static final Object UI_LOCK = new Object();
+	private static final String LAYOUT_KEY = LabelCache.class.getName() + ".layout";
+	private static final int SHARED_CAPACITY = 2048;
+	private static final ThreadLocal<LabelCache> SHARED = ThreadLocal.withInitial(() -> new LabelCache(SHARED_CAPACITY));
+	
+	private final Map<List<Object>, JLabel> aLabels;
+	
+	/**
+	 * Creates an empty cache.
+	 * 
+	 * @param pCapacity The maximum number of labels kept by the cache.
+	 * @pre pCapacity > 0
+	 */
+	@SuppressWarnings("serial")
+	public LabelCache(int pCapacity)
+	{
+		assert pCapacity > 0;
+		aLabels = new LinkedHashMap<List<Object>, JLabel>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, JLabel> pEldest)
+			{
+				return size() > pCapacity;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the cache shared by the views rendered on the current thread.
+	 * Since a label is resized before it is painted, two threads must never
+	 * paint the same label. Views that convert their text to HTML 
+	 * differently must use identifiers that cannot be equal.
+	 * 
+	 * @return The cache of the current thread.
+	 */
+	public static LabelCache forCurrentThread()
+	{
+		return SHARED.get();
+	}
+	
+	/**
+	 * Returns a label that renders a text with pFont and pAlignment, 
+	 * creating it if it is not in the cache.
+	 * 
+	 * @param pText An object that identifies the text, such that texts with
+	 * equal identifiers have the same HTML rendering.
+	 * @param pHtml Computes the HTML text of the label. Only called if
+	 * the label is not in the cache.
+	 * @param pAlignment The horizontal alignment of the label, as a SwingConstants value.
+	 * @param pFont The font of the label.
+	 * @return The label, ready to be measured or painted.
+	 * @pre pText != null && pHtml != null && pFont != null
+	 */
+	public synchronized JLabel get(Object pText, Supplier<String> pHtml, int pAlignment, Font pFont)
+	{
+		assert pText != null && pHtml != null && pFont != null;
+		List<Object> key = Arrays.asList(pText, pAlignment, pFont);
+		JLabel label = aLabels.get(key);
+		if( label == null )
+		{
+			label = new JLabel();
+			synchronized(UI_LOCK)
+			{
+				label.setFont(pFont);
+				label.setHorizontalAlignment(pAlignment);
+				label.setText(pHtml.get());
+				label.setPreferredSize(label.getPreferredSize());
+			}
+			aLabels.put(key, label);
+		}
+		return label;
+	}
+	
+	/**
+	 * Paints pLabel at the origin of pGraphics2D. Swing parses and lays out
+	 * labels through state shared by all labels, and its label UI and text 
+	 * painter are shared as well. So when diagrams are rendered on several 
+	 * threads, labels are created and laid out one at a time, but their 
+	 * HTML view is painted directly, with a text painter of its own, so that
+	 * the text of different labels can be drawn at the same time.
+	 * 
+	 * @param pLabel The label to paint.
+	 * @param pGraphics2D The graphics context.
+	 * @pre pLabel != null && pGraphics2D != null
+	 */
+	public static void paint(JLabel pLabel, Graphics2D pGraphics2D)
+	{
+		assert pLabel != null && pGraphics2D != null;
+		View view = (View) pLabel.getClientProperty(BasicHTML.propertyKey);
+		if( view == null )
+		{
+			synchronized(UI_LOCK)
+			{
+				pLabel.paint(pGraphics2D);
+			}
+			return;
+		}
+		Rectangle text = layout(pLabel, view);
+		// As JLabel.paint does, paints on a copy of the context, clipped to the label if there is no clip
+		Graphics2D graphics = (Graphics2D) pGraphics2D.create();
+		try
+		{
+			if( graphics.getClip() == null )
+			{
+				graphics.setClip(0, 0, pLabel.getWidth(), pLabel.getHeight());
+			}
+			Object antialiasing = pLabel.getClientProperty(RenderingHints.KEY_TEXT_ANTIALIASING);
+			if( antialiasing != null )
+			{
+				graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, antialiasing);
+			}
+			view.paint(graphics, text);
+		}
+		finally
+		{
+			graphics.dispose();
+		}
+	}
+	
+	/*
+	 * Lays out the HTML view of pLabel for the bounds of the label, unless it is 
+	 * already laid out for these bounds, and returns the area of the text.
+	 */
+	private static Rectangle layout(JLabel pLabel, View pView)
+	{
+		Rectangle bounds = pLabel.getBounds();
+		Rectangle[] layout = (Rectangle[]) pLabel.getClientProperty(LAYOUT_KEY);
+		if( layout != null && layout[0].equals(bounds) )
+		{
+			return layout[1];
+		}
+		synchronized(UI_LOCK)
+		{
+			Insets insets = pLabel.getInsets();
+			Rectangle area = new Rectangle(insets.left, insets.top, bounds.width - insets.left - insets.right, 
+					bounds.height - insets.top - insets.bottom);
+			Rectangle text = new Rectangle();
+			SwingUtilities.layoutCompoundLabel(pLabel, pLabel.getFontMetrics(pLabel.getFont()), pLabel.getText(), null, 
+					pLabel.getVerticalAlignment(), pLabel.getHorizontalAlignment(), pLabel.getVerticalTextPosition(), 
+					pLabel.getHorizontalTextPosition(), area, new Rectangle(), text, pLabel.getIconTextGap());
+			pView.setSize(text.width, text.height);
+			installPainters(pView);
+			pLabel.putClientProperty(LAYOUT_KEY, new Rectangle[] { bounds, text });
+			return text;
+		}
+	}
+	
+	/*
+	 * The text views created by the layout share a painter, so they 
+	 * receive their own painter before they are painted.
+	 */
+	private static void installPainters(View pView)
+	{
+		if( pView instanceof GlyphView && !(((GlyphView) pView).getGlyphPainter() instanceof TextPainter) )
+		{
+			((GlyphView) pView).setGlyphPainter(new TextPainter());
+		}
+		for( int i = 0; i < pView.getViewCount(); i++ )
+		{
+			installPainters(pView.getView(i));
+		}
+	}
+	
+	/**
+	 * @return The number of labels in the cache.
+	 */
+	public synchronized int size()
+	{
+		return aLabels.size();
+	}
+	
+	/*
+	 * Measures and draws text like the painter that Swing shares between 
+	 * all the text views, for text that is not justified. That painter keeps
+	 * the metrics of the last font it used in a field, so painting two labels 
+	 * with it at the same time can draw one with the metrics of the other, 
+	 * and painting every label with JLabel.paint under UI_LOCK would draw 
+	 * the text of all diagrams one label at a time. 
+	 */
+	private static final class TextPainter extends GlyphView.GlyphPainter
+	{
+		private static final JLabel METRICS = new JLabel(); // Measures the fonts of views without a container
+		
+		private FontMetrics aMetrics;
+		
+		private void sync(GlyphView pView)
+		{
+			Font font = pView.getFont();
+			if( aMetrics == null || !font.equals(aMetrics.getFont()) )
+			{
+				Container container = pView.getContainer();
+				aMetrics = (container != null ? container : METRICS).getFontMetrics(font);
+			}
+		}
+		
+		@Override
+		public float getSpan(GlyphView pView, int pStart, int pEnd, TabExpander pExpander, float pX)
+		{
+			sync(pView);
+			return Utilities.getTabbedTextWidth(pView.getText(pStart, pEnd), aMetrics, pX, pExpander, pStart);
+		}
+		
+		@Override
+		public float getHeight(GlyphView pView)
+		{
+			sync(pView);
+			return aMetrics.getHeight();
+		}
+		
+		@Override
+		public float getAscent(GlyphView pView)
+		{
+			sync(pView);
+			return aMetrics.getAscent();
+		}
+		
+		@Override
+		public float getDescent(GlyphView pView)
+		{
+			sync(pView);
+			return aMetrics.getDescent();
+		}
+		
+		@Override
+		public void paint(GlyphView pView, Graphics pGraphics, Shape pAllocation, int pStart, int pEnd)
+		{
+			sync(pView);
+			Rectangle allocation = pAllocation.getBounds();
+			float x = allocation.x;
+			if( pStart != pView.getStartOffset() )
+			{
+				x += Utilities.getTabbedTextWidth(pView.getText(pView.getStartOffset(), pStart), aMetrics, x, 
+						pView.getTabExpander(), pView.getStartOffset());
+			}
+			float y = allocation.y + aMetrics.getHeight() - aMetrics.getDescent();
+			pGraphics.setFont(aMetrics.getFont());
+			Utilities.drawTabbedText(pView.getText(pStart, pEnd), x, y, (Graphics2D) pGraphics, pView.getTabExpander(), pStart);
+		}
+		
+		@Override
+		public Shape modelToView(GlyphView pView, int pPosition, Position.Bias pBias, Shape pAllocation) 
+				throws BadLocationException
+		{
+			sync(pView);
+			Rectangle allocation = pAllocation.getBounds();
+			int start = pView.getStartOffset();
+			int end = pView.getEndOffset();
+			if( pPosition == end )
+			{
+				return new Rectangle(allocation.x + allocation.width, allocation.y, 0, aMetrics.getHeight());
+			}
+			if( pPosition < start || pPosition > end )
+			{
+				throw new BadLocationException("modelToView - can't convert", end);
+			}
+			float width = Utilities.getTabbedTextWidth(pView.getText(start, pPosition), aMetrics, (float) allocation.x, 
+					pView.getTabExpander(), start);
+			return new Rectangle(allocation.x + (int) width, allocation.y, 0, aMetrics.getHeight());
+		}
+		
+		@Override
+		public int viewToModel(GlyphView pView, float pX, float pY, Shape pAllocation, Position.Bias[] pBias)
+		{
+			sync(pView);
+			int start = pView.getStartOffset();
+			int end = pView.getEndOffset();
+			int offset = Utilities.getTabbedTextOffset(pView.getText(start, end), aMetrics, pAllocation.getBounds().x, 
+					pX, pView.getTabExpander(), start, true);
+			pBias[0] = Position.Bias.Forward;
+			return start + offset == end ? end - 1 : start + offset;
+		}
+		
+		@Override
+		public int getBoundedPosition(GlyphView pView, int pStart, float pX, float pLength)
+		{
+			sync(pView);
+			Segment text = pView.getText(pStart, pView.getEndOffset());
+			return pStart + Utilities.getTabbedTextOffset(text, aMetrics, pX, pX + pLength, 
+					pView.getTabExpander(), pStart, false);
+		}
+	}
+}
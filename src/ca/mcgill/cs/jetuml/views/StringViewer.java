@@ -1,7 +1,9 @@
 package ca.mcgill.cs.jetuml.views;
 
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Graphics2D;
+import java.util.Arrays;
 
 import javax.swing.JLabel;
 import javax.swing.SwingConstants;
@@ -18,7 +20,7 @@ import ca.mcgill.cs.jetuml.geom.Rectangle;
 public final class StringViewer
 {
 	private static final Rectangle EMPTY = new Rectangle(0, 0, 0, 0);
-	private static final JLabel LABEL = new JLabel();
+	private static final Font DEFAULT_FONT = new JLabel().getFont();
 	
 	private StringViewer() {}
 	
@@ -35,29 +37,28 @@ public final class StringViewer
 		{
 			return EMPTY;
 		}
-		Dimension dimensions = getLabel(pString).getPreferredSize();       
+		Dimension dimensions = getLabel(pString, DEFAULT_FONT).getPreferredSize();       
 		return new Rectangle(0, 0, (int) Math.round(dimensions.getWidth()), (int) Math.round(dimensions.getHeight()));
 	}
 	
-	private static JLabel getLabel(MultiLineString pString)
+	/*
+	 * Returns a label that renders pString with pFont. The HTML 
+	 * version of the string is only computed for strings that are 
+	 * not in the cache.
+	 */
+	private static JLabel getLabel(MultiLineString pString, Font pFont)
 	{
-		JLabel label = LABEL;
-		label.setBounds(0, 0, 0, 0);
-		label.setText(pString.convertToHtml());
-		
+		int alignment = SwingConstants.CENTER;
 		if(pString.obtainJustification() == Align.LEFT)
 		{
-			label.setHorizontalAlignment(SwingConstants.LEFT);
-		}
-		else if(pString.obtainJustification() == Align.CENTER)
-		{
-			label.setHorizontalAlignment(SwingConstants.CENTER);
+			alignment = SwingConstants.LEFT;
 		}
 		else if(pString.obtainJustification() == Align.RIGHT) 
 		{
-			label.setHorizontalAlignment(SwingConstants.RIGHT);
+			alignment = SwingConstants.RIGHT;
 		}
-		return label;
+		return LabelCache.forCurrentThread().get(Arrays.asList(pString.getText(), pString.obtainJustification(), pString.isBold(), pString.isUnderlined()), 
+				pString::convertToHtml, alignment, pFont);
 	}
 	
 	/**
@@ -68,11 +69,10 @@ public final class StringViewer
 	 */
 	public static void draw(MultiLineString pString, Graphics2D pGraphics2D, Rectangle pRectangle)
 	{
-		JLabel label = getLabel(pString);
-		label.setFont(pGraphics2D.getFont());
+		JLabel label = getLabel(pString, pGraphics2D.getFont());
 		label.setBounds(0, 0, pRectangle.getWidth(), pRectangle.getHeight());
 		pGraphics2D.translate(pRectangle.getX(), pRectangle.getY());
-		label.paint(pGraphics2D);
+		LabelCache.paint(label, pGraphics2D);
 		pGraphics2D.translate(-pRectangle.getX(), -pRectangle.getY());        
 	}
 }
@@ -24,7 +24,11 @@ package ca.mcgill.cs.jetuml.views.edges;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import ca.mcgill.cs.jetuml.geom.Conversions;
 import ca.mcgill.cs.jetuml.geom.Direction;
@@ -35,7 +39,6 @@ import ca.mcgill.cs.jetuml.graph.Node;
 import ca.mcgill.cs.jetuml.graph.edges.AggregationEdge;
 import ca.mcgill.cs.jetuml.graph.edges.ClassRelationshipEdge;
 import ca.mcgill.cs.jetuml.graph.edges.GeneralizationEdge;
-import ca.mcgill.cs.jetuml.graph.edges.AggregationEdge.Type;
 import ca.mcgill.cs.jetuml.graph.nodes.PackageNode;
 import ca.mcgill.cs.jetuml.views.edges.SegmentationStyle.Side;
 import ca.mcgill.cs.jetuml.views.nodes.PackageNodeView;
@@ -51,7 +54,7 @@ public final class SegmentationStyleFactory
 	private static final int MARGIN = 20;
 	private static final int MIN_SEGMENT = 10;
 	private static final int MAX_NUDGE = 11;
-
+	
 	private SegmentationStyleFactory(){}
 	
 	/**
@@ -195,10 +198,11 @@ public final class SegmentationStyleFactory
 	{
 		assert pNode != null && pSide != null && pPosition != null && pGraph != null;
 		Point start = pNode.view().getConnectionPoint(pSide.getDirection());
+		boolean hasSelfEdge = slotTable(pGraph).getSlots(pGraph, pNode).hasSelfEdge();
 		if( pSide.isEastWest() )
 		{
 			double yPosition = start.getY()+ pPosition.computeNudge(pNode.view().getBounds().getHeight()); // Default
-			if( hasSelfEdge(pNode, pGraph) && pSide == Side.EAST )
+			if( hasSelfEdge && pSide == Side.EAST )
 			{
 				double increment = (pNode.view().getBounds().getHeight() - MARGIN) / (pPosition.aTotal+1);
 				yPosition = pNode.view().getBounds().getY() + MARGIN + pPosition.getIndex() * increment;
@@ -208,7 +212,7 @@ public final class SegmentationStyleFactory
 		else
 		{
 			double xPosition = start.getX()+ pPosition.computeNudge(pNode.view().getBounds().getWidth());
-			if( hasSelfEdge(pNode, pGraph) && pSide == Side.NORTH )
+			if( hasSelfEdge && pSide == Side.NORTH )
 			{
 				double increment = (pNode.view().getBounds().getWidth() - MARGIN) / (pPosition.aTotal+1);
 				xPosition = pNode.view().getBounds().getX() + pPosition.getIndex() * increment;
@@ -217,18 +221,6 @@ public final class SegmentationStyleFactory
 		}
 	}
 	
-	private static boolean hasSelfEdge(Node pNode, Graph pGraph)
-	{
-		for( Edge edge : pGraph.getEdges(pNode))
-		{
-			if( edge.getStart() == edge.getEnd())
-			{
-				return true;
-			}
-		}
-		return false;
-	}
-	
 	/**
 	 * Computes the relative attachment position for an edge's node endpoint:
 	 * either the start node (pForward == true) or the end node (pForward == false).
@@ -243,92 +235,41 @@ public final class SegmentationStyleFactory
 	private static Position computePosition(Edge pEdge, Side pSide, Graph pGraph, boolean pForward)
 	{
 		assert pEdge != null && pSide != null && pGraph != null;
-		Node tempTarget = pEdge.getStart();
+		Node target = pEdge.getStart();
 		if( !pForward )
 		{
-			tempTarget = pEdge.getEnd();
-		}
-		final Node target = tempTarget;
-		List<Edge> edgesOnSelectedSide = getAllEdgesForSide(pGraph, target, pSide);
-		sortPositions(edgesOnSelectedSide, target, pSide);
-		
-		// Group identical edge ends
-		List<Edge> finalPositions = new ArrayList<>();
-		int index = -1;
-		for( Edge edge : edgesOnSelectedSide )
-		{
-			int aggregated = -1;
-			for( Edge classifiedEdge : finalPositions )
-			{
-				if( canAggregate(edge, classifiedEdge, target))
-				{
-					aggregated = finalPositions.indexOf(classifiedEdge);
-					break;
-				}
-			}
-			if( aggregated < 0 )
-			{
-				finalPositions.add(edge);
-				aggregated = finalPositions.size() - 1;
-			}
-			if( edge == pEdge )
-			{
-				index = aggregated;
-			}
+			target = pEdge.getEnd();
 		}
-		return new Position(index + 1, finalPositions.size());
+		return slotTable(pGraph).getSlots(pGraph, target).getPosition(pEdge, pSide);
+	}
+	
+	/*
+	 * Returns the slot table for the current geometry of pGraph.
+	 */
+	private static SlotTable slotTable(Graph pGraph)
+	{
+		return pGraph.getGeometryCache(SlotTable.class, SlotTable::new);
 	}
 	
-	// CSOFF:
-	private static final boolean canAggregate(Edge pEdge1, Edge pEdge2, Node pTarget)
+	/*
+	 * Returns an object that is the same for all edges whose ends can be 
+	 * merged into a single connection point on pTarget, or null if the end 
+	 * of pEdge on pTarget cannot be merged with any other.
+	 */
+	private static Object aggregationKey(Edge pEdge, Node pTarget)
 	{
-		if( pEdge1.getEnd() == pTarget && pEdge2.getEnd() == pTarget &&
-				pEdge1 instanceof GeneralizationEdge && pEdge2 instanceof GeneralizationEdge &&
-				((GeneralizationEdge)pEdge1).getType() == ((GeneralizationEdge)pEdge2).getType())
+		if( pEdge.getEnd() == pTarget && pEdge instanceof GeneralizationEdge )
 		{
-			return true;
+			return ((GeneralizationEdge)pEdge).getType();
 		}
-		else if( pEdge1.getStart() == pTarget && pEdge2.getStart() == pTarget && 
-				pEdge1 instanceof AggregationEdge && pEdge2 instanceof AggregationEdge &&
-				((AggregationEdge)pEdge1).getType() == Type.Aggregation &&
-				((AggregationEdge)pEdge2).getType() == Type.Aggregation)
+		else if( pEdge.getStart() == pTarget && pEdge instanceof AggregationEdge )
 		{
-			return true;
-		}
-		else if( pEdge1.getStart() == pTarget && pEdge2.getStart() == pTarget && 
-				pEdge1 instanceof AggregationEdge && pEdge2 instanceof AggregationEdge &&
-				((AggregationEdge)pEdge1).getType() == Type.Composition &&
-				((AggregationEdge)pEdge2).getType() == Type.Composition)
-		{
-			return true;
+			return ((AggregationEdge)pEdge).getType();
 		}
 		else
 		{
-			return false;
-		}
-	} // CSON:
-	
-	// TODO Fix this
-	private static List<Edge> getAllEdgesForSide(Graph pGraph, Node pTarget, Side pSide)
-	{
-		List<Edge> edgesOnSelectedSide = new ArrayList<>();
-		for( Edge edge : pGraph.getEdges(pTarget))
-		{
-			if( otherNode(edge, pTarget) == pTarget)
-			{
-				continue; // Do not count self-edges
-			}
-			if( !(edge instanceof ClassRelationshipEdge))
-			{
-				continue;
-			}
-			if( edge instanceof ClassRelationshipEdge && 
-					((ClassRelationshipEdge)edge).obtainSegmentationStyle().getAttachedSide(edge, pTarget) == pSide )
-			{
-				edgesOnSelectedSide.add(edge);
-			}
+			return null;
 		}
-		return edgesOnSelectedSide;
 	}
 	
 	// Sort in terms of the position of the other node
@@ -686,5 +627,103 @@ public final class SegmentationStyleFactory
 			return aIndex + " of " + aTotal;
 		}
 	}
+	
+	/*
+	 * The connection slots of all the nodes of a graph, for a given
+	 * version of its geometry. The slots of a node are computed the
+	 * first time they are requested, so dragging a node only requires 
+	 * sorting the edges of each node once, instead of once per edge end.
+	 * The table is stored in the geometry cache of its graph.
+	 */
+	private static final class SlotTable
+	{
+		private final Map<Node, NodeSlots> aSlots = new IdentityHashMap<>();
+		
+		NodeSlots getSlots(Graph pGraph, Node pNode)
+		{
+			return aSlots.computeIfAbsent(pNode, pKey -> new NodeSlots(pGraph, pKey));
+		}
+	}
+	
+	/*
+	 * The ordered connection slots on each side of a node. Each
+	 * class relationship edge attached to the node is assigned the 
+	 * slot of its side, edge ends that can be merged sharing the same slot.
+	 */
+	private static final class NodeSlots
+	{
+		private final Map<Side, Map<Edge, Integer>> aIndexes = new EnumMap<>(Side.class);
+		private final Map<Side, Integer> aTotals = new EnumMap<>(Side.class);
+		private boolean aHasSelfEdge = false;
+		
+		NodeSlots(Graph pGraph, Node pNode)
+		{
+			Map<Side, List<Edge>> edgesBySide = new EnumMap<>(Side.class);
+			for( Edge edge : pGraph.getEdges(pNode))
+			{
+				if( edge.getStart() == edge.getEnd() )
+				{
+					aHasSelfEdge = true;
+					continue; // Do not count self-edges
+				}
+				if( edge instanceof ClassRelationshipEdge )
+				{
+					Side side = ((ClassRelationshipEdge)edge).obtainSegmentationStyle().getAttachedSide(edge, pNode);
+					edgesBySide.computeIfAbsent(side, pKey -> new ArrayList<>()).add(edge);
+				}
+			}
+			for( Map.Entry<Side, List<Edge>> entry : edgesBySide.entrySet() )
+			{
+				assignSlots(entry.getKey(), entry.getValue(), pNode);
+			}
+		}
+		
+		private void assignSlots(Side pSide, List<Edge> pEdges, Node pNode)
+		{
+			sortPositions(pEdges, pNode, pSide);
+			Map<Edge, Integer> indexes = new IdentityHashMap<>();
+			Map<Object, Integer> groups = new HashMap<>();
+			int total = 0;
+			for( Edge edge : pEdges )
+			{
+				Object key = aggregationKey(edge, pNode);
+				Integer slot = null;
+				if( key != null )
+				{
+					slot = groups.get(key);
+				}
+				if( slot == null )
+				{
+					slot = total++;
+					if( key != null )
+					{
+						groups.put(key, slot);
+					}
+				}
+				indexes.put(edge, slot);
+			}
+			aIndexes.put(pSide, indexes);
+			aTotals.put(pSide, total);
+		}
+		
+		boolean hasSelfEdge()
+		{
+			return aHasSelfEdge;
+		}
+		
+		/*
+		 * An edge that is not attached to pSide of the node
+		 * gets index 0.
+		 */
+		Position getPosition(Edge pEdge, Side pSide)
+		{
+			Map<Edge, Integer> indexes = aIndexes.get(pSide);
+			if( indexes == null )
+			{
+				return new Position(0, 0);
+			}
+			Integer index = indexes.get(pEdge);
+			return new Position(index == null ? 0 : index + 1, aTotals.get(pSide));
+		}
+	}
 }
-
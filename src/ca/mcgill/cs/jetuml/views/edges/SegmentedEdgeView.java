@@ -1,6 +1,7 @@
 package ca.mcgill.cs.jetuml.views.edges;
 
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.Shape;
 import java.awt.Stroke;
@@ -10,12 +11,15 @@ import java.awt.geom.Rectangle2D;
 import java.util.function.Supplier;
 
 import javax.swing.JLabel;
+import javax.swing.SwingConstants;
 
 import ca.mcgill.cs.jetuml.geom.Conversions;
 import ca.mcgill.cs.jetuml.geom.Line;
 import ca.mcgill.cs.jetuml.geom.Rectangle;
 import ca.mcgill.cs.jetuml.graph.Edge;
+import ca.mcgill.cs.jetuml.graph.Graph;
 import ca.mcgill.cs.jetuml.views.ArrowHead;
+import ca.mcgill.cs.jetuml.views.LabelCache;
 import ca.mcgill.cs.jetuml.views.LineStyle;
 
 /**
@@ -23,7 +27,7 @@ import ca.mcgill.cs.jetuml.views.LineStyle;
  */
 public class SegmentedEdgeView extends AbstractEdgeView
 {
-	private static JLabel label = new JLabel();
+	private static final Font DEFAULT_FONT = new JLabel().getFont();
 	
 	private Supplier<LineStyle> aLineStyleSupplier;
 	private Supplier<ArrowHead> aArrowStartSupplier;
@@ -32,6 +36,10 @@ public class SegmentedEdgeView extends AbstractEdgeView
 	private Supplier<String> aMiddleLabelSupplier;
 	private Supplier<String> aEndLabelSupplier;
 	private SegmentationStyle aStyle;
+	private Point2D[] aPath; // Cached result of aStyle.getPath, see getPoints()
+	private int aPathVersion;
+	private Rectangle aPathStartBounds;
+	private Rectangle aPathEndBounds;
 	
 	/**
 	 * @param pEdge The edge to wrap.
@@ -56,6 +64,11 @@ public class SegmentedEdgeView extends AbstractEdgeView
 		aEndLabelSupplier = pEndLabelSupplier;
 	}
 	
+	private static JLabel getLabel(String pString, Font pFont)
+	{
+		return LabelCache.forCurrentThread().get(pString, () -> toHtml(pString), SwingConstants.LEADING, pFont);
+	}
+	
 	/**
 	 * Draws a string.
 	 * @param pGraphics2D the graphics context
@@ -71,15 +84,14 @@ public class SegmentedEdgeView extends AbstractEdgeView
 		{
 			return;
 		}
-		label.setText(toHtml(pString));
-		label.setFont(pGraphics2D.getFont());
+		JLabel label = getLabel(pString, pGraphics2D.getFont());
 		Dimension dimensions = label.getPreferredSize();      
 		label.setBounds(0, 0, dimensions.width, dimensions.height);
 
 		Rectangle bounds = getStringBounds(pEndPoint1, pEndPoint2, pArrowHead, pString, pCenter);
 
 		pGraphics2D.translate(bounds.getX(), bounds.getY());
-		label.paint(pGraphics2D);
+		LabelCache.paint(label, pGraphics2D);
 		pGraphics2D.translate(-bounds.getX(), -bounds.getY());        
 	}
 	
@@ -162,9 +174,31 @@ public class SegmentedEdgeView extends AbstractEdgeView
 		return new Point2D.Double(attach.getX() + xoff, attach.getY() + yoff);
 	}
 	
+	/*
+	 * Computing a path requires examining the other edges connected 
+	 * to both end nodes, and the path is needed several times per paint.
+	 * The last path computed is thus reused for as long as the geometry 
+	 * version of the graph and the bounds of both end nodes do not change.
+	 */
 	private Point2D[] getPoints()
 	{
-		return aStyle.getPath(edge(), edge().getGraph());
+		Graph graph = edge().getGraph();
+		if( graph == null )
+		{
+			return aStyle.getPath(edge(), graph);
+		}
+		int version = graph.getGeometryVersion();
+		Rectangle startBounds = edge().getStart().view().getBounds();
+		Rectangle endBounds = edge().getEnd().view().getBounds();
+		if( aPath == null || aPathVersion != version || 
+				!startBounds.equals(aPathStartBounds) || !endBounds.equals(aPathEndBounds))
+		{
+			aPath = aStyle.getPath(edge(), graph);
+			aPathVersion = version;
+			aPathStartBounds = startBounds;
+			aPathEndBounds = endBounds;
+		}
+		return aPath;
 	}
 
 	@Override
@@ -215,8 +249,7 @@ public class SegmentedEdgeView extends AbstractEdgeView
 			return new Rectangle((int)Math.round(pEndPoint2.getX()), 
 					(int)Math.round(pEndPoint2.getY()), 0, 0);
 		}
-		label.setText(toHtml(pString));
-		Dimension d = label.getPreferredSize();
+		Dimension d = getLabel(pString, DEFAULT_FONT).getPreferredSize();
 		Point2D a = getAttachmentPoint(pEndPoint1, pEndPoint2, pArrow, d, pCenter);
 		return new Rectangle((int)Math.round(a.getX()), (int)Math.round(a.getY()),
 				(int)Math.round(d.getWidth()), (int)Math.round(d.getHeight()));
@@ -10,6 +10,7 @@ import java.awt.geom.QuadCurve2D;
 import java.awt.geom.Rectangle2D;
 
 import javax.swing.JLabel;
+import javax.swing.SwingConstants;
 
 import ca.mcgill.cs.jetuml.geom.Conversions;
 import ca.mcgill.cs.jetuml.geom.Direction;
@@ -19,6 +20,7 @@ import ca.mcgill.cs.jetuml.geom.Rectangle;
 import ca.mcgill.cs.jetuml.graph.Edge;
 import ca.mcgill.cs.jetuml.graph.edges.StateTransitionEdge;
 import ca.mcgill.cs.jetuml.views.ArrowHead;
+import ca.mcgill.cs.jetuml.views.LabelCache;
 
 /**
  * An edge view specialized for state transitions.
@@ -42,8 +44,7 @@ public class StateTransitionEdgeView extends AbstractEdgeView
 	// before centering the edge label on one side instead of in the center.
 	private static final int VERTICAL_TOLERANCE = 20; 
 
-	private static final JLabel LABEL = new JLabel();
-	private static final Font FONT_NORMAL = LABEL.getFont();
+	private static final Font FONT_NORMAL = new JLabel().getFont();
 	
 	/**
 	 * @param pEdge The edge to wrap.
@@ -101,9 +102,10 @@ public class StateTransitionEdgeView extends AbstractEdgeView
 		Rectangle2D labelBounds = getLabelBounds();
 		double x = labelBounds.getX();
 		double y = labelBounds.getY();
+		JLabel label = getLabel();
+		label.setBounds(0, 0, (int) labelBounds.getWidth(), (int) labelBounds.getHeight());
 		pGraphics2D.translate(x, y);
-		adjustLabelFont();
-		LABEL.paint(pGraphics2D);
+		LabelCache.paint(label, pGraphics2D);
 		pGraphics2D.translate(-x, -y);        
 	}
 	
@@ -130,10 +132,7 @@ public class StateTransitionEdgeView extends AbstractEdgeView
 		double x = control.getX() / 2 + line.getX1() / 4 + line.getX2() / 4;
 		double y = control.getY() / 2 + line.getY1() / 4 + line.getY2() / 4;
 
-		LABEL.setText(toHtml(edge().getMiddleLabel()));
-		adjustLabelFont();
-		Dimension dimension = LABEL.getPreferredSize();
-		LABEL.setBounds(0, 0, dimension.width, dimension.height);
+		Dimension dimension = getLabel().getPreferredSize();
 
 		int gap = 3;
 		if( line.getY1() >= line.getY2() - VERTICAL_TOLERANCE && 
@@ -185,10 +184,7 @@ public class StateTransitionEdgeView extends AbstractEdgeView
 	private Rectangle2D getSelfEdgeLabelBounds()
 	{
 		Line line = getConnectionPoints();
-		LABEL.setText(toHtml(edge().getMiddleLabel()));
-		adjustLabelFont();
-		Dimension dimension = LABEL.getPreferredSize();
-		LABEL.setBounds(0, 0, dimension.width, dimension.height);
+		Dimension dimension = getLabel().getPreferredSize();
 		if( getPosition() == 1 )
 		{
 			return new Rectangle2D.Double(line.getX1() + SELF_EDGE_OFFSET - dimension.width/2,	
@@ -201,18 +197,24 @@ public class StateTransitionEdgeView extends AbstractEdgeView
 		}
 	}   
 	
-	private void adjustLabelFont()
+	private JLabel getLabel()
+	{
+		String label = edge().getMiddleLabel();
+		return LabelCache.forCurrentThread().get(label, () -> toHtml(label), SwingConstants.LEADING, getLabelFont());
+	}
+	
+	private Font getLabelFont()
 	{
 		if(edge().getMiddleLabel().length() > MAX_LENGTH_FOR_NORMAL_FONT)
 		{
 			float difference = edge().getMiddleLabel().length() - MAX_LENGTH_FOR_NORMAL_FONT;
 			difference = difference / (2*edge().getMiddleLabel().length()); // damping
 			float newFontSize = Math.max(MIN_FONT_SIZE, (1-difference) * FONT_NORMAL.getSize());
-			LABEL.setFont(FONT_NORMAL.deriveFont(newFontSize));
+			return FONT_NORMAL.deriveFont(newFontSize);
 		}
 		else
 		{
-			LABEL.setFont(FONT_NORMAL);
+			return FONT_NORMAL;
 		}
 	}
 
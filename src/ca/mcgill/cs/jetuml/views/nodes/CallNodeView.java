@@ -184,9 +184,9 @@ public class CallNodeView extends RectangleBoundedNodeView
 	private List<Node> getCallees(Graph pGraph)
 	{
 		List<Node> callees = new ArrayList<>();
-		for( Edge edge : pGraph.getEdges())
+		for( Edge edge : pGraph.getOutgoingEdges(node()))
 		{
-			if( edge.getStart() == node() && edge instanceof CallEdge )
+			if( edge instanceof CallEdge )
 			{
 				if( edge.getEnd() instanceof ImplicitParameterNode )
 				{
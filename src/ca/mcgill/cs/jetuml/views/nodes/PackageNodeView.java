@@ -1,13 +1,16 @@
 package ca.mcgill.cs.jetuml.views.nodes;
 
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.Shape;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.swing.JLabel;
+import javax.swing.SwingConstants;
 
 import ca.mcgill.cs.jetuml.application.MultiLineString;
 import ca.mcgill.cs.jetuml.geom.Conversions;
@@ -17,6 +20,7 @@ import ca.mcgill.cs.jetuml.geom.Rectangle;
 import ca.mcgill.cs.jetuml.graph.Graph;
 import ca.mcgill.cs.jetuml.graph.nodes.ChildNode;
 import ca.mcgill.cs.jetuml.graph.nodes.PackageNode;
+import ca.mcgill.cs.jetuml.views.LabelCache;
 import ca.mcgill.cs.jetuml.views.StringViewer;
 
 /**
@@ -35,7 +39,7 @@ public class PackageNodeView extends RectangleBoundedNodeView
 	private static final int XGAP = 5;
 	private static final int YGAP = 5;
 	
-	private static final JLabel LABEL = new JLabel();
+	private static final Font DEFAULT_FONT = new JLabel().getFont();
 	
 	private Rectangle aTop;
 	private Rectangle aBottom;
@@ -72,10 +76,9 @@ public class PackageNodeView extends RectangleBoundedNodeView
 		super.draw(pGraphics2D);
 		Rectangle bounds = getBounds();
 
-		LABEL.setText("<html>" + name() + "</html>");
-		LABEL.setFont(pGraphics2D.getFont());
-		Dimension d = LABEL.getPreferredSize();
-		LABEL.setBounds(0, 0, d.width, d.height);
+		JLabel label = getNameLabel(pGraphics2D.getFont());
+		Dimension d = label.getPreferredSize();
+		label.setBounds(0, 0, d.width, d.height);
 
 		pGraphics2D.draw(Conversions.toRectangle2D(aTop));
 
@@ -83,7 +86,7 @@ public class PackageNodeView extends RectangleBoundedNodeView
 		double textY = bounds.getY() + (aTop.getHeight() - d.getHeight()) / 2;
       
 		pGraphics2D.translate(textX, textY);
-		LABEL.paint(pGraphics2D);
+		LabelCache.paint(label, pGraphics2D);
 		pGraphics2D.translate(-textX, -textY);        
      
 		pGraphics2D.draw(Conversions.toRectangle2D(aBottom));
@@ -131,11 +134,19 @@ public class PackageNodeView extends RectangleBoundedNodeView
 		}
 	}
 
+	private JLabel getNameLabel(Font pFont)
+	{
+		String name = name();
+		// The name is not escaped like edge labels, so its identifier tells it apart from theirs
+		return LabelCache.forCurrentThread().get(Arrays.asList(PackageNodeView.class, name), () -> "<html>" + name + "</html>", SwingConstants.LEADING, pFont);
+	}
+	
 	@Override
 	public void layout(Graph pGraph)
 	{
-		LABEL.setText(name());
-		Dimension d = LABEL.getPreferredSize();
+		// Measured with the default font, like other strings, so that the layout
+		// does not depend on the font of the previous drawing.
+		Dimension d = getNameLabel(DEFAULT_FONT).getPreferredSize();
 		int topWidth = (int)Math.max(d.getWidth() + 2 * NAME_GAP, DEFAULT_TOP_WIDTH);
 		int topHeight = (int)Math.max(d.getHeight(), DEFAULT_TOP_HEIGHT);
 		
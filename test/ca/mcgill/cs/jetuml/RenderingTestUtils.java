@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fixtures and helpers shared by the tests that render diagrams
+ * and compare the resulting images.
+ */
+public final class RenderingTestUtils
+{
+	/**
+	 * The names of the test diagrams, one of each type, without their extension.
+	 */
+	public static final List<String> DIAGRAMS = Collections.unmodifiableList(Arrays.asList(
+			"testPersistenceService.class", "testPersistenceService.object", "testPersistenceService.sequence", 
+			"testPersistenceService.state", "testPersistenceService.usecase"));
+	
+	private RenderingTestUtils() {}
+	
+	/**
+	 * @param pDiagram The name of a test diagram.
+	 * @return The file of the diagram.
+	 */
+	public static File diagramFile(String pDiagram)
+	{
+		return new File("testdata/" + pDiagram + ".jet");
+	}
+	
+	/**
+	 * @param pImage An image.
+	 * @return The RGB values of the pixels of pImage, row by row, so 
+	 * that images can be compared with assertArrayEquals.
+	 */
+	public static int[] pixels(BufferedImage pImage)
+	{
+		return pImage.getRGB(0, 0, pImage.getWidth(), pImage.getHeight(), null, 0, pImage.getWidth());
+	}
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml;
+
+import static ca.mcgill.cs.jetuml.RenderingTestUtils.DIAGRAMS;
+import static ca.mcgill.cs.jetuml.RenderingTestUtils.diagramFile;
+import static ca.mcgill.cs.jetuml.RenderingTestUtils.pixels;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBatchRenderer
+{
+	private File aSequential;
+	private File aConcurrent;
+	
+	@Before
+	public void setup() throws IOException
+	{
+		aSequential = Files.createTempDirectory("jetuml").toFile();
+		aConcurrent = Files.createTempDirectory("jetuml").toFile();
+	}
+	
+	@After
+	public void tearDown()
+	{
+		for( File directory : new File[] { aSequential, aConcurrent })
+		{
+			for( File file : directory.listFiles() )
+			{
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+	
+	@Test
+	public void testRender() throws Exception
+	{
+		List<File> files = new ArrayList<>();
+		for( int i = 0; i < 4; i++ )
+		{
+			for( String diagram : DIAGRAMS )
+			{
+				files.add(diagramFile(diagram));
+			}
+		}
+		File missing = new File("testdata/missing.jet");
+		files.add(missing);
+		
+		Map<File, Exception> failures = BatchRenderer.render(files, aSequential, "png", 1);
+		assertEquals(Arrays.asList(missing), new ArrayList<>(failures.keySet()));
+		assertTrue(failures.get(missing) instanceof IOException);
+		failures = BatchRenderer.render(files, aConcurrent, "png", 4);
+		assertEquals(Arrays.asList(missing), new ArrayList<>(failures.keySet()));
+		
+		assertEquals(DIAGRAMS.size(), aConcurrent.listFiles().length);
+		for( String diagram : DIAGRAMS )
+		{
+			BufferedImage expected = ImageIO.read(new File(aSequential, diagram + ".png"));
+			BufferedImage actual = ImageIO.read(new File(aConcurrent, diagram + ".png"));
+			assertTrue(expected.getWidth() > 1 && expected.getHeight() > 1);
+			assertEquals(expected.getWidth(), actual.getWidth());
+			assertEquals(expected.getHeight(), actual.getHeight());
+			assertArrayEquals(pixels(expected), pixels(actual));
+		}
+	}
+	
+	@Test
+	public void testSameImage() throws Exception
+	{
+		File diagram = diagramFile(DIAGRAMS.get(0));
+		File copy = new File(aSequential, diagram.getName());
+		Files.copy(diagram.toPath(), copy.toPath());
+		Map<File, Exception> failures = BatchRenderer.render(Arrays.asList(diagram, copy, diagram), aConcurrent, "png", 2);
+		assertEquals(Arrays.asList(copy), new ArrayList<>(failures.keySet()));
+		assertTrue(failures.get(copy) instanceof IOException);
+		assertEquals(1, aConcurrent.listFiles().length);
+	}
+}
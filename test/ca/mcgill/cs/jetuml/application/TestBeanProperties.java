@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+
+import org.junit.Test;
+
+import ca.mcgill.cs.jetuml.graph.edges.CallEdge;
+import ca.mcgill.cs.jetuml.graph.nodes.ClassNode;
+
+public class TestBeanProperties
+{
+	@Test
+	public void testIndicesMatchIntrospector() throws Exception
+	{
+		PropertyDescriptor[] descriptors = Introspector.getBeanInfo(ClassNode.class).getPropertyDescriptors();
+		BeanProperties properties = BeanProperties.of(ClassNode.class);
+		assertEquals(descriptors.length, properties.size());
+		for( int i = 0; i < descriptors.length; i++ )
+		{
+			assertEquals(i, properties.indexOf(descriptors[i].getName()));
+			assertEquals(descriptors[i].getName(), properties.getDescriptor(i).getName());
+		}
+		assertEquals(-1, properties.indexOf("unknown"));
+	}
+	
+	@Test
+	public void testCached()
+	{
+		assertSame(BeanProperties.of(ClassNode.class), BeanProperties.of(ClassNode.class));
+	}
+	
+	@Test
+	public void testGetAndSet()
+	{
+		ClassNode node = new ClassNode();
+		BeanProperties properties = BeanProperties.of(ClassNode.class);
+		int index = properties.indexOf("name");
+		assertTrue(properties.isReadable(index));
+		assertTrue(properties.isWritable(index));
+		MultiLineString name = new MultiLineString();
+		name.setText("Foo");
+		properties.set(node, index, name);
+		assertSame(name, node.getName());
+		assertSame(name, properties.get(node, index));
+	}
+	
+	@Test
+	public void testPrimitiveProperty()
+	{
+		CallEdge edge = new CallEdge();
+		BeanProperties properties = BeanProperties.of(CallEdge.class);
+		int index = properties.indexOf("signal");
+		assertEquals(Boolean.FALSE, properties.get(edge, index));
+		properties.set(edge, index, Boolean.TRUE);
+		assertTrue(edge.isSignal());
+	}
+	
+	@Test
+	public void testReadOnlyProperty()
+	{
+		ClassNode node = new ClassNode();
+		BeanProperties properties = BeanProperties.of(ClassNode.class);
+		int index = properties.indexOf("class");
+		assertTrue(properties.isReadable(index));
+		assertFalse(properties.isWritable(index));
+		assertSame(ClassNode.class, properties.get(node, index));
+		properties.set(node, index, null);
+	}
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.application;
+
+import static ca.mcgill.cs.jetuml.RenderingTestUtils.DIAGRAMS;
+import static ca.mcgill.cs.jetuml.RenderingTestUtils.diagramFile;
+import static ca.mcgill.cs.jetuml.RenderingTestUtils.pixels;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.imageio.ImageIO;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import ca.mcgill.cs.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.persistence.PersistenceService;
+
+public class TestDiagramRenderer
+{
+	@Test
+	public void testWriteTiled() throws Exception
+	{
+		for( String diagram : DIAGRAMS )
+		{
+			Graph graph = PersistenceService.read(diagramFile(diagram));
+			int[] expected = pixels(DiagramRenderer.createImage(graph));
+			assertArrayEquals(diagram, expected, pixels(write(graph, DiagramRenderer.DEFAULT_TILE_SIZE, 1)));
+			
+			// Lines crossing tiles can be rasterized one pixel apart, since their
+			// coordinates relative to each tile are rounded differently
+			int[] tiled = pixels(write(graph, 64, 1));
+			assertSimilar(diagram, expected, tiled);
+			assertArrayEquals(diagram, tiled, pixels(write(graph, 64, 3)));
+			assertSimilar(diagram, expected, pixels(write(graph, 100, 2)));
+		}
+	}
+	
+	@Test
+	public void testWriteEmptyGraph() throws Exception
+	{
+		BufferedImage image = write(new ClassDiagramGraph(), 64, 2);
+		assertEquals(DiagramRenderer.MARGIN * 2, image.getWidth());
+		assertEquals(DiagramRenderer.MARGIN * 2, image.getHeight());
+	}
+	
+	@Test
+	public void testWriteUnsupportedFormat() throws Exception
+	{
+		assertFalse(DiagramRenderer.write(new ClassDiagramGraph(), "nosuchformat", new ByteArrayOutputStream()));
+	}
+	
+	@Test
+	public void testWriteSvg() throws Exception
+	{
+		Graph graph = PersistenceService.read(diagramFile(DIAGRAMS.get(0)));
+		StringWriter out = new StringWriter();
+		DiagramRenderer.writeSvg(graph, out);
+		Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+				.parse(new InputSource(new StringReader(out.toString())));
+		BufferedImage image = DiagramRenderer.createImage(graph);
+		assertEquals("svg", document.getDocumentElement().getTagName());
+		assertEquals(Integer.toString(image.getWidth()), document.getDocumentElement().getAttribute("width"));
+		assertEquals(Integer.toString(image.getHeight()), document.getDocumentElement().getAttribute("height"));
+		
+		StringBuilder text = new StringBuilder();
+		NodeList elements = document.getElementsByTagName("text");
+		for( int i = 0; i < elements.getLength(); i++ )
+		{
+			text.append(elements.item(i).getTextContent()).append('\n');
+		}
+		for( String name : new String[] { "Class1", "Class2", "Class3", "Package", "e1", "e5" } )
+		{
+			assertTrue(name, text.toString().contains(name));
+		}
+		assertTrue(document.getElementsByTagName("path").getLength() > 0);
+	}
+	
+	@Test
+	public void testWriteSvgEscapesText()
+	{
+		StringWriter out = new StringWriter();
+		SvgGraphics2D graphics = new SvgGraphics2D(out, 10, 10);
+		graphics.drawString("<a & \"b\">", 1.5f, 2);
+		assertTrue(out.toString(), out.toString().contains(" x=\"1.5\" y=\"2\""));
+		assertTrue(out.toString(), out.toString().contains(">&lt;a &amp; &quot;b&quot;&gt;</text>"));
+	}
+	
+	private static BufferedImage write(Graph pGraph, int pTileSize, int pThreads) throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertTrue(DiagramRenderer.write(pGraph, "png", out, pTileSize, pThreads));
+		return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+	}
+	
+	private static void assertSimilar(String pMessage, int[] pExpected, int[] pActual)
+	{
+		assertEquals(pMessage, pExpected.length, pActual.length);
+		int differences = 0;
+		for( int i = 0; i < pExpected.length; i++ )
+		{
+			if( pExpected[i] != pActual[i] )
+			{
+				differences++;
+			}
+		}
+		assertTrue(pMessage, differences < pExpected.length / 1000);
+	}
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.jetuml.diagrams.SequenceDiagramGraph;
+import ca.mcgill.cs.jetuml.geom.Rectangle;
+import ca.mcgill.cs.jetuml.graph.edges.DependencyEdge;
+import ca.mcgill.cs.jetuml.graph.nodes.ClassNode;
+import ca.mcgill.cs.jetuml.graph.nodes.ImplicitParameterNode;
+import ca.mcgill.cs.jetuml.graph.nodes.PackageNode;
+
+public class TestDirtyRegion
+{
+	private DirtyRegion aRegion;
+	private ClassDiagramGraph aGraph;
+	private ClassNode aNode1; // [x=0,y=0,w=100,h=60]
+	private ClassNode aNode2; // [x=200,y=0,w=100,h=60]
+	private ClassNode aNode3; // [x=400,y=0,w=100,h=60]
+	private ClassNode aNode4; // [x=1000,y=1000,w=100,h=60]
+	
+	@Before
+	public void setup()
+	{
+		aRegion = new DirtyRegion();
+		aGraph = new ClassDiagramGraph();
+		aNode1 = new ClassNode();
+		aNode2 = new ClassNode();
+		aNode2.translate(200, 0);
+		aNode3 = new ClassNode();
+		aNode3.translate(400, 0);
+		aNode4 = new ClassNode();
+		aNode4.translate(1000, 1000);
+		aGraph.insertNode(aNode1);
+		aGraph.insertNode(aNode2);
+		aGraph.insertNode(aNode3);
+		aGraph.insertNode(aNode4);
+	}
+	
+	@Test
+	public void testEmpty()
+	{
+		assertTrue(aRegion.isEmpty());
+		assertFalse(aRegion.coversAll());
+		assertNull(aRegion.getBounds());
+	}
+	
+	@Test
+	public void testAdd()
+	{
+		aRegion.add(new Rectangle(10, 10, 20, 20));
+		aRegion.add(new Rectangle(100, 50, 10, 10));
+		assertFalse(aRegion.isEmpty());
+		assertEquals(new Rectangle(4, 4, 112, 62), aRegion.getBounds());
+		aRegion.clear();
+		assertTrue(aRegion.isEmpty());
+	}
+	
+	@Test
+	public void testAddAll()
+	{
+		aRegion.add(new Rectangle(10, 10, 20, 20));
+		aRegion.addAll();
+		assertFalse(aRegion.isEmpty());
+		assertTrue(aRegion.coversAll());
+		assertNull(aRegion.getBounds());
+		aRegion.clear();
+		assertTrue(aRegion.isEmpty());
+		assertFalse(aRegion.coversAll());
+	}
+	
+	@Test
+	public void testAddMovingNodeAlone()
+	{
+		aRegion.addMovingNode(aGraph, aNode1);
+		assertEquals(new Rectangle(-6, -6, 112, 72), aRegion.getBounds());
+	}
+	
+	@Test
+	public void testAddMovingNodeWithEdges()
+	{
+		aGraph.restoreEdge(new DependencyEdge(), aNode1, aNode2);
+		aGraph.restoreEdge(new DependencyEdge(), aNode2, aNode3);
+		aGraph.restoreEdge(new DependencyEdge(), aNode3, aNode4);
+		aRegion.addMovingNode(aGraph, aNode1);
+		Rectangle bounds = aRegion.getBounds();
+		// The edge between the neighbor and node 3 may be re-slotted, but not the one to node 4
+		assertTrue(bounds.contains(new Rectangle(0, 0, 400, 60)));
+		assertTrue(bounds.getMaxX() < 500);
+	}
+	
+	@Test
+	public void testAddMovingNodeWithChildren()
+	{
+		PackageNode packageNode = new PackageNode();
+		ClassNode child = new ClassNode();
+		packageNode.addChild(child);
+		aGraph.insertNode(packageNode);
+		child.translate(2000, 2000);
+		aGraph.restoreEdge(new DependencyEdge(), child, aNode4);
+		aRegion.addMovingNode(aGraph, packageNode);
+		assertTrue(aRegion.getBounds().contains(aNode4.view().getBounds()));
+		assertTrue(aRegion.getBounds().contains(child.view().getBounds()));
+	}
+	
+	@Test
+	public void testAddMovingNodeWithAncestors()
+	{
+		PackageNode packageNode = new PackageNode();
+		ClassNode child = new ClassNode();
+		packageNode.addChild(child);
+		aGraph.insertNode(packageNode);
+		packageNode.translate(2000, 2000);
+		DependencyEdge edge = new DependencyEdge();
+		aGraph.restoreEdge(edge, packageNode, aNode4);
+		aRegion.addMovingNode(aGraph, child);
+		assertTrue(aRegion.getBounds().contains(packageNode.view().getBounds()));
+		assertTrue(aRegion.getBounds().contains(edge.view().getBounds()));
+	}
+	
+	@Test
+	public void testAddMovingNodeGlobalLayout()
+	{
+		SequenceDiagramGraph graph = new SequenceDiagramGraph();
+		ImplicitParameterNode node = new ImplicitParameterNode();
+		graph.insertNode(node);
+		aRegion.addMovingNode(graph, node);
+		assertTrue(aRegion.coversAll());
+	}
+}
@@ -32,6 +32,7 @@ import ca.mcgill.cs.jetuml.commands.Command;
 import ca.mcgill.cs.jetuml.commands.CompoundCommand;
 import ca.mcgill.cs.jetuml.commands.MoveCommand;
 import ca.mcgill.cs.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.jetuml.geom.Rectangle;
 import ca.mcgill.cs.jetuml.graph.Node;
 import ca.mcgill.cs.jetuml.graph.edges.DependencyEdge;
 import ca.mcgill.cs.jetuml.graph.nodes.ClassNode;
@@ -151,6 +152,20 @@ public class TestMoveTracker
 		assertTrue(aNode1 == getNode(mc));
 	}
 	
+	@Test
+	public void addTrackedArea()
+	{
+		aSelection.add(aNode1);
+		aSelection.add(aEdge1);
+		aMoveTracker.startTrackingMove(aSelection);
+		DirtyRegion region = new DirtyRegion();
+		aMoveTracker.addTrackedArea(aGraph, region);
+		aNode1.translate(100, 0);
+		aMoveTracker.addTrackedArea(aGraph, region);
+		assertTrue(region.getBounds().contains(new Rectangle(150, 150, 200, 60)));
+		assertFalse(region.getBounds().contains(aNode2.view().getBounds()));
+	}
+	
 	@SuppressWarnings("unchecked")
 	private Stack<Command> getChildCommands(CompoundCommand pCommand)
 	{
@@ -240,4 +240,47 @@ public class TestSelectionList
 		assertEquals(1, aList.size());
 		assertEquals(aEdge1, aList.getLastSelected());
 	}
+	
+	@Test
+	public void testRemoveLastSelected()
+	{
+		aList.add(aEdge1);
+		aList.add(aNode1);
+		aList.add(aEdge2);
+		aList.remove(aEdge2);
+		assertEquals(aNode1, aList.getLastSelected());
+		aList.add(aEdge1);
+		aList.remove(aEdge1);
+		assertEquals(aNode1, aList.getLastSelected());
+	}
+	
+	@Test
+	public void testAddNestedChildrenContained()
+	{
+		aPackage1.addChild(aPackage2);
+		aPackage2.addChild(aPackage3);
+		aPackage3.addChild(aNode1);
+		aList.add(aNode1);
+		aList.add(aPackage3);
+		aList.add(aNode2);
+		assertEquals(2, aList.size());
+		aList.add(aPackage1);
+		assertEquals(2, aList.size());
+		assertTrue(aList.contains(aNode2));
+		assertTrue(aList.contains(aPackage1));
+		assertEquals(aPackage1, aList.getLastSelected());
+	}
+	
+	@Test
+	public void testAddMany()
+	{
+		for( int i = 0; i < 5000; i++ )
+		{
+			aList.add(new ClassNode());
+		}
+		aList.add(aNode1);
+		assertEquals(5001, aList.size());
+		assertEquals(aNode1, aList.getLastNode());
+		assertTrue(aList.contains(aNode1));
+	}
 }
@@ -34,8 +34,14 @@ import ca.mcgill.cs.jetuml.application.UndoManager;
 import ca.mcgill.cs.jetuml.commands.AddNodeCommand;
 import ca.mcgill.cs.jetuml.commands.Command;
 import ca.mcgill.cs.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.jetuml.commands.DeleteNodeCommand;
+import ca.mcgill.cs.jetuml.commands.MoveCommand;
+import ca.mcgill.cs.jetuml.commands.RemoveEdgeCommand;
 import ca.mcgill.cs.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.jetuml.geom.Point;
+import ca.mcgill.cs.jetuml.graph.edges.DependencyEdge;
 import ca.mcgill.cs.jetuml.graph.nodes.ClassNode;
+import ca.mcgill.cs.jetuml.graph.nodes.PackageNode;
 
 public class TestUndoManager
 {
@@ -152,6 +158,172 @@ public class TestUndoManager
 		assertEquals(3, cc.size());
 	}
 	
+	@Test
+	public void testEvictOldestByCount()
+	{
+		aUndoManager = new UndoManager(new HistoryPolicy(3, Long.MAX_VALUE, false));
+		aUndoManager.add(aCommand1);
+		aUndoManager.add(aCommand2);
+		aUndoManager.add(aCommand3);
+		aUndoManager.add(aCommand4);
+		aUndoManager.add(aCommand5);
+		assertEquals(3, getPastCommands().size());
+		assertTrue(getPastCommands().get(0) == aCommand3);
+		assertTrue(getPastCommands().get(2) == aCommand5);
+	}
+	
+	@Test
+	public void testEvictOldestByBytes()
+	{
+		long size = HistoryPolicy.estimateSize(aCommand1);
+		aUndoManager = new UndoManager(new HistoryPolicy(100, 2 * size, false));
+		aUndoManager.add(aCommand1);
+		aUndoManager.add(aCommand2);
+		aUndoManager.add(aCommand3);
+		assertEquals(2, getPastCommands().size());
+		assertTrue(getPastCommands().get(0) == aCommand2);
+		assertEquals(2 * size, aUndoManager.getRetainedBytes());
+		aUndoManager.undoCommand();
+		aUndoManager.undoCommand();
+		aUndoManager.undoCommand();
+		assertEquals(0, getPastCommands().size());
+		assertEquals(2, getUndoneCommands().size());
+		aUndoManager.add(aCommand4);
+		assertEquals(size, aUndoManager.getRetainedBytes());
+	}
+	
+	@Test
+	public void testKeepMostRecentCommand()
+	{
+		aUndoManager = new UndoManager(new HistoryPolicy(100, 1, false));
+		aUndoManager.add(aCommand1);
+		aUndoManager.add(aCommand2);
+		assertEquals(1, getPastCommands().size());
+		assertTrue(getPastCommands().get(0) == aCommand2);
+	}
+	
+	@Test
+	public void testSpillAndReload()
+	{
+		aUndoManager = new UndoManager(new HistoryPolicy(4, Long.MAX_VALUE, true));
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		ClassNode node = new ClassNode();
+		graph.addNode(node, new Point(0, 0));
+		MultiLineString name = node.getName().clone();
+		node.getName().setText("Foo");
+		aUndoManager.add(PropertyChangeTracker.createPropertyChangeCommand(graph, node, "name", name, node.getName()));
+		for( int i = 0; i < 10; i++ )
+		{
+			node.translate(1, 0);
+			aUndoManager.add(new MoveCommand(graph, node, 1, 0));
+			assertTrue(getPastCommands().size() <= 4);
+		}
+		for( int i = 0; i < 11; i++ )
+		{
+			aUndoManager.undoCommand();
+		}
+		assertEquals(0, node.position().getX());
+		assertEquals("", node.getName().getText());
+		aUndoManager.undoCommand();
+		assertEquals(0, node.position().getX());
+		for( int i = 0; i < 11; i++ )
+		{
+			aUndoManager.redoCommand();
+		}
+		assertEquals(10, node.position().getX());
+		assertEquals("Foo", node.getName().getText());
+	}
+	
+	@Test
+	public void testCoalesceMoves()
+	{
+		aUndoManager.setCoalescingWindow(Long.MAX_VALUE);
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		ClassNode node1 = new ClassNode();
+		ClassNode node2 = new ClassNode();
+		for( int i = 0; i < 3; i++ )
+		{
+			node1.translate(10, 0);
+			node2.translate(0, 20);
+			CompoundCommand command = new CompoundCommand();
+			command.add(new MoveCommand(graph, node1, 10, 0));
+			command.add(new MoveCommand(graph, node2, 0, 20));
+			aUndoManager.add(command);
+		}
+		assertEquals(1, getPastCommands().size());
+		aUndoManager.undoCommand();
+		assertEquals(0, node1.position().getX());
+		assertEquals(0, node2.position().getY());
+		aUndoManager.redoCommand();
+		assertEquals(30, node1.position().getX());
+		assertEquals(60, node2.position().getY());
+	}
+	
+	@Test
+	public void testNoCoalescingOfDifferentMoves()
+	{
+		aUndoManager.setCoalescingWindow(Long.MAX_VALUE);
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		ClassNode node1 = new ClassNode();
+		ClassNode node2 = new ClassNode();
+		aUndoManager.add(new MoveCommand(graph, node1, 10, 0));
+		aUndoManager.add(new MoveCommand(graph, node2, 10, 0));
+		CompoundCommand command = new CompoundCommand();
+		command.add(new MoveCommand(graph, node1, 10, 0));
+		command.add(new MoveCommand(graph, node2, 0, 20));
+		aUndoManager.add(command);
+		aUndoManager.add(aCommand1);
+		aUndoManager.add(new MoveCommand(graph, node1, 10, 0));
+		assertEquals(5, getPastCommands().size());
+	}
+	
+	@Test
+	public void testNoCoalescingOutsideWindow()
+	{
+		aUndoManager.setCoalescingWindow(0);
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		ClassNode node = new ClassNode();
+		aUndoManager.add(new MoveCommand(graph, node, 10, 0));
+		aUndoManager.add(new MoveCommand(graph, node, 10, 0));
+		assertEquals(2, getPastCommands().size());
+	}
+	
+	@Test
+	public void testNoCoalescingAfterUndo()
+	{
+		aUndoManager.setCoalescingWindow(Long.MAX_VALUE);
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		ClassNode node = new ClassNode();
+		aUndoManager.add(new MoveCommand(graph, node, 10, 0));
+		aUndoManager.add(aCommand1);
+		aUndoManager.undoCommand();
+		aUndoManager.add(new MoveCommand(graph, node, 10, 0));
+		assertEquals(2, getPastCommands().size());
+	}
+	
+	@Test
+	public void testCoalescePropertyChanges()
+	{
+		aUndoManager.setCoalescingWindow(Long.MAX_VALUE);
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		ClassNode node = new ClassNode();
+		String[] texts = {"", "F", "Fo", "Foo"};
+		for( int i = 1; i < texts.length; i++ )
+		{
+			MultiLineString name = node.getName().clone();
+			node.getName().setText(texts[i]);
+			aUndoManager.add(PropertyChangeTracker.createPropertyChangeCommand(graph, node, "name", name, node.getName()));
+		}
+		aUndoManager.add(PropertyChangeTracker.createPropertyChangeCommand(graph, node, "attributes", 
+				node.getAttributes().clone(), node.getAttributes()));
+		assertEquals(2, getPastCommands().size());
+		aUndoManager.undoCommand();
+		aUndoManager.undoCommand();
+		assertEquals("", node.getName().getText());
+		aUndoManager.redoCommand();
+		assertEquals("Foo", node.getName().getText());
+	}
+	
 	@SuppressWarnings("unchecked")
 	private Stack<Command> getPastCommands()
 	{
@@ -166,6 +338,27 @@ public class TestUndoManager
 		}
 	}
 	
+	@Test
+	public void testEstimateSizeOfDeletedNodes()
+	{
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		PackageNode packageNode = new PackageNode();
+		ClassNode child = new ClassNode();
+		packageNode.addChild(child);
+		RemoveEdgeCommand removeEdge = new RemoveEdgeCommand(graph, new DependencyEdge());
+		long command = HistoryPolicy.estimateSize(new CompoundCommand());
+		long empty = HistoryPolicy.estimateSize(new DeleteNodeCommand(graph, new PackageNode()));
+		long leaf = HistoryPolicy.estimateSize(new DeleteNodeCommand(graph, child));
+		assertEquals(empty + leaf - command, HistoryPolicy.estimateSize(new DeleteNodeCommand(graph, packageNode)));
+		
+		// The child is counted once
+		CompoundCommand compound = new CompoundCommand();
+		compound.add(new DeleteNodeCommand(graph, child));
+		compound.add(removeEdge);
+		compound.add(new DeleteNodeCommand(graph, packageNode));
+		assertEquals(command + leaf + HistoryPolicy.estimateSize(removeEdge) + empty, HistoryPolicy.estimateSize(compound));
+	}
+	
 	@SuppressWarnings("unchecked")
 	private Stack<Command> getUndoneCommands()
 	{
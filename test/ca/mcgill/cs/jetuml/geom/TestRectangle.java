@@ -95,4 +95,17 @@ public class TestRectangle
 		rectangle = rectangle.add( new Rectangle(0,0,20,20));
 		assertEquals( new Rectangle(0,0,20,20), rectangle);
 	}
+	
+	@Test
+	public void testIntersects()
+	{
+		assertTrue(RECTANGLE_1.intersects(RECTANGLE_1));
+		assertTrue(RECTANGLE_1.intersects(new Rectangle(10,10,5,5)));
+		assertTrue(RECTANGLE_1.intersects(new Rectangle(-10,-10,1000,1000)));
+		assertTrue(RECTANGLE_1.intersects(new Rectangle(50,30,100,100)));
+		assertTrue(RECTANGLE_1.intersects(new Rectangle(60,40,10,10)));
+		assertFalse(RECTANGLE_1.intersects(new Rectangle(61,0,10,10)));
+		assertFalse(RECTANGLE_1.intersects(new Rectangle(0,41,10,10)));
+		assertFalse(RECTANGLE_1.intersects(new Rectangle(-20,-20,10,10)));
+	}
 }
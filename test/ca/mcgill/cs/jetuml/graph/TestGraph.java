@@ -26,6 +26,11 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -257,4 +262,327 @@ public class TestGraph
 		node.translate(-50, -50);
 		assertEquals(new Rectangle(0,0,104,64), graph.getBounds());
 	}
+	
+	@Test
+	public void testFindNodeTopmost()
+	{
+		aNode2.translate(50, 30);
+		aNode3.translate(300, 300);
+		assertEquals(aNode1, aGraph.findNode(new Point(10, 10)));
+		assertEquals(aNode2, aGraph.findNode(new Point(60, 40)));
+		assertEquals(aNode2, aGraph.findNode(new Point(140, 80)));
+		aNode3.moveTo(new Point(0, 0));
+		assertEquals(aNode3, aGraph.findNode(new Point(60, 40)));
+		assertNull(aGraph.findNode(new Point(500, 500)));
+	}
+	
+	@Test
+	public void testFindNodeAfterMove()
+	{
+		assertEquals(aNode3, aGraph.findNode(new Point(10, 10)));
+		aNode3.translate(1000, 1000);
+		assertEquals(aNode3, aGraph.findNode(new Point(1010, 1010)));
+		assertEquals(aNode2, aGraph.findNode(new Point(10, 10)));
+		aNode2.moveTo(new Point(2000, 2000));
+		assertEquals(aNode1, aGraph.findNode(new Point(10, 10)));
+		assertEquals(aNode2, aGraph.findNode(new Point(2010, 2010)));
+	}
+	
+	@Test
+	public void testFindNodeAfterStructuralChanges()
+	{
+		assertEquals(aNode3, aGraph.findNode(new Point(10, 10)));
+		ClassNode node = new ClassNode();
+		aGraph.restoreRootNode(node);
+		assertEquals(node, aGraph.findNode(new Point(10, 10)));
+		aGraph.removeNode(node);
+		aGraph.layout();
+		assertEquals(aNode3, aGraph.findNode(new Point(10, 10)));
+	}
+	
+	@Test
+	public void testFindNodeChild()
+	{
+		PackageNode packageNode = new PackageNode();
+		packageNode.translate(300, 300);
+		aGraph.restoreRootNode(packageNode);
+		assertEquals(packageNode, aGraph.findNode(new Point(310, 310)));
+		ClassNode classNode = new ClassNode();
+		classNode.translate(310, 310);
+		classNode.setParent(packageNode);
+		aGraph.insertNode(classNode);
+		assertEquals(classNode, aGraph.findNode(new Point(320, 320)));
+		classNode.translate(500, 0);
+		assertEquals(classNode, aGraph.findNode(new Point(820, 320)));
+	}
+	
+	@Test
+	public void testFindNodeAfterChildMoves()
+	{
+		PackageNode packageNode = new PackageNode();
+		ClassNode classNode = new ClassNode();
+		classNode.translate(10, 30);
+		packageNode.addChild(classNode);
+		aGraph.restoreRootNode(packageNode);
+		aGraph.layout();
+		assertEquals(classNode, aGraph.findNode(new Point(20, 40)));
+		classNode.translate(1000, 0);
+		assertEquals(classNode, aGraph.findNode(new Point(1020, 40)));
+	}
+	
+	@Test
+	public void testGeometryVersionPerGraph()
+	{
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		ClassNode node = new ClassNode();
+		graph.restoreRootNode(node);
+		int version = aGraph.getGeometryVersion();
+		int otherVersion = graph.getGeometryVersion();
+		node.translate(10, 10);
+		assertEquals(version, aGraph.getGeometryVersion());
+		assertTrue(otherVersion != graph.getGeometryVersion());
+		aNode1.translate(10, 10);
+		assertTrue(version != aGraph.getGeometryVersion());
+	}
+	
+	@Test
+	public void testGeometryCache()
+	{
+		StringBuilder cache = aGraph.getGeometryCache(StringBuilder.class, StringBuilder::new);
+		assertTrue(cache == aGraph.getGeometryCache(StringBuilder.class, StringBuilder::new));
+		aNode1.translate(10, 10);
+		assertFalse(cache == aGraph.getGeometryCache(StringBuilder.class, StringBuilder::new));
+		cache = aGraph.getGeometryCache(StringBuilder.class, StringBuilder::new);
+		new ClassDiagramGraph().restoreRootNode(new ClassNode());
+		assertTrue(cache == aGraph.getGeometryCache(StringBuilder.class, StringBuilder::new));
+		aGraph.requestLayout();
+		assertFalse(cache == aGraph.getGeometryCache(StringBuilder.class, StringBuilder::new));
+	}
+	
+	@Test
+	public void testFindEdge()
+	{
+		aNode2.translate(300, 0);
+		aGraph.restoreEdge(aEdge1, aNode1, aNode2);
+		assertEquals(aEdge1, aGraph.findEdge(new Point(200, 30)));
+		assertNull(aGraph.findEdge(new Point(200, 300)));
+		aNode1.translate(0, 270);
+		aNode2.translate(0, 270);
+		assertNull(aGraph.findEdge(new Point(200, 30)));
+		assertEquals(aEdge1, aGraph.findEdge(new Point(200, 300)));
+	}
+	
+	@Test
+	public void testFindNodeManyNodes()
+	{
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		ClassNode[][] nodes = new ClassNode[100][100];
+		for( int i = 0; i < nodes.length; i++ )
+		{
+			for( int j = 0; j < nodes[i].length; j++ )
+			{
+				nodes[i][j] = new ClassNode();
+				nodes[i][j].translate(i * 120, j * 80);
+				graph.restoreRootNode(nodes[i][j]);
+			}
+		}
+		for( int i = 0; i < nodes.length; i++ )
+		{
+			for( int j = 0; j < nodes[i].length; j++ )
+			{
+				assertEquals(nodes[i][j], graph.findNode(new Point(i * 120 + 50, j * 80 + 30)));
+			}
+		}
+		assertNull(graph.findNode(new Point(110, 30)));
+	}
+	
+	@Test
+	public void testGetEdgesOfNode()
+	{
+		aGraph.restoreEdge(aEdge1, aNode1, aNode2);
+		aGraph.restoreEdge(aEdge2, aNode2, aNode3);
+		aGraph.restoreEdge(aEdge3, aNode3, aNode3);
+		assertEquals(Arrays.asList(aEdge1), new ArrayList<>(aGraph.getEdges(aNode1)));
+		assertEquals(Arrays.asList(aEdge1, aEdge2), new ArrayList<>(aGraph.getEdges(aNode2)));
+		assertEquals(Arrays.asList(aEdge2, aEdge3), new ArrayList<>(aGraph.getEdges(aNode3)));
+		assertEquals(Arrays.asList(aEdge2), new ArrayList<>(aGraph.getOutgoingEdges(aNode2)));
+		assertEquals(Arrays.asList(aEdge1), new ArrayList<>(aGraph.getIncomingEdges(aNode2)));
+		assertEquals(Arrays.asList(aEdge3), new ArrayList<>(aGraph.getOutgoingEdges(aNode3)));
+		assertEquals(Arrays.asList(aEdge2, aEdge3), new ArrayList<>(aGraph.getIncomingEdges(aNode3)));
+		assertTrue(aGraph.getIncomingEdges(aNode1).isEmpty());
+	}
+	
+	@Test
+	public void testGetEdgesOfNodeAfterRemoval()
+	{
+		aGraph.restoreEdge(aEdge1, aNode1, aNode2);
+		aGraph.restoreEdge(aEdge2, aNode1, aNode2);
+		aGraph.removeEdge(aEdge1);
+		// Edges pending removal are still part of the graph until layout
+		assertEquals(Arrays.asList(aEdge1, aEdge2), new ArrayList<>(aGraph.getEdges(aNode1)));
+		assertTrue(aGraph.existsEdge(DependencyEdge.class, aNode1, aNode2));
+		aGraph.layout();
+		assertEquals(Arrays.asList(aEdge2), new ArrayList<>(aGraph.getEdges(aNode1)));
+		assertEquals(Arrays.asList(aEdge2), new ArrayList<>(aGraph.getIncomingEdges(aNode2)));
+		assertFalse(aGraph.existsEdge(DependencyEdge.class, aNode1, aNode2));
+		aGraph.insertEdge(aEdge1);
+		assertEquals(Arrays.asList(aEdge2, aEdge1), new ArrayList<>(aGraph.getEdges(aNode2)));
+		assertTrue(aGraph.existsEdge(DependencyEdge.class, aNode1, aNode2));
+	}
+	
+	@Test
+	public void testGetEdgesOfNodeConnectedAfterInsertion()
+	{
+		aGraph.insertEdge(aEdge1);
+		assertTrue(aGraph.getOutgoingEdges(aNode1).isEmpty());
+		aEdge1.connect(aNode1, aNode2, aGraph);
+		assertEquals(Arrays.asList(aEdge1), new ArrayList<>(aGraph.getOutgoingEdges(aNode1)));
+		assertEquals(Arrays.asList(aEdge1), new ArrayList<>(aGraph.getIncomingEdges(aNode2)));
+		assertTrue(aGraph.getEdges(aNode3).isEmpty());
+	}
+	
+	@Test
+	public void testDrawClipped()
+	{
+		PackageNode packageNode = new PackageNode();
+		ClassNode child = new ClassNode();
+		packageNode.addChild(child);
+		aGraph.insertNode(packageNode);
+		packageNode.translate(150, 150);
+		child.translate(160, 180);
+		aNode2.translate(300, 0);
+		aNode3.translate(0, 300);
+		aGraph.restoreEdge(aEdge1, aNode1, aNode2);
+		aGraph.restoreEdge(aEdge2, aNode1, aNode3);
+		aGraph.restoreEdge(aEdge3, aNode3, child);
+		
+		BufferedImage full = new BufferedImage(500, 500, BufferedImage.TYPE_INT_RGB);
+		aGraph.draw(full.createGraphics());
+		
+		for( java.awt.Rectangle clip : Arrays.asList(new java.awt.Rectangle(0, 0, 50, 50), 
+				new java.awt.Rectangle(100, 100, 150, 150), new java.awt.Rectangle(250, 0, 250, 500), 
+				new java.awt.Rectangle(50, 340, 10, 10)))
+		{
+			BufferedImage clipped = new BufferedImage(500, 500, BufferedImage.TYPE_INT_RGB);
+			Graphics2D graphics = clipped.createGraphics();
+			graphics.setClip(clip);
+			aGraph.draw(graphics);
+			for( int x = clip.x; x < clip.getMaxX(); x++ )
+			{
+				for( int y = clip.y; y < clip.getMaxY(); y++ )
+				{
+					assertEquals(full.getRGB(x, y), clipped.getRGB(x, y));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testContainsRootNodePendingRemoval()
+	{
+		aGraph.removeNode(aNode1);
+		// Nodes pending removal are still part of the graph until layout
+		assertTrue(aGraph.contains(aNode1));
+		aGraph.layout();
+		assertFalse(aGraph.contains(aNode1));
+		assertTrue(aGraph.contains(aNode2));
+		aGraph.insertNode(aNode1);
+		assertTrue(aGraph.contains(aNode1));
+	}
+	
+	@Test
+	public void testContainsEdgePendingRemoval()
+	{
+		aGraph.restoreEdge(aEdge1, aNode1, aNode2);
+		aGraph.restoreEdge(aEdge2, aNode1, aNode2);
+		aGraph.removeEdge(aEdge1);
+		assertTrue(aGraph.contains(aEdge1));
+		aGraph.layout();
+		assertFalse(aGraph.contains(aEdge1));
+		assertTrue(aGraph.contains(aEdge2));
+		assertEquals(Arrays.asList(aEdge2), new ArrayList<>(aGraph.getEdges()));
+		aGraph.insertEdge(aEdge1);
+		assertTrue(aGraph.contains(aEdge1));
+	}
+	
+	@Test
+	public void testContainsRemovedNodeWithEdges()
+	{
+		aGraph.restoreEdge(aEdge1, aNode1, aNode2);
+		aGraph.removeNode(aNode1);
+		assertTrue(aGraph.contains(aNode1));
+		assertTrue(aGraph.contains(aEdge1));
+		aGraph.layout();
+		assertFalse(aGraph.contains(aNode1));
+		assertFalse(aGraph.contains(aEdge1));
+		assertTrue(aGraph.contains(aNode2));
+	}
+	
+	@Test
+	public void testContainsChildNodes()
+	{
+		PackageNode outer = new PackageNode();
+		PackageNode inner = new PackageNode();
+		ClassNode child = new ClassNode();
+		outer.addChild(inner);
+		inner.addChild(child);
+		assertFalse(aGraph.contains(child));
+		aGraph.restoreRootNode(outer);
+		assertTrue(aGraph.contains(inner));
+		assertTrue(aGraph.contains(child));
+		
+		// Removing a child takes effect immediately, although it keeps its parent
+		aGraph.removeNode(child);
+		assertFalse(aGraph.contains(child));
+		assertTrue(child.getParent() == inner);
+		assertTrue(aGraph.contains(inner));
+		
+		aGraph.insertNode(child);
+		assertTrue(aGraph.contains(child));
+		aGraph.removeNode(outer);
+		assertTrue(aGraph.contains(outer));
+		assertFalse(aGraph.contains(inner));
+		assertFalse(aGraph.contains(child));
+		aGraph.layout();
+		assertFalse(aGraph.contains(outer));
+	}
+	
+	@Test
+	public void testContainsUnknownElements()
+	{
+		assertFalse(aGraph.contains(new ClassNode()));
+		assertFalse(aGraph.contains(new DependencyEdge()));
+	}
+	
+	@Test
+	public void testFindElementsIn()
+	{
+		aNode2.translate(300, 0);
+		aNode3.translate(0, 300);
+		aGraph.restoreEdge(aEdge1, aNode1, aNode2);
+		PackageNode packageNode = new PackageNode();
+		ClassNode child = new ClassNode();
+		packageNode.addChild(child);
+		packageNode.translate(300, 300);
+		child.translate(310, 320);
+		aGraph.restoreRootNode(packageNode);
+		aGraph.draw(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics());
+		
+		assertEquals(Arrays.asList(aNode1), aGraph.findElementsIn(grow(aNode1.view().getBounds())));
+		assertTrue(aGraph.findElementsIn(new Rectangle(2000, 2000, 10, 10)).isEmpty());
+		
+		Rectangle top = grow(aNode1.view().getBounds().add(aNode2.view().getBounds()));
+		assertEquals(Arrays.asList(aNode1, aNode2, aEdge1), aGraph.findElementsIn(top));
+		
+		assertEquals(Arrays.asList(child), aGraph.findElementsIn(grow(child.view().getBounds())));
+		assertEquals(Arrays.asList(packageNode, child), aGraph.findElementsIn(grow(packageNode.view().getBounds())));
+		
+		aNode2.translate(1000, 0);
+		assertEquals(Arrays.asList(aNode1), aGraph.findElementsIn(top));
+	}
+	
+	private static Rectangle grow(Rectangle pBounds)
+	{
+		return new Rectangle(pBounds.getX() - 1, pBounds.getY() - 1, pBounds.getWidth() + 2, pBounds.getHeight() + 2);
+	}
 }
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+
+package ca.mcgill.cs.jetuml.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.jetuml.geom.Point;
+import ca.mcgill.cs.jetuml.geom.Rectangle;
+
+public class TestSpatialIndex
+{
+	private SpatialIndex<String> aIndex;
+	
+	@Before
+	public void setup()
+	{
+		aIndex = new SpatialIndex<>();
+	}
+	
+	@Test
+	public void testEmpty()
+	{
+		assertEquals(0, aIndex.size());
+		assertTrue(aIndex.getCandidates(new Point(0,0)).isEmpty());
+	}
+	
+	@Test
+	public void testSingleElement()
+	{
+		aIndex.add("A", new Rectangle(10, 10, 50, 50));
+		assertEquals(1, aIndex.size());
+		assertEquals(Arrays.asList("A"), aIndex.getCandidates(new Point(10,10)));
+		assertEquals(Arrays.asList("A"), aIndex.getCandidates(new Point(60,60)));
+		assertTrue(aIndex.getCandidates(new Point(9,10)).isEmpty());
+		assertTrue(aIndex.getCandidates(new Point(61,60)).isEmpty());
+	}
+	
+	@Test
+	public void testSpanningCells()
+	{
+		aIndex.add("A", new Rectangle(-200, -200, 1000, 1000));
+		assertEquals(Arrays.asList("A"), aIndex.getCandidates(new Point(-200,-200)));
+		assertEquals(Arrays.asList("A"), aIndex.getCandidates(new Point(0,0)));
+		assertEquals(Arrays.asList("A"), aIndex.getCandidates(new Point(799,800)));
+		assertTrue(aIndex.getCandidates(new Point(801,800)).isEmpty());
+	}
+	
+	@Test
+	public void testOrder()
+	{
+		aIndex.add("A", new Rectangle(0, 0, 100, 100));
+		aIndex.add("B", new Rectangle(50, 50, 100, 100));
+		aIndex.add("C", new Rectangle(0, 0, 300, 300));
+		assertEquals(Arrays.asList("A", "B", "C"), aIndex.getCandidates(new Point(75,75)));
+		assertEquals(Arrays.asList("B", "C"), aIndex.getCandidates(new Point(125,125)));
+		aIndex.add("A", new Rectangle(0, 0, 100, 100));
+		assertEquals(3, aIndex.size());
+		assertEquals(Arrays.asList("B", "C", "A"), aIndex.getCandidates(new Point(75,75)));
+	}
+	
+	@Test
+	public void testUpdateKeepsOrder()
+	{
+		aIndex.add("A", new Rectangle(0, 0, 100, 100));
+		aIndex.add("B", new Rectangle(0, 0, 100, 100));
+		aIndex.update("A", new Rectangle(500, 500, 100, 100));
+		assertEquals(Arrays.asList("B"), aIndex.getCandidates(new Point(50,50)));
+		aIndex.update("A", new Rectangle(0, 0, 100, 100));
+		assertEquals(Arrays.asList("A", "B"), aIndex.getCandidates(new Point(50,50)));
+		aIndex.update("C", new Rectangle(0, 0, 100, 100));
+		assertEquals(Arrays.asList("A", "B", "C"), aIndex.getCandidates(new Point(50,50)));
+		assertEquals(3, aIndex.size());
+	}
+	
+	@Test
+	public void testRemove()
+	{
+		aIndex.add("A", new Rectangle(0, 0, 500, 500));
+		aIndex.add("B", new Rectangle(50, 50, 100, 100));
+		aIndex.remove("A");
+		aIndex.remove("C");
+		assertEquals(1, aIndex.size());
+		assertEquals(Arrays.asList("B"), aIndex.getCandidates(new Point(75,75)));
+		assertTrue(aIndex.getCandidates(new Point(400,400)).isEmpty());
+	}
+	
+	@Test
+	public void testUnbounded()
+	{
+		aIndex.add("A", new Rectangle(0, 0, 100, 100));
+		aIndex.add("B", null);
+		assertEquals(Arrays.asList("A", "B"), aIndex.getCandidates(new Point(50,50)));
+		assertEquals(Arrays.asList("B"), aIndex.getCandidates(new Point(5000,-5000)));
+		aIndex.remove("B");
+		assertTrue(aIndex.getCandidates(new Point(5000,-5000)).isEmpty());
+	}
+	
+	@Test
+	public void testArea()
+	{
+		aIndex.add("A", new Rectangle(0, 0, 100, 100));
+		aIndex.add("B", new Rectangle(1000, 1000, 100, 100));
+		aIndex.add("C", null);
+		aIndex.add("D", new Rectangle(-500, 50, 2000, 10));
+		assertEquals(Arrays.asList("A", "C", "D"), aIndex.getCandidates(new Rectangle(50, 50, 10, 10)));
+		assertEquals(Arrays.asList("A", "C"), aIndex.getCandidates(new Rectangle(100, 100, 10, 10)));
+		assertEquals(Arrays.asList("C"), aIndex.getCandidates(new Rectangle(101, 101, 10, 10)));
+		assertEquals(Arrays.asList("B", "C"), aIndex.getCandidates(new Rectangle(500, 500, 600, 600)));
+		// An area larger than the number of elements
+		assertEquals(Arrays.asList("A", "B", "C", "D"), aIndex.getCandidates(new Rectangle(-10000, -10000, 20000, 20000)));
+	}
+	
+	@Test
+	public void testClear()
+	{
+		aIndex.add("A", new Rectangle(0, 0, 100, 100));
+		aIndex.add("B", null);
+		aIndex.clear();
+		assertEquals(0, aIndex.size());
+		assertTrue(aIndex.getCandidates(new Point(50,50)).isEmpty());
+	}
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.gui;
+
+import static ca.mcgill.cs.jetuml.RenderingTestUtils.pixels;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.jetuml.diagrams.SequenceDiagramGraph;
+import ca.mcgill.cs.jetuml.graph.Edge;
+import ca.mcgill.cs.jetuml.graph.GraphElement;
+import ca.mcgill.cs.jetuml.graph.edges.DependencyEdge;
+import ca.mcgill.cs.jetuml.graph.nodes.ClassNode;
+import ca.mcgill.cs.jetuml.graph.nodes.ImplicitParameterNode;
+import ca.mcgill.cs.jetuml.graph.nodes.PackageNode;
+
+public class TestStaticLayer
+{
+	private StaticLayer aLayer;
+	private ClassDiagramGraph aGraph;
+	private ClassNode aNode1; // [x=0,y=0,w=100,h=60]
+	private ClassNode aNode2; // [x=200,y=0,w=100,h=60]
+	private ClassNode aNode3; // [x=400,y=0,w=100,h=60]
+	private ClassNode aNode4; // [x=0,y=200,w=100,h=60]
+	private Edge aEdge1; // aNode1 -> aNode2
+	private Edge aEdge2; // aNode2 -> aNode3
+	private Edge aEdge3; // aNode3 -> aNode4
+	private int aRenderings;
+	
+	@Before
+	public void setup()
+	{
+		aLayer = new StaticLayer();
+		aGraph = new ClassDiagramGraph();
+		aNode1 = new ClassNode();
+		aNode2 = new ClassNode();
+		aNode2.translate(200, 0);
+		aNode3 = new ClassNode();
+		aNode3.translate(400, 0);
+		aNode4 = new ClassNode();
+		aNode4.translate(0, 200);
+		aGraph.insertNode(aNode1);
+		aGraph.insertNode(aNode2);
+		aGraph.insertNode(aNode3);
+		aGraph.insertNode(aNode4);
+		aEdge1 = new DependencyEdge();
+		aEdge2 = new DependencyEdge();
+		aEdge3 = new DependencyEdge();
+		aGraph.restoreEdge(aEdge1, aNode1, aNode2);
+		aGraph.restoreEdge(aEdge2, aNode2, aNode3);
+		aGraph.restoreEdge(aEdge3, aNode3, aNode4);
+	}
+	
+	@Test
+	public void testRetain()
+	{
+		assertFalse(aLayer.isRetaining());
+		assertTrue(aLayer.retain(aGraph, Arrays.asList(aNode1)));
+		assertTrue(aLayer.isRetaining());
+		assertTrue(aLayer.isMoving(aNode1));
+		assertTrue(aLayer.isMoving(aEdge1));
+		assertTrue(aLayer.isMoving(aEdge2)); // Shares a side of aNode2 with aEdge1
+		assertFalse(aLayer.isMoving(aEdge3));
+		assertFalse(aLayer.isMoving(aNode2));
+		assertFalse(aLayer.isMoving(aNode3));
+		
+		aLayer.release();
+		assertFalse(aLayer.isRetaining());
+		assertFalse(aLayer.isMoving(aNode1));
+	}
+	
+	@Test
+	public void testRetainChildren()
+	{
+		PackageNode parent = new PackageNode();
+		parent.translate(0, 400);
+		ClassNode child = new ClassNode();
+		parent.addChild(child);
+		aGraph.insertNode(parent);
+		aLayer.retain(aGraph, Arrays.<GraphElement>asList(parent, aEdge3));
+		assertTrue(aLayer.isMoving(parent));
+		assertTrue(aLayer.isMoving(child));
+		assertFalse(aLayer.isMoving(aEdge3)); // Selected, but its nodes stay in place
+	}
+	
+	@Test
+	public void testRetainAncestors()
+	{
+		PackageNode parent = new PackageNode();
+		parent.translate(0, 400);
+		ClassNode child = new ClassNode();
+		parent.addChild(child);
+		aGraph.insertNode(parent);
+		Edge edge = new DependencyEdge();
+		aGraph.restoreEdge(edge, parent, aNode4);
+		aLayer.retain(aGraph, Arrays.asList(child));
+		assertTrue(aLayer.isMoving(child));
+		assertTrue(aLayer.isMoving(parent));
+		assertTrue(aLayer.isMoving(edge));
+		assertTrue(aLayer.isMoving(aEdge3)); // Shares a side of aNode4 with edge
+		assertFalse(aLayer.isMoving(aNode4));
+		assertEquals(aGraph.getBounds(), aLayer.getGraphBounds());
+	}
+	
+	@Test
+	public void testRetainNonLocalLayout()
+	{
+		SequenceDiagramGraph graph = new SequenceDiagramGraph();
+		ImplicitParameterNode node = new ImplicitParameterNode();
+		graph.insertNode(node);
+		assertFalse(aLayer.retain(graph, Arrays.asList(node)));
+		assertFalse(aLayer.isRetaining());
+	}
+	
+	@Test
+	public void testPaintRendersOnlyWhenNeeded()
+	{
+		aLayer.retain(aGraph, Arrays.asList(aNode1));
+		BufferedImage image = new BufferedImage(600, 300, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		aLayer.paint(graphics, new Rectangle(0, 0, 600, 300), Color.WHITE, pGraphics -> aRenderings++);
+		aLayer.paint(graphics, new Rectangle(0, 0, 600, 300), Color.WHITE, pGraphics -> aRenderings++);
+		assertEquals(1, aRenderings);
+		aLayer.paint(graphics, new Rectangle(0, 10, 600, 290), Color.WHITE, pGraphics -> aRenderings++);
+		assertEquals(2, aRenderings);
+		aLayer.invalidate();
+		aLayer.paint(graphics, new Rectangle(0, 10, 600, 290), Color.WHITE, pGraphics -> aRenderings++);
+		assertEquals(3, aRenderings);
+		graphics.dispose();
+	}
+	
+	@Test
+	public void testPaintSiblingsOfMovingNode()
+	{
+		PackageNode parent = new PackageNode();
+		ClassNode child1 = new ClassNode();
+		child1.translate(20, 340);
+		ClassNode child2 = new ClassNode();
+		child2.translate(200, 340);
+		parent.addChild(child1);
+		parent.addChild(child2);
+		aGraph.insertNode(parent);
+		aLayer.retain(aGraph, Arrays.asList(child1));
+		assertTrue(aLayer.isMoving(child2)); // Its parent is drawn over the image
+		Rectangle area = new Rectangle(0, 0, 600, 500);
+		assertArrayEquals(pixels(drawGraph(area)), pixels(drawLayers(area)));
+	}
+	
+	@Test
+	public void testPaintMatchesGraph()
+	{
+		aLayer.retain(aGraph, Arrays.asList(aNode4));
+		Rectangle area = new Rectangle(0, 0, 600, 300);
+		assertArrayEquals(pixels(drawGraph(area)), pixels(drawLayers(area)));
+	}
+	
+	/*
+	 * Draws the graph in one pass.
+	 */
+	private BufferedImage drawGraph(Rectangle pArea)
+	{
+		BufferedImage image = new BufferedImage(pArea.width, pArea.height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, pArea.width, pArea.height);
+		graphics.clip(pArea);
+		graphics.setColor(Color.BLACK);
+		graphics.setBackground(Color.WHITE);
+		aGraph.draw(graphics);
+		graphics.dispose();
+		return image;
+	}
+	
+	/*
+	 * Draws the image of the static part of the graph, then the moving elements.
+	 */
+	private BufferedImage drawLayers(Rectangle pArea)
+	{
+		BufferedImage image = new BufferedImage(pArea.width, pArea.height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.clip(pArea);
+		graphics.setColor(Color.BLACK);
+		graphics.setBackground(Color.WHITE);
+		aLayer.paint(graphics, pArea, Color.WHITE, pGraphics -> aGraph.draw(pGraphics, pElement -> !aLayer.isMoving(pElement)));
+		aLayer.drawMoving(graphics);
+		graphics.dispose();
+		return image;
+	}
+}
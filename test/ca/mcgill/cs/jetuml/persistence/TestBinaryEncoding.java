@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import ca.mcgill.cs.jetuml.graph.Edge;
+import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.graph.nodes.ParentNode;
+
+public class TestBinaryEncoding
+{
+	private static final String TEST_FILE_NAME = "testdata/tmp";
+	
+	/*
+	 * All the diagrams in testdata, except for the ones in the 
+	 * legacy XML format, which PersistenceService cannot read.
+	 */
+	private static List<File> diagrams() throws IOException
+	{
+		List<File> diagrams = new ArrayList<>();
+		for( File file : new File("testdata").listFiles() )
+		{
+			if( file.getName().endsWith(".jet") && Files.readAllBytes(file.toPath())[0] != '<' )
+			{
+				diagrams.add(file);
+			}
+		}
+		assertFalse(diagrams.isEmpty());
+		return diagrams;
+	}
+	
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		for( File diagram : diagrams() )
+		{
+			Graph graph = PersistenceService.read(diagram);
+			File tmp = new File(TEST_FILE_NAME);
+			tmp.delete();
+			PersistenceService.save(graph, tmp, PersistenceService.Format.BINARY);
+			assertTrue(BinaryDecoder.isBinary(Files.readAllBytes(tmp.toPath())));
+			assertTrue(tmp.length() < diagram.length());
+			Graph binary = PersistenceService.read(tmp);
+			assertEquals(diagram.getName(), describe(graph), describe(binary));
+			
+			// Saving in JSON is only lossless if the default charset can encode all the text.
+			PersistenceService.save(graph, tmp);
+			String json = describe(PersistenceService.read(tmp));
+			PersistenceService.save(binary, tmp);
+			assertFalse(BinaryDecoder.isBinary(Files.readAllBytes(tmp.toPath())));
+			assertEquals(diagram.getName(), json, describe(PersistenceService.read(tmp)));
+			tmp.delete();
+		}
+	}
+	
+	@Test
+	public void testIsBinary()
+	{
+		assertTrue(BinaryDecoder.isBinary(BinaryEncoder.MAGIC));
+		assertFalse(BinaryDecoder.isBinary(new byte[0]));
+		assertFalse(BinaryDecoder.isBinary("{\"diagram\"".getBytes()));
+	}
+	
+	@Test
+	public void testTruncated() throws Exception
+	{
+		byte[] bytes = encode(PersistenceService.read(diagrams().get(0)));
+		for( int length = 0; length < bytes.length; length++ )
+		{
+			try
+			{
+				BinaryDecoder.decode(new ByteArrayInputStream(Arrays.copyOf(bytes, length)));
+				throw new AssertionError("Decoded a truncated encoding of length " + length);
+			}
+			catch( DeserializationException exception )
+			{
+				// Expected
+			}
+		}
+	}
+	
+	@Test(expected=DeserializationException.class)
+	public void testUnsupportedVersion() throws Exception
+	{
+		byte[] bytes = encode(PersistenceService.read(diagrams().get(0)));
+		bytes[BinaryEncoder.MAGIC.length] = BinaryEncoder.FORMAT_VERSION + 1;
+		BinaryDecoder.decode(new ByteArrayInputStream(bytes));
+	}
+	
+	@Test
+	public void testInvalidLengths() throws Exception
+	{
+		// A string longer than the data, then a negative string length
+		assertInvalid(0, 0x7F, 'x');
+		assertInvalid(0, 0xFF, 0xFF, 0xFF, 0xFF, 0x07);
+		assertInvalid(0, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F);
+		// A class node with too many properties
+		assertInvalid(0, 1, '1', 0, 17, 'C', 'l', 'a', 's', 's', 'D', 'i', 'a', 'g', 'r', 'a', 'm', 'G', 'r', 'a', 'p', 'h',
+				1, 0, 0, 9, 'C', 'l', 'a', 's', 's', 'N', 'o', 'd', 'e', 0xFF, 0xFF, 0xFF, 0xFF, 0x07);
+		// A package node with more children than there are nodes
+		assertInvalid(0, 1, '1', 0, 17, 'C', 'l', 'a', 's', 's', 'D', 'i', 'a', 'g', 'r', 'a', 'm', 'G', 'r', 'a', 'p', 'h',
+				1, 0, 0, 11, 'P', 'a', 'c', 'k', 'a', 'g', 'e', 'N', 'o', 'd', 'e', 
+				4, 0, 1, 'x', 1, 0, 1, 'y', 1, 0, 4, 'n', 'a', 'm', 'e', 0, 0, 8, 'c', 'o', 'n', 't', 'e', 'n', 't', 's', 0, 
+				0, 0, 0, 0, 8, 2);
+	}
+	
+	/*
+	 * Checks that decoding fails on the magic number and 
+	 * the format version followed by pBytes.
+	 */
+	private static void assertInvalid(int... pBytes) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(BinaryEncoder.MAGIC);
+		out.write(BinaryEncoder.FORMAT_VERSION);
+		for( int next : pBytes )
+		{
+			out.write(next);
+		}
+		try
+		{
+			BinaryDecoder.decode(new ByteArrayInputStream(out.toByteArray()));
+			throw new AssertionError("Decoded an invalid encoding");
+		}
+		catch( DeserializationException exception )
+		{
+			// Expected
+		}
+	}
+	
+	private static byte[] encode(Graph pGraph) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryEncoder.encode(pGraph, out);
+		return out.toByteArray();
+	}
+	
+	/*
+	 * A description of the graph that does not depend on node 
+	 * identities or on the order of the root nodes and edges.
+	 */
+	private static String describe(Graph pGraph)
+	{
+		List<String> elements = new ArrayList<>();
+		for( Node node : pGraph.getRootNodes() )
+		{
+			elements.add(describe(node));
+		}
+		for( Edge edge : pGraph.getEdges() )
+		{
+			elements.add(describe(edge.properties()) + edge.getClass().getSimpleName() + 
+					"(" + describe(edge.getStart()) + "->" + describe(edge.getEnd()) + ")");
+		}
+		Collections.sort(elements);
+		return pGraph.getClass().getSimpleName() + elements;
+	}
+	
+	private static String describe(Node pNode)
+	{
+		String description = pNode.getClass().getSimpleName() + describe(pNode.properties());
+		if( pNode instanceof ParentNode )
+		{
+			List<String> children = new ArrayList<>();
+			for( Node child : ((ParentNode)pNode).getChildren() )
+			{
+				children.add(describe(child));
+			}
+			description += children;
+		}
+		return description;
+	}
+	
+	private static String describe(Properties pProperties)
+	{
+		List<String> properties = new ArrayList<>();
+		for( String key : pProperties )
+		{
+			properties.add(key + "=" + pProperties.get(key));
+		}
+		Collections.sort(properties);
+		return properties.toString();
+	}
+}
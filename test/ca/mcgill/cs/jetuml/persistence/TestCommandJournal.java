@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.jetuml.application.UndoManager;
+import ca.mcgill.cs.jetuml.commands.AddEdgeCommand;
+import ca.mcgill.cs.jetuml.commands.AddNodeCommand;
+import ca.mcgill.cs.jetuml.commands.DeleteNodeCommand;
+import ca.mcgill.cs.jetuml.commands.MoveCommand;
+import ca.mcgill.cs.jetuml.commands.RemoveEdgeCommand;
+import ca.mcgill.cs.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.graph.edges.DependencyEdge;
+import ca.mcgill.cs.jetuml.graph.nodes.ClassNode;
+import ca.mcgill.cs.jetuml.graph.nodes.PackageNode;
+
+public class TestCommandJournal
+{
+	private static final File DIAGRAM = new File("testdata/tmp.class.jet");
+	
+	private Graph aGraph;
+	private CommandJournal aJournal;
+	private UndoManager aUndoManager;
+	
+	@Before
+	public void setup() throws IOException
+	{
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		graph.restoreRootNode(new ClassNode());
+		PersistenceService.save(graph, DIAGRAM);
+		aGraph = PersistenceService.read(DIAGRAM);
+		aJournal = CommandJournal.open(aGraph, DIAGRAM);
+		aUndoManager = new UndoManager();
+		aUndoManager.setJournal(aJournal);
+	}
+	
+	@After
+	public void tearDown()
+	{
+		aJournal.discard();
+		aJournal.flush();
+		DIAGRAM.delete();
+	}
+	
+	@Test
+	public void testNoJournal() throws IOException
+	{
+		assertFalse(CommandJournal.fileFor(DIAGRAM).exists());
+		Graph graph = PersistenceService.read(DIAGRAM);
+		assertEquals(0, CommandJournal.open(graph, DIAGRAM).getRecoveredCount());
+		assertEquals(1, graph.getRootNodes().size());
+	}
+	
+	@Test
+	public void testReplay() throws IOException
+	{
+		edit();
+		aJournal.flush();
+		assertTrue(CommandJournal.fileFor(DIAGRAM).exists());
+		Graph recovered = PersistenceService.read(DIAGRAM);
+		assertEquals(9, CommandJournal.open(recovered, DIAGRAM).getRecoveredCount());
+		assertEquals(encode(aGraph), encode(recovered));
+	}
+	
+	@Test
+	public void testReplayTwice() throws IOException
+	{
+		edit();
+		CommandJournal journal = CommandJournal.open(PersistenceService.read(DIAGRAM), DIAGRAM);
+		Graph recovered = PersistenceService.read(DIAGRAM);
+		assertEquals(journal.getRecoveredCount(), CommandJournal.open(recovered, DIAGRAM).getRecoveredCount());
+		assertEquals(encode(aGraph), encode(recovered));
+	}
+	
+	@Test
+	public void testIncompleteLine() throws IOException
+	{
+		edit();
+		aJournal.flush();
+		try( FileOutputStream out = new FileOutputStream(CommandJournal.fileFor(DIAGRAM), true))
+		{
+			out.write("{\"operations\":[{\"op\":\"removeNode\",".getBytes());
+		}
+		Graph recovered = PersistenceService.read(DIAGRAM);
+		CommandJournal journal = CommandJournal.open(recovered, DIAGRAM);
+		assertEquals(9, journal.getRecoveredCount());
+		assertEquals(encode(aGraph), encode(recovered));
+		byte[] bytes = Files.readAllBytes(CommandJournal.fileFor(DIAGRAM).toPath());
+		assertEquals('\n', bytes[bytes.length - 1]);
+	}
+	
+	@Test
+	public void testSave() throws IOException
+	{
+		edit();
+		aJournal.checkpoint();
+		Graph snapshot = PersistenceService.snapshot(aGraph);
+		ClassNode node = addNode(new ClassNode(), 300, 300);
+		PersistenceService.save(snapshot, DIAGRAM);
+		aJournal.saved(DIAGRAM);
+		move(node, 5, 5);
+		
+		Graph recovered = PersistenceService.read(DIAGRAM);
+		assertEquals(2, CommandJournal.open(recovered, DIAGRAM).getRecoveredCount());
+		assertEquals(encode(aGraph), encode(recovered));
+	}
+	
+	@Test
+	public void testSaveWithoutChanges() throws IOException
+	{
+		edit();
+		aJournal.checkpoint();
+		PersistenceService.save(PersistenceService.snapshot(aGraph), DIAGRAM);
+		aJournal.saved(DIAGRAM);
+		aJournal.flush();
+		assertFalse(CommandJournal.fileFor(DIAGRAM).exists());
+	}
+	
+	@Test
+	public void testCrashBeforeJournalRewritten() throws IOException
+	{
+		edit();
+		aJournal.checkpoint();
+		Graph snapshot = PersistenceService.snapshot(aGraph);
+		ClassNode node = addNode(new ClassNode(), 300, 300);
+		PersistenceService.save(snapshot, DIAGRAM);
+		move(node, 5, 5);
+		
+		Graph recovered = PersistenceService.read(DIAGRAM);
+		assertEquals(2, CommandJournal.open(recovered, DIAGRAM).getRecoveredCount());
+		assertEquals(encode(aGraph), encode(recovered));
+	}
+	
+	@Test
+	public void testSaveFailed() throws IOException
+	{
+		edit();
+		aJournal.checkpoint();
+		ClassNode node = addNode(new ClassNode(), 300, 300);
+		aJournal.saveFailed();
+		move(node, 5, 5);
+		
+		Graph recovered = PersistenceService.read(DIAGRAM);
+		assertEquals(11, CommandJournal.open(recovered, DIAGRAM).getRecoveredCount());
+		assertEquals(encode(aGraph), encode(recovered));
+	}
+	
+	@Test
+	public void testDiscard() throws IOException
+	{
+		edit();
+		aJournal.discard();
+		aJournal.flush();
+		assertFalse(CommandJournal.fileFor(DIAGRAM).exists());
+		addNode(new ClassNode(), 300, 300);
+		aJournal.flush();
+		assertFalse(CommandJournal.fileFor(DIAGRAM).exists());
+	}
+	
+	/*
+	 * Applies 9 commands to aGraph.
+	 */
+	private void edit()
+	{
+		Node first = aGraph.getRootNodes().iterator().next();
+		PackageNode container = addNode(new PackageNode(), 100, 0);
+		ClassNode second = new ClassNode();
+		second.translate(110, 30);
+		second.setParent(container);
+		addNode(second, 0, 0);
+		
+		DependencyEdge edge = new DependencyEdge();
+		edge.connect(first, second, aGraph);
+		aGraph.insertEdge(edge);
+		aUndoManager.add(new AddEdgeCommand(aGraph, edge));
+		
+		move(first, 10, 20);
+		
+		second.getName().setText("Second");
+		aJournal.propertiesChanged(second);
+		aJournal.commit();
+		
+		aUndoManager.startTracking();
+		aGraph.removeNode(second);
+		aUndoManager.add(new RemoveEdgeCommand(aGraph, edge));
+		aUndoManager.add(new DeleteNodeCommand(aGraph, second));
+		aUndoManager.endTracking();
+		layout(aGraph);
+		
+		aUndoManager.undoCommand();
+		layout(aGraph);
+		aUndoManager.redoCommand();
+		layout(aGraph);
+		aUndoManager.undoCommand();
+		layout(aGraph);
+	}
+	
+	private <T extends Node> T addNode(T pNode, int pX, int pY)
+	{
+		pNode.translate(pX, pY);
+		aGraph.insertNode(pNode);
+		aUndoManager.add(new AddNodeCommand(aGraph, pNode));
+		return pNode;
+	}
+	
+	private void move(Node pNode, int pDX, int pDY)
+	{
+		pNode.translate(pDX, pDY);
+		aUndoManager.add(new MoveCommand(aGraph, pNode, pDX, pDY));
+	}
+	
+	/*
+	 * Completes the pending removals, as the editor does when it repaints the graph.
+	 */
+	private static void layout(Graph pGraph)
+	{
+		pGraph.draw(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics());
+	}
+	
+	/*
+	 * The encoding of pGraph, with the nodes in the order of their identifiers.
+	 */
+	private static String encode(Graph pGraph)
+	{
+		layout(pGraph);
+		JSONObject object = JsonEncoder.encode(pGraph);
+		JSONArray nodes = object.getJSONArray("nodes");
+		String[] encodings = new String[nodes.length()];
+		for( int i = 0; i < nodes.length(); i++ )
+		{
+			encodings[nodes.getJSONObject(i).getInt("id")] = nodes.getJSONObject(i).toString();
+		}
+		return Arrays.toString(encodings) + object.getJSONArray("edges");
+	}
+}
@@ -3,6 +3,8 @@ package ca.mcgill.cs.jetuml.persistence;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 
+import java.util.Iterator;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -67,6 +69,20 @@ public class TestDeserializationContext
 		assertSame(aClassNode3, aContext.getNode(2));
 	}
 	
+	@Test
+	public void testRestoreRootNodesInIdOrder()
+	{
+		aContext = new DeserializationContext(aGraph);
+		aContext.addNode(aClassNode2, 2);
+		aContext.addNode(aClassNode3, 0);
+		aContext.addNode(aClassNode1, 1);
+		aContext.restoreRootNodes();
+		Iterator<Node> rootNodes = aGraph.getRootNodes().iterator();
+		assertSame(aClassNode3, rootNodes.next());
+		assertSame(aClassNode1, rootNodes.next());
+		assertSame(aClassNode2, rootNodes.next());
+	}
+	
 	private int size()
 	{
 		int size = 0;
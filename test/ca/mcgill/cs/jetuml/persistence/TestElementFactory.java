@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.jetuml.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import org.junit.Test;
+
+import ca.mcgill.cs.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.jetuml.diagrams.ObjectDiagramGraph;
+import ca.mcgill.cs.jetuml.diagrams.SequenceDiagramGraph;
+import ca.mcgill.cs.jetuml.diagrams.StateDiagramGraph;
+import ca.mcgill.cs.jetuml.diagrams.UseCaseDiagramGraph;
+import ca.mcgill.cs.jetuml.graph.Edge;
+import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.graph.nodes.CallNode;
+import ca.mcgill.cs.jetuml.graph.nodes.PointNode;
+
+public class TestElementFactory
+{
+	@Test
+	public void testPrototypes()
+	{
+		for( Graph graph : new Graph[] { new ClassDiagramGraph(), new ObjectDiagramGraph(), new SequenceDiagramGraph(),
+				new StateDiagramGraph(), new UseCaseDiagramGraph() })
+		{
+			for( Node prototype : graph.getNodePrototypes() )
+			{
+				Node node = ElementFactory.createNode(prototype.getClass().getSimpleName());
+				assertEquals(prototype.getClass(), node.getClass());
+				assertNotSame(node, ElementFactory.createNode(prototype.getClass().getSimpleName()));
+			}
+			for( Edge prototype : graph.getEdgePrototypes() )
+			{
+				Edge edge = ElementFactory.createEdge(prototype.getClass().getSimpleName());
+				assertEquals(prototype.getClass(), edge.getClass());
+			}
+		}
+		assertEquals(PointNode.class, ElementFactory.createNode("PointNode").getClass());
+		assertEquals(CallNode.class, ElementFactory.createNode("CallNode").getClass());
+	}
+	
+	@Test(expected=DeserializationException.class)
+	public void testUnknownNode()
+	{
+		ElementFactory.createNode("AbstractNode");
+	}
+	
+	@Test(expected=DeserializationException.class)
+	public void testEdgeAsNode()
+	{
+		ElementFactory.createNode("NoteEdge");
+	}
+	
+	@Test(expected=DeserializationException.class)
+	public void testUnknownEdge()
+	{
+		ElementFactory.createEdge("Edge");
+	}
+}
@@ -20,9 +20,21 @@
  *******************************************************************************/
 package ca.mcgill.cs.jetuml.persistence;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Iterator;
+
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.junit.Test;
 
+import ca.mcgill.cs.jetuml.graph.Edge;
+import ca.mcgill.cs.jetuml.graph.Graph;
+import ca.mcgill.cs.jetuml.graph.Node;
+import ca.mcgill.cs.jetuml.graph.nodes.ClassNode;
+import ca.mcgill.cs.jetuml.graph.nodes.PackageNode;
+
 public class TestJsonDecoder
 {
 	/*
@@ -48,4 +60,81 @@ public class TestJsonDecoder
 		object.put("diagram", "StateDiagramGraph");
 		JsonDecoder.decode(object);
 	}
+	
+	@Test(expected=DeserializationException.class)
+	public void testEmptyStream()
+	{
+		JsonDecoder.decode(new JSONTokener("{}"));
+	}
+	
+	@Test(expected=DeserializationException.class)
+	public void testIncompleteStream()
+	{
+		JsonDecoder.decode(new JSONTokener("{\"version\":\"1.2\",\"diagram\":\"StateDiagramGraph\"}"));
+	}
+	
+	@Test(expected=DeserializationException.class)
+	public void testTruncatedStream()
+	{
+		JsonDecoder.decode(new JSONTokener("{\"diagram\":\"ClassDiagramGraph\",\"nodes\":[{\"x\":0,"));
+	}
+	
+	@Test
+	public void testStream()
+	{
+		Graph graph = JsonDecoder.decode(new JSONTokener(CLASS_DIAGRAM));
+		verifyClassDiagram(graph);
+	}
+	
+	/*
+	 * The edges and nodes precede the diagram type, 
+	 * so they cannot be decoded as they are read.
+	 */
+	@Test
+	public void testStreamMembersInAnyOrder()
+	{
+		Graph graph = JsonDecoder.decode(new JSONTokener(new JSONObject(CLASS_DIAGRAM).toString()));
+		verifyClassDiagram(graph);
+		JSONObject object = new JSONObject(CLASS_DIAGRAM);
+		String text = "{\"edges\":" + object.getJSONArray("edges") + ",\"nodes\":" + object.getJSONArray("nodes") + 
+				",\"diagram\":\"ClassDiagramGraph\",\"version\":\"2.1\"}";
+		verifyClassDiagram(JsonDecoder.decode(new JSONTokener(text)));
+	}
+	
+	private static final String CLASS_DIAGRAM = "{\"diagram\":\"ClassDiagramGraph\",\"nodes\":[" + 
+			"{\"methods\":\"\",\"x\":200,\"name\":\"B\",\"y\":0,\"attributes\":\"\",\"id\":1,\"type\":\"ClassNode\"}," +
+			"{\"x\":0,\"name\":\"P\",\"y\":0,\"children\":[2],\"id\":0,\"type\":\"PackageNode\",\"contents\":\"\"}," +
+			"{\"methods\":\"\",\"x\":10,\"name\":\"A\",\"y\":30,\"attributes\":\"\",\"id\":2,\"type\":\"ClassNode\"}]," + 
+			"\"edges\":[{\"middleLabel\":\"\",\"startLabel\":\"\",\"endLabel\":\"\"," + 
+			"\"start\":2,\"end\":1,\"type\":\"DependencyEdge\"}],\"version\":\"2.1\"}";
+	
+	private static void verifyClassDiagram(Graph pGraph)
+	{
+		assertEquals(2, pGraph.getRootNodes().size());
+		PackageNode parent = null;
+		ClassNode classB = null;
+		for( Node node : pGraph.getRootNodes() )
+		{
+			if( node instanceof PackageNode )
+			{
+				parent = (PackageNode) node;
+			}
+			else
+			{
+				classB = (ClassNode) node;
+			}
+		}
+		assertEquals("P", parent.getName());
+		assertEquals("B", classB.getName().getText());
+		assertEquals(1, parent.getChildren().size());
+		ClassNode classA = (ClassNode) parent.getChildren().get(0);
+		assertEquals("A", classA.getName().getText());
+		assertEquals(30, classA.position().getY());
+		
+		assertEquals(1, pGraph.getEdges().size());
+		Iterator<Edge> edges = pGraph.getEdges().iterator();
+		Edge edge = edges.next();
+		assertSame(classA, edge.getStart());
+		assertSame(classB, edge.getEnd());
+	}
 }
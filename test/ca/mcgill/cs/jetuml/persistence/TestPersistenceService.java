@@ -22,12 +22,14 @@ package ca.mcgill.cs.jetuml.persistence;
 
 import static ca.mcgill.cs.jetuml.persistence.PersistenceTestUtils.build;
 import static ca.mcgill.cs.jetuml.persistence.PersistenceTestUtils.findRootNode;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -81,6 +83,10 @@ public class TestPersistenceService
 		PersistenceService.save(graph, tmp);
 		graph = PersistenceService.read(tmp);
 		verifyClassDiagram(graph);
+		
+		PersistenceService.save(graph, tmp, PersistenceService.Format.BINARY);
+		graph = PersistenceService.read(tmp);
+		verifyClassDiagram(graph);
 		tmp.delete();
 	}
 	
@@ -95,6 +101,10 @@ public class TestPersistenceService
 		PersistenceService.save(graph, tmp);
 		graph = PersistenceService.read(tmp);
 		verifyClassDiagram2(graph);
+		
+		PersistenceService.save(graph, tmp, PersistenceService.Format.BINARY);
+		graph = PersistenceService.read(tmp);
+		verifyClassDiagram2(graph);
 		tmp.delete();
 	}
 	
@@ -109,6 +119,10 @@ public class TestPersistenceService
 		PersistenceService.save(graph, tmp);
 		graph = PersistenceService.read(tmp);
 		verifySequenceDiagram(graph);
+		
+		PersistenceService.save(graph, tmp, PersistenceService.Format.BINARY);
+		graph = PersistenceService.read(tmp);
+		verifySequenceDiagram(graph);
 		tmp.delete();
 	}
 	
@@ -123,6 +137,10 @@ public class TestPersistenceService
 		PersistenceService.save(graph, tmp);
 		graph = PersistenceService.read(tmp);
 		verifyStateDiagram(graph);
+		
+		PersistenceService.save(graph, tmp, PersistenceService.Format.BINARY);
+		graph = PersistenceService.read(tmp);
+		verifyStateDiagram(graph);
 		tmp.delete();
 	}
 	
@@ -137,6 +155,10 @@ public class TestPersistenceService
 		PersistenceService.save(graph, tmp);
 		graph = PersistenceService.read(tmp);
 		verifyObjectDiagram(graph);
+		
+		PersistenceService.save(graph, tmp, PersistenceService.Format.BINARY);
+		graph = PersistenceService.read(tmp);
+		verifyObjectDiagram(graph);
 		tmp.delete();
 	}
 	
@@ -151,9 +173,65 @@ public class TestPersistenceService
 		PersistenceService.save(graph, tmp);
 		graph = PersistenceService.read(tmp);
 		verifyUseCaseDiagram(graph);
+		
+		PersistenceService.save(graph, tmp, PersistenceService.Format.BINARY);
+		graph = PersistenceService.read(tmp);
+		verifyUseCaseDiagram(graph);
+		tmp.delete();
+	}
+	
+	@Test
+	public void testSnapshot() throws Exception
+	{
+		Graph graph = PersistenceService.read(new File("testdata/testPersistenceService2.class.jet"));
+		Graph snapshot = PersistenceService.snapshot(graph);
+		verifyClassDiagram2(snapshot);
+		
+		for( Node node : graph.getRootNodes() )
+		{
+			node.translate(10, 10);
+		}
+		graph.removeEdge(graph.getEdges().iterator().next());
+		verifyClassDiagram2(snapshot);
+		
+		File tmp = new File(TEST_FILE_NAME);
+		tmp.delete();
+		PersistenceService.save(snapshot, tmp);
+		verifyClassDiagram2(PersistenceService.read(tmp));
+		tmp.delete();
+	}
+	
+	@Test
+	public void testSaveReplacesFile() throws Exception
+	{
+		Graph graph = PersistenceService.read(new File("testdata/testPersistenceService2.class.jet"));
+		File directory = new File("testdata");
+		int files = directory.list().length;
+		File tmp = new File(TEST_FILE_NAME);
+		Files.write(tmp.toPath(), "Previous version".getBytes());
+		PersistenceService.save(graph, tmp, PersistenceService.Format.BINARY);
+		verifyClassDiagram2(PersistenceService.read(tmp));
+		PersistenceService.save(graph, tmp);
+		verifyClassDiagram2(PersistenceService.read(tmp));
+		assertEquals(files + 1, directory.list().length);
 		tmp.delete();
 	}
 	
+	@Test
+	public void testSaveWritesEncoding() throws Exception
+	{
+		for( String diagram : new String[] {"class", "sequence", "state", "object", "usecase"})
+		{
+			Graph graph = PersistenceService.read(new File("testdata/testPersistenceService." + diagram + ".jet"));
+			File tmp = new File(TEST_FILE_NAME);
+			tmp.delete();
+			PersistenceService.save(graph, tmp);
+			String expected = JsonEncoder.encode(graph).toString() + System.lineSeparator();
+			assertArrayEquals(expected.getBytes(), Files.readAllBytes(tmp.toPath()));
+			tmp.delete();
+		}
+	}
+	
 	private void verifyUseCaseDiagram( Graph pGraph)
 	{
 		Collection<Node> nodes = pGraph.getRootNodes();
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+
+package ca.mcgill.cs.jetuml.views;
+
+import static ca.mcgill.cs.jetuml.RenderingTestUtils.pixels;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+public class TestGrid
+{
+	private static final int LINE = new Color(220, 220, 220).getRGB();
+	private static final int BACKGROUND = Color.WHITE.getRGB();
+	
+	private static BufferedImage draw(double pZoom, int pClipX, int pClipY)
+	{
+		BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, 100, 100);
+		graphics.clipRect(pClipX, pClipY, 100, 100);
+		graphics.scale(pZoom, pZoom);
+		Grid.draw(graphics, new Rectangle2D.Double(0, 0, 1000, 1000));
+		graphics.dispose();
+		return image;
+	}
+	
+	@Test
+	public void testDraw()
+	{
+		BufferedImage image = draw(1, 0, 0);
+		assertEquals(LINE, image.getRGB(10, 5));
+		assertEquals(LINE, image.getRGB(5, 90));
+		assertEquals(BACKGROUND, image.getRGB(5, 5));
+		assertEquals(BACKGROUND, image.getRGB(11, 11));
+	}
+	
+	@Test
+	public void testDrawZoomed()
+	{
+		BufferedImage image = draw(2, 0, 0);
+		assertEquals(LINE, image.getRGB(19, 5));
+		assertEquals(LINE, image.getRGB(20, 5));
+		assertEquals(BACKGROUND, image.getRGB(21, 5));
+		assertEquals(BACKGROUND, image.getRGB(18, 5));
+		assertEquals(LINE, image.getRGB(5, 40));
+	}
+	
+	@Test
+	public void testDrawClipped()
+	{
+		BufferedImage image = draw(1, 35, 45);
+		assertEquals(BACKGROUND, image.getRGB(30, 50));
+		assertEquals(LINE, image.getRGB(40, 50));
+		assertEquals(LINE, image.getRGB(37, 50));
+	}
+	
+	@Test
+	public void testDrawFractionalZoom()
+	{
+		BufferedImage image = draw(1.25, 0, 0);
+		assertEquals(BACKGROUND, image.getRGB(6, 6));
+		assertEquals(LINE, image.getRGB(6, 50));
+	}
+	
+	@Test
+	public void testDrawZoomSteps()
+	{
+		// The zoom levels of the panel, which are not exact multiples of the cell size
+		double zoom = 1;
+		for( int i = 0; i < 4; i++ )
+		{
+			zoom /= Math.sqrt(2);
+		}
+		for( int i = 0; i < 8; i++ )
+		{
+			zoom *= Math.sqrt(2);
+			assertTrue(Grid.isRepeatable(AffineTransform.getScaleInstance(zoom, zoom)));
+			assertArrayEquals(pixels(drawLines(zoom, 0, 0)), pixels(draw(zoom, 0, 0)));
+			assertArrayEquals(pixels(drawLines(zoom, 35, 45)), pixels(draw(zoom, 35, 45)));
+		}
+	}
+	
+	/*
+	 * Draws the grid of draw(pZoom, pClipX, pClipY) line by line.
+	 */
+	private static BufferedImage drawLines(double pZoom, int pClipX, int pClipY)
+	{
+		BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, 100, 100);
+		graphics.clipRect(pClipX, pClipY, 100, 100);
+		graphics.scale(pZoom, pZoom);
+		graphics.setColor(new Color(LINE));
+		for( int position = 0; position < 1000; position += 10 )
+		{
+			graphics.draw(new Line2D.Double(position, 0, position, 1000));
+			graphics.draw(new Line2D.Double(0, position, 1000, position));
+		}
+		graphics.dispose();
+		return image;
+	}
+	
+	@Test
+	public void testDrawRestoresPaint()
+	{
+		BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.BLUE);
+		Grid.draw(graphics, new Rectangle2D.Double(0, 0, 100, 100));
+		assertSame(Color.BLUE, graphics.getPaint());
+		graphics.dispose();
+	}
+}
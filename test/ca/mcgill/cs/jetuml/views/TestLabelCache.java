@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+
+package ca.mcgill.cs.jetuml.views;
+
+import static ca.mcgill.cs.jetuml.RenderingTestUtils.pixels;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JLabel;
+import javax.swing.SwingConstants;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLabelCache
+{
+	private static final Font FONT = new Font(Font.DIALOG, Font.PLAIN, 12);
+	
+	private LabelCache aCache;
+	private int aConversions;
+	
+	@Before
+	public void setup()
+	{
+		aCache = new LabelCache(2);
+		aConversions = 0;
+	}
+	
+	private String html(String pText)
+	{
+		aConversions++;
+		return "<html>" + pText + "</html>";
+	}
+	
+	@Test
+	public void testReuse()
+	{
+		assertSame(aCache.get("a", () -> html("a"), SwingConstants.CENTER, FONT), 
+				aCache.get("a", () -> html("a"), SwingConstants.CENTER, FONT));
+		assertEquals(1, aConversions);
+		assertEquals("<html>a</html>", aCache.get("a", () -> html("a"), SwingConstants.CENTER, FONT).getText());
+		assertNotSame(aCache.get("a", () -> html("a"), SwingConstants.CENTER, FONT), 
+				aCache.get("a", () -> html("a"), SwingConstants.LEFT, FONT));
+		assertNotSame(aCache.get("a", () -> html("a"), SwingConstants.LEFT, FONT), 
+				aCache.get("a", () -> html("a"), SwingConstants.LEFT, FONT.deriveFont(Font.BOLD)));
+	}
+	
+	@Test
+	public void testEviction()
+	{
+		aCache.get("a", () -> html("a"), SwingConstants.CENTER, FONT);
+		aCache.get("b", () -> html("b"), SwingConstants.CENTER, FONT);
+		aCache.get("a", () -> html("a"), SwingConstants.CENTER, FONT);
+		aCache.get("c", () -> html("c"), SwingConstants.CENTER, FONT);
+		assertEquals(2, aCache.size());
+		assertEquals(3, aConversions);
+		aCache.get("a", () -> html("a"), SwingConstants.CENTER, FONT);
+		assertEquals(3, aConversions);
+		aCache.get("b", () -> html("b"), SwingConstants.CENTER, FONT);
+		assertEquals(4, aConversions);
+	}
+	
+	@Test
+	public void testPaintLikeSwing()
+	{
+		String html = "<html><p align=\"center\">&nbsp;<u><b>Name&lt;T&gt;</b></u>&nbsp;<br>&nbsp;second line&nbsp;</p></html>";
+		JLabel label = aCache.get("a", () -> html, SwingConstants.CENTER, FONT);
+		JLabel swingLabel = new LabelCache(1).get("a", () -> html, SwingConstants.CENTER, FONT);
+		for( int width : new int[] { label.getPreferredSize().width, 200 })
+		{
+			label.setBounds(0, 0, width, 60);
+			swingLabel.setBounds(0, 0, width, 60);
+			BufferedImage expected = image();
+			Graphics2D graphics = expected.createGraphics();
+			graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			graphics.translate(10, 10);
+			swingLabel.paint(graphics);
+			BufferedImage actual = image();
+			graphics = actual.createGraphics();
+			graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			graphics.translate(10, 10);
+			LabelCache.paint(label, graphics);
+			assertArrayEquals(pixels(expected), pixels(actual));
+		}
+	}
+	
+	private static BufferedImage image()
+	{
+		BufferedImage image = new BufferedImage(250, 100, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+		return image;
+	}
+}
@@ -532,4 +532,44 @@ public class TestSegmentationStrategies
 		assertEquals( 1061, points[3].getX(), 0.01);
 		assertEquals( 60, points[3].getY(), 0.01);
 	}
+	
+	@Test
+	public void testSlotsFollowNodeMovement()
+	{
+		ClassNode hub = new ClassNode();
+		hub.translate(1000, 0);
+		ClassNode node1 = new ClassNode();
+		node1.translate(500, 400);
+		ClassNode node2 = new ClassNode();
+		node2.translate(1000, 400);
+		ClassNode node3 = new ClassNode();
+		node3.translate(1500, 400);
+		aGraph.insertNode(hub);
+		aGraph.insertNode(node1);
+		aGraph.insertNode(node2);
+		aGraph.insertNode(node3);
+		GeneralizationEdge edge1 = new GeneralizationEdge(Type.Implementation);
+		GeneralizationEdge edge2 = new GeneralizationEdge();
+		GeneralizationEdge edge3 = new GeneralizationEdge();
+		aGraph.restoreEdge(edge1, node1, hub);
+		aGraph.restoreEdge(edge2, node2, hub);
+		aGraph.restoreEdge(edge3, node3, hub);
+		
+		// The two inheritance edges share the slot to the right of the implementation edge
+		assertEquals( new Point2D.Double(1045,60), end(edge1));
+		assertEquals( new Point2D.Double(1056,60), end(edge2));
+		assertEquals( new Point2D.Double(1056,60), end(edge3));
+		
+		// Moving node 1 to the right of the other nodes swaps the slots
+		node1.translate(1500, 0);
+		assertEquals( new Point2D.Double(1056,60), end(edge1));
+		assertEquals( new Point2D.Double(1045,60), end(edge2));
+		assertEquals( new Point2D.Double(1045,60), end(edge3));
+	}
+	
+	private Point2D end(Edge pEdge)
+	{
+		Point2D[] points = SegmentationStyleFactory.createVHVStrategy().getPath(pEdge, aGraph);
+		return points[points.length-1];
+	}
 }
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+
+package ca.mcgill.cs.jetuml.views.edges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.awt.geom.Point2D;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.jetuml.geom.Conversions;
+import ca.mcgill.cs.jetuml.geom.Line;
+import ca.mcgill.cs.jetuml.graph.Edge;
+import ca.mcgill.cs.jetuml.graph.edges.AggregationEdge;
+import ca.mcgill.cs.jetuml.graph.nodes.ClassNode;
+
+public class TestSegmentedEdgeView
+{
+	private ClassNode aNode1;
+	private ClassNode aNode2;
+	private ClassNode aNode3;
+	private AggregationEdge aEdge1;
+	private AggregationEdge aEdge2;
+	private ClassDiagramGraph aGraph;
+	
+	@Before
+	public void setup()
+	{
+		aNode1 = new ClassNode();
+		aNode2 = new ClassNode();
+		aNode2.translate(300, 150);
+		aNode3 = new ClassNode();
+		aNode3.translate(300, 300);
+		aEdge1 = new AggregationEdge();
+		aEdge2 = new AggregationEdge(AggregationEdge.Type.Composition);
+		aGraph = new ClassDiagramGraph();
+		aGraph.insertNode(aNode1);
+		aGraph.insertNode(aNode2);
+		aGraph.insertNode(aNode3);
+		aGraph.restoreEdge(aEdge1, aNode1, aNode2);
+		aGraph.restoreEdge(aEdge2, aNode1, aNode3);
+	}
+	
+	private static Line uncachedConnectionPoints(Edge pEdge, ClassDiagramGraph pGraph)
+	{
+		Point2D[] points = SegmentationStyleFactory.createHVHStrategy().getPath(pEdge, pGraph);
+		return new Line(Conversions.toPoint(points[0]), Conversions.toPoint(points[points.length-1]));
+	}
+	
+	@Test
+	public void testPathFollowsEndNode()
+	{
+		Line before = aEdge1.view().getConnectionPoints();
+		assertEquals(uncachedConnectionPoints(aEdge1, aGraph), before);
+		aNode2.translate(0, 50);
+		assertNotEquals(before, aEdge1.view().getConnectionPoints());
+		assertEquals(uncachedConnectionPoints(aEdge1, aGraph), aEdge1.view().getConnectionPoints());
+	}
+	
+	@Test
+	public void testPathFollowsOtherNodes()
+	{
+		Line before = aEdge1.view().getConnectionPoints();
+		// Moving node 3 above node 2 changes the order of the edges on the east side of node 1
+		aNode3.translate(0, -600);
+		assertEquals(uncachedConnectionPoints(aEdge1, aGraph), aEdge1.view().getConnectionPoints());
+		assertNotEquals(before, aEdge1.view().getConnectionPoints());
+	}
+	
+	@Test
+	public void testPathFollowsStructuralChanges()
+	{
+		aGraph.removeEdge(aEdge2);
+		assertEquals(uncachedConnectionPoints(aEdge1, aGraph), aEdge1.view().getConnectionPoints());
+		aGraph.insertEdge(aEdge2);
+		assertEquals(uncachedConnectionPoints(aEdge1, aGraph), aEdge1.view().getConnectionPoints());
+	}
+}